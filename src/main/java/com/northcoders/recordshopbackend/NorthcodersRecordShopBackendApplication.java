@@ -2,10 +2,13 @@ package com.northcoders.recordshopbackend;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.PropertySource;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableScheduling
+// The application's defaults, application.properties is left to each developer's local setup
+@PropertySource("classpath:recordshop.properties")
 public class NorthcodersRecordShopBackendApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,46 @@
+package com.northcoders.recordshopbackend.config;
+
+import com.northcoders.recordshopbackend.dto.AlbumImportSummaryDTO;
+import com.northcoders.recordshopbackend.service.AlbumImportService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+
+// Imports a catalog file on startup, e.g. --recordshop.import.file=/data/albums.ndjson or
+// --recordshop.import.file=classpath:albums.json. Files ending in .csv are read as CSV, anything
+// else as a JSON array or newline delimited JSON.
+@Slf4j
+@Component
+@ConditionalOnProperty("recordshop.import.file")
+public class AlbumFileImportRunner implements ApplicationRunner {
+
+    @Autowired
+    private AlbumImportService albumImportService;
+
+    @Value("${recordshop.import.file}")
+    private Resource file;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        String filename = file.getFilename() == null ? "" : file.getFilename().toLowerCase();
+        AlbumImportService.Format format = filename.endsWith(".csv")
+                ? AlbumImportService.Format.CSV
+                : AlbumImportService.Format.JSON;
+
+        log.info("Importing albums from {} as {}", file, format);
+        try (InputStream inputStream = file.getInputStream()) {
+            AlbumImportSummaryDTO summary = albumImportService.importAlbums(inputStream, format);
+            log.info("Imported albums from {}: {} records, {} created, {} invalid, {} failed",
+                    file, summary.getRecords(), summary.getCreated(), summary.getInvalid(), summary.getFailed());
+            summary.getErrors().forEach(error -> log.warn("Album {} was not imported: {} {}",
+                    error.getIndex(), error.getStatus(), error.getErrors()));
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.northcoders.recordshopbackend.config;
+
+import com.northcoders.recordshopbackend.model.Album;
+import com.northcoders.recordshopbackend.service.CacheService;
+import com.northcoders.recordshopbackend.service.SerializedResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+// Each cache gets its own size bound and expiry policies, configurable under recordshop.cache.*
+// A zero duration turns that expiry policy off.
+@Configuration
+public class CacheConfig {
+
+    @Bean
+    public CacheService<Album> albumCacheService(
+            @Value("${recordshop.cache.album.maximum-size:10000}") long maximumSize,
+            @Value("${recordshop.cache.album.expire-after-write:10m}") Duration expireAfterWrite,
+            @Value("${recordshop.cache.album.expire-after-access:5m}") Duration expireAfterAccess
+    ){
+        return new CacheService<>(maximumSize, expireAfterWrite, expireAfterAccess);
+    }
+
+    // Negative caches remember ids that were looked up and not found, so repeated 404s skip the database.
+    // They are kept short lived and the services remove an id as soon as it is created.
+    @Bean
+    public CacheService<Boolean> missingAlbumCache(
+            @Value("${recordshop.cache.missing-ids.maximum-size:100000}") long maximumSize,
+            @Value("${recordshop.cache.missing-ids.expire-after-write:30s}") Duration expireAfterWrite
+    ){
+        return new CacheService<>(maximumSize, expireAfterWrite, Duration.ZERO);
+    }
+
+    @Bean
+    public CacheService<Boolean> missingArtistCache(
+            @Value("${recordshop.cache.missing-ids.maximum-size:100000}") long maximumSize,
+            @Value("${recordshop.cache.missing-ids.expire-after-write:30s}") Duration expireAfterWrite
+    ){
+        return new CacheService<>(maximumSize, expireAfterWrite, Duration.ZERO);
+    }
+
+    @Bean
+    public CacheService<Boolean> missingGenreCache(
+            @Value("${recordshop.cache.missing-ids.maximum-size:100000}") long maximumSize,
+            @Value("${recordshop.cache.missing-ids.expire-after-write:30s}") Duration expireAfterWrite
+    ){
+        return new CacheService<>(maximumSize, expireAfterWrite, Duration.ZERO);
+    }
+
+    // Serialized responses are looked up at the current version, a write makes the old entries unreachable
+    @Bean
+    public CacheService<SerializedResponse> albumResponseCache(
+            @Value("${recordshop.cache.album-response.maximum-size:1000}") long maximumSize,
+            @Value("${recordshop.cache.album-response.expire-after-access:5m}") Duration expireAfterAccess
+    ){
+        return new CacheService<>(maximumSize, Duration.ZERO, expireAfterAccess);
+    }
+
+    @Bean
+    public CacheService<SerializedResponse> albumPageResponseCache(
+            @Value("${recordshop.cache.album-page-response.maximum-size:200}") long maximumSize,
+            @Value("${recordshop.cache.album-page-response.expire-after-access:5m}") Duration expireAfterAccess
+    ){
+        return new CacheService<>(maximumSize, Duration.ZERO, expireAfterAccess);
+    }
+}
\ No newline at end of file
@@ -1,32 +1,158 @@
 package com.northcoders.recordshopbackend.controllers;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.northcoders.recordshopbackend.dto.AlbumBrowseDTO;
+import com.northcoders.recordshopbackend.dto.AlbumBrowseQueryDTO;
 import com.northcoders.recordshopbackend.dto.AlbumDTO;
+import com.northcoders.recordshopbackend.dto.AlbumImportResultDTO;
+import com.northcoders.recordshopbackend.dto.AlbumImportSummaryDTO;
+import com.northcoders.recordshopbackend.dto.AlbumPageDTO;
+import com.northcoders.recordshopbackend.dto.AlbumQueryDTO;
+import com.northcoders.recordshopbackend.dto.AlbumSearchResultDTO;
+import com.northcoders.recordshopbackend.dto.AlbumSyncDTO;
+import com.northcoders.recordshopbackend.dto.AlbumVersionDTO;
+import com.northcoders.recordshopbackend.dto.AutocompleteSuggestionDTO;
+import com.northcoders.recordshopbackend.dto.CheckoutResultDTO;
 import com.northcoders.recordshopbackend.dto.NewAlbumDTO;
-import com.northcoders.recordshopbackend.dto.UpdateAlbumDTO;
+import com.northcoders.recordshopbackend.dto.StockAdjustmentResultDTO;
+import com.northcoders.recordshopbackend.dto.StockAdjustmentsDTO;
+import com.northcoders.recordshopbackend.exception.BadRequestException;
+import com.northcoders.recordshopbackend.exception.PreconditionFailedException;
+import com.northcoders.recordshopbackend.service.AlbumEventStreamService;
+import com.northcoders.recordshopbackend.service.AlbumExportService;
+import com.northcoders.recordshopbackend.service.AlbumFacetService;
+import com.northcoders.recordshopbackend.service.AlbumImportService;
+import com.northcoders.recordshopbackend.service.AlbumSearchService;
 import com.northcoders.recordshopbackend.service.AlbumService;
+import com.northcoders.recordshopbackend.service.AlbumSyncService;
+import com.northcoders.recordshopbackend.service.AutocompleteService;
+import com.northcoders.recordshopbackend.service.CatalogVersionService;
+import com.northcoders.recordshopbackend.service.ResponseCacheService;
+import com.northcoders.recordshopbackend.service.SerializedResponse;
+import com.northcoders.recordshopbackend.service.StockService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping ("api/v1/albums")
 public class AlbumController {
 
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final String TEXT_CSV_VALUE = "text/csv";
+    private static final String MERGE_PATCH_JSON_VALUE = "application/merge-patch+json";
+
     @Autowired
     private AlbumService albumService;
 
+    @Autowired
+    private AlbumImportService albumImportService;
+
+    @Autowired
+    private AlbumExportService albumExportService;
+
+    @Autowired
+    private StockService stockService;
+
+    @Autowired
+    private AlbumSearchService albumSearchService;
+
+    @Autowired
+    private AutocompleteService autocompleteService;
+
+    @Autowired
+    private AlbumFacetService albumFacetService;
+
+    @Autowired
+    private CatalogVersionService catalogVersionService;
+
+    @Autowired
+    private ResponseCacheService responseCacheService;
+
+    @Autowired
+    private AlbumSyncService albumSyncService;
+
+    @Autowired
+    private AlbumEventStreamService albumEventStreamService;
+
+    // Lists albums a page at a time, the cursor for the next page is returned in the X-Next-Cursor header.
+    // The ETag is the catalog version, 304 Not Modified until an album, stock level or artist changes.
     @GetMapping
-    public ResponseEntity<List<AlbumDTO>> getAllAlbums(){
-        return new ResponseEntity<>(albumService.getAllInStockAlbumDTOs(), HttpStatus.OK);
+    public ResponseEntity<byte[]> getAllAlbums(
+            AlbumQueryDTO albumQuery,
+            WebRequest request,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding
+    ){
+        return createCachedAlbumPageResponse(albumQuery, request, acceptEncoding);
     }
 
     @GetMapping("/in-stock")
-    public ResponseEntity<List<AlbumDTO>> getAllInStockAlbums(){
-        return new ResponseEntity<>(albumService.getAllInStockAlbumDTOs(), HttpStatus.OK);
+    public ResponseEntity<byte[]> getAllInStockAlbums(
+            AlbumQueryDTO albumQuery,
+            WebRequest request,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding
+    ){
+        albumQuery.setInStock(true);
+        return createCachedAlbumPageResponse(albumQuery, request, acceptEncoding);
+    }
+
+    // The albums created, changed or deleted since the cursor of the last sync, for clients that keep a copy
+    // of the catalog. Without a cursor it starts from the beginning, sync again while hasMore is true.
+    @GetMapping("/sync")
+    public ResponseEntity<AlbumSyncDTO> syncAlbums(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", required = false) Integer size
+    ){
+        return new ResponseEntity<>(albumSyncService.getChanges(cursor, size), HttpStatus.OK);
+    }
+
+    // Server-Sent Events with the price and stock of albums as they change, filtered by any of album id,
+    // artist and genre. A resync event means events were dropped and the albums should be fetched again.
+    @GetMapping(path = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamAlbumEvents(
+            @RequestParam(value = "albumId", required = false) List<Long> albumIds,
+            @RequestParam(value = "artist", required = false) List<String> artists,
+            @RequestParam(value = "genre", required = false) List<String> genres
+    ){
+        return albumEventStreamService.subscribe(albumIds, artists, genres);
+    }
+
+    // Searches titles, artists and genres, the last word also matches as a prefix and typos are tolerated
+    @GetMapping("/search")
+    public ResponseEntity<List<AlbumSearchResultDTO>> searchAlbums(
+            @RequestParam(value = "q") String query,
+            @RequestParam(value = "limit", required = false) Integer limit
+    ){
+        return new ResponseEntity<>(albumSearchService.searchAlbums(query, limit), HttpStatus.OK);
+    }
+
+    // Suggests artists and albums as the user types, any word of a name can be the one typed
+    @GetMapping("/autocomplete")
+    public ResponseEntity<List<AutocompleteSuggestionDTO>> autocomplete(
+            @RequestParam(value = "q") String query,
+            @RequestParam(value = "limit", required = false) Integer limit
+    ){
+        return new ResponseEntity<>(autocompleteService.complete(query, limit), HttpStatus.OK);
+    }
+
+    // Filters by genre, release years, artist and stock, with album counts for every value of each facet
+    @GetMapping("/browse")
+    public ResponseEntity<AlbumBrowseDTO> browseAlbums(AlbumBrowseQueryDTO browseQuery){
+        return new ResponseEntity<>(albumFacetService.browseAlbums(browseQuery), HttpStatus.OK);
     }
 
     @PostMapping("/add")
@@ -34,15 +160,97 @@ public class AlbumController {
         return new ResponseEntity<>(albumService.postNewAlbum(newAlbumDTO), HttpStatus.CREATED);
     }
 
+    // Streams a catalog file from the request body, the Content-Type picks the format
+    @PostMapping(
+            value = "/import",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE, TEXT_CSV_VALUE}
+    )
+    public ResponseEntity<AlbumImportSummaryDTO> importAlbums(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+            InputStream body
+    ){
+        AlbumImportService.Format format = contentType.isCompatibleWith(MediaType.parseMediaType(TEXT_CSV_VALUE))
+                ? AlbumImportService.Format.CSV
+                : AlbumImportService.Format.JSON;
+        return new ResponseEntity<>(albumImportService.importAlbums(body, format), HttpStatus.OK);
+    }
+
+    // Streams the catalog as NDJSON or CSV straight from a database cursor, gzipped when the client accepts it
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportAlbums(
+            @RequestParam(value = "format", defaultValue = "ndjson") String format,
+            @RequestParam(value = "modifiedSince", required = false) Instant modifiedSince,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding
+    ){
+        AlbumExportService.Format exportFormat;
+        try {
+            exportFormat = AlbumExportService.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("The export format must be ndjson or csv");
+        }
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase(Locale.ROOT).contains("gzip");
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(exportFormat == AlbumExportService.Format.CSV
+                ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                : MediaType.APPLICATION_NDJSON);
+        headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            headers.add(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+
+        StreamingResponseBody body = outputStream -> {
+            if (gzip) {
+                // Sync flush so the first rows are not held back by the compressor
+                GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream, 8192, true);
+                albumExportService.exportAlbums(modifiedSince, exportFormat, gzipOutputStream);
+                gzipOutputStream.finish();
+            } else {
+                albumExportService.exportAlbums(modifiedSince, exportFormat, outputStream);
+            }
+        };
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
+    }
+
+    // Albums are validated one by one, the response has the outcome of each album in request order
     @PostMapping("/add-albums")
-    private ResponseEntity<List<AlbumDTO>> addAlbums(@Valid @RequestBody List<NewAlbumDTO> newAlbumDTOS){
-        newAlbumDTOS.forEach(newAlbumDTO -> albumService.postNewAlbum(newAlbumDTO));
-        return new ResponseEntity<>(albumService.getAllInStockAlbumDTOs(), HttpStatus.CREATED);
+    public ResponseEntity<List<AlbumImportResultDTO>> addAlbums(@RequestBody List<NewAlbumDTO> newAlbumDTOS){
+        List<AlbumImportResultDTO> results = albumImportService.importAlbums(newAlbumDTOS);
+        boolean allCreated = results.stream()
+                .allMatch(result -> result.getStatus() == AlbumImportResultDTO.Status.CREATED);
+        return new ResponseEntity<>(results, allCreated ? HttpStatus.CREATED : HttpStatus.MULTI_STATUS);
+    }
+
+    // Applies a delivery or stock take in one transaction, the response has the outcome of each line
+    @PatchMapping("/stock")
+    public ResponseEntity<List<StockAdjustmentResultDTO>> adjustStock(@Valid @RequestBody StockAdjustmentsDTO stockAdjustments){
+        List<StockAdjustmentResultDTO> results = stockService.adjustStock(stockAdjustments.getAdjustments());
+        boolean allAdjusted = results.stream()
+                .allMatch(result -> result.getStatus() == StockAdjustmentResultDTO.Status.ADJUSTED);
+        return new ResponseEntity<>(results, allAdjusted ? HttpStatus.OK : HttpStatus.MULTI_STATUS);
     }
 
+    // 304 Not Modified while the album has the If-None-Match version or is unchanged since If-Modified-Since,
+    // checked before the album is mapped. A hot album's stock changes without a new version, so it has none
+    // and is not cached.
     @GetMapping(path = "/{albumId}", produces = "application/json")
-    public ResponseEntity<AlbumDTO> getByAlbumId(@PathVariable("albumId") Long albumId){
-        return new ResponseEntity<>(albumService.returnAlbumDTOById(albumId), HttpStatus.OK);
+    public ResponseEntity<?> getByAlbumId(
+            @PathVariable("albumId") Long albumId,
+            WebRequest request,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding
+    ){
+        AlbumVersionDTO albumVersion = albumService.getAlbumVersion(albumId);
+        if (albumVersion.isHot()){
+            return ResponseEntity.ok(albumService.returnAlbumDTOById(albumId));
+        }
+        long lastModified = albumVersion.getDateModified() != null ? albumVersion.getDateModified().toEpochMilli() : -1;
+        if (request.checkNotModified(String.valueOf(albumVersion.getVersion()), lastModified)){
+            return null;
+        }
+        return responseCacheService
+                .getAlbumResponse(albumId, albumVersion.getVersion(),
+                        () -> createAlbumResponse(albumService.returnAlbumDTOById(albumId), HttpStatus.OK))
+                .toResponseEntity(SerializedResponse.Encoding.negotiate(acceptEncoding));
     }
 
     @DeleteMapping(path = "/{albumId}")
@@ -50,11 +258,91 @@ public class AlbumController {
         return new ResponseEntity<>(albumService.deleteAlbumById(albumId), HttpStatus.NO_CONTENT);
     }
 
-    @PutMapping(path = "/{albumId}")
+    // The body is a JSON Merge Patch: fields left out are unchanged and null clears an optional field.
+    // With If-Match the update is only applied if the album still has that ETag, otherwise 412.
+    @PutMapping(path = "/{albumId}", consumes = {MediaType.APPLICATION_JSON_VALUE, MERGE_PATCH_JSON_VALUE})
     public ResponseEntity<AlbumDTO> updateAlbumById(
             @PathVariable("albumId") Long albumId,
-            @Valid @RequestBody UpdateAlbumDTO updateAlbumDTO
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestBody JsonNode mergePatch
+    ){
+        return createAlbumResponse(albumService.patchAlbumById(albumId, mergePatch, parseIfMatch(ifMatch)), HttpStatus.CREATED);
+    }
+
+    @PatchMapping(path = "/{albumId}", consumes = {MediaType.APPLICATION_JSON_VALUE, MERGE_PATCH_JSON_VALUE})
+    public ResponseEntity<AlbumDTO> patchAlbumById(
+            @PathVariable("albumId") Long albumId,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestBody JsonNode mergePatch
+    ){
+        return createAlbumResponse(albumService.patchAlbumById(albumId, mergePatch, parseIfMatch(ifMatch)), HttpStatus.OK);
+    }
+
+    // Takes the quantity from the album's stock, 409 Conflict when there is not enough left
+    @PostMapping(path = "/{albumId}/checkout")
+    public ResponseEntity<CheckoutResultDTO> checkoutAlbum(
+            @PathVariable("albumId") Long albumId,
+            @RequestParam(value = "quantity", defaultValue = "1") int quantity
+    ){
+        CheckoutResultDTO checkoutResult = albumService.checkoutAlbum(albumId, quantity);
+        HttpStatus status = checkoutResult.getStatus() == CheckoutResultDTO.Status.CHECKED_OUT
+                ? HttpStatus.OK
+                : HttpStatus.CONFLICT;
+        return new ResponseEntity<>(checkoutResult, status);
+    }
+
+    // Turns hot-item mode on or off, a hot album's stock is served from in-memory counters
+    @PutMapping(path = "/{albumId}/hot")
+    public ResponseEntity<AlbumDTO> setAlbumHot(
+            @PathVariable("albumId") Long albumId,
+            @RequestParam(value = "enabled", defaultValue = "true") boolean enabled
     ){
-        return new ResponseEntity<>(albumService.updateAlbumById(albumId, updateAlbumDTO), HttpStatus.CREATED);
+        return createAlbumResponse(albumService.setAlbumHot(albumId, enabled), HttpStatus.OK);
+    }
+
+    // The album version is the ETag
+    private ResponseEntity<AlbumDTO> createAlbumResponse(AlbumDTO albumDTO, HttpStatus status){
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(status);
+        if (albumDTO.getVersion() != null){
+            response.eTag(String.valueOf(albumDTO.getVersion()));
+        }
+        return response.body(albumDTO);
+    }
+
+    // No header or * means no precondition. Anything other than one of our ETags cannot match.
+    private Long parseIfMatch(String ifMatch){
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")){
+            return null;
+        }
+        String entityTag = ifMatch.trim();
+        if (entityTag.length() > 1 && entityTag.startsWith("\"") && entityTag.endsWith("\"")){
+            entityTag = entityTag.substring(1, entityTag.length() - 1);
+        }
+        try {
+            return Long.valueOf(entityTag);
+        } catch (NumberFormatException e) {
+            throw new PreconditionFailedException(String.format("If-Match '%s' does not match the album's ETag", ifMatch));
+        }
+    }
+
+    // The catalog version is read before the page is loaded, so the page is never older than its ETag or the
+    // version it is cached under
+    private ResponseEntity<byte[]> createCachedAlbumPageResponse(AlbumQueryDTO albumQuery, WebRequest request, String acceptEncoding){
+        CatalogVersionService.CatalogVersion catalogVersion = catalogVersionService.getCatalogVersion();
+        if (request.checkNotModified(catalogVersion.eTag(), catalogVersion.lastModified().toEpochMilli())){
+            return null;
+        }
+        return responseCacheService
+                .getAlbumPageResponse(albumQuery, catalogVersion.version(),
+                        () -> createAlbumPageResponse(albumService.getAlbumPage(albumQuery)))
+                .toResponseEntity(SerializedResponse.Encoding.negotiate(acceptEncoding));
+    }
+
+    private ResponseEntity<List<AlbumDTO>> createAlbumPageResponse(AlbumPageDTO albumPage){
+        HttpHeaders headers = new HttpHeaders();
+        if (albumPage.getNextCursor() != null){
+            headers.add(NEXT_CURSOR_HEADER, albumPage.getNextCursor());
+        }
+        return new ResponseEntity<>(albumPage.getAlbums(), headers, HttpStatus.OK);
     }
 }
@@ -3,10 +3,12 @@ package com.northcoders.recordshopbackend.controllers;
 import com.northcoders.recordshopbackend.dto.ArtistDTO;
 import com.northcoders.recordshopbackend.dto.ArtistWithAlbumsDTO;
 import com.northcoders.recordshopbackend.service.ArtistService;
+import com.northcoders.recordshopbackend.service.CatalogVersionService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -17,18 +19,36 @@ public class ArtistController {
     @Autowired
     private ArtistService artistService;
 
+    @Autowired
+    private CatalogVersionService catalogVersionService;
+
+    // Every response has the catalog version as its ETag, 304 Not Modified until the catalog changes
     @GetMapping()
-    public ResponseEntity<List<ArtistDTO>> getAllArtists(){
+    public ResponseEntity<List<ArtistDTO>> getAllArtists(WebRequest request){
+        if (checkCatalogNotModified(request)){
+            return null;
+        }
         return new ResponseEntity<>(artistService.getAllArtistsDTO(), HttpStatus.OK);
     }
 
     @GetMapping("/search")
-    public ResponseEntity<ArtistWithAlbumsDTO> getArtistByName(@RequestParam(value = "name") String name){
+    public ResponseEntity<ArtistWithAlbumsDTO> getArtistByName(@RequestParam(value = "name") String name, WebRequest request){
+        if (checkCatalogNotModified(request)){
+            return null;
+        }
         return new ResponseEntity<>(artistService.getArtistByNameWithAlbums(name), HttpStatus.OK);
     }
 
     @GetMapping(path = "/{artistId}")
-    public ResponseEntity<ArtistWithAlbumsDTO> getArtistByIdWithAlbums(@PathVariable("artistId") Long artistId){
+    public ResponseEntity<ArtistWithAlbumsDTO> getArtistByIdWithAlbums(@PathVariable("artistId") Long artistId, WebRequest request){
+        if (checkCatalogNotModified(request)){
+            return null;
+        }
         return new ResponseEntity<>(artistService.getArtistByIdWithAlbums(artistId), HttpStatus.OK);
     }
+
+    private boolean checkCatalogNotModified(WebRequest request){
+        CatalogVersionService.CatalogVersion catalogVersion = catalogVersionService.getCatalogVersion();
+        return request.checkNotModified(catalogVersion.eTag(), catalogVersion.lastModified().toEpochMilli());
+    }
 }
\ No newline at end of file
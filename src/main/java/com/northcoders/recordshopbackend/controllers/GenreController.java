@@ -2,11 +2,13 @@ package com.northcoders.recordshopbackend.controllers;
 
 import com.northcoders.recordshopbackend.dto.GenreDTO;
 import com.northcoders.recordshopbackend.dto.GenreWithAlbumsDTO;
+import com.northcoders.recordshopbackend.service.CatalogVersionService;
 import com.northcoders.recordshopbackend.service.GenreService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -17,18 +19,36 @@ public class GenreController {
     @Autowired
     private GenreService genreService;
 
+    @Autowired
+    private CatalogVersionService catalogVersionService;
+
+    // Every response has the catalog version as its ETag, 304 Not Modified until the catalog changes
     @GetMapping("/all")
-    public ResponseEntity<List<GenreDTO>> getAllGenres(){
+    public ResponseEntity<List<GenreDTO>> getAllGenres(WebRequest request){
+        if (checkCatalogNotModified(request)){
+            return null;
+        }
         return new ResponseEntity<>(genreService.getAllGenres(), HttpStatus.OK);
     }
 
     @GetMapping(path = "/{genreId}")
-    public ResponseEntity<GenreWithAlbumsDTO> getGenreByIdWithAlbums(@PathVariable("genreId") Long genreId){
+    public ResponseEntity<GenreWithAlbumsDTO> getGenreByIdWithAlbums(@PathVariable("genreId") Long genreId, WebRequest request){
+        if (checkCatalogNotModified(request)){
+            return null;
+        }
         return new ResponseEntity<>(genreService.getGenreByIdWithAlbums(genreId), HttpStatus.OK);
     }
 
     @GetMapping()
-    public ResponseEntity<GenreWithAlbumsDTO> getGenreByNameWithAlbums(@RequestParam(value = "genreId") String genre){
+    public ResponseEntity<GenreWithAlbumsDTO> getGenreByNameWithAlbums(@RequestParam(value = "genreId") String genre, WebRequest request){
+        if (checkCatalogNotModified(request)){
+            return null;
+        }
         return new ResponseEntity<>(genreService.getGenreByNameWithAlbums(genre), HttpStatus.OK);
     }
+
+    private boolean checkCatalogNotModified(WebRequest request){
+        CatalogVersionService.CatalogVersion catalogVersion = catalogVersionService.getCatalogVersion();
+        return request.checkNotModified(catalogVersion.eTag(), catalogVersion.lastModified().toEpochMilli());
+    }
 }
\ No newline at end of file
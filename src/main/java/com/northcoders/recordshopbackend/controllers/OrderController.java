@@ -0,0 +1,30 @@
+package com.northcoders.recordshopbackend.controllers;
+
+import com.northcoders.recordshopbackend.dto.OrderDTO;
+import com.northcoders.recordshopbackend.dto.OrderResultDTO;
+import com.northcoders.recordshopbackend.service.OrderService;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.concurrent.CompletableFuture;
+
+@RestController
+@RequestMapping("api/v1/orders")
+public class OrderController {
+
+    @Autowired
+    private OrderService orderService;
+
+    // The request thread is released while the order waits for its group commit.
+    // 409 Conflict when any line of the order could not be reserved.
+    @PostMapping
+    public CompletableFuture<ResponseEntity<OrderResultDTO>> placeOrder(@Valid @RequestBody OrderDTO order){
+        return orderService.placeOrder(order).thenApply(orderResult -> new ResponseEntity<>(
+                orderResult,
+                orderResult.getStatus() == OrderResultDTO.Status.CONFIRMED ? HttpStatus.OK : HttpStatus.CONFLICT
+        ));
+    }
+}
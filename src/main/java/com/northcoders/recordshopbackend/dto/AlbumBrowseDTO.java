@@ -0,0 +1,21 @@
+package com.northcoders.recordshopbackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@AllArgsConstructor
+@Builder
+// The albums matching a browse and, for each facet, the number of albums per value with the other
+// facets' filters applied, most albums first
+public class AlbumBrowseDTO {
+    private Integer total;
+    // In ID order, at most the requested limit of them
+    private List<Long> albumIds;
+    // Keyed by genre, year, artist and stock
+    private Map<String, Map<String, Integer>> facets;
+}
@@ -0,0 +1,24 @@
+package com.northcoders.recordshopbackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+// Query parameters for faceted browsing, bound from the request's query string. Several values of a
+// facet match albums with any of them, different facets must all match.
+public class AlbumBrowseQueryDTO {
+    private List<String> genre;
+    private List<String> artist;
+    private Integer fromYear;
+    private Integer toYear;
+    private Boolean inStock;
+    private Integer limit;
+    private Integer facetLimit;
+}
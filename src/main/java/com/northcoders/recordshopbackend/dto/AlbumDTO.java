@@ -22,4 +22,7 @@ public class AlbumDTO{
         private String artworkUrl;
         private String dateCreated;
         private String dateModified;
+        private boolean hot;
+        // Also sent as the ETag header, send it back in If-Match to update the album only if unchanged
+        private Long version;
 }
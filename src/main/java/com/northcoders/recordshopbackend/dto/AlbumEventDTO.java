@@ -0,0 +1,18 @@
+package com.northcoders.recordshopbackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+@Builder
+// What a live album event carries: enough to filter on and to update a displayed price and stock level
+public class AlbumEventDTO {
+    private Long id;
+    private String artist;
+    private String genre;
+    private Integer stock;
+    private Double price;
+    private Long version;
+}
@@ -0,0 +1,25 @@
+package com.northcoders.recordshopbackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.Map;
+
+@Data
+@AllArgsConstructor
+@Builder
+// The outcome of one album in a bulk import, index is the album's position in the request.
+public class AlbumImportResultDTO {
+
+    public enum Status {
+        CREATED,
+        INVALID,
+        FAILED
+    }
+
+    private long index;
+    private Status status;
+    private Long albumId;
+    private Map<String, String> errors;
+}
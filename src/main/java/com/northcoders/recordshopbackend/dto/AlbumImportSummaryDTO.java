@@ -0,0 +1,23 @@
+package com.northcoders.recordshopbackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@Builder
+// The totals of a streamed import. Only the first few problems are listed so the summary stays
+// small however large the input was.
+public class AlbumImportSummaryDTO {
+    private long records;
+    private long created;
+    private long invalid;
+    private long failed;
+    // False when the input could not be read to the end
+    private boolean completed;
+    private List<AlbumImportResultDTO> errors;
+    private boolean errorsTruncated;
+}
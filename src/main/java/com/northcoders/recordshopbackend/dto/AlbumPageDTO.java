@@ -0,0 +1,16 @@
+package com.northcoders.recordshopbackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@Builder
+public class AlbumPageDTO {
+    private List<AlbumDTO> albums;
+    // Null when this is the last page
+    private String nextCursor;
+}
@@ -0,0 +1,24 @@
+package com.northcoders.recordshopbackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+// Query parameters for the paginated album listing, bound from the request's query string.
+public class AlbumQueryDTO {
+    private Integer size;
+    private String cursor;
+    private String sort;
+    private String direction;
+    private String genre;
+    private String artist;
+    private Integer year;
+    private Double minPrice;
+    private Double maxPrice;
+    private Boolean inStock;
+}
@@ -0,0 +1,17 @@
+package com.northcoders.recordshopbackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+@Builder
+// An album matched by a search, best matches have the highest score
+public class AlbumSearchResultDTO {
+    private Long albumId;
+    private String title;
+    private String artist;
+    private String genre;
+    private Double score;
+}
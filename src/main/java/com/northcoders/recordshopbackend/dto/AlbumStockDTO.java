@@ -0,0 +1,16 @@
+package com.northcoders.recordshopbackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+@Builder
+// The stock level of an album, read without loading the album entity
+public class AlbumStockDTO {
+    private Long albumId;
+    private String title;
+    private String artist;
+    private Integer quantityInStock;
+}
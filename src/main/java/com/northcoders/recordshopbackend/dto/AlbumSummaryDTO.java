@@ -0,0 +1,22 @@
+package com.northcoders.recordshopbackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+import java.sql.Date;
+
+@Data
+@AllArgsConstructor
+@Builder
+// The text fields, release date, price and stock of an album, read without loading the album entity
+public class AlbumSummaryDTO {
+    private Long id;
+    private String title;
+    private String artist;
+    private String genre;
+    private Date releaseDate;
+    private Double price;
+    private Integer quantityInStock;
+    private Long version;
+}
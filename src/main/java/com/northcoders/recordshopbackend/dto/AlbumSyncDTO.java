@@ -0,0 +1,20 @@
+package com.northcoders.recordshopbackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@Builder
+// The albums created or changed and the albums deleted since the request's cursor, in change order
+public class AlbumSyncDTO {
+    private List<AlbumDTO> albums;
+    private List<DeletedAlbumDTO> deletedAlbums;
+    // Sent back as the cursor of the next sync
+    private String cursor;
+    // More changes are waiting, sync again straight away with the cursor
+    private boolean hasMore;
+}
@@ -0,0 +1,19 @@
+package com.northcoders.recordshopbackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+
+@Data
+@AllArgsConstructor
+@Builder
+// What a conditional GET of an album is checked against, without mapping the album to a DTO
+public class AlbumVersionDTO {
+    private Long id;
+    private Long version;
+    private Instant dateModified;
+    // A hot album's stock changes without a new version
+    private boolean hot;
+}
@@ -0,0 +1,26 @@
+package com.northcoders.recordshopbackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+@Builder
+// An artist or album completing a typed prefix, in stock suggestions come first
+public class AutocompleteSuggestionDTO {
+
+    public enum Type {
+        ARTIST,
+        ALBUM
+    }
+
+    private Type type;
+    // The artist ID or the album ID
+    private Long id;
+    private String name;
+    // The album's artist, null for an artist
+    private String artist;
+    // Across all of an artist's albums for an artist
+    private Integer quantityInStock;
+}
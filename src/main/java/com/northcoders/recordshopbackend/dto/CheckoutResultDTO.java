@@ -0,0 +1,24 @@
+package com.northcoders.recordshopbackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+@Builder
+public class CheckoutResultDTO {
+
+    public enum Status {
+        CHECKED_OUT,
+        OUT_OF_STOCK
+    }
+
+    private Long albumId;
+    private String title;
+    private String artist;
+    private Status status;
+    private Integer quantity;
+    // The stock left after this checkout, or the current stock when it was out of stock
+    private Integer quantityInStock;
+}
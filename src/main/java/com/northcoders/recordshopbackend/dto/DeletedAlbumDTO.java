@@ -0,0 +1,13 @@
+package com.northcoders.recordshopbackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+@Builder
+public class DeletedAlbumDTO {
+    private Long id;
+    private String dateDeleted;
+}
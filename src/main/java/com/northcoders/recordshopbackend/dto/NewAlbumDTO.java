@@ -9,6 +9,7 @@ import lombok.*;
 import java.sql.Date;
 
 @Data
+@NoArgsConstructor
 @AllArgsConstructor
 @Builder
 public class NewAlbumDTO {
@@ -0,0 +1,22 @@
+package com.northcoders.recordshopbackend.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+// A basket of albums, the order is reserved as a whole or not at all
+public class OrderDTO {
+
+    @Valid
+    @NotEmpty(message = "An order needs at least one line")
+    private List<OrderLineDTO> lines;
+}
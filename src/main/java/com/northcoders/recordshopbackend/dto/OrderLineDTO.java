@@ -0,0 +1,22 @@
+package com.northcoders.recordshopbackend.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OrderLineDTO {
+
+    @NotNull(message = "An album id is mandatory")
+    private Long albumId;
+
+    @NotNull(message = "A quantity is mandatory")
+    @Positive(message = "The quantity must be greater than 0")
+    private Integer quantity;
+}
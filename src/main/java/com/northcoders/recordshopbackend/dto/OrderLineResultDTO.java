@@ -0,0 +1,25 @@
+package com.northcoders.recordshopbackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+@Builder
+public class OrderLineResultDTO {
+
+    public enum Status {
+        RESERVED,
+        OUT_OF_STOCK,
+        NOT_FOUND,
+        // The line could have been reserved but another line of the order could not
+        NOT_RESERVED
+    }
+
+    private Long albumId;
+    private Integer quantity;
+    private Status status;
+    // The stock left after the order, or the stock available when the order was rejected
+    private Integer quantityInStock;
+}
@@ -0,0 +1,21 @@
+package com.northcoders.recordshopbackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@Builder
+public class OrderResultDTO {
+
+    public enum Status {
+        CONFIRMED,
+        REJECTED
+    }
+
+    private Status status;
+    private List<OrderLineResultDTO> lines;
+}
@@ -0,0 +1,24 @@
+package com.northcoders.recordshopbackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+// One line of a stock adjustment, either a delta (a delivery or a write-off) or the absolute
+// quantity counted in a stock take
+public class StockAdjustmentDTO {
+
+    private Long albumId;
+
+    private Integer delta;
+
+    private Integer quantity;
+
+    // The album version the line was worked out from, the line is only applied if it still matches
+    private Long version;
+}
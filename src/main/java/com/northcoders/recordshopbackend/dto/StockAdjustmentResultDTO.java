@@ -0,0 +1,29 @@
+package com.northcoders.recordshopbackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.Map;
+
+@Data
+@AllArgsConstructor
+@Builder
+public class StockAdjustmentResultDTO {
+
+    public enum Status {
+        ADJUSTED,
+        INVALID,
+        NOT_FOUND,
+        // The album changed since the version the line was sent with
+        PRECONDITION_FAILED
+    }
+
+    private Long albumId;
+    private Status status;
+    // The stock after the line was applied, or the current stock when it was not
+    private Integer quantityInStock;
+    // The album version after the batch
+    private Long version;
+    private Map<String, String> errors;
+}
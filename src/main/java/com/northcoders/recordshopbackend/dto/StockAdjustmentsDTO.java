@@ -0,0 +1,20 @@
+package com.northcoders.recordshopbackend.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+// Lines are checked one by one, an invalid line is reported without failing the rest
+public class StockAdjustmentsDTO {
+
+    @NotEmpty(message = "A stock adjustment needs at least one line")
+    private List<StockAdjustmentDTO> adjustments;
+}
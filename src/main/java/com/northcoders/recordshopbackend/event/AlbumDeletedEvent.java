@@ -0,0 +1,5 @@
+package com.northcoders.recordshopbackend.event;
+
+// Published when an album is deleted
+public record AlbumDeletedEvent(Long albumId) {
+}
@@ -0,0 +1,8 @@
+package com.northcoders.recordshopbackend.event;
+
+import java.util.Map;
+
+// Published when the stock of albums changes without the rest of the album changing, with the new
+// quantity in stock of each album
+public record AlbumStockChangedEvent(Map<Long, Integer> quantitiesInStockByAlbumId) {
+}
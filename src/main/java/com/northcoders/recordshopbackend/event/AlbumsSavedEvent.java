@@ -0,0 +1,10 @@
+package com.northcoders.recordshopbackend.event;
+
+import com.northcoders.recordshopbackend.dto.AlbumDTO;
+
+import java.util.List;
+
+// Published when albums are created or their details change. Listeners that only need committed
+// data use @TransactionalEventListener, which delivers it after the saving transaction commits.
+public record AlbumsSavedEvent(List<AlbumDTO> albums) {
+}
@@ -0,0 +1,7 @@
+package com.northcoders.recordshopbackend.event;
+
+import com.northcoders.recordshopbackend.dto.ArtistDTO;
+
+// Published when an artist is created
+public record ArtistSavedEvent(ArtistDTO artist) {
+}
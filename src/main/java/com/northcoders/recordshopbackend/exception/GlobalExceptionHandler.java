@@ -1,5 +1,6 @@
 package com.northcoders.recordshopbackend.exception;
 
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -18,6 +19,25 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
     }
 
+    @ExceptionHandler
+    public ResponseEntity<Object> handleBadRequestException(BadRequestException e){
+        return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler
+    public ResponseEntity<Object> handlePreconditionFailedException(PreconditionFailedException e){
+        return new ResponseEntity<>(e.getMessage(), HttpStatus.PRECONDITION_FAILED);
+    }
+
+    // Another write committed between this one reading the row and writing it back
+    @ExceptionHandler
+    public ResponseEntity<Object> handleOptimisticLockingFailureException(OptimisticLockingFailureException e){
+        return new ResponseEntity<>(
+                "The album was changed by another request, fetch it again and retry",
+                HttpStatus.PRECONDITION_FAILED
+        );
+    }
+
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<Object> handleMethodArgumentNotValidException(MethodArgumentNotValidException e){
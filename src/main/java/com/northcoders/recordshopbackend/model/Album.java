@@ -2,12 +2,23 @@ package com.northcoders.recordshopbackend.model;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.sql.Date;
 import java.time.Instant;
 
+// Updates only list the columns that changed. The price and release date indexes end with the id, so the
+// listing's keyset pages in those orders are read from the index without a sort.
 @Entity
-@Table(name = "albums")
+@DynamicUpdate
+@Table(
+        name = "albums",
+        indexes = {
+                @Index(name = "ix_albums_price_id", columnList = "price, id"),
+                @Index(name = "ix_albums_release_date_id", columnList = "release_date, id")
+        }
+)
 @Getter
 @Setter
 @NoArgsConstructor
@@ -15,8 +26,10 @@ import java.time.Instant;
 @Builder
 public class Album {
 
+    // Sequence ids are allocated in blocks so bulk inserts can be sent as JDBC batches
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "albums_seq")
+    @SequenceGenerator(name = "albums_seq", sequenceName = "albums_seq", allocationSize = 50)
     @Column(updatable = false, nullable = false)
     private Long id;
 
@@ -49,4 +62,16 @@ public class Album {
 
     @Column(name = "date_modified")
     private Instant dateModified;
+
+    // Bumped by every write to the album or to its stock, clients send it back in If-Match
+    @Version
+    @Column(name = "version", nullable = false)
+    @ColumnDefault("0")
+    private Long version;
+
+    // Hot albums have their stock served from in-memory counters, see HotStockService
+    @Column(name = "hot", nullable = false)
+    @ColumnDefault("false")
+    @Builder.Default
+    private boolean hot = false;
 }
@@ -0,0 +1,36 @@
+package com.northcoders.recordshopbackend.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+// The album change log read by the delta sync. Every write to an album or its stock adds a row with the
+// next change sequence and removes the album's older rows, so the log holds one row per album plus a
+// tombstone for each deleted album and grows with the catalog rather than with every write.
+@Entity
+@Table(
+        name = "album_changes",
+        indexes = @Index(name = "ix_album_changes_album_id", columnList = "album_id")
+)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AlbumChange {
+
+    // Handed out by AlbumSyncService rather than generated, see AlbumSyncServiceImpl
+    @Id
+    @Column(updatable = false, nullable = false)
+    private Long sequence;
+
+    @Column(name = "album_id", nullable = false)
+    private Long albumId;
+
+    @Column(name = "date_modified", nullable = false)
+    private Instant dateModified;
+
+    @Column(nullable = false)
+    private boolean deleted;
+}
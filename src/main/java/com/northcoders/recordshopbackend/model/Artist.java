@@ -4,10 +4,14 @@ import jakarta.persistence.*;
 import lombok.*;
 
 import java.util.HashSet;
+import java.util.Locale;
 import java.util.Set;
 
 @Entity
-@Table(name = "artists")
+@Table(
+        name = "artists",
+        indexes = @Index(name = "ux_artists_normalized_name", columnList = "normalized_name", unique = true)
+)
 @Getter
 @Setter
 @NoArgsConstructor
@@ -22,6 +26,20 @@ public class Artist {
     @Column(name = "artist_name")
     private String artistName;
 
+    // Trimmed, lower case artist name, unique so the same artist can never be created twice
+    @Column(name = "normalized_name", nullable = false)
+    private String normalizedName;
+
     @OneToMany(mappedBy = "artist", fetch = FetchType.LAZY, cascade = CascadeType.ALL)
     private Set<Album> albums = new HashSet<>();
+
+    @PrePersist
+    @PreUpdate
+    private void updateNormalizedName() {
+        this.normalizedName = normalize(artistName);
+    }
+
+    public static String normalize(String artistName) {
+        return artistName.trim().toLowerCase(Locale.ROOT);
+    }
 }
@@ -3,10 +3,14 @@ package com.northcoders.recordshopbackend.model;
 import jakarta.persistence.*;
 import lombok.*;
 
+import java.util.Locale;
 import java.util.Set;
 
 @Entity
-@Table(name = "genres")
+@Table(
+        name = "genres",
+        indexes = @Index(name = "ux_genres_normalized_name", columnList = "normalized_name", unique = true)
+)
 @Getter
 @Setter
 @NoArgsConstructor
@@ -21,6 +25,26 @@ public class Genre {
     @Column(nullable = false)
     private String genre;
 
+    // Trimmed, lower case genre name, unique so genres are case-insensitive
+    @Column(name = "normalized_name", nullable = false)
+    private String normalizedName;
+
     @OneToMany(mappedBy = "genre")
     private Set<Album> albums;
-}
\ No newline at end of file
+
+    @PrePersist
+    @PreUpdate
+    private void updateNormalizedName() {
+        this.normalizedName = normalize(genre);
+    }
+
+    // There are only a handful of genres, so every album mapped shares the same name instance
+    @PostLoad
+    private void internGenre() {
+        this.genre = genre.intern();
+    }
+
+    public static String normalize(String genre) {
+        return genre.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,30 @@
+package com.northcoders.recordshopbackend.repository;
+
+import com.northcoders.recordshopbackend.model.AlbumChange;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface AlbumChangeRepository extends JpaRepository<AlbumChange, Long>, AlbumChangeRepositoryCustom {
+
+    List<AlbumChange> findBySequenceGreaterThanAndSequenceLessThanEqualOrderBySequence(long after, long upTo, Limit limit);
+
+    @Query("select coalesce(max(c.sequence), 0) from AlbumChange c")
+    long findLastSequence();
+
+    // Albums written before the change log existed
+    @Query("select count(a) from Album a where not exists (select c from AlbumChange c where c.albumId = a.id)")
+    long countAlbumsWithoutChanges();
+
+    // Rows the album's newer change replaces
+    @Modifying
+    @Query("delete from AlbumChange c where c.albumId in :albumIds and c.sequence < :sequence")
+    int deleteByAlbumIdInAndSequenceLessThan(@Param("albumIds") Collection<Long> albumIds, @Param("sequence") long sequence);
+}
@@ -0,0 +1,16 @@
+package com.northcoders.recordshopbackend.repository;
+
+import com.northcoders.recordshopbackend.model.AlbumChange;
+
+import java.util.List;
+
+// Change rows have assigned sequences, which a JPA save would look up before inserting
+public interface AlbumChangeRepositoryCustom {
+
+    // Inserts the changes as one JDBC batch
+    void insertChanges(List<AlbumChange> changes);
+
+    // Gives up to count albums with no change row one each, numbered from the first sequence in album id
+    // order, in one statement. Returns the number of rows inserted.
+    int insertMissingChanges(long firstSequence, long count);
+}
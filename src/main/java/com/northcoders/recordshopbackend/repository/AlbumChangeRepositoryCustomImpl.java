@@ -0,0 +1,46 @@
+package com.northcoders.recordshopbackend.repository;
+
+import com.northcoders.recordshopbackend.model.AlbumChange;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+public class AlbumChangeRepositoryCustomImpl implements AlbumChangeRepositoryCustom {
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Override
+    public void insertChanges(List<AlbumChange> changes) {
+        jdbcTemplate.batchUpdate(
+                "insert into album_changes (sequence, album_id, date_modified, deleted) values (:sequence, :albumId, :dateModified, :deleted)",
+                changes.stream()
+                        .map(change -> new MapSqlParameterSource()
+                                .addValue("sequence", change.getSequence())
+                                .addValue("albumId", change.getAlbumId())
+                                .addValue("dateModified", Timestamp.from(change.getDateModified()))
+                                .addValue("deleted", change.isDeleted()))
+                        .toArray(MapSqlParameterSource[]::new)
+        );
+    }
+
+    @Override
+    public int insertMissingChanges(long firstSequence, long count) {
+        return jdbcTemplate.update(
+                """
+                insert into album_changes (sequence, album_id, date_modified, deleted)
+                select :firstSequence + row_number() over (order by a.id) - 1, a.id, coalesce(a.date_modified, current_timestamp), false
+                from albums a
+                where not exists (select 1 from album_changes c where c.album_id = a.id)
+                order by a.id
+                limit :count
+                """,
+                new MapSqlParameterSource()
+                        .addValue("firstSequence", firstSequence)
+                        .addValue("count", count)
+        );
+    }
+}
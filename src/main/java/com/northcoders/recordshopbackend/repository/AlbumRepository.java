@@ -1,8 +1,113 @@
 package com.northcoders.recordshopbackend.repository;
 
+import com.northcoders.recordshopbackend.dto.AlbumStockDTO;
+import com.northcoders.recordshopbackend.dto.AlbumSummaryDTO;
+import com.northcoders.recordshopbackend.dto.AlbumVersionDTO;
 import com.northcoders.recordshopbackend.model.Album;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+// Album reads fetch the artist, genre and stock in the same statement, the DTOMapper needs all three
 @Repository
-public interface AlbumRepository extends JpaRepository<Album, Long> {}
+public interface AlbumRepository extends JpaRepository<Album, Long>, JpaSpecificationExecutor<Album> {
+
+    String[] ALBUM_DTO_GRAPH = {"artist", "genre", "stock"};
+
+    @Override
+    @EntityGraph(attributePaths = {"artist", "genre", "stock"})
+    Optional<Album> findById(Long id);
+
+    @Override
+    @EntityGraph(attributePaths = {"artist", "genre", "stock"})
+    List<Album> findAll(Sort sort);
+
+    @EntityGraph(attributePaths = {"artist", "genre", "stock"})
+    List<Album> findAllByStockQuantityInStockGreaterThan(Integer quantity, Sort sort);
+
+    @Query("""
+            select new com.northcoders.recordshopbackend.dto.AlbumStockDTO(a.id, a.title, ar.artistName, s.quantityInStock)
+            from Album a join a.artist ar join a.stock s
+            where a.id = :albumId
+            """)
+    Optional<AlbumStockDTO> findAlbumStockById(@Param("albumId") Long albumId);
+
+    // Only the album row's version columns, for a conditional GET that misses the cache
+    @Query("""
+            select new com.northcoders.recordshopbackend.dto.AlbumVersionDTO(a.id, a.version, a.dateModified, a.hot)
+            from Album a
+            where a.id = :albumId
+            """)
+    Optional<AlbumVersionDTO> findAlbumVersionById(@Param("albumId") Long albumId);
+
+    @Modifying
+    @Query("update Album a set a.dateModified = :dateModified, a.version = a.version + 1 where a.id = :albumId")
+    int updateDateModified(@Param("albumId") Long albumId, @Param("dateModified") Instant dateModified);
+
+    @Modifying
+    @Query("update Album a set a.dateModified = :dateModified, a.version = a.version + 1 where a.id in :albumIds")
+    int updateDateModifiedByIdIn(@Param("albumIds") Collection<Long> albumIds, @Param("dateModified") Instant dateModified);
+
+    // Hot album sales are written back without a version change, so they do not fail an If-Match
+    @Modifying
+    @Query("update Album a set a.dateModified = :dateModified where a.id in :albumIds")
+    int touchDateModifiedByIdIn(@Param("albumIds") Collection<Long> albumIds, @Param("dateModified") Instant dateModified);
+
+    @Query("select a.id from Album a where a.hot = true")
+    List<Long> findHotAlbumIds();
+
+    @Modifying(clearAutomatically = true)
+    @Transactional
+    @Query("update Album a set a.hot = :hot, a.dateModified = :dateModified, a.version = a.version + 1 where a.id = :albumId")
+    int updateHot(@Param("albumId") Long albumId, @Param("hot") boolean hot, @Param("dateModified") Instant dateModified);
+
+    // Forward-only cursors for the catalog export, rows are read from the database in fetch size
+    // batches as the stream is consumed. They must be used inside a transaction and closed.
+    @EntityGraph(attributePaths = {"artist", "genre", "stock"})
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    Stream<Album> streamAllByOrderByIdAsc();
+
+    @EntityGraph(attributePaths = {"artist", "genre", "stock"})
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    Stream<Album> streamAllByDateModifiedGreaterThanEqualOrderByIdAsc(Instant modifiedSince);
+
+    // Every album's text fields without loading the entities, for building the search index
+    @Query("""
+            select new com.northcoders.recordshopbackend.dto.AlbumSummaryDTO(a.id, a.title, ar.artistName, g.genre, a.releaseDate, a.price, s.quantityInStock, a.version)
+            from Album a left join a.artist ar left join a.genre g left join a.stock s
+            """)
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    Stream<AlbumSummaryDTO> streamAlbumSummaries();
+
+    // The summaries of the given albums, for albums whose stock changed without the rest of the album
+    @Query("""
+            select new com.northcoders.recordshopbackend.dto.AlbumSummaryDTO(a.id, a.title, ar.artistName, g.genre, a.releaseDate, a.price, s.quantityInStock, a.version)
+            from Album a left join a.artist ar left join a.genre g left join a.stock s
+            where a.id in :albumIds
+            """)
+    List<AlbumSummaryDTO> findAlbumSummariesByIdIn(@Param("albumIds") Collection<Long> albumIds);
+}
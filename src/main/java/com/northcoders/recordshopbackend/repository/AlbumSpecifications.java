@@ -0,0 +1,127 @@
+package com.northcoders.recordshopbackend.repository;
+
+import com.northcoders.recordshopbackend.model.Album;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Path;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.Collection;
+
+// Filters for the album listing, each one is a no-op when its value is null so they can be chained freely
+public final class AlbumSpecifications {
+
+    private AlbumSpecifications() {}
+
+    // Keyset predicate, only albums after the last id of the previous page in the requested direction
+    public static Specification<Album> idAfter(Long lastId, Sort.Direction direction) {
+        return (root, query, builder) -> {
+            if (lastId == null) {
+                return null;
+            }
+            return direction.isAscending()
+                    ? builder.greaterThan(root.get("id"), lastId)
+                    : builder.lessThan(root.get("id"), lastId);
+        };
+    }
+
+    // Keyset predicate for a listing sorted by a property then id, only albums after the last album of the
+    // previous page. Albums with no value for the property come last, a null lastValue continues among them.
+    public static <T extends Comparable<? super T>> Specification<Album> sortedAfter(
+            String property,
+            T lastValue,
+            Long lastId,
+            Sort.Direction direction
+    ) {
+        return (root, query, builder) -> {
+            Path<T> value = root.get(property);
+            Path<Long> id = root.get("id");
+            if (lastId == null) {
+                return null;
+            }
+            if (lastValue == null) {
+                return builder.and(builder.isNull(value),
+                        direction.isAscending() ? builder.greaterThan(id, lastId) : builder.lessThan(id, lastId));
+            }
+            return direction.isAscending()
+                    ? builder.or(
+                            builder.greaterThan(value, lastValue),
+                            builder.and(builder.equal(value, lastValue), builder.greaterThan(id, lastId)),
+                            builder.isNull(value))
+                    : builder.or(
+                            builder.lessThan(value, lastValue),
+                            builder.and(builder.equal(value, lastValue), builder.lessThan(id, lastId)),
+                            builder.isNull(value));
+        };
+    }
+
+    // Orders by the property then id with albums that have no value last in either direction. Not every
+    // database sorts nulls last on its own, so a null flag is sorted on first. Only applies when the query
+    // is run without a Sort, which would replace it.
+    public static Specification<Album> orderedNullsLast(String property, Sort.Direction direction) {
+        return (root, query, builder) -> {
+            Expression<Object> value = root.get(property);
+            Expression<Integer> hasNoValue = builder.<Integer>selectCase().when(builder.isNull(value), 1).otherwise(0);
+            query.orderBy(
+                    builder.asc(hasNoValue),
+                    direction.isAscending() ? builder.asc(value) : builder.desc(value),
+                    direction.isAscending() ? builder.asc(root.get("id")) : builder.desc(root.get("id"))
+            );
+            return null;
+        };
+    }
+
+    public static Specification<Album> idIn(Collection<Long> albumIds) {
+        return (root, query, builder) -> root.get("id").in(albumIds);
+    }
+
+    public static Specification<Album> hasGenre(String genre) {
+        return (root, query, builder) -> genre == null
+                ? null
+                : builder.equal(builder.lower(root.join("genre").get("genre")), genre.trim().toLowerCase());
+    }
+
+    public static Specification<Album> hasArtist(String artistName) {
+        return (root, query, builder) -> artistName == null
+                ? null
+                : builder.equal(builder.lower(root.join("artist").get("artistName")), artistName.trim().toLowerCase());
+    }
+
+    public static Specification<Album> releasedIn(Integer year) {
+        return (root, query, builder) -> year == null
+                ? null
+                : builder.between(
+                        root.get("releaseDate"),
+                        Date.valueOf(LocalDate.of(year, 1, 1)),
+                        Date.valueOf(LocalDate.of(year, 12, 31))
+                );
+    }
+
+    public static Specification<Album> priceBetween(Double minPrice, Double maxPrice) {
+        return (root, query, builder) -> {
+            if (minPrice != null && maxPrice != null) {
+                return builder.between(root.get("price"), minPrice, maxPrice);
+            }
+            if (minPrice != null) {
+                return builder.greaterThanOrEqualTo(root.get("price"), minPrice);
+            }
+            if (maxPrice != null) {
+                return builder.lessThanOrEqualTo(root.get("price"), maxPrice);
+            }
+            return null;
+        };
+    }
+
+    public static Specification<Album> inStock(Boolean inStock) {
+        return (root, query, builder) -> {
+            if (inStock == null) {
+                return null;
+            }
+            return inStock
+                    ? builder.greaterThan(root.join("stock").get("quantityInStock"), 0)
+                    : builder.lessThanOrEqualTo(root.join("stock").get("quantityInStock"), 0);
+        };
+    }
+}
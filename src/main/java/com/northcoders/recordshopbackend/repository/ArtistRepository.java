@@ -1,12 +1,33 @@
 package com.northcoders.recordshopbackend.repository;
 
+import com.northcoders.recordshopbackend.dto.ArtistDTO;
 import com.northcoders.recordshopbackend.model.Artist;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface ArtistRepository extends JpaRepository<Artist, Long> {
     Optional<Artist> findByArtistName(String artistName);
+
+    Optional<Artist> findByNormalizedName(String normalizedName);
+
+    List<Artist> findAllByNormalizedNameIn(Collection<String> normalizedNames);
+
+    // Loads the artist with every album, and each album's genre and stock, in one statement
+    @EntityGraph(attributePaths = {"albums", "albums.genre", "albums.stock"})
+    Optional<Artist> findWithAlbumsById(Long id);
+
+    @EntityGraph(attributePaths = {"albums", "albums.genre", "albums.stock"})
+    Optional<Artist> findWithAlbumsByNormalizedName(String normalizedName);
+
+    List<Artist> findAllByAlbumsIsNotEmpty();
+
+    @Query("select new com.northcoders.recordshopbackend.dto.ArtistDTO(a.id, a.artistName) from Artist a")
+    List<ArtistDTO> findAllArtistDTOs();
 }
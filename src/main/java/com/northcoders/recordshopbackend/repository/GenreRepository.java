@@ -1,6 +1,7 @@
 package com.northcoders.recordshopbackend.repository;
 
 import com.northcoders.recordshopbackend.model.Genre;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
@@ -9,4 +10,13 @@ import java.util.Optional;
 @Repository
 public interface GenreRepository extends JpaRepository<Genre, Long> {
     Optional<Genre> findByGenre(String genre);
-}
\ No newline at end of file
+
+    Optional<Genre> findByNormalizedName(String normalizedName);
+
+    // Loads the genre with every album, and each album's artist and stock, in one statement
+    @EntityGraph(attributePaths = {"albums", "albums.artist", "albums.stock"})
+    Optional<Genre> findWithAlbumsById(Long id);
+
+    @EntityGraph(attributePaths = {"albums", "albums.artist", "albums.stock"})
+    Optional<Genre> findWithAlbumsByNormalizedName(String normalizedName);
+}
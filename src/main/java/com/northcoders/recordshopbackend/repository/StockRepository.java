@@ -2,8 +2,29 @@ package com.northcoders.recordshopbackend.repository;
 
 import com.northcoders.recordshopbackend.model.Stock;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 @Repository
-public interface StockRepository extends JpaRepository<Stock, Long> {
+public interface StockRepository extends JpaRepository<Stock, Long>, StockRepositoryCustom {
+
+    // Takes the quantity from an album's stock only when there is enough of it, as a single statement so
+    // concurrent checkouts can never oversell. Returns 0 when there is not enough stock or no such album.
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+            update Stock s set s.quantityInStock = s.quantityInStock - :quantity, s.version = s.version + 1
+            where s.id = (select a.stock.id from Album a where a.id = :albumId)
+            and s.quantityInStock >= :quantity
+            """)
+    int decreaseQuantityInStock(@Param("albumId") Long albumId, @Param("quantity") int quantity);
+
+    // Puts units back on an album's stock. Returns 0 when there is no such album.
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+            update Stock s set s.quantityInStock = s.quantityInStock + :quantity, s.version = s.version + 1
+            where s.id = (select a.stock.id from Album a where a.id = :albumId)
+            """)
+    int increaseQuantityInStock(@Param("albumId") Long albumId, @Param("quantity") int quantity);
 }
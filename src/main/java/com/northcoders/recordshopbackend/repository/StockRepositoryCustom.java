@@ -0,0 +1,26 @@
+package com.northcoders.recordshopbackend.repository;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.SortedMap;
+
+// Row level stock operations used by order processing and stock adjustments, written in SQL so they work on plain values
+// instead of loading Stock entities
+public interface StockRepositoryCustom {
+
+    record StockLevel(Long albumId, Long stockId, int quantityInStock, long albumVersion) {}
+
+    // Locks the stock rows of the albums in stock id order, then their album rows in album id order,
+    // and returns their levels by album id. Every caller that locks more than one stock row goes
+    // through here, and every change writing an album and its stock locks them here first, so locks
+    // are always taken stock before album and in id order.
+    // Unknown albums are left out. The album's version is read under its lock, so it cannot change
+    // before the caller commits.
+    Map<Long, StockLevel> lockStockLevelsByAlbumIds(Collection<Long> albumIds);
+
+    // Takes the quantity from each stock row, keyed by stock id, as one JDBC batch
+    void decreaseQuantitiesInStock(SortedMap<Long, Integer> quantitiesByStockId);
+
+    // Sets each stock row, keyed by stock id, to the quantity as one JDBC batch
+    void setQuantitiesInStock(SortedMap<Long, Integer> quantitiesByStockId);
+}
@@ -0,0 +1,81 @@
+package com.northcoders.recordshopbackend.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.util.*;
+
+public class StockRepositoryCustomImpl implements StockRepositoryCustom {
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Override
+    public Map<Long, StockLevel> lockStockLevelsByAlbumIds(Collection<Long> albumIds) {
+        if (albumIds.isEmpty()) {
+            return Map.of();
+        }
+        Map<Long, Long> albumIdsByStockId = new HashMap<>();
+        Map<Long, Long> albumVersions = new HashMap<>();
+        jdbcTemplate.query(
+                "select id, stock_id, version from albums where id in (:albumIds) and stock_id is not null",
+                new MapSqlParameterSource("albumIds", albumIds),
+                resultSet -> {
+                    albumIdsByStockId.put(resultSet.getLong("stock_id"), resultSet.getLong("id"));
+                    albumVersions.put(resultSet.getLong("id"), resultSet.getLong("version"));
+                }
+        );
+        if (albumIdsByStockId.isEmpty()) {
+            return Map.of();
+        }
+
+        Map<Long, Integer> quantitiesByStockId = new HashMap<>();
+        jdbcTemplate.query(
+                "select id, quantity_in_stock from stock where id in (:stockIds) order by id for update",
+                new MapSqlParameterSource("stockIds", albumIdsByStockId.keySet()),
+                resultSet -> {
+                    quantitiesByStockId.put(resultSet.getLong("id"), resultSet.getInt("quantity_in_stock"));
+                }
+        );
+        // The versions read above were not locked, a write committed since then must be seen
+        jdbcTemplate.query(
+                "select id, version from albums where id in (:albumIds) order by id for update",
+                new MapSqlParameterSource("albumIds", albumVersions.keySet()),
+                resultSet -> {
+                    albumVersions.put(resultSet.getLong("id"), resultSet.getLong("version"));
+                }
+        );
+
+        Map<Long, StockLevel> stockLevels = new HashMap<>();
+        quantitiesByStockId.forEach((stockId, quantityInStock) -> {
+            Long albumId = albumIdsByStockId.get(stockId);
+            stockLevels.put(albumId, new StockLevel(albumId, stockId, quantityInStock, albumVersions.get(albumId)));
+        });
+        return stockLevels;
+    }
+
+    @Override
+    public void decreaseQuantitiesInStock(SortedMap<Long, Integer> quantitiesByStockId) {
+        jdbcTemplate.batchUpdate(
+                "update stock set quantity_in_stock = quantity_in_stock - :quantity, version = version + 1 where id = :stockId",
+                createBatch(quantitiesByStockId)
+        );
+    }
+
+    @Override
+    public void setQuantitiesInStock(SortedMap<Long, Integer> quantitiesByStockId) {
+        jdbcTemplate.batchUpdate(
+                "update stock set quantity_in_stock = :quantity, version = version + 1 where id = :stockId",
+                createBatch(quantitiesByStockId)
+        );
+    }
+
+    private MapSqlParameterSource[] createBatch(SortedMap<Long, Integer> quantitiesByStockId) {
+        return quantitiesByStockId.entrySet().stream()
+                .map(entry -> new MapSqlParameterSource()
+                        .addValue("stockId", entry.getKey())
+                        .addValue("quantity", entry.getValue()))
+                .toArray(MapSqlParameterSource[]::new);
+    }
+}
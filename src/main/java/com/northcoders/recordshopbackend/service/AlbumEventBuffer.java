@@ -0,0 +1,102 @@
+package com.northcoders.recordshopbackend.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// The events waiting to be sent to one subscriber. Only the latest event of each album is kept, a
+// subscriber that falls behind gets an album's current state once rather than every change on the way.
+// When more albums are waiting than the capacity the buffer is emptied and the subscriber is told to
+// resync instead, so a slow subscriber holds a bounded amount of memory however busy the catalog is.
+final class AlbumEventBuffer {
+
+    record Event(long albumId, String name, String data) {}
+
+    // Resync comes before the events, they happened after whatever was dropped
+    record Batch(boolean resync, List<Event> events) {
+
+        boolean isEmpty() {
+            return !resync && events.isEmpty();
+        }
+    }
+
+    private static final Batch EMPTY = new Batch(false, List.of());
+
+    private final int capacity;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final LinkedHashMap<Long, Event> pending = new LinkedHashMap<>();
+    private boolean resync;
+    private boolean closed;
+
+    AlbumEventBuffer(int capacity) {
+        this.capacity = capacity;
+    }
+
+    // A newer event for an album replaces the waiting one and moves to the back
+    void add(Event event) {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            pending.remove(event.albumId());
+            pending.put(event.albumId(), event);
+            if (pending.size() > capacity) {
+                pending.clear();
+                resync = true;
+            }
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void resync() {
+        lock.lock();
+        try {
+            pending.clear();
+            resync = true;
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            pending.clear();
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Everything waiting, an empty batch when nothing arrived within the timeout and null once closed
+    Batch take(long timeoutMillis) throws InterruptedException {
+        lock.lock();
+        try {
+            long remainingNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            while (!closed && !resync && pending.isEmpty()) {
+                if (remainingNanos <= 0) {
+                    return EMPTY;
+                }
+                remainingNanos = changed.awaitNanos(remainingNanos);
+            }
+            if (closed) {
+                return null;
+            }
+            Batch batch = new Batch(resync, new ArrayList<>(pending.values()));
+            pending.clear();
+            resync = false;
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.northcoders.recordshopbackend.service;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+
+public interface AlbumEventStreamService {
+
+    // A stream of the albums that change from now on. Each filter may be empty, an album is sent when it
+    // matches one of the values of every filter that is given. Artists and genres ignore case.
+    SseEmitter subscribe(List<Long> albumIds, List<String> artists, List<String> genres);
+}
@@ -0,0 +1,334 @@
+package com.northcoders.recordshopbackend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.northcoders.recordshopbackend.dto.AlbumDTO;
+import com.northcoders.recordshopbackend.dto.AlbumEventDTO;
+import com.northcoders.recordshopbackend.dto.AlbumSummaryDTO;
+import com.northcoders.recordshopbackend.dto.DeletedAlbumDTO;
+import com.northcoders.recordshopbackend.event.AlbumDeletedEvent;
+import com.northcoders.recordshopbackend.event.AlbumStockChangedEvent;
+import com.northcoders.recordshopbackend.event.AlbumsSavedEvent;
+import com.northcoders.recordshopbackend.model.Artist;
+import com.northcoders.recordshopbackend.model.Genre;
+import com.northcoders.recordshopbackend.repository.AlbumRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Live album events over Server-Sent Events. The commit listeners only queue the change, so writers
+// never wait on subscribers. A single dispatcher thread takes every change that arrived since its last
+// pass, reads the current state of the changed albums in one query, serializes each event once and
+// adds it to the buffer of every subscriber whose filters match.
+//
+// Each subscriber has its own virtual thread that sends whatever its buffer holds in one write, or a
+// heartbeat comment when nothing has changed for a while. A slow subscriber only blocks its own thread,
+// its buffer keeps the latest event per album and tells it to resync once too many albums are waiting.
+@Slf4j
+@Service
+public class AlbumEventStreamServiceImpl implements AlbumEventStreamService {
+
+    static final String ALBUM_EVENT = "album";
+    static final String DELETED_EVENT = "deleted";
+    static final String RESYNC_EVENT = "resync";
+
+    // Keeps the IN list of the summary query within what every database accepts
+    private static final int MAX_IDS_PER_QUERY = 1000;
+
+    @Autowired
+    private AlbumRepository albumRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${recordshop.events.buffer-size:256}")
+    private int bufferSize;
+
+    @Value("${recordshop.events.heartbeat-interval-ms:15000}")
+    private long heartbeatIntervalMs;
+
+    @Value("${recordshop.events.queue-capacity:10000}")
+    private int queueCapacity;
+
+    // Streams are not bound by the async request timeout, 0 keeps them open until the client goes,
+    // which the heartbeat finds out
+    @Value("${recordshop.events.stream-timeout-ms:0}")
+    private long streamTimeoutMs;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    // Set when a change could not be queued, every subscriber is told to resync on the next pass
+    private final AtomicBoolean changesDropped = new AtomicBoolean();
+    private BlockingQueue<Object> pendingChanges;
+    private Thread dispatcher;
+    private volatile boolean running;
+
+    // Identity equality, two subscribers with the same filters are still two subscribers
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        private final Set<Long> albumIds;
+        private final Set<String> artists;
+        private final Set<String> genres;
+        private final AlbumEventBuffer buffer;
+
+        private Subscriber(SseEmitter emitter, Set<Long> albumIds, Set<String> artists, Set<String> genres, AlbumEventBuffer buffer) {
+            this.emitter = emitter;
+            this.albumIds = albumIds;
+            this.artists = artists;
+            this.genres = genres;
+            this.buffer = buffer;
+        }
+
+        // The artist and genre of a deleted album are gone, so deletions are only filtered by album
+        private boolean matches(AlbumChange change) {
+            if (!albumIds.isEmpty() && !albumIds.contains(change.albumId())) {
+                return false;
+            }
+            if (change.deleted()) {
+                return true;
+            }
+            return (artists.isEmpty() || artists.contains(change.artist()))
+                    && (genres.isEmpty() || genres.contains(change.genre()));
+        }
+    }
+
+    // An event ready to send, with the normalized artist and genre it is filtered on
+    private record AlbumChange(long albumId, boolean deleted, String artist, String genre, AlbumEventBuffer.Event event) {}
+
+    @PostConstruct
+    public void start() {
+        pendingChanges = new LinkedBlockingQueue<>(queueCapacity);
+        running = true;
+        dispatcher = Thread.ofPlatform().name("album-event-dispatcher").daemon().start(this::dispatchChanges);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        dispatcher.interrupt();
+    }
+
+    // Streams never finish on their own, so they are ended as soon as the application starts to close.
+    // Graceful shutdown would otherwise wait out its whole timeout for them.
+    @EventListener(ContextClosedEvent.class)
+    public void completeSubscribers() {
+        for (Subscriber subscriber : subscribers) {
+            unsubscribe(subscriber);
+            subscriber.emitter.complete();
+        }
+    }
+
+    @Override
+    public SseEmitter subscribe(List<Long> albumIds, List<String> artists, List<String> genres) {
+        Subscriber subscriber = new Subscriber(
+                new SseEmitter(streamTimeoutMs),
+                albumIds != null ? Set.copyOf(albumIds) : Set.of(),
+                normalize(artists, Artist::normalize),
+                normalize(genres, Genre::normalize),
+                new AlbumEventBuffer(bufferSize)
+        );
+        subscriber.emitter.onCompletion(() -> unsubscribe(subscriber));
+        subscriber.emitter.onTimeout(() -> {
+            unsubscribe(subscriber);
+            subscriber.emitter.complete();
+        });
+        subscriber.emitter.onError(e -> unsubscribe(subscriber));
+        subscribers.add(subscriber);
+        Thread.ofVirtual().name("album-event-subscriber").start(() -> sendEvents(subscriber));
+        return subscriber.emitter;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAlbumsSaved(AlbumsSavedEvent event) {
+        queueChange(event);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAlbumStockChanged(AlbumStockChangedEvent event) {
+        queueChange(event);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAlbumDeleted(AlbumDeletedEvent event) {
+        queueChange(event);
+    }
+
+    // Nothing is queued while no one is listening, and a full queue drops the change rather than block
+    // the committing thread
+    private void queueChange(Object change) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        if (!pendingChanges.offer(change)) {
+            changesDropped.set(true);
+        }
+    }
+
+    private void dispatchChanges() {
+        List<Object> changes = new ArrayList<>();
+        while (running) {
+            try {
+                changes.add(pendingChanges.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            pendingChanges.drainTo(changes);
+            try {
+                dispatch(changes);
+            } catch (RuntimeException e) {
+                log.warn("Album events could not be dispatched, subscribers are told to resync", e);
+                subscribers.forEach(subscriber -> subscriber.buffer.resync());
+            }
+            changes.clear();
+        }
+    }
+
+    private void dispatch(List<Object> changes) {
+        if (changesDropped.getAndSet(false)) {
+            subscribers.forEach(subscriber -> subscriber.buffer.resync());
+        }
+        if (subscribers.isEmpty()) {
+            return;
+        }
+
+        // The changed albums in the order of their last change, true when that change was a deletion
+        LinkedHashMap<Long, Boolean> deletedByAlbumId = new LinkedHashMap<>();
+        for (Object change : changes) {
+            switch (change) {
+                case AlbumsSavedEvent saved -> saved.albums().stream().map(AlbumDTO::getId)
+                        .forEach(albumId -> putLast(deletedByAlbumId, albumId, false));
+                case AlbumStockChangedEvent stockChanged -> stockChanged.quantitiesInStockByAlbumId().keySet()
+                        .forEach(albumId -> putLast(deletedByAlbumId, albumId, false));
+                case AlbumDeletedEvent deleted -> putLast(deletedByAlbumId, deleted.albumId(), true);
+                default -> { }
+            }
+        }
+
+        // Every event carries the album as it is now rather than as the change left it, so changes
+        // committed out of order on different threads still end on the latest state
+        Map<Long, AlbumSummaryDTO> summariesByAlbumId = findAlbumSummaries(deletedByAlbumId.entrySet().stream()
+                .filter(entry -> !entry.getValue())
+                .map(Map.Entry::getKey)
+                .toList());
+
+        String dateDeleted = Instant.now().toString();
+        List<AlbumChange> albumChanges = new ArrayList<>(deletedByAlbumId.size());
+        deletedByAlbumId.forEach((albumId, deleted) -> {
+            if (deleted) {
+                albumChanges.add(new AlbumChange(albumId, true, null, null, new AlbumEventBuffer.Event(
+                        albumId, DELETED_EVENT, toJson(new DeletedAlbumDTO(albumId, dateDeleted))
+                )));
+                return;
+            }
+            AlbumSummaryDTO summary = summariesByAlbumId.get(albumId);
+            // Deleted since, its deletion is on the way
+            if (summary == null) {
+                return;
+            }
+            albumChanges.add(new AlbumChange(
+                    albumId,
+                    false,
+                    summary.getArtist() != null ? Artist.normalize(summary.getArtist()) : null,
+                    summary.getGenre() != null ? Genre.normalize(summary.getGenre()) : null,
+                    new AlbumEventBuffer.Event(albumId, ALBUM_EVENT, toJson(createAlbumEvent(summary)))
+            ));
+        });
+
+        for (Subscriber subscriber : subscribers) {
+            for (AlbumChange albumChange : albumChanges) {
+                if (subscriber.matches(albumChange)) {
+                    subscriber.buffer.add(albumChange.event());
+                }
+            }
+        }
+    }
+
+    private static void putLast(LinkedHashMap<Long, Boolean> deletedByAlbumId, Long albumId, boolean deleted) {
+        deletedByAlbumId.remove(albumId);
+        deletedByAlbumId.put(albumId, deleted);
+    }
+
+    private Map<Long, AlbumSummaryDTO> findAlbumSummaries(List<Long> albumIds) {
+        Map<Long, AlbumSummaryDTO> summariesByAlbumId = new HashMap<>();
+        for (int from = 0; from < albumIds.size(); from += MAX_IDS_PER_QUERY) {
+            List<Long> chunk = albumIds.subList(from, Math.min(from + MAX_IDS_PER_QUERY, albumIds.size()));
+            albumRepository.findAlbumSummariesByIdIn(chunk)
+                    .forEach(summary -> summariesByAlbumId.put(summary.getId(), summary));
+        }
+        return summariesByAlbumId;
+    }
+
+    // Sends the connected comment straight away so the response starts, then everything the buffer
+    // collects in one write per wake-up, until the client goes or the emitter completes
+    private void sendEvents(Subscriber subscriber) {
+        try {
+            subscriber.emitter.send(SseEmitter.event().comment("connected"));
+            AlbumEventBuffer.Batch batch;
+            while ((batch = subscriber.buffer.take(heartbeatIntervalMs)) != null) {
+                Set<DataWithMediaType> data = new LinkedHashSet<>();
+                if (batch.isEmpty()) {
+                    data.addAll(SseEmitter.event().comment("heartbeat").build());
+                }
+                if (batch.resync()) {
+                    // A browser only raises events that have data
+                    data.addAll(SseEmitter.event().name(RESYNC_EVENT).data("{}").build());
+                }
+                for (AlbumEventBuffer.Event event : batch.events()) {
+                    data.addAll(SseEmitter.event().name(event.name()).data(event.data()).build());
+                }
+                subscriber.emitter.send(data);
+            }
+        } catch (IOException | IllegalStateException | InterruptedException e) {
+            // The client disconnected, the emitter completed or timed out, or the application is stopping
+            unsubscribe(subscriber);
+        }
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        subscribers.remove(subscriber);
+        subscriber.buffer.close();
+    }
+
+    private AlbumEventDTO createAlbumEvent(AlbumSummaryDTO summary) {
+        return AlbumEventDTO.builder()
+                .id(summary.getId())
+                .artist(summary.getArtist())
+                .genre(summary.getGenre())
+                .stock(summary.getQuantityInStock())
+                .price(summary.getPrice())
+                .version(summary.getVersion())
+                .build();
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("The album event could not be serialized", e);
+        }
+    }
+
+    private static Set<String> normalize(List<String> values, Function<String, String> normalizer) {
+        if (values == null) {
+            return Set.of();
+        }
+        return values.stream().filter(value -> !value.isBlank()).map(normalizer).collect(Collectors.toUnmodifiableSet());
+    }
+}
@@ -0,0 +1,16 @@
+package com.northcoders.recordshopbackend.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+
+public interface AlbumExportService {
+
+    enum Format {
+        NDJSON,
+        CSV
+    }
+
+    // Writes every album modified at or after modifiedSince (all albums when null) in id order
+    void exportAlbums(Instant modifiedSince, Format format, OutputStream outputStream) throws IOException;
+}
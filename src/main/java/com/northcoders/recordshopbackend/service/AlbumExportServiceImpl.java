@@ -0,0 +1,167 @@
+package com.northcoders.recordshopbackend.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.northcoders.recordshopbackend.dto.AlbumDTO;
+import com.northcoders.recordshopbackend.model.Album;
+import com.northcoders.recordshopbackend.repository.AlbumRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+// Streams the catalog from a database cursor straight to the output, one album at a time. Albums are
+// cleared from the persistence context as they are written so memory use does not grow with the catalog.
+@Service
+public class AlbumExportServiceImpl implements AlbumExportService, DTOMapper {
+
+    private static final int CLEAR_INTERVAL = 500;
+    private static final String CSV_HEADER =
+            "id,title,artist,genre,releaseDate,stock,price,artworkUrl,dateCreated,dateModified";
+
+    @Autowired
+    private AlbumRepository albumRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public void exportAlbums(Instant modifiedSince, Format format, OutputStream outputStream) throws IOException {
+        AlbumWriter albumWriter = format == Format.CSV
+                ? new CsvAlbumWriter(outputStream)
+                : new NdjsonAlbumWriter(outputStream);
+
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        try {
+            transactionTemplate.executeWithoutResult(status -> exportAlbums(modifiedSince, albumWriter));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        albumWriter.finish();
+    }
+
+    private void exportAlbums(Instant modifiedSince, AlbumWriter albumWriter) {
+        try (Stream<Album> albums = modifiedSince == null
+                ? albumRepository.streamAllByOrderByIdAsc()
+                : albumRepository.streamAllByDateModifiedGreaterThanEqualOrderByIdAsc(modifiedSince)) {
+            long rows = 0;
+            Iterator<Album> iterator = albums.iterator();
+            while (iterator.hasNext()) {
+                albumWriter.write(createAlbumDTO(iterator.next()));
+                rows++;
+                if (rows == 1) {
+                    // Gets the first bytes out, after that the output buffer decides when to send
+                    albumWriter.flush();
+                }
+                if (rows % CLEAR_INTERVAL == 0) {
+                    entityManager.clear();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private interface AlbumWriter {
+        void write(AlbumDTO albumDTO) throws IOException;
+
+        void flush() throws IOException;
+
+        void finish() throws IOException;
+    }
+
+    private class NdjsonAlbumWriter implements AlbumWriter {
+        private final JsonGenerator generator;
+        private final ObjectWriter writer;
+
+        NdjsonAlbumWriter(OutputStream outputStream) throws IOException {
+            this.generator = objectMapper.getFactory().createGenerator(outputStream);
+            this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            this.generator.setRootValueSeparator(null);
+            this.writer = objectMapper.writerFor(AlbumDTO.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        }
+
+        @Override
+        public void write(AlbumDTO albumDTO) throws IOException {
+            writer.writeValue(generator, albumDTO);
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            generator.flush();
+        }
+
+        @Override
+        public void finish() throws IOException {
+            generator.close();
+        }
+    }
+
+    private static class CsvAlbumWriter implements AlbumWriter {
+        private final Writer writer;
+
+        CsvAlbumWriter(OutputStream outputStream) throws IOException {
+            this.writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            this.writer.write(CSV_HEADER);
+            this.writer.write('\n');
+        }
+
+        @Override
+        public void write(AlbumDTO albumDTO) throws IOException {
+            writer.write(String.valueOf(albumDTO.getId()));
+            writeField(albumDTO.getTitle());
+            writeField(albumDTO.getArtist());
+            writeField(albumDTO.getGenre());
+            writeField(albumDTO.getReleaseDate());
+            writeField(albumDTO.getStock());
+            writeField(albumDTO.getPrice());
+            writeField(albumDTO.getArtworkUrl());
+            writeField(albumDTO.getDateCreated());
+            writeField(albumDTO.getDateModified());
+            writer.write('\n');
+        }
+
+        private void writeField(Object value) throws IOException {
+            writer.write(',');
+            if (value == null) {
+                return;
+            }
+            String field = value.toString();
+            if (field.indexOf(',') >= 0 || field.indexOf('"') >= 0 || field.indexOf('\n') >= 0 || field.indexOf('\r') >= 0) {
+                writer.write('"');
+                writer.write(field.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(field);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writer.flush();
+        }
+
+        @Override
+        public void finish() throws IOException {
+            writer.flush();
+        }
+    }
+}
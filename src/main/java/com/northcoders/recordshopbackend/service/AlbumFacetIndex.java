@@ -0,0 +1,335 @@
+package com.northcoders.recordshopbackend.service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ObjIntConsumer;
+
+// Bitmap index for faceted browsing. Every value of every facet, each genre, release year, artist and
+// stock state, has a CompressedBitmap of the ids of its albums. A browse ORs the bitmaps of the values
+// picked within a facet and ANDs the facets together. The counts for a facet apply the other facets'
+// filters but not its own, so they say how many albums each value would add or leave.
+//
+// Reads are lock free. Bitmaps are immutable and replaced whole, so a browse sees each value either
+// before or after a change. Writes must be serialized by the caller.
+//
+// Each facet also numbers its values and keeps the number of every album's value in an array by album
+// id, so counting the albums of a large filter reads the array in id order. Album ids come from a
+// sequence, so the arrays are dense.
+final class AlbumFacetIndex {
+
+    static final String IN_STOCK = "inStock";
+    static final String OUT_OF_STOCK = "outOfStock";
+
+    // Counting a facet by intersecting each value's bitmap costs about this many times the number of
+    // values times the chunks of the filter, against one array read per album for tallying the filter
+    private static final int INTERSECTION_COST = 256;
+
+    enum Facet {
+        GENRE("genre"),
+        YEAR("year"),
+        ARTIST("artist"),
+        STOCK("stock");
+
+        private final String key;
+
+        Facet(String key) {
+            this.key = key;
+        }
+
+        String key() {
+            return key;
+        }
+    }
+
+    // The release year is kept as text, so counting albums by year does not make a string per album
+    record Album(long albumId, String genre, String releaseYear, String artist, boolean inStock, long version) {
+
+        // Null when the album has no value for the facet
+        String valueOf(Facet facet) {
+            return switch (facet) {
+                case GENRE -> genre;
+                case YEAR -> releaseYear;
+                case ARTIST -> artist;
+                case STOCK -> inStock ? IN_STOCK : OUT_OF_STOCK;
+            };
+        }
+    }
+
+    record FacetCount(String value, int count) {}
+
+    record Result(int total, int[] albumIds, Map<Facet, List<FacetCount>> facetCounts) {}
+
+    private final Map<Integer, Album> albums = new ConcurrentHashMap<>();
+    private final Map<Facet, Map<String, CompressedBitmap>> bitmaps = new EnumMap<>(Facet.class);
+    private final Map<Facet, ValueOrdinals> valueOrdinals = new EnumMap<>(Facet.class);
+    private volatile CompressedBitmap allAlbums = CompressedBitmap.EMPTY;
+    // Ids are never reused, a save delivered after the album's delete must not add it back
+    private final Set<Long> deletedAlbumIds = new HashSet<>();
+
+    private AlbumFacetIndex() {
+        for (Facet facet : Facet.values()) {
+            bitmaps.put(facet, new ConcurrentHashMap<>());
+            valueOrdinals.put(facet, new ValueOrdinals());
+        }
+    }
+
+    // The values of a facet by number, and one plus the number of each album's value by album id, 0 for
+    // none. A value keeps its number once its last album has gone.
+    private static final class ValueOrdinals {
+
+        private final Map<String, Integer> ordinals = new HashMap<>();
+        private volatile String[] values = new String[16];
+        private volatile int[] albumOrdinals = new int[0];
+
+        void put(int albumId, String value) {
+            int ordinal = value != null ? ordinalOf(value) + 1 : 0;
+            int[] current = albumOrdinals;
+            if (albumId < current.length) {
+                current[albumId] = ordinal;
+            } else if (ordinal != 0) {
+                int[] grown = Arrays.copyOf(current, Math.max(albumId + 1, current.length * 2));
+                grown[albumId] = ordinal;
+                albumOrdinals = grown;
+            }
+        }
+
+        private int ordinalOf(String value) {
+            Integer ordinal = ordinals.get(value);
+            if (ordinal == null) {
+                ordinal = ordinals.size();
+                ordinals.put(value, ordinal);
+                String[] current = values;
+                if (ordinal == current.length) {
+                    current = Arrays.copyOf(current, current.length * 2);
+                }
+                current[ordinal] = value;
+                values = current;
+            }
+            return ordinal;
+        }
+    }
+
+    static AlbumFacetIndex build(Collection<Album> albums) {
+        AlbumFacetIndex index = new AlbumFacetIndex();
+        Map<Facet, Map<String, List<Integer>>> albumIdsByValue = new EnumMap<>(Facet.class);
+        int[] albumIds = new int[albums.size()];
+        int count = 0;
+        for (Album album : albums) {
+            int albumId = Math.toIntExact(album.albumId());
+            index.albums.put(albumId, album);
+            albumIds[count++] = albumId;
+            for (Facet facet : Facet.values()) {
+                String value = album.valueOf(facet);
+                index.valueOrdinals.get(facet).put(albumId, value);
+                if (value != null) {
+                    albumIdsByValue.computeIfAbsent(facet, key -> new HashMap<>())
+                            .computeIfAbsent(value, key -> new ArrayList<>())
+                            .add(albumId);
+                }
+            }
+        }
+        albumIdsByValue.forEach((facet, values) -> values.forEach((value, ids) ->
+                index.bitmaps.get(facet).put(value, CompressedBitmap.of(ids.stream().mapToInt(Integer::intValue).toArray()))
+        ));
+        index.allAlbums = CompressedBitmap.of(albumIds);
+        return index;
+    }
+
+    int size() {
+        return albums.size();
+    }
+
+    Set<String> values(Facet facet) {
+        return bitmaps.get(facet).keySet();
+    }
+
+    Result browse(Map<Facet, ? extends Collection<String>> selection, int limit, int facetLimit) {
+        CompressedBitmap all = allAlbums;
+        Map<Facet, CompressedBitmap> selected = new EnumMap<>(Facet.class);
+        selection.forEach((facet, values) -> {
+            List<CompressedBitmap> valueBitmaps = new ArrayList<>(values.size());
+            for (String value : values) {
+                valueBitmaps.add(bitmaps.get(facet).getOrDefault(value, CompressedBitmap.EMPTY));
+            }
+            selected.put(facet, valueBitmaps.size() == 1 ? valueBitmaps.get(0) : CompressedBitmap.or(valueBitmaps));
+        });
+
+        CompressedBitmap matches = intersect(all, selected, null);
+        Map<Facet, List<FacetCount>> facetCounts = new EnumMap<>(Facet.class);
+        for (Facet facet : Facet.values()) {
+            facetCounts.put(facet, facetLimit > 0 ? countValues(facet, intersect(all, selected, facet), all, facetLimit) : List.of());
+        }
+        return new Result(matches.cardinality(), matches.toArray(limit), facetCounts);
+    }
+
+    // Saves replace the album's values, an older version of an album than the indexed one or a deleted
+    // album is ignored
+    void update(Collection<Album> saved, Collection<Long> deletedIds) {
+        // Per value, whether each changed album ends up in it. A later change to the same album wins.
+        Map<Facet, Map<String, Map<Integer, Boolean>>> changes = new EnumMap<>(Facet.class);
+        Map<Integer, Boolean> albumChanges = new HashMap<>();
+        for (Album album : saved) {
+            if (deletedAlbumIds.contains(album.albumId())) {
+                continue;
+            }
+            int albumId = Math.toIntExact(album.albumId());
+            Album current = albums.get(albumId);
+            if (current != null && current.version() > album.version()) {
+                continue;
+            }
+            albums.put(albumId, album);
+            for (Facet facet : Facet.values()) {
+                String currentValue = current != null ? current.valueOf(facet) : null;
+                String savedValue = album.valueOf(facet);
+                if (!Objects.equals(currentValue, savedValue)) {
+                    recordChange(changes, facet, currentValue, albumId, false);
+                    recordChange(changes, facet, savedValue, albumId, true);
+                    valueOrdinals.get(facet).put(albumId, savedValue);
+                }
+            }
+            albumChanges.put(albumId, true);
+        }
+        for (Long deletedId : deletedIds) {
+            deletedAlbumIds.add(deletedId);
+            int albumId = Math.toIntExact(deletedId);
+            Album current = albums.remove(albumId);
+            if (current != null) {
+                for (Facet facet : Facet.values()) {
+                    recordChange(changes, facet, current.valueOf(facet), albumId, false);
+                    valueOrdinals.get(facet).put(albumId, null);
+                }
+                albumChanges.put(albumId, false);
+            }
+        }
+
+        changes.forEach((facet, values) -> values.forEach((value, albumIds) -> {
+            Map<String, CompressedBitmap> facetBitmaps = bitmaps.get(facet);
+            CompressedBitmap bitmap = applyChanges(facetBitmaps.getOrDefault(value, CompressedBitmap.EMPTY), albumIds);
+            if (bitmap.isEmpty()) {
+                facetBitmaps.remove(value);
+            } else {
+                facetBitmaps.put(value, bitmap);
+            }
+        }));
+        allAlbums = applyChanges(allAlbums, albumChanges);
+    }
+
+    // Only an album going in or out of stock changes the index
+    void updateStock(Map<Long, Integer> quantitiesInStockByAlbumId) {
+        List<Album> restocked = new ArrayList<>();
+        quantitiesInStockByAlbumId.forEach((albumId, quantityInStock) -> {
+            Album album = albums.get(Math.toIntExact(albumId));
+            if (album != null && album.inStock() != quantityInStock > 0) {
+                restocked.add(new Album(album.albumId(), album.genre(), album.releaseYear(), album.artist(),
+                        quantityInStock > 0, album.version()));
+            }
+        });
+        if (!restocked.isEmpty()) {
+            update(restocked, List.of());
+        }
+    }
+
+    private static void recordChange(
+            Map<Facet, Map<String, Map<Integer, Boolean>>> changes,
+            Facet facet,
+            String value,
+            int albumId,
+            boolean added
+    ) {
+        if (value != null) {
+            changes.computeIfAbsent(facet, key -> new HashMap<>())
+                    .computeIfAbsent(value, key -> new HashMap<>())
+                    .put(albumId, added);
+        }
+    }
+
+    private static CompressedBitmap applyChanges(CompressedBitmap bitmap, Map<Integer, Boolean> albumIds) {
+        int[] added = albumIds.entrySet().stream().filter(Map.Entry::getValue).mapToInt(Map.Entry::getKey).toArray();
+        int[] removed = albumIds.entrySet().stream().filter(change -> !change.getValue()).mapToInt(Map.Entry::getKey).toArray();
+        return bitmap.andNot(CompressedBitmap.of(removed)).or(CompressedBitmap.of(added));
+    }
+
+    // The albums matching every selected facet but the excluded one, all albums when none is selected
+    private static CompressedBitmap intersect(CompressedBitmap all, Map<Facet, CompressedBitmap> selected, Facet excluded) {
+        CompressedBitmap intersection = null;
+        for (Map.Entry<Facet, CompressedBitmap> facet : selected.entrySet()) {
+            if (facet.getKey() != excluded) {
+                intersection = intersection == null ? facet.getValue() : intersection.and(facet.getValue());
+            }
+        }
+        return intersection != null ? intersection : all;
+    }
+
+    // The values with the most albums in the filter, most first
+    private List<FacetCount> countValues(Facet facet, CompressedBitmap filter, CompressedBitmap all, int facetLimit) {
+        PriorityQueue<FacetCount> top = new PriorityQueue<>(Comparator.comparingInt(FacetCount::count)
+                .thenComparing(FacetCount::value, Comparator.reverseOrder()));
+        Map<String, CompressedBitmap> values = bitmaps.get(facet);
+        if (filter == all) {
+            values.forEach((value, bitmap) -> offer(top, new FacetCount(value, bitmap.cardinality()), facetLimit));
+        } else if ((long) values.size() * filter.chunkCount() * INTERSECTION_COST < filter.cardinality()) {
+            values.forEach((value, bitmap) -> offer(top, new FacetCount(value, bitmap.andCardinality(filter)), facetLimit));
+        } else {
+            tally(valueOrdinals.get(facet), filter, (value, count) -> offer(top, new FacetCount(value, count), facetLimit));
+        }
+
+        List<FacetCount> counts = new ArrayList<>(top);
+        counts.sort(top.comparator().reversed());
+        return counts;
+    }
+
+    // Counts the albums of the filter by the number of their value. With more values than albums the
+    // numbers are sorted and counted in runs instead of in an array as long as the values. An album
+    // numbered by a concurrent write may have a value this browse cannot see yet, it is left out.
+    private static void tally(ValueOrdinals valueOrdinals, CompressedBitmap filter, ObjIntConsumer<String> action) {
+        int[] albumOrdinals = valueOrdinals.albumOrdinals;
+        String[] values = valueOrdinals.values;
+        if (values.length <= filter.cardinality()) {
+            int[] counts = new int[values.length];
+            filter.forEach(albumId -> {
+                int ordinal = ordinalOf(albumOrdinals, albumId, values);
+                if (ordinal >= 0) {
+                    counts[ordinal]++;
+                }
+            });
+            for (int ordinal = 0; ordinal < counts.length; ordinal++) {
+                if (counts[ordinal] != 0) {
+                    action.accept(values[ordinal], counts[ordinal]);
+                }
+            }
+        } else {
+            int[] ordinals = filter.toArray(filter.cardinality());
+            int count = 0;
+            for (int albumId : ordinals) {
+                int ordinal = ordinalOf(albumOrdinals, albumId, values);
+                if (ordinal >= 0) {
+                    ordinals[count++] = ordinal;
+                }
+            }
+            Arrays.sort(ordinals, 0, count);
+            for (int start = 0, end; start < count; start = end) {
+                end = start + 1;
+                while (end < count && ordinals[end] == ordinals[start]) {
+                    end++;
+                }
+                action.accept(values[ordinals[start]], end - start);
+            }
+        }
+    }
+
+    // -1 when the album has no value, or one this browse cannot see yet
+    private static int ordinalOf(int[] albumOrdinals, int albumId, String[] values) {
+        int ordinal = albumId < albumOrdinals.length ? albumOrdinals[albumId] - 1 : -1;
+        return ordinal >= 0 && ordinal < values.length && values[ordinal] != null ? ordinal : -1;
+    }
+
+    private static void offer(PriorityQueue<FacetCount> top, FacetCount facetCount, int facetLimit) {
+        if (facetCount.count() == 0) {
+            return;
+        }
+        top.add(facetCount);
+        if (top.size() > facetLimit) {
+            top.poll();
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.northcoders.recordshopbackend.service;
+
+import com.northcoders.recordshopbackend.dto.AlbumBrowseDTO;
+import com.northcoders.recordshopbackend.dto.AlbumBrowseQueryDTO;
+
+public interface AlbumFacetService {
+
+    // Albums matching every facet of the query, with the album counts of each facet's values
+    AlbumBrowseDTO browseAlbums(AlbumBrowseQueryDTO browseQuery);
+}
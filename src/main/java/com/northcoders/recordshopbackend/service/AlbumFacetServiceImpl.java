@@ -0,0 +1,211 @@
+package com.northcoders.recordshopbackend.service;
+
+import com.northcoders.recordshopbackend.dto.AlbumBrowseDTO;
+import com.northcoders.recordshopbackend.dto.AlbumBrowseQueryDTO;
+import com.northcoders.recordshopbackend.dto.AlbumDTO;
+import com.northcoders.recordshopbackend.dto.AlbumSummaryDTO;
+import com.northcoders.recordshopbackend.event.AlbumDeletedEvent;
+import com.northcoders.recordshopbackend.event.AlbumStockChangedEvent;
+import com.northcoders.recordshopbackend.event.AlbumsSavedEvent;
+import com.northcoders.recordshopbackend.exception.BadRequestException;
+import com.northcoders.recordshopbackend.model.Artist;
+import com.northcoders.recordshopbackend.model.Genre;
+import com.northcoders.recordshopbackend.repository.AlbumRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+// Faceted browsing served from an in-memory AlbumFacetIndex, so a browse never queries the albums
+// table. The index is built from the database once the application is ready and then kept up to date
+// from the album saved, deleted and stock changed events, each applied once its transaction has
+// committed.
+//
+// Genres and artists are indexed by their normalized name, the same match the album listing and the
+// event stream filters make, and counted under the name they were last saved with.
+@Slf4j
+@Service
+public class AlbumFacetServiceImpl implements AlbumFacetService {
+
+    private static final int DEFAULT_LIMIT = 100;
+    private static final int MAX_LIMIT = 1000;
+    private static final int DEFAULT_FACET_LIMIT = 20;
+    private static final int MAX_FACET_LIMIT = 100;
+
+    @Autowired
+    private AlbumRepository albumRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final IndexChanges<AlbumFacetIndex> indexChanges = new IndexChanges<>(AlbumFacetIndex.build(List.of()));
+
+    // Display names by normalized name
+    private final Map<String, String> genreNames = new ConcurrentHashMap<>();
+    private final Map<String, String> artistNames = new ConcurrentHashMap<>();
+
+    @Override
+    public AlbumBrowseDTO browseAlbums(AlbumBrowseQueryDTO browseQuery) {
+        int limit = resolveLimit(browseQuery.getLimit(), DEFAULT_LIMIT, MAX_LIMIT, 1, "limit");
+        int facetLimit = resolveLimit(browseQuery.getFacetLimit(), DEFAULT_FACET_LIMIT, MAX_FACET_LIMIT, 0, "facet limit");
+        Integer fromYear = browseQuery.getFromYear();
+        Integer toYear = browseQuery.getToYear();
+        if (fromYear != null && toYear != null && fromYear > toYear) {
+            throw new BadRequestException("The from year cannot be after the to year");
+        }
+
+        AlbumFacetIndex index = indexChanges.index();
+        Map<AlbumFacetIndex.Facet, Set<String>> selection = new EnumMap<>(AlbumFacetIndex.Facet.class);
+        addSelection(selection, AlbumFacetIndex.Facet.GENRE, browseQuery.getGenre(), Genre::normalize);
+        addSelection(selection, AlbumFacetIndex.Facet.ARTIST, browseQuery.getArtist(), Artist::normalize);
+        if (fromYear != null || toYear != null) {
+            Set<String> years = new HashSet<>();
+            index.values(AlbumFacetIndex.Facet.YEAR).forEach(year -> {
+                int releaseYear = Integer.parseInt(year);
+                if ((fromYear == null || releaseYear >= fromYear) && (toYear == null || releaseYear <= toYear)) {
+                    years.add(year);
+                }
+            });
+            selection.put(AlbumFacetIndex.Facet.YEAR, years);
+        }
+        if (browseQuery.getInStock() != null) {
+            selection.put(AlbumFacetIndex.Facet.STOCK,
+                    Set.of(browseQuery.getInStock() ? AlbumFacetIndex.IN_STOCK : AlbumFacetIndex.OUT_OF_STOCK));
+        }
+
+        AlbumFacetIndex.Result result = index.browse(selection, limit, facetLimit);
+        Map<String, Map<String, Integer>> facets = new LinkedHashMap<>();
+        result.facetCounts().forEach((facet, counts) -> {
+            Map<String, Integer> valueCounts = new LinkedHashMap<>();
+            counts.forEach(count -> valueCounts.put(displayName(facet, count.value()), count.count()));
+            facets.put(facet.key(), valueCounts);
+        });
+        return AlbumBrowseDTO.builder()
+                .total(result.total())
+                .albumIds(Arrays.stream(result.albumIds()).mapToObj(Long::valueOf).toList())
+                .facets(facets)
+                .build();
+    }
+
+    // Reads every album's facets in one streamed query and builds the bitmaps. Changes committed while
+    // the database is being read are replayed on the new index.
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildIndex() {
+        indexChanges.startBuild();
+
+        long start = System.nanoTime();
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        List<AlbumFacetIndex.Album> albums = readOnly.execute(status -> {
+            try (var albumSummaries = albumRepository.streamAlbumSummaries()) {
+                return albumSummaries.map(this::createFacetAlbum).toList();
+            }
+        });
+        AlbumFacetIndex builtIndex = AlbumFacetIndex.build(albums);
+
+        indexChanges.finishBuild(builtIndex);
+        log.info("Album facet index built with {} albums in {} ms",
+                builtIndex.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAlbumsSaved(AlbumsSavedEvent event) {
+        List<AlbumFacetIndex.Album> albums = event.albums().stream().map(this::createFacetAlbum).toList();
+        indexChanges.apply(index -> index.update(albums, List.of()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAlbumDeleted(AlbumDeletedEvent event) {
+        indexChanges.apply(index -> index.update(List.of(), List.of(event.albumId())));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAlbumStockChanged(AlbumStockChangedEvent event) {
+        indexChanges.apply(index -> index.updateStock(event.quantitiesInStockByAlbumId()));
+    }
+
+    private void addSelection(
+            Map<AlbumFacetIndex.Facet, Set<String>> selection,
+            AlbumFacetIndex.Facet facet,
+            List<String> values,
+            UnaryOperator<String> normalizer
+    ) {
+        if (values == null) {
+            return;
+        }
+        Set<String> selected = new HashSet<>();
+        values.stream().filter(value -> value != null && !value.isBlank()).map(normalizer).forEach(selected::add);
+        if (!selected.isEmpty()) {
+            selection.put(facet, selected);
+        }
+    }
+
+    private String displayName(AlbumFacetIndex.Facet facet, String value) {
+        return switch (facet) {
+            case GENRE -> genreNames.getOrDefault(value, value);
+            case ARTIST -> artistNames.getOrDefault(value, value);
+            default -> value;
+        };
+    }
+
+    // Null when the album has no genre or artist
+    private String indexName(Map<String, String> names, UnaryOperator<String> normalizer, String name) {
+        if (name == null) {
+            return null;
+        }
+        String normalizedName = normalizer.apply(name);
+        names.put(normalizedName, name);
+        return normalizedName;
+    }
+
+    private int resolveLimit(Integer limit, int defaultLimit, int maxLimit, int minLimit, String name) {
+        if (limit == null) {
+            return defaultLimit;
+        }
+        if (limit < minLimit) {
+            throw new BadRequestException(String.format("The %s must be at least %d", name, minLimit));
+        }
+        return Math.min(limit, maxLimit);
+    }
+
+    private AlbumFacetIndex.Album createFacetAlbum(AlbumDTO albumDTO) {
+        return new AlbumFacetIndex.Album(
+                albumDTO.getId(),
+                indexName(genreNames, Genre::normalize, albumDTO.getGenre()),
+                parseReleaseYear(albumDTO.getReleaseDate()),
+                indexName(artistNames, Artist::normalize, albumDTO.getArtist()),
+                albumDTO.getStock() != null && albumDTO.getStock() > 0,
+                albumDTO.getVersion() != null ? albumDTO.getVersion() : 0
+        );
+    }
+
+    private AlbumFacetIndex.Album createFacetAlbum(AlbumSummaryDTO albumSummary) {
+        return new AlbumFacetIndex.Album(
+                albumSummary.getId(),
+                indexName(genreNames, Genre::normalize, albumSummary.getGenre()),
+                albumSummary.getReleaseDate() != null ? String.valueOf(albumSummary.getReleaseDate().toLocalDate().getYear()) : null,
+                indexName(artistNames, Artist::normalize, albumSummary.getArtist()),
+                albumSummary.getQuantityInStock() != null && albumSummary.getQuantityInStock() > 0,
+                albumSummary.getVersion() != null ? albumSummary.getVersion() : 0
+        );
+    }
+
+    // The album DTO has the release date as text, "null" when there is none
+    private String parseReleaseYear(String releaseDate) {
+        try {
+            return releaseDate != null ? String.valueOf(LocalDate.parse(releaseDate).getYear()) : null;
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
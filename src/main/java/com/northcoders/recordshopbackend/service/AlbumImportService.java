@@ -0,0 +1,21 @@
+package com.northcoders.recordshopbackend.service;
+
+import com.northcoders.recordshopbackend.dto.AlbumImportResultDTO;
+import com.northcoders.recordshopbackend.dto.AlbumImportSummaryDTO;
+import com.northcoders.recordshopbackend.dto.NewAlbumDTO;
+
+import java.io.InputStream;
+import java.util.List;
+
+public interface AlbumImportService {
+
+    enum Format {
+        // A JSON array of albums or newline delimited JSON
+        JSON,
+        CSV
+    }
+
+    List<AlbumImportResultDTO> importAlbums(List<NewAlbumDTO> newAlbumDTOs);
+
+    AlbumImportSummaryDTO importAlbums(InputStream inputStream, Format format);
+}
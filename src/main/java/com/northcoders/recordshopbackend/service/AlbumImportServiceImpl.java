@@ -0,0 +1,304 @@
+package com.northcoders.recordshopbackend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.northcoders.recordshopbackend.dto.AlbumImportResultDTO;
+import com.northcoders.recordshopbackend.dto.AlbumImportSummaryDTO;
+import com.northcoders.recordshopbackend.dto.NewAlbumDTO;
+import com.northcoders.recordshopbackend.event.AlbumsSavedEvent;
+import com.northcoders.recordshopbackend.model.Album;
+import com.northcoders.recordshopbackend.model.Artist;
+import com.northcoders.recordshopbackend.model.Genre;
+import com.northcoders.recordshopbackend.model.Stock;
+import com.northcoders.recordshopbackend.repository.AlbumRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+// Bulk album ingestion. Albums are saved in chunks of chunk-size, each chunk resolving its artists
+// and genres up front and inserting the albums and their stock with JDBC batches in one transaction.
+@Slf4j
+@Service
+public class AlbumImportServiceImpl implements AlbumImportService, DTOMapper {
+
+    @Autowired
+    private AlbumRepository albumRepository;
+
+    @Autowired
+    private ArtistService artistService;
+
+    @Autowired
+    private GenreService genreService;
+
+    @Autowired
+    private CacheService<Boolean> missingAlbumCache;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${recordshop.import.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${recordshop.import.max-reported-errors:100}")
+    private int maxReportedErrors;
+
+    private final Executor chunkWriter = Executors.newVirtualThreadPerTaskExecutor();
+
+    private record ImportRecord(long index, NewAlbumDTO newAlbumDTO) {}
+
+    // Running totals of a streamed import, updated by both the reading and the writing thread
+    private static class ImportProgress {
+        private final int maxReportedErrors;
+        private final List<AlbumImportResultDTO> errors = new ArrayList<>();
+        private long created;
+        private long invalid;
+        private long failed;
+        private boolean errorsTruncated;
+
+        ImportProgress(int maxReportedErrors) {
+            this.maxReportedErrors = maxReportedErrors;
+        }
+
+        synchronized void add(AlbumImportResultDTO result) {
+            switch (result.getStatus()) {
+                case CREATED -> created++;
+                case INVALID -> invalid++;
+                case FAILED -> failed++;
+            }
+            if (result.getStatus() != AlbumImportResultDTO.Status.CREATED) {
+                if (errors.size() < maxReportedErrors) {
+                    errors.add(result);
+                } else {
+                    errorsTruncated = true;
+                }
+            }
+        }
+
+        synchronized void addAll(List<AlbumImportResultDTO> results) {
+            results.forEach(this::add);
+        }
+
+        synchronized AlbumImportSummaryDTO toSummary(long records, boolean completed) {
+            return AlbumImportSummaryDTO.builder()
+                    .records(records)
+                    .created(created)
+                    .invalid(invalid)
+                    .failed(failed)
+                    .completed(completed)
+                    .errors(List.copyOf(errors))
+                    .errorsTruncated(errorsTruncated)
+                    .build();
+        }
+
+        @Override
+        public synchronized String toString() {
+            return created + " created, " + invalid + " invalid, " + failed + " failed";
+        }
+    }
+
+    @Override
+    public List<AlbumImportResultDTO> importAlbums(List<NewAlbumDTO> newAlbumDTOs) {
+        AlbumImportResultDTO[] results = new AlbumImportResultDTO[newAlbumDTOs.size()];
+        List<ImportRecord> validRecords = new ArrayList<>();
+
+        for (int index = 0; index < newAlbumDTOs.size(); index++) {
+            Map<String, String> errors = validate(newAlbumDTOs.get(index));
+            if (errors.isEmpty()) {
+                validRecords.add(new ImportRecord(index, newAlbumDTOs.get(index)));
+            } else {
+                results[index] = createResult(index, AlbumImportResultDTO.Status.INVALID, null, errors);
+            }
+        }
+
+        for (int start = 0; start < validRecords.size(); start += chunkSize) {
+            List<ImportRecord> chunk = validRecords.subList(start, Math.min(start + chunkSize, validRecords.size()));
+            importChunk(chunk).forEach(result -> results[(int) result.getIndex()] = result);
+        }
+        return Arrays.asList(results);
+    }
+
+    // Parsing and validation run on the calling thread while the previous chunk is written on
+    // another, with at most one chunk waiting, so memory use does not depend on the input size.
+    @Override
+    public AlbumImportSummaryDTO importAlbums(InputStream inputStream, Format format) {
+        ImportProgress progress = new ImportProgress(maxReportedErrors);
+        CompletableFuture<Void> pendingChunk = CompletableFuture.completedFuture(null);
+        List<ImportRecord> chunk = new ArrayList<>(chunkSize);
+        long index = 0;
+        boolean completed = true;
+
+        try (AlbumRecordReader reader = AlbumRecordReader.of(format, inputStream, objectMapper)) {
+            while (reader.hasNext()) {
+                long recordIndex = index;
+                try {
+                    NewAlbumDTO newAlbumDTO = reader.next();
+                    Map<String, String> errors = validate(newAlbumDTO);
+                    if (errors.isEmpty()) {
+                        chunk.add(new ImportRecord(recordIndex, newAlbumDTO));
+                    } else {
+                        progress.add(createResult(recordIndex, AlbumImportResultDTO.Status.INVALID, null, errors));
+                    }
+                } catch (AlbumRecordReader.InvalidRecordException e) {
+                    progress.add(createResult(recordIndex, AlbumImportResultDTO.Status.INVALID, null, e.getErrors()));
+                }
+
+                if (chunk.size() == chunkSize) {
+                    pendingChunk.join();
+                    List<ImportRecord> fullChunk = chunk;
+                    pendingChunk = CompletableFuture.runAsync(() -> {
+                        progress.addAll(importChunk(fullChunk));
+                        log.info("Album import progress: {}", progress);
+                    }, chunkWriter);
+                    chunk = new ArrayList<>(chunkSize);
+                }
+                index++;
+            }
+            pendingChunk.join();
+        } catch (IOException e) {
+            log.warn("Album import stopped after {} records, the input could not be read", index, e);
+            completed = false;
+            progress.add(createResult(index, AlbumImportResultDTO.Status.INVALID, null,
+                    Map.of("input", "The input could not be read past this record: " + e.getMessage())));
+            // The read error is in the summary, a failed chunk is still thrown
+            try {
+                pendingChunk.join();
+            } catch (RuntimeException chunkFailure) {
+                chunkFailure.addSuppressed(e);
+                throw chunkFailure;
+            }
+        } catch (RuntimeException | Error e) {
+            awaitChunk(pendingChunk, e);
+            throw e;
+        }
+
+        if (!chunk.isEmpty()) {
+            progress.addAll(importChunk(chunk));
+        }
+        log.info("Album import finished: {}", progress);
+        return progress.toSummary(index, completed);
+    }
+
+    // The chunk being written is finished before the import gives up, its failure is added to the one
+    // already thrown rather than hiding it
+    private static void awaitChunk(CompletableFuture<Void> pendingChunk, Throwable failure) {
+        try {
+            pendingChunk.join();
+        } catch (Throwable chunkFailure) {
+            // A failed join in the loop is thrown again by this one
+            if (chunkFailure != failure) {
+                failure.addSuppressed(chunkFailure);
+            }
+        }
+    }
+
+    // Saves one chunk in its own transaction, a failure only rolls back the albums in this chunk
+    private List<AlbumImportResultDTO> importChunk(List<ImportRecord> chunk) {
+        try {
+            Map<String, Artist> artists = artistService.getOrCreateAlbumArtists(
+                    chunk.stream().map(record -> record.newAlbumDTO().getArtist()).toList()
+            );
+            Map<String, Genre> genres = new HashMap<>();
+            for (ImportRecord record : chunk) {
+                String genre = record.newAlbumDTO().getGenre();
+                genres.computeIfAbsent(Genre.normalize(genre), normalizedName -> genreService.getOrCreateGenre(genre));
+            }
+
+            List<Long> albumIds = new TransactionTemplate(transactionManager).execute(status -> {
+                Instant now = Instant.now();
+                List<Album> albums = chunk.stream()
+                        .map(record -> createAlbum(record.newAlbumDTO(), artists, genres, now))
+                        .toList();
+                albumRepository.saveAll(albums);
+                entityManager.flush();
+                // One event per chunk, delivered once the chunk commits
+                eventPublisher.publishEvent(new AlbumsSavedEvent(createListOfAlbumDTOs(albums)));
+                // Keeps the persistence context from growing with every chunk
+                entityManager.clear();
+                return albums.stream().map(Album::getId).toList();
+            });
+
+            List<AlbumImportResultDTO> results = new ArrayList<>(chunk.size());
+            for (int i = 0; i < chunk.size(); i++) {
+                Long albumId = albumIds.get(i);
+                missingAlbumCache.remove(albumId);
+                results.add(createResult(chunk.get(i).index(), AlbumImportResultDTO.Status.CREATED, albumId, null));
+            }
+            return results;
+        } catch (DataAccessException | TransactionException e) {
+            log.warn("Album import chunk of {} albums failed", chunk.size(), e);
+            Map<String, String> errors = Map.of("album", "The album could not be saved, the chunk it was in was rolled back");
+            return chunk.stream()
+                    .map(record -> createResult(record.index(), AlbumImportResultDTO.Status.FAILED, null, errors))
+                    .toList();
+        }
+    }
+
+    private Album createAlbum(NewAlbumDTO newAlbumDTO, Map<String, Artist> artists, Map<String, Genre> genres, Instant now) {
+        return Album.builder()
+                .title(newAlbumDTO.getTitle())
+                .artist(artists.get(Artist.normalize(newAlbumDTO.getArtist())))
+                .genre(genres.get(Genre.normalize(newAlbumDTO.getGenre())))
+                .releaseDate(newAlbumDTO.getReleaseDate())
+                .stock(Stock.builder().quantityInStock(newAlbumDTO.getStock()).build())
+                .price(newAlbumDTO.getPrice())
+                .artworkUrl(newAlbumDTO.getArtworkUrl())
+                .dateCreated(now)
+                .dateModified(now)
+                .build();
+    }
+
+    private Map<String, String> validate(NewAlbumDTO newAlbumDTO) {
+        Map<String, String> errors = new HashMap<>();
+        if (newAlbumDTO == null) {
+            errors.put("album", "An album is mandatory");
+            return errors;
+        }
+        for (ConstraintViolation<NewAlbumDTO> violation : validator.validate(newAlbumDTO)) {
+            errors.put(violation.getPropertyPath().toString(), violation.getMessage());
+        }
+        return errors;
+    }
+
+    private AlbumImportResultDTO createResult(
+            long index,
+            AlbumImportResultDTO.Status status,
+            Long albumId,
+            Map<String, String> errors
+    ) {
+        return AlbumImportResultDTO.builder()
+                .index(index)
+                .status(status)
+                .albumId(albumId)
+                .errors(errors)
+                .build();
+    }
+}
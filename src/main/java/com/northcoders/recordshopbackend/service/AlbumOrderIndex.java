@@ -0,0 +1,203 @@
+package com.northcoders.recordshopbackend.service;
+
+import com.northcoders.recordshopbackend.service.AlbumOrderService.SortKey;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+// Albums in sort key order. Each key has a skip list of (value, album id) entries, so a page starts at
+// the bound of the range or just after the cursor's entry and reads only the albums on the page, in
+// either direction. Nothing is sorted on a request. Albums with no value for a key are kept in a set of ids
+// of their own and listed after the others in either direction, by id in the same direction.
+//
+// Reads are lock free. A page can miss an album whose value is changing at the same time, as it would
+// had the album changed between two pages. Writes must be serialized by the caller.
+final class AlbumOrderIndex {
+
+    record Album(long albumId, Double price, Double releaseDay, long version) {
+
+        Double valueOf(SortKey sortKey) {
+            return switch (sortKey) {
+                case PRICE -> price;
+                case RELEASE_DATE -> releaseDay;
+            };
+        }
+    }
+
+    private record Entry(double value, long albumId) implements Comparable<Entry> {
+
+        @Override
+        public int compareTo(Entry other) {
+            int byValue = Double.compare(value, other.value);
+            return byValue != 0 ? byValue : Long.compare(albumId, other.albumId);
+        }
+    }
+
+    private final Map<Long, Album> albums = new ConcurrentHashMap<>();
+    private final Map<SortKey, NavigableSet<Entry>> entries = new EnumMap<>(SortKey.class);
+    private final Map<SortKey, NavigableSet<Long>> idsWithoutValue = new EnumMap<>(SortKey.class);
+    // Ids are never reused, a save delivered after the album's delete must not add it back
+    private final Set<Long> deletedAlbumIds = new HashSet<>();
+
+    private AlbumOrderIndex() {
+        for (SortKey sortKey : SortKey.values()) {
+            entries.put(sortKey, new ConcurrentSkipListSet<>());
+            idsWithoutValue.put(sortKey, new ConcurrentSkipListSet<>());
+        }
+    }
+
+    // Entries are sorted before they go in, a skip list takes them much faster in order
+    static AlbumOrderIndex build(Collection<Album> albums) {
+        AlbumOrderIndex index = new AlbumOrderIndex();
+        for (SortKey sortKey : SortKey.values()) {
+            List<Entry> sorted = new ArrayList<>(albums.size());
+            List<Long> withoutValue = new ArrayList<>();
+            for (Album album : albums) {
+                Double value = album.valueOf(sortKey);
+                if (value != null) {
+                    sorted.add(new Entry(value, album.albumId()));
+                } else {
+                    withoutValue.add(album.albumId());
+                }
+            }
+            Collections.sort(sorted);
+            Collections.sort(withoutValue);
+            index.entries.get(sortKey).addAll(sorted);
+            index.idsWithoutValue.get(sortKey).addAll(withoutValue);
+        }
+        albums.forEach(album -> index.albums.put(album.albumId(), album));
+        return index;
+    }
+
+    int size() {
+        return albums.size();
+    }
+
+    // Min and max are inclusive and may be null, the page continues after the album at afterValue and
+    // afterId when afterId is not null. Without a range the albums with no value follow, a null afterValue
+    // continues among them.
+    List<Long> page(
+            SortKey sortKey,
+            boolean ascending,
+            Double min,
+            Double max,
+            Double afterValue,
+            Long afterId,
+            int limit
+    ) {
+        boolean afterWithoutValue = afterId != null && afterValue == null;
+        List<Long> albumIds = new ArrayList<>(Math.min(limit, 1024));
+        if (!afterWithoutValue) {
+            addWithValue(albumIds, sortKey, ascending, min, max, afterValue, afterId, limit);
+        }
+        if (min == null && max == null && albumIds.size() < limit) {
+            NavigableSet<Long> withoutValue = idsWithoutValue.get(sortKey);
+            NavigableSet<Long> view;
+            if (afterWithoutValue) {
+                view = ascending ? withoutValue.tailSet(afterId, false) : withoutValue.headSet(afterId, false).descendingSet();
+            } else {
+                view = ascending ? withoutValue : withoutValue.descendingSet();
+            }
+            for (Long albumId : view) {
+                if (albumIds.size() == limit) {
+                    break;
+                }
+                albumIds.add(albumId);
+            }
+        }
+        return albumIds;
+    }
+
+    private void addWithValue(
+            List<Long> albumIds,
+            SortKey sortKey,
+            boolean ascending,
+            Double min,
+            Double max,
+            Double afterValue,
+            Long afterId,
+            int limit
+    ) {
+        NavigableSet<Entry> sorted = entries.get(sortKey);
+        Entry after = afterId != null ? new Entry(afterValue, afterId) : null;
+        NavigableSet<Entry> view;
+        if (ascending) {
+            Entry from = min != null ? new Entry(min, Long.MIN_VALUE) : null;
+            if (after != null && (from == null || after.compareTo(from) >= 0)) {
+                view = sorted.tailSet(after, false);
+            } else {
+                view = from != null ? sorted.tailSet(from, true) : sorted;
+            }
+        } else {
+            Entry from = max != null ? new Entry(max, Long.MAX_VALUE) : null;
+            if (after != null && (from == null || after.compareTo(from) <= 0)) {
+                view = sorted.headSet(after, false).descendingSet();
+            } else {
+                view = (from != null ? sorted.headSet(from, true) : sorted).descendingSet();
+            }
+        }
+
+        for (Entry entry : view) {
+            boolean pastRange = ascending
+                    ? max != null && entry.value() > max
+                    : min != null && entry.value() < min;
+            if (albumIds.size() == limit || pastRange) {
+                break;
+            }
+            albumIds.add(entry.albumId());
+        }
+    }
+
+    // Saves replace the album's values, an older version of an album than the indexed one or a deleted
+    // album is ignored
+    void update(Collection<Album> saved, Collection<Long> deletedIds) {
+        for (Album album : saved) {
+            if (deletedAlbumIds.contains(album.albumId())) {
+                continue;
+            }
+            Album current = albums.get(album.albumId());
+            if (current != null && current.version() > album.version()) {
+                continue;
+            }
+            albums.put(album.albumId(), album);
+            for (SortKey sortKey : SortKey.values()) {
+                move(sortKey, album.albumId(), current, album);
+            }
+        }
+        for (Long deletedId : deletedIds) {
+            deletedAlbumIds.add(deletedId);
+            Album current = albums.remove(deletedId);
+            if (current != null) {
+                for (SortKey sortKey : SortKey.values()) {
+                    move(sortKey, deletedId, current, null);
+                }
+            }
+        }
+    }
+
+    // Current is null for a new album and saved is null for a deleted one
+    private void move(SortKey sortKey, long albumId, Album current, Album saved) {
+        Double currentValue = current != null ? current.valueOf(sortKey) : null;
+        Double savedValue = saved != null ? saved.valueOf(sortKey) : null;
+        if (current != null && saved != null && Objects.equals(currentValue, savedValue)) {
+            return;
+        }
+        NavigableSet<Entry> sorted = entries.get(sortKey);
+        NavigableSet<Long> withoutValue = idsWithoutValue.get(sortKey);
+        if (current != null) {
+            if (currentValue != null) {
+                sorted.remove(new Entry(currentValue, albumId));
+            } else {
+                withoutValue.remove(albumId);
+            }
+        }
+        if (saved != null) {
+            if (savedValue != null) {
+                sorted.add(new Entry(savedValue, albumId));
+            } else {
+                withoutValue.add(albumId);
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.northcoders.recordshopbackend.service;
+
+import org.springframework.data.domain.Sort;
+
+import java.util.List;
+
+public interface AlbumOrderService {
+
+    // The orders of the album listing besides id. Release dates are compared as days since 1970-01-01.
+    enum SortKey {
+        PRICE("price"),
+        RELEASE_DATE("releaseDate");
+
+        private final String property;
+
+        SortKey(String property) {
+            this.property = property;
+        }
+
+        // The Album property, also the value of the listing's sort query parameter
+        public String property() {
+            return property;
+        }
+    }
+
+    // The ids of up to limit albums with a value for the key between min and max, either of which may be
+    // null, in key then id order from after the given album when afterId is not null. Without a range the
+    // albums with no value for the key follow by id in the same direction, a null afterValue continues among them. Null
+    // while the index is being built, the listing reads the database instead.
+    List<Long> findAlbumIds(
+            SortKey sortKey,
+            Sort.Direction direction,
+            Double min,
+            Double max,
+            Double afterValue,
+            Long afterId,
+            int limit
+    );
+}
@@ -0,0 +1,124 @@
+package com.northcoders.recordshopbackend.service;
+
+import com.northcoders.recordshopbackend.dto.AlbumDTO;
+import com.northcoders.recordshopbackend.dto.AlbumSummaryDTO;
+import com.northcoders.recordshopbackend.event.AlbumDeletedEvent;
+import com.northcoders.recordshopbackend.event.AlbumsSavedEvent;
+import com.northcoders.recordshopbackend.repository.AlbumRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+// Price and release date order served from an in-memory AlbumOrderIndex. The index is built from the
+// database once the application is ready and then kept up to date from the album saved and deleted
+// events, each applied once its transaction has committed.
+@Slf4j
+@Service
+public class AlbumOrderServiceImpl implements AlbumOrderService {
+
+    @Autowired
+    private AlbumRepository albumRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private CatalogVersionService catalogVersionService;
+
+    // No index until the first build, so the listing does not return empty pages while it runs
+    private final IndexChanges<AlbumOrderIndex> indexChanges = new IndexChanges<>(null);
+
+    @Override
+    public List<Long> findAlbumIds(
+            SortKey sortKey,
+            Sort.Direction direction,
+            Double min,
+            Double max,
+            Double afterValue,
+            Long afterId,
+            int limit
+    ) {
+        AlbumOrderIndex index = indexChanges.index();
+        if (index == null) {
+            return null;
+        }
+        if (min != null && max != null && min > max) {
+            return List.of();
+        }
+        return index.page(sortKey, direction.isAscending(), min, max, afterValue, afterId, limit);
+    }
+
+    // Reads every album's price and release date in one streamed query and builds the skip lists.
+    // Changes committed while the database is being read are replayed on the new index.
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildIndex() {
+        indexChanges.startBuild();
+
+        long start = System.nanoTime();
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        List<AlbumOrderIndex.Album> albums = readOnly.execute(status -> {
+            try (var albumSummaries = albumRepository.streamAlbumSummaries()) {
+                return albumSummaries.map(this::createOrderAlbum).toList();
+            }
+        });
+        AlbumOrderIndex builtIndex = AlbumOrderIndex.build(albums);
+
+        indexChanges.finishBuild(builtIndex);
+        log.info("Album order index built with {} albums in {} ms",
+                builtIndex.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // The listing pages are read from the index, so the catalog version changes again once it is updated.
+    // A page read between the catalog's own listener and this one goes out under a version that is
+    // replaced straight after, rather than staying under the one that should have had the change.
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAlbumsSaved(AlbumsSavedEvent event) {
+        List<AlbumOrderIndex.Album> albums = event.albums().stream().map(this::createOrderAlbum).toList();
+        indexChanges.apply(index -> index.update(albums, List.of()));
+        catalogVersionService.catalogChanged();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAlbumDeleted(AlbumDeletedEvent event) {
+        indexChanges.apply(index -> index.update(List.of(), List.of(event.albumId())));
+        catalogVersionService.catalogChanged();
+    }
+
+    private AlbumOrderIndex.Album createOrderAlbum(AlbumDTO albumDTO) {
+        return new AlbumOrderIndex.Album(
+                albumDTO.getId(),
+                albumDTO.getPrice(),
+                parseReleaseDay(albumDTO.getReleaseDate()),
+                albumDTO.getVersion() != null ? albumDTO.getVersion() : 0
+        );
+    }
+
+    private AlbumOrderIndex.Album createOrderAlbum(AlbumSummaryDTO albumSummary) {
+        return new AlbumOrderIndex.Album(
+                albumSummary.getId(),
+                albumSummary.getPrice(),
+                albumSummary.getReleaseDate() != null ? (double) albumSummary.getReleaseDate().toLocalDate().toEpochDay() : null,
+                albumSummary.getVersion() != null ? albumSummary.getVersion() : 0
+        );
+    }
+
+    // The album DTO has the release date as text, "null" when there is none
+    private Double parseReleaseDay(String releaseDate) {
+        try {
+            return releaseDate != null ? (double) LocalDate.parse(releaseDate).toEpochDay() : null;
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.northcoders.recordshopbackend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.northcoders.recordshopbackend.exception.BadRequestException;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+// The fields an album update asks to change, with their new values. A field that is not in the
+// patch is left alone, a field mapped to null is cleared.
+final class AlbumPatch {
+
+    enum Field {
+        TITLE("title"),
+        ARTIST("artist"),
+        GENRE("genre"),
+        RELEASE_DATE("releaseDate"),
+        STOCK("stock"),
+        PRICE("price"),
+        ARTWORK_URL("artworkUrl");
+
+        private final String jsonName;
+
+        Field(String jsonName) {
+            this.jsonName = jsonName;
+        }
+    }
+
+    private static final Map<String, Field> FIELDS_BY_JSON_NAME = new HashMap<>();
+
+    static {
+        for (Field field : Field.values()) {
+            FIELDS_BY_JSON_NAME.put(field.jsonName, field);
+        }
+    }
+
+    private final EnumMap<Field, Object> values = new EnumMap<>(Field.class);
+
+    private AlbumPatch() {
+    }
+
+    boolean has(Field field) {
+        return values.containsKey(field);
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> T get(Field field) {
+        return (T) values.get(field);
+    }
+
+    // JSON Merge Patch (RFC 7386): only the members present change, and null clears a field.
+    // Fields an album cannot be without reject null rather than being cleared.
+    static AlbumPatch fromMergePatch(JsonNode mergePatch) {
+        if (mergePatch == null || !mergePatch.isObject()) {
+            throw new BadRequestException("An album patch must be a JSON object");
+        }
+
+        AlbumPatch patch = new AlbumPatch();
+        Map<String, String> errors = new TreeMap<>();
+        mergePatch.fields().forEachRemaining(member -> {
+            Field field = FIELDS_BY_JSON_NAME.get(member.getKey());
+            if (field == null) {
+                errors.put(member.getKey(), "Unknown album field");
+                return;
+            }
+            JsonNode value = member.getValue();
+            switch (field) {
+                case TITLE, ARTIST, GENRE -> {
+                    if (!value.isTextual() || value.textValue().isBlank()) {
+                        errors.put(field.jsonName, "Must be text that is not blank");
+                    } else {
+                        patch.values.put(field, value.textValue().trim());
+                    }
+                }
+                case RELEASE_DATE -> {
+                    if (value.isNull()) {
+                        patch.values.put(field, null);
+                    } else {
+                        try {
+                            patch.values.put(field, Date.valueOf(LocalDate.parse(value.asText())));
+                        } catch (DateTimeParseException e) {
+                            errors.put(field.jsonName, "Must be a date in the format YYYY-MM-DD");
+                        }
+                    }
+                }
+                case STOCK -> {
+                    if (!value.isIntegralNumber() || !value.canConvertToInt() || value.intValue() < 0) {
+                        errors.put(field.jsonName, "A stock quantity must be a whole number that is not negative");
+                    } else {
+                        patch.values.put(field, value.intValue());
+                    }
+                }
+                case PRICE -> {
+                    if (value.isNull()) {
+                        patch.values.put(field, null);
+                    } else if (!value.isNumber() || value.doubleValue() < 0) {
+                        errors.put(field.jsonName, "A price must be a number that is not negative");
+                    } else {
+                        patch.values.put(field, value.doubleValue());
+                    }
+                }
+                case ARTWORK_URL -> {
+                    if (value.isNull()) {
+                        patch.values.put(field, null);
+                    } else if (!value.isTextual()) {
+                        errors.put(field.jsonName, "Must be text");
+                    } else {
+                        patch.values.put(field, value.textValue());
+                    }
+                }
+            }
+        });
+
+        if (!errors.isEmpty()) {
+            throw new BadRequestException("Invalid album patch: " + errors);
+        }
+        return patch;
+    }
+}
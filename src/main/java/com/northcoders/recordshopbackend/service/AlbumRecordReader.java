@@ -0,0 +1,207 @@
+package com.northcoders.recordshopbackend.service;
+
+import com.fasterxml.jackson.databind.DatabindException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.northcoders.recordshopbackend.dto.NewAlbumDTO;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.util.*;
+import java.util.function.Function;
+
+// Reads albums one record at a time so an import never holds more than the current record in memory.
+// A record that cannot be bound throws an InvalidRecordException and the reader moves on to the next
+// one; an IOException means the input itself is unreadable and the import has to stop.
+abstract class AlbumRecordReader implements Closeable {
+
+    static AlbumRecordReader of(AlbumImportService.Format format, InputStream inputStream, ObjectMapper objectMapper)
+            throws IOException {
+        return switch (format) {
+            case JSON -> new Json(objectMapper, inputStream);
+            case CSV -> new Csv(inputStream);
+        };
+    }
+
+    abstract boolean hasNext() throws IOException;
+
+    abstract NewAlbumDTO next() throws IOException;
+
+    static class InvalidRecordException extends RuntimeException {
+        private final Map<String, String> errors;
+
+        InvalidRecordException(Map<String, String> errors) {
+            super(errors.toString());
+            this.errors = errors;
+        }
+
+        Map<String, String> getErrors() {
+            return errors;
+        }
+    }
+
+    // A JSON array of albums or newline delimited JSON, one album per line
+    static class Json extends AlbumRecordReader {
+        private final MappingIterator<NewAlbumDTO> albums;
+
+        Json(ObjectMapper objectMapper, InputStream inputStream) throws IOException {
+            this.albums = objectMapper.readerFor(NewAlbumDTO.class).readValues(inputStream);
+        }
+
+        @Override
+        boolean hasNext() throws IOException {
+            return albums.hasNextValue();
+        }
+
+        @Override
+        NewAlbumDTO next() throws IOException {
+            try {
+                return albums.nextValue();
+            } catch (DatabindException e) {
+                // The iterator skips the rest of the bad record on the next call
+                throw new InvalidRecordException(Map.of(fieldOf(e), e.getOriginalMessage()));
+            }
+        }
+
+        private static String fieldOf(DatabindException e) {
+            if (e instanceof JsonMappingException mappingException && !mappingException.getPath().isEmpty()) {
+                String fieldName = mappingException.getPath().getLast().getFieldName();
+                if (fieldName != null) {
+                    return fieldName;
+                }
+            }
+            return "album";
+        }
+
+        @Override
+        public void close() throws IOException {
+            albums.close();
+        }
+    }
+
+    // CSV with a header row naming the NewAlbumDTO fields, in any order. Quoted fields may contain
+    // commas and doubled quotes but not line breaks.
+    static class Csv extends AlbumRecordReader {
+        private final BufferedReader reader;
+        private final Map<String, Integer> columns = new HashMap<>();
+        private String nextLine;
+
+        Csv(InputStream inputStream) throws IOException {
+            this.reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+            String header = reader.readLine();
+            if (header == null) {
+                return;
+            }
+            if (header.startsWith("\uFEFF")) {
+                header = header.substring(1);
+            }
+            List<String> names = parseLine(header);
+            for (int i = 0; i < names.size(); i++) {
+                columns.put(names.get(i).trim(), i);
+            }
+            if (!columns.containsKey("title")) {
+                throw new IOException("The CSV header row must name the album fields, found: " + header);
+            }
+        }
+
+        @Override
+        boolean hasNext() throws IOException {
+            while (nextLine == null) {
+                String line = reader.readLine();
+                if (line == null) {
+                    return false;
+                }
+                if (!line.isBlank()) {
+                    nextLine = line;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        NewAlbumDTO next() throws IOException {
+            if (!hasNext()) {
+                throw new EOFException("No more albums to read");
+            }
+            List<String> fields = parseLine(nextLine);
+            nextLine = null;
+
+            Map<String, String> errors = new HashMap<>();
+            NewAlbumDTO newAlbumDTO = NewAlbumDTO.builder()
+                    .title(field(fields, "title"))
+                    .artist(field(fields, "artist"))
+                    .genre(field(fields, "genre"))
+                    .releaseDate(parse(fields, "releaseDate", Date::valueOf, "must be a date (yyyy-mm-dd)", errors))
+                    .stock(parse(fields, "stock", Integer::valueOf, "must be a whole number", errors))
+                    .price(parse(fields, "price", Double::valueOf, "must be a number", errors))
+                    .artworkUrl(field(fields, "artworkUrl"))
+                    .build();
+            if (!errors.isEmpty()) {
+                throw new InvalidRecordException(errors);
+            }
+            return newAlbumDTO;
+        }
+
+        private String field(List<String> fields, String name) {
+            Integer column = columns.get(name);
+            if (column == null || column >= fields.size() || fields.get(column).isEmpty()) {
+                return null;
+            }
+            return fields.get(column);
+        }
+
+        private <T> T parse(
+                List<String> fields,
+                String name,
+                Function<String, T> parser,
+                String message,
+                Map<String, String> errors
+        ) {
+            String value = field(fields, name);
+            if (value == null) {
+                return null;
+            }
+            try {
+                return parser.apply(value.trim());
+            } catch (IllegalArgumentException e) {
+                errors.put(name, message);
+                return null;
+            }
+        }
+
+        private static List<String> parseLine(String line) {
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (quoted) {
+                    if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else if (c == '"') {
+                        quoted = false;
+                    } else {
+                        field.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,564 @@
+package com.northcoders.recordshopbackend.service;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+// Inverted index over album titles, artists and genres. Each term maps to a postings list of the ids
+// of the albums containing it, split by the best field the term is in: albums with the term in the
+// title first, then in the artist, then only in the genre, each part sorted by id. A search reads
+// the parts in score order and stops once no later album can make the results. A trigram index over
+// the terms finds the candidates for typo-tolerant matches.
+//
+// Reads are lock free. Postings lists are immutable and replaced whole, so a search sees each term
+// either before or after a change. Writes must be serialized by the caller.
+final class AlbumSearchIndex {
+
+    record Document(long albumId, String title, String artist, String genre, long version) {
+
+        // The terms of the album with the best field each appears in
+        Map<String, Field> terms() {
+            Map<String, Field> terms = new HashMap<>();
+            for (Field field : Field.values()) {
+                for (String term : tokenize(field.valueOf(this))) {
+                    terms.putIfAbsent(term, field);
+                }
+            }
+            return terms;
+        }
+    }
+
+    record Hit(Document document, double score) {}
+
+    // In order of weight, a term in several fields counts for the first of them
+    enum Field {
+        TITLE(3.0),
+        ARTIST(2.0),
+        GENRE(1.0);
+
+        private static final Field[] FIELDS = values();
+
+        private final double weight;
+
+        Field(double weight) {
+            this.weight = weight;
+        }
+
+        private String valueOf(Document document) {
+            return switch (this) {
+                case TITLE -> document.title();
+                case ARTIST -> document.artist();
+                case GENRE -> document.genre();
+            };
+        }
+    }
+
+    // fieldEnds[f] is where the albums whose best field is f end, they start where the previous field's end
+    private record Postings(long[] albumIds, int[] fieldEnds) {
+        private static final Postings EMPTY = new Postings(new long[0], new int[Field.FIELDS.length]);
+
+        private int fieldStart(Field field) {
+            return field.ordinal() == 0 ? 0 : fieldEnds[field.ordinal() - 1];
+        }
+
+        private int fieldEnd(Field field) {
+            return fieldEnds[field.ordinal()];
+        }
+    }
+
+    private record Posting(String term, long albumId, Field field) {}
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern APOSTROPHES = Pattern.compile("['’]");
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final int MAX_QUERY_TERMS = 8;
+    // Most terms a prefix or a misspelling is expanded to, the ones in the most albums are kept
+    private static final int MAX_EXPANSIONS = 16;
+    // Most completions of a prefix looked at to pick those from
+    private static final int MAX_PREFIX_COMPLETIONS = 256;
+    private static final double PREFIX_MATCH = 0.8;
+    private static final double FUZZY_MATCH = 0.6;
+
+    private final ConcurrentHashMap<Long, Document> documents = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<String, Postings> postingsByTerm = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<String, String[]> termsByTrigram = new ConcurrentHashMap<>();
+    // Artist and genre names repeat across many albums, documents share one copy of each
+    private final ConcurrentHashMap<String, String> names = new ConcurrentHashMap<>();
+    // Ids are never reused, so a save delivered after the album's delete is ignored rather than
+    // adding the album back. Only read and written by update.
+    private final Set<Long> deletedAlbumIds = new HashSet<>();
+
+    // Lower case words with accents and apostrophes removed, "Beyoncé's" is "beyonces"
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        String folded = Normalizer.normalize(text, Normalizer.Form.NFD);
+        folded = DIACRITICS.matcher(folded).replaceAll("");
+        folded = APOSTROPHES.matcher(folded).replaceAll("").toLowerCase(Locale.ROOT);
+        List<String> tokens = new ArrayList<>();
+        for (String token : NON_WORD.split(folded)) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    // Builds the postings of every term in parallel, one pass over the documents
+    static AlbumSearchIndex build(Collection<Document> documents) {
+        AlbumSearchIndex index = new AlbumSearchIndex();
+        documents.parallelStream().forEach(document -> index.documents.put(document.albumId(), index.share(document)));
+
+        Map<String, List<Posting>> postingsByTerm = index.documents.values().parallelStream()
+                .flatMap(document -> document.terms().entrySet().stream()
+                        .map(term -> new Posting(term.getKey(), document.albumId(), term.getValue())))
+                .collect(Collectors.groupingByConcurrent(Posting::term));
+        postingsByTerm.entrySet().parallelStream().forEach(term -> {
+            List<Posting> postings = term.getValue();
+            postings.sort(Comparator.comparing(Posting::field).thenComparingLong(Posting::albumId));
+            long[] albumIds = new long[postings.size()];
+            int[] fieldEnds = new int[Field.FIELDS.length];
+            for (int i = 0; i < postings.size(); i++) {
+                albumIds[i] = postings.get(i).albumId();
+                fieldEnds[postings.get(i).field().ordinal()] = i + 1;
+            }
+            index.postingsByTerm.put(term.getKey(), new Postings(albumIds, fillFieldEnds(fieldEnds)));
+        });
+
+        index.termsByTrigram.putAll(index.postingsByTerm.keySet().parallelStream()
+                .flatMap(term -> trigrams(term).stream().map(trigram -> Map.entry(trigram, term)))
+                .collect(Collectors.groupingByConcurrent(Map.Entry::getKey, Collectors.collectingAndThen(
+                        Collectors.mapping(Map.Entry::getValue, Collectors.toList()),
+                        terms -> terms.toArray(String[]::new)
+                ))));
+        return index;
+    }
+
+    int size() {
+        return documents.size();
+    }
+
+    // Adds or replaces the given documents and removes the deleted ids. Each changed term has its
+    // postings rewritten once, however many of the documents contain it. A document older than the
+    // one already indexed or for a deleted album is skipped, saves can be delivered out of order.
+    void update(Collection<Document> saved, Collection<Long> deletedIds) {
+        Map<String, NavigableMap<Long, Field>> additions = new HashMap<>();
+        Map<String, Set<Long>> removals = new HashMap<>();
+
+        for (Long albumId : deletedIds) {
+            deletedAlbumIds.add(albumId);
+            Document removed = documents.remove(albumId);
+            if (removed != null) {
+                removed.terms().keySet().forEach(term -> removals.computeIfAbsent(term, t -> new HashSet<>()).add(albumId));
+            }
+        }
+        for (Document document : saved) {
+            if (deletedAlbumIds.contains(document.albumId())) {
+                continue;
+            }
+            Document previous = documents.get(document.albumId());
+            if (previous != null && previous.version() > document.version()) {
+                continue;
+            }
+            if (previous != null) {
+                // The previous version may have been added earlier in this same batch
+                for (String term : previous.terms().keySet()) {
+                    removals.computeIfAbsent(term, t -> new HashSet<>()).add(document.albumId());
+                    NavigableMap<Long, Field> added = additions.get(term);
+                    if (added != null) {
+                        added.remove(document.albumId());
+                    }
+                }
+            }
+            documents.put(document.albumId(), share(document));
+            document.terms().forEach((term, field) -> additions.computeIfAbsent(term, t -> new TreeMap<>()).put(document.albumId(), field));
+        }
+
+        Set<String> changedTerms = new HashSet<>(additions.keySet());
+        changedTerms.addAll(removals.keySet());
+        for (String term : changedTerms) {
+            Postings previous = postingsByTerm.get(term);
+            Postings postings = rewrite(
+                    previous != null ? previous : Postings.EMPTY,
+                    removals.getOrDefault(term, Set.of()),
+                    additions.getOrDefault(term, Collections.emptyNavigableMap())
+            );
+            if (postings.albumIds().length > 0) {
+                postingsByTerm.put(term, postings);
+                if (previous == null) {
+                    trigrams(term).forEach(trigram -> termsByTrigram.merge(trigram, new String[]{term}, AlbumSearchIndex::concat));
+                }
+            } else if (previous != null) {
+                postingsByTerm.remove(term);
+                trigrams(term).forEach(trigram -> termsByTrigram.computeIfPresent(trigram, (key, terms) -> without(terms, term)));
+            }
+        }
+    }
+
+    // Every query term must match. The last term also matches as a prefix while it is being typed,
+    // and a term with no match at all is retried allowing typos. Scores add up the inverse document
+    // frequency of each matched term, weighted by the field it matched in and how it matched.
+    //
+    // The term in the fewest albums drives the search. Its albums are read a field at a time from
+    // the highest weight down, and each is looked up in the other terms' postings. Reading stops once
+    // the results are full and no album left to read can score above the lowest of them.
+    List<Hit> search(String query, int limit) {
+        List<String> tokens = tokenize(query).stream().distinct().limit(MAX_QUERY_TERMS).toList();
+        if (tokens.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        boolean lastIsPrefix = !Character.isWhitespace(query.charAt(query.length() - 1));
+
+        List<TokenMatch> matches = new ArrayList<>(tokens.size());
+        for (int i = 0; i < tokens.size(); i++) {
+            TokenMatch match = match(tokens.get(i), lastIsPrefix && i == tokens.size() - 1);
+            if (match.size() == 0) {
+                return List.of();
+            }
+            matches.add(match);
+        }
+        matches.sort(Comparator.comparingLong(TokenMatch::size));
+        TokenMatch driver = matches.getFirst();
+        List<TokenMatch> others = matches.subList(1, matches.size());
+        double othersMaxScore = others.stream().mapToDouble(TokenMatch::maxWeight).sum();
+        TopAlbums best = new TopAlbums(limit);
+
+        for (Segment segment : driver.segments()) {
+            double segmentMaxScore = segment.weight() + othersMaxScore;
+            if (best.isFull() && best.lowestScore() >= segmentMaxScore) {
+                break;
+            }
+            others.forEach(TokenMatch::resetCursors);
+
+            candidates:
+            for (int i = segment.from(); i < segment.to(); i++) {
+                if (best.isFull() && best.lowestScore() >= segmentMaxScore) {
+                    break;
+                }
+                long albumId = segment.albumIds()[i];
+                double score = segment.weight();
+                for (TokenMatch other : others) {
+                    double weight = other.weightOf(albumId);
+                    if (weight == 0) {
+                        continue candidates;
+                    }
+                    score += weight;
+                }
+                best.offer(albumId, score);
+            }
+        }
+
+        List<Hit> hits = new ArrayList<>(limit);
+        for (ScoredAlbum scoredAlbum : best.sorted()) {
+            Document document = documents.get(scoredAlbum.albumId());
+            if (document != null) {
+                hits.add(new Hit(document, scoredAlbum.score()));
+            }
+        }
+        return hits;
+    }
+
+    private TokenMatch match(String token, boolean prefix) {
+        List<TokenMatch.Expansion> expansions = new ArrayList<>();
+        Postings exact = postingsByTerm.get(token);
+        if (exact != null) {
+            expansions.add(new TokenMatch.Expansion(exact, idf(exact)));
+        }
+        if (prefix) {
+            postingsByTerm.subMap(token, false, token + Character.MAX_VALUE, false).values().stream()
+                    .limit(MAX_PREFIX_COMPLETIONS)
+                    .sorted(Comparator.comparingInt((Postings postings) -> postings.albumIds().length).reversed())
+                    .limit(MAX_EXPANSIONS - expansions.size())
+                    .forEach(postings -> expansions.add(new TokenMatch.Expansion(postings, PREFIX_MATCH * idf(postings))));
+        }
+        if (expansions.isEmpty()) {
+            expansions.addAll(fuzzyExpansions(token));
+        }
+        return new TokenMatch(expansions);
+    }
+
+    // Terms within one edit of the token, two for long tokens. Candidates share enough trigrams with
+    // the token to be that close, and are then checked with the edit distance.
+    private List<TokenMatch.Expansion> fuzzyExpansions(String token) {
+        int maxEdits = token.length() >= 8 ? 2 : token.length() >= 4 ? 1 : 0;
+        if (maxEdits == 0) {
+            return List.of();
+        }
+        List<String> trigrams = trigrams(token);
+        int minimumShared = Math.max(1, trigrams.size() - 3 * maxEdits);
+        Map<String, Integer> sharedTrigrams = new HashMap<>();
+        for (String trigram : trigrams) {
+            for (String term : termsByTrigram.getOrDefault(trigram, new String[0])) {
+                if (Math.abs(term.length() - token.length()) <= maxEdits) {
+                    sharedTrigrams.merge(term, 1, Integer::sum);
+                }
+            }
+        }
+
+        record Candidate(int edits, Postings postings) {}
+        List<Candidate> candidates = new ArrayList<>();
+        sharedTrigrams.forEach((term, shared) -> {
+            if (shared < minimumShared) {
+                return;
+            }
+            int edits = editDistance(token, term, maxEdits);
+            Postings postings = postingsByTerm.get(term);
+            if (edits <= maxEdits && postings != null) {
+                candidates.add(new Candidate(edits, postings));
+            }
+        });
+        return candidates.stream()
+                .sorted(Comparator.comparingInt(Candidate::edits)
+                        .thenComparing(candidate -> -candidate.postings().albumIds().length))
+                .limit(MAX_EXPANSIONS)
+                .map(candidate -> new TokenMatch.Expansion(candidate.postings(),
+                        Math.pow(FUZZY_MATCH, candidate.edits()) * idf(candidate.postings())))
+                .toList();
+    }
+
+    private double idf(Postings postings) {
+        double documentCount = Math.max(documents.size(), postings.albumIds().length);
+        double documentFrequency = postings.albumIds().length;
+        return Math.log(1 + (documentCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+    }
+
+    private Document share(Document document) {
+        return new Document(
+                document.albumId(),
+                document.title(),
+                document.artist() != null ? names.computeIfAbsent(document.artist(), name -> name) : null,
+                document.genre() != null ? names.computeIfAbsent(document.genre(), name -> name) : null,
+                document.version()
+        );
+    }
+
+    // One field's part of a postings list, all its albums score the same weight for the term
+    private record Segment(long[] albumIds, int from, int to, double weight) {}
+
+    // The albums one query term matched, as the segments of every term it expanded to, highest
+    // weight first. An album in several segments scores the weight of the first.
+    private static final class TokenMatch {
+
+        private record Expansion(Postings postings, double weight) {}
+
+        private final List<Segment> segments = new ArrayList<>();
+        private final int[] cursors;
+        private final long size;
+
+        private TokenMatch(List<Expansion> expansions) {
+            long albums = 0;
+            for (Expansion expansion : expansions) {
+                Postings postings = expansion.postings();
+                for (Field field : Field.FIELDS) {
+                    if (postings.fieldStart(field) < postings.fieldEnd(field)) {
+                        segments.add(new Segment(postings.albumIds(), postings.fieldStart(field), postings.fieldEnd(field),
+                                expansion.weight() * field.weight));
+                    }
+                }
+                albums += postings.albumIds().length;
+            }
+            segments.sort(Comparator.comparingDouble(Segment::weight).reversed());
+            cursors = new int[segments.size()];
+            size = albums;
+        }
+
+        private List<Segment> segments() {
+            return segments;
+        }
+
+        private long size() {
+            return size;
+        }
+
+        private double maxWeight() {
+            return segments.isEmpty() ? 0 : segments.getFirst().weight();
+        }
+
+        private void resetCursors() {
+            for (int s = 0; s < segments.size(); s++) {
+                cursors[s] = segments.get(s).from();
+            }
+        }
+
+        // The weight of the album for this term, 0 when it does not match. Lookups must come in
+        // increasing album id order between resets, each segment's cursor only moves forward.
+        private double weightOf(long albumId) {
+            for (int s = 0; s < segments.size(); s++) {
+                Segment segment = segments.get(s);
+                int position = seek(segment, albumId, cursors[s]);
+                cursors[s] = position;
+                if (position < segment.to() && segment.albumIds()[position] == albumId) {
+                    return segment.weight();
+                }
+            }
+            return 0;
+        }
+
+        // The first position at or after from holding an id not below albumId, found by galloping
+        // then binary search so a long segment is skipped through rather than walked
+        private static int seek(Segment segment, long albumId, int from) {
+            long[] albumIds = segment.albumIds();
+            int bound = 1;
+            while (from + bound < segment.to() && albumIds[from + bound] < albumId) {
+                bound <<= 1;
+            }
+            int low = from + (bound >> 1);
+            int high = Math.min(from + bound, segment.to());
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (albumIds[middle] < albumId) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+
+    private record ScoredAlbum(long albumId, double score) {
+        // Highest score first, ties go to the lowest album id so results are stable
+        private static final Comparator<ScoredAlbum> BEST_FIRST = Comparator.comparingDouble(ScoredAlbum::score).reversed()
+                .thenComparingLong(ScoredAlbum::albumId);
+    }
+
+    // The best albums offered so far, at most limit of them
+    private static final class TopAlbums {
+        private final int limit;
+        private final PriorityQueue<ScoredAlbum> albums;
+
+        private TopAlbums(int limit) {
+            this.limit = limit;
+            this.albums = new PriorityQueue<>(limit + 1, ScoredAlbum.BEST_FIRST.reversed());
+        }
+
+        private boolean isFull() {
+            return albums.size() == limit;
+        }
+
+        private double lowestScore() {
+            return albums.peek().score();
+        }
+
+        // An album reached again through a lower weight segment of the same term is already here
+        private void offer(long albumId, double score) {
+            if (isFull() && score <= lowestScore()) {
+                return;
+            }
+            for (ScoredAlbum scoredAlbum : albums) {
+                if (scoredAlbum.albumId() == albumId) {
+                    return;
+                }
+            }
+            albums.add(new ScoredAlbum(albumId, score));
+            if (albums.size() > limit) {
+                albums.poll();
+            }
+        }
+
+        private List<ScoredAlbum> sorted() {
+            List<ScoredAlbum> sorted = new ArrayList<>(albums);
+            sorted.sort(ScoredAlbum.BEST_FIRST);
+            return sorted;
+        }
+    }
+
+    // Removes the deleted ids and merges in the additions, which replace any entry for the same
+    // album. Each field's part is rewritten separately, as an album can move between them.
+    private static Postings rewrite(Postings postings, Set<Long> removed, NavigableMap<Long, Field> added) {
+        long[] albumIds = new long[postings.albumIds().length + added.size()];
+        int[] fieldEnds = new int[Field.FIELDS.length];
+        int size = 0;
+
+        for (Field field : Field.FIELDS) {
+            Iterator<Map.Entry<Long, Field>> additions = added.entrySet().stream()
+                    .filter(addition -> addition.getValue() == field)
+                    .iterator();
+            Map.Entry<Long, Field> next = additions.hasNext() ? additions.next() : null;
+            for (int i = postings.fieldStart(field); i < postings.fieldEnd(field); i++) {
+                long albumId = postings.albumIds()[i];
+                while (next != null && next.getKey() < albumId) {
+                    albumIds[size++] = next.getKey();
+                    next = additions.hasNext() ? additions.next() : null;
+                }
+                if (!removed.contains(albumId) && !added.containsKey(albumId)) {
+                    albumIds[size++] = albumId;
+                }
+            }
+            while (next != null) {
+                albumIds[size++] = next.getKey();
+                next = additions.hasNext() ? additions.next() : null;
+            }
+            fieldEnds[field.ordinal()] = size;
+        }
+        return new Postings(Arrays.copyOf(albumIds, size), fieldEnds);
+    }
+
+    // A field with no albums ends where the one before it ends
+    private static int[] fillFieldEnds(int[] fieldEnds) {
+        for (int f = 1; f < fieldEnds.length; f++) {
+            fieldEnds[f] = Math.max(fieldEnds[f], fieldEnds[f - 1]);
+        }
+        return fieldEnds;
+    }
+
+    // Trigrams of the term padded at both ends, so "rock" is "^ro", "roc", "ock", "ck$"
+    private static List<String> trigrams(String term) {
+        String padded = "^" + term + "$";
+        List<String> trigrams = new ArrayList<>(padded.length() - 2);
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            trigrams.add(padded.substring(i, i + 3));
+        }
+        return trigrams;
+    }
+
+    // Optimal string alignment distance, a swap of two neighbouring letters is one edit. Stops early
+    // and returns maxEdits + 1 once every alignment needs more than maxEdits.
+    static int editDistance(String a, String b, int maxEdits) {
+        if (Math.abs(a.length() - b.length()) > maxEdits) {
+            return maxEdits + 1;
+        }
+        int[] previousPrevious = new int[b.length() + 1];
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMinimum = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    current[j] = Math.min(current[j], previousPrevious[j - 2] + 1);
+                }
+                rowMinimum = Math.min(rowMinimum, current[j]);
+            }
+            if (rowMinimum > maxEdits) {
+                return maxEdits + 1;
+            }
+            int[] recycled = previousPrevious;
+            previousPrevious = previous;
+            previous = current;
+            current = recycled;
+        }
+        return Math.min(previous[b.length()], maxEdits + 1);
+    }
+
+    private static String[] concat(String[] terms, String[] added) {
+        String[] combined = Arrays.copyOf(terms, terms.length + added.length);
+        System.arraycopy(added, 0, combined, terms.length, added.length);
+        return combined;
+    }
+
+    private static String[] without(String[] terms, String removed) {
+        String[] remaining = Arrays.stream(terms).filter(term -> !term.equals(removed)).toArray(String[]::new);
+        return remaining.length > 0 ? remaining : null;
+    }
+}
@@ -0,0 +1,11 @@
+package com.northcoders.recordshopbackend.service;
+
+import com.northcoders.recordshopbackend.dto.AlbumSearchResultDTO;
+
+import java.util.List;
+
+public interface AlbumSearchService {
+
+    // Albums whose title, artist or genre match every word of the query, best matches first
+    List<AlbumSearchResultDTO> searchAlbums(String query, Integer limit);
+}
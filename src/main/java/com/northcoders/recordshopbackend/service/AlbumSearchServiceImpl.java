@@ -0,0 +1,110 @@
+package com.northcoders.recordshopbackend.service;
+
+import com.northcoders.recordshopbackend.dto.AlbumDTO;
+import com.northcoders.recordshopbackend.dto.AlbumSearchResultDTO;
+import com.northcoders.recordshopbackend.dto.AlbumSummaryDTO;
+import com.northcoders.recordshopbackend.event.AlbumDeletedEvent;
+import com.northcoders.recordshopbackend.event.AlbumsSavedEvent;
+import com.northcoders.recordshopbackend.exception.BadRequestException;
+import com.northcoders.recordshopbackend.repository.AlbumRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+// Album search served from an in-memory inverted index, so a search never queries the albums table.
+// The index is built from the database once the application is ready and then kept up to date from
+// the album saved and deleted events, each applied once its transaction has committed.
+@Slf4j
+@Service
+public class AlbumSearchServiceImpl implements AlbumSearchService {
+
+    private static final int DEFAULT_LIMIT = 20;
+    private static final int MAX_LIMIT = 100;
+
+    @Autowired
+    private AlbumRepository albumRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final IndexChanges<AlbumSearchIndex> indexChanges = new IndexChanges<>(AlbumSearchIndex.build(List.of()));
+
+    @Override
+    public List<AlbumSearchResultDTO> searchAlbums(String query, Integer limit) {
+        if (query == null || query.isBlank()) {
+            throw new BadRequestException("A search query is mandatory");
+        }
+        if (limit != null && limit < 1) {
+            throw new BadRequestException("The search limit must be at least 1");
+        }
+        int resultLimit = limit == null ? DEFAULT_LIMIT : Math.min(limit, MAX_LIMIT);
+        return indexChanges.index().search(query, resultLimit).stream()
+                .map(hit -> AlbumSearchResultDTO.builder()
+                        .albumId(hit.document().albumId())
+                        .title(hit.document().title())
+                        .artist(hit.document().artist())
+                        .genre(hit.document().genre())
+                        .score(hit.score())
+                        .build())
+                .toList();
+    }
+
+    // Reads every album's text fields in one streamed query and builds the index in parallel.
+    // Changes committed while the database is being read are replayed on the new index.
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildIndex() {
+        indexChanges.startBuild();
+
+        long start = System.nanoTime();
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        List<AlbumSearchIndex.Document> documents = readOnly.execute(status -> {
+            try (var albumSummaries = albumRepository.streamAlbumSummaries()) {
+                return albumSummaries.map(this::createDocument).toList();
+            }
+        });
+        AlbumSearchIndex builtIndex = AlbumSearchIndex.build(documents);
+
+        indexChanges.finishBuild(builtIndex);
+        log.info("Album search index built with {} albums in {} ms",
+                builtIndex.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAlbumsSaved(AlbumsSavedEvent event) {
+        List<AlbumSearchIndex.Document> documents = event.albums().stream().map(this::createDocument).toList();
+        indexChanges.apply(index -> index.update(documents, List.of()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAlbumDeleted(AlbumDeletedEvent event) {
+        indexChanges.apply(index -> index.update(List.of(), List.of(event.albumId())));
+    }
+
+    private AlbumSearchIndex.Document createDocument(AlbumDTO albumDTO) {
+        return new AlbumSearchIndex.Document(
+                albumDTO.getId(),
+                albumDTO.getTitle(),
+                albumDTO.getArtist(),
+                albumDTO.getGenre(),
+                albumDTO.getVersion() != null ? albumDTO.getVersion() : 0
+        );
+    }
+
+    private AlbumSearchIndex.Document createDocument(AlbumSummaryDTO albumSummary) {
+        return new AlbumSearchIndex.Document(
+                albumSummary.getId(),
+                albumSummary.getTitle(),
+                albumSummary.getArtist(),
+                albumSummary.getGenre(),
+                albumSummary.getVersion() != null ? albumSummary.getVersion() : 0
+        );
+    }
+}
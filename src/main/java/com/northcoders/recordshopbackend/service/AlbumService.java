@@ -1,10 +1,14 @@
 package com.northcoders.recordshopbackend.service;
 
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.northcoders.recordshopbackend.dto.AlbumDTO;
+import com.northcoders.recordshopbackend.dto.AlbumPageDTO;
+import com.northcoders.recordshopbackend.dto.AlbumQueryDTO;
+import com.northcoders.recordshopbackend.dto.AlbumVersionDTO;
+import com.northcoders.recordshopbackend.dto.CheckoutResultDTO;
 import com.northcoders.recordshopbackend.dto.NewAlbumDTO;
 import com.northcoders.recordshopbackend.dto.StockDTO;
-import com.northcoders.recordshopbackend.dto.UpdateAlbumDTO;
 import com.northcoders.recordshopbackend.model.Album;
 
 import java.util.List;
@@ -12,12 +16,16 @@ import java.util.List;
 public interface AlbumService {
     List<AlbumDTO> getAllAlbums();
     List<AlbumDTO> getAllInStockAlbumDTOs();
+    AlbumPageDTO getAlbumPage(AlbumQueryDTO albumQuery);
     Album getAlbumById(Long albumId);
-    AlbumDTO updateAlbumById(Long albumId, UpdateAlbumDTO updateAlbumDTO);
+    AlbumDTO patchAlbumById(Long albumId, JsonNode mergePatch, Long expectedVersion);
+    AlbumVersionDTO getAlbumVersion(Long albumId);
     AlbumDTO returnAlbumDTOById(Long albumId);
     Album addNewAlbum(NewAlbumDTO newAlbumDTO);
     Album updateAlbumStockById(Long albumId, StockDTO stockDTO);
     String deleteAlbumById(Long albumId);
     String decreaseStockByAlbumId(Long albumId);
+    CheckoutResultDTO checkoutAlbum(Long albumId, int quantity);
+    AlbumDTO setAlbumHot(Long albumId, boolean hot);
     AlbumDTO postNewAlbum(NewAlbumDTO newAlbumDTO);
 }
\ No newline at end of file
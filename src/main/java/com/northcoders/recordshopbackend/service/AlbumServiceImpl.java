@@ -1,17 +1,36 @@
 package com.northcoders.recordshopbackend.service;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.northcoders.recordshopbackend.dto.*;
+import com.northcoders.recordshopbackend.event.AlbumDeletedEvent;
+import com.northcoders.recordshopbackend.event.AlbumStockChangedEvent;
+import com.northcoders.recordshopbackend.event.AlbumsSavedEvent;
+import com.northcoders.recordshopbackend.exception.BadRequestException;
 import com.northcoders.recordshopbackend.exception.ItemNotFoundException;
+import com.northcoders.recordshopbackend.exception.PreconditionFailedException;
 import com.northcoders.recordshopbackend.model.Album;
+import com.northcoders.recordshopbackend.model.Artist;
+import com.northcoders.recordshopbackend.model.Genre;
 import com.northcoders.recordshopbackend.model.Stock;
 import com.northcoders.recordshopbackend.repository.AlbumRepository;
+import com.northcoders.recordshopbackend.repository.AlbumSpecifications;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Sort;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
 import java.time.Instant;
-import java.util.List;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class AlbumServiceImpl implements AlbumService, DTOMapper{
@@ -31,126 +50,360 @@ public class AlbumServiceImpl implements AlbumService, DTOMapper{
     @Autowired
     private CacheService<Album> albumCacheService;
 
+    @Autowired
+    private CacheService<Boolean> missingAlbumCache;
+
+    @Autowired
+    private HotStockService hotStockService;
+
+    @Autowired
+    private AlbumOrderService albumOrderService;
+
+    @Autowired
+    private CatalogVersionService catalogVersionService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // Concurrent misses for the same album or list share a single repository query
+    private final SingleFlight<AlbumLoad, Album> albumLoads = new SingleFlight<>();
+    private final SingleFlight<String, List<AlbumDTO>> albumListLoads = new SingleFlight<>();
+    private final SingleFlight<PageLoad, AlbumPageDTO> albumPageLoads = new SingleFlight<>();
+
+    // A page request only joins a load started in the same catalog version, a load that started before
+    // a write could otherwise be sent under the ETag of the version after it
+    private record PageLoad(long catalogVersion, AlbumQueryDTO albumQuery) {}
+
+    // Likewise an album read only joins a load started since the album was last evicted
+    private record AlbumLoad(Long albumId, long generation) {}
+
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 500;
+
     @Override
     public List<AlbumDTO> getAllAlbums() {
-        return albumRepository.findAll(Sort.by(Sort.Direction.ASC,"id")).stream().map(this::createAlbumDTO).toList();
+        return albumListLoads.load("all", () ->
+                albumRepository.findAll(Sort.by(Sort.Direction.ASC,"id")).stream().map(this::createAlbumDTO).toList()
+        );
     }
 
     @Override
     public List<AlbumDTO> getAllInStockAlbumDTOs() {
-        return getAllAlbums()
-                .stream()
-                .filter(albumDTO -> albumDTO.getStock() > 0)
-                .toList();
+        return albumListLoads.load("in-stock", () ->
+                albumRepository.findAllByStockQuantityInStockGreaterThan(0, Sort.by(Sort.Direction.ASC, "id"))
+                        .stream()
+                        .map(this::createAlbumDTO)
+                        .toList()
+        );
     }
 
     @Override
-    public Album getAlbumById(Long albumId) {
+    public AlbumPageDTO getAlbumPage(AlbumQueryDTO albumQuery) {
+        return albumPageLoads.load(new PageLoad(catalogVersionService.getCatalogVersion().version(), albumQuery), () -> {
+            int pageSize = resolvePageSize(albumQuery.getSize());
+            Sort.Direction direction = resolveDirection(albumQuery.getDirection());
+            AlbumOrderService.SortKey sortKey = resolveSortKey(albumQuery.getSort());
+            PageCursor cursor = decodeCursor(albumQuery.getCursor(), sortKey);
+
+            // Fetches one extra row to find out if there is a next page without a count query
+            List<Album> albums = sortKey != null ? findIndexedAlbumPage(albumQuery, sortKey, direction, cursor, pageSize + 1) : null;
+            if (albums == null) {
+                Specification<Album> specification = Specification
+                        .where(sortKey == null
+                                ? AlbumSpecifications.idAfter(cursor.lastId(), direction)
+                                : sortedAfter(sortKey, cursor, direction)
+                                        .and(AlbumSpecifications.orderedNullsLast(sortKey.property(), direction)))
+                        .and(AlbumSpecifications.hasGenre(albumQuery.getGenre()))
+                        .and(AlbumSpecifications.hasArtist(albumQuery.getArtist()))
+                        .and(AlbumSpecifications.releasedIn(albumQuery.getYear()))
+                        .and(AlbumSpecifications.priceBetween(albumQuery.getMinPrice(), albumQuery.getMaxPrice()))
+                        .and(AlbumSpecifications.inStock(albumQuery.getInStock()));
+                // A sort key's order, nulls last, is set by its specification
+                Sort sort = sortKey == null ? Sort.by(direction, "id") : Sort.unsorted();
+
+                albums = albumRepository.findBy(specification, query -> query
+                        .sortBy(sort)
+                        .project(AlbumRepository.ALBUM_DTO_GRAPH)
+                        .limit(pageSize + 1)
+                        .all()
+                );
+            }
+
+            boolean hasNextPage = albums.size() > pageSize;
+            List<Album> page = hasNextPage ? albums.subList(0, pageSize) : albums;
+            return AlbumPageDTO.builder()
+                    .albums(createListOfAlbumDTOs(page))
+                    .nextCursor(hasNextPage ? encodeCursor(sortKey, page.getLast()) : null)
+                    .build();
+        });
+    }
 
-        if (albumCacheService.containsKey(albumId) && albumCacheService.isValid()){
-            return albumCacheService.get(albumId);
+    // A price or release date page with no filter but a range of the sort key itself takes its ids from the
+    // in-memory order index, then reads only those albums by id. Null when the database has to sort.
+    private List<Album> findIndexedAlbumPage(
+            AlbumQueryDTO albumQuery,
+            AlbumOrderService.SortKey sortKey,
+            Sort.Direction direction,
+            PageCursor cursor,
+            int limit
+    ) {
+        if (albumQuery.getGenre() != null || albumQuery.getArtist() != null || albumQuery.getInStock() != null) {
+            return null;
         }
-        if (albumRepository.findById(albumId).isPresent()){
-            Album album = albumRepository.findById(albumId).get();
-            albumCacheService.put(albumId, album);
-            albumCacheService.setValid(true);
-            return album;
-        } else{
-            throw new ItemNotFoundException(String.format("Album with the id '%s' cannot be found", albumId)
-            );
+        Double min;
+        Double max;
+        if (sortKey == AlbumOrderService.SortKey.PRICE && albumQuery.getYear() == null) {
+            min = albumQuery.getMinPrice();
+            max = albumQuery.getMaxPrice();
+        } else if (sortKey == AlbumOrderService.SortKey.RELEASE_DATE && albumQuery.getMinPrice() == null && albumQuery.getMaxPrice() == null) {
+            Integer year = albumQuery.getYear();
+            min = year != null ? (double) LocalDate.of(year, 1, 1).toEpochDay() : null;
+            max = year != null ? (double) LocalDate.of(year, 12, 31).toEpochDay() : null;
+        } else {
+            return null;
+        }
+
+        List<Long> albumIds = albumOrderService.findAlbumIds(sortKey, direction, min, max, cursor.lastValue(), cursor.lastId(), limit);
+        if (albumIds == null) {
+            return null;
         }
+        if (albumIds.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Album> albumsById = albumRepository.findBy(AlbumSpecifications.idIn(albumIds), query -> query
+                .project(AlbumRepository.ALBUM_DTO_GRAPH)
+                .all()
+        ).stream().collect(Collectors.toMap(Album::getId, Function.identity()));
+        // An album deleted since the index was read is left out
+        return albumIds.stream().map(albumsById::get).filter(Objects::nonNull).toList();
     }
 
-    @Override
-    public AlbumDTO updateAlbumById(Long albumId, UpdateAlbumDTO updateAlbumDTO) {
-
-        if (albumRepository.findById(albumId).isPresent()){
-            albumCacheService.setValid(false);
-            Album selectedAlbum = albumRepository.findById(albumId).get();
-
-            // Updates the album title if the JSON input for "title" is not null
-            if (updateAlbumDTO.getTitle() != null){
-                // Will not update the album title if the input is blank or just whitespace
-                if(!updateAlbumDTO.getTitle().isEmpty() && !updateAlbumDTO.getTitle().matches("(\\s+)")){
-                    // Trims all the whitespace before and after the title.
-                    String updatedAlbumTitle = updateAlbumDTO.getTitle().trim();
-                    // Will only update the title if it is different
-                    if (!updatedAlbumTitle.equals(selectedAlbum.getTitle())){
-                        selectedAlbum.setTitle(updatedAlbumTitle);
-                        selectedAlbum.setDateModified(Instant.now());
-                    }
-                }
-            }
+    private int resolvePageSize(Integer size) {
+        if (size == null) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        if (size < 1) {
+            throw new BadRequestException("The page size must be at least 1");
+        }
+        return Math.min(size, MAX_PAGE_SIZE);
+    }
 
-            // Update the artist name if the JSON input for "artist" is not null
-            if (updateAlbumDTO.getArtist() != null ){
-                // Will not update the album title if the input is blank or just whitespace
-                if (!updateAlbumDTO.getArtist().isEmpty() && !updateAlbumDTO.getArtist().matches("(\\s+)")){
-                    // Trims all the whitespace before and after the artist's name.
-                    String updatedArtistName = updateAlbumDTO.getArtist().trim();
-                    // Will only update the Artist name if it is different
-                    if (!updatedArtistName.equals(selectedAlbum.getArtist().getArtistName())){
-                        selectedAlbum.setArtist(artistService.getOrCreateAlbumArtist(updatedArtistName));
-                        selectedAlbum.setDateModified(Instant.now());
-                    }
-                }
-            }
+    private Sort.Direction resolveDirection(String direction) {
+        if (direction == null) {
+            return Sort.Direction.ASC;
+        }
+        return Sort.Direction.fromOptionalString(direction).orElseThrow(() ->
+                new BadRequestException(String.format("Invalid sort direction '%s'", direction))
+        );
+    }
 
-            // Update the album genre if the JSON input for "genre" is not null
-            if (updateAlbumDTO.getGenre() != null){
-                // Will not update the album genre if the input is blank or just whitespace
-                if (!updateAlbumDTO.getGenre().isEmpty() && !updateAlbumDTO.getGenre().matches("(\\s+)")){
-                    String updateGenre = updateAlbumDTO.getGenre().trim();
-                    // Will only update the Genre if it is different
-                    if (!updateGenre.equals(selectedAlbum.getGenre().getGenre())){
-                        selectedAlbum.setGenre(genreService.getOrCreateGenre(updateGenre));
-                        selectedAlbum.setDateModified(Instant.now());
-                    }
-                }
-            }
+    // Null for the default id order
+    private AlbumOrderService.SortKey resolveSortKey(String sort) {
+        if (sort == null || sort.equalsIgnoreCase("id")) {
+            return null;
+        }
+        return Arrays.stream(AlbumOrderService.SortKey.values())
+                .filter(sortKey -> sortKey.property().equalsIgnoreCase(sort))
+                .findFirst()
+                .orElseThrow(() -> new BadRequestException(String.format("Invalid sort '%s'", sort)));
+    }
 
-            if (updateAlbumDTO.getReleaseDate() != null){
-                // Will not update the Release Date unless it has been changed
-                if (!updateAlbumDTO.getReleaseDate().toString().equals(selectedAlbum.getReleaseDate().toString())){
-                    selectedAlbum.setReleaseDate(updateAlbumDTO.getReleaseDate());
-                    selectedAlbum.setDateModified(Instant.now());
-                }
+    // The sort value and id of the last album on the previous page, the value is null in id order and
+    // when the album has none. Release dates are days since 1970-01-01.
+    private record PageCursor(Double lastValue, Long lastId) {}
+
+    // Cursors are opaque to clients, they carry the id of the last album on the previous page, preceded by
+    // its price or release date when sorted by one, which is empty when the album has none
+    private String encodeCursor(AlbumOrderService.SortKey sortKey, Album lastAlbum) {
+        String cursor = sortKey == null
+                ? String.valueOf(lastAlbum.getId())
+                : switch (sortKey) {
+                    case PRICE -> (lastAlbum.getPrice() != null ? lastAlbum.getPrice().toString() : "") + ":" + lastAlbum.getId();
+                    case RELEASE_DATE -> (lastAlbum.getReleaseDate() != null ? lastAlbum.getReleaseDate().toLocalDate().toString() : "")
+                            + ":" + lastAlbum.getId();
+                };
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private PageCursor decodeCursor(String cursor, AlbumOrderService.SortKey sortKey) {
+        if (cursor == null || cursor.isBlank()) {
+            return new PageCursor(null, null);
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (sortKey == null) {
+                return new PageCursor(null, Long.valueOf(decoded));
             }
+            int separator = decoded.lastIndexOf(':');
+            if (separator < 0) {
+                throw new BadRequestException(String.format("Invalid cursor '%s'", cursor));
+            }
+            String lastValue = decoded.substring(0, separator);
+            Long lastId = Long.valueOf(decoded.substring(separator + 1));
+            if (lastValue.isEmpty()) {
+                return new PageCursor(null, lastId);
+            }
+            return switch (sortKey) {
+                case PRICE -> new PageCursor(Double.valueOf(lastValue), lastId);
+                case RELEASE_DATE -> new PageCursor((double) LocalDate.parse(lastValue).toEpochDay(), lastId);
+            };
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new BadRequestException(String.format("Invalid cursor '%s'", cursor));
+        }
+    }
 
-            if (updateAlbumDTO.getStock() != null){
-                // Won't update the stock unless it has been changed
-                if(!updateAlbumDTO.getStock().equals(selectedAlbum.getStock().getQuantityInStock())){
-                    selectedAlbum.getStock().setQuantityInStock(updateAlbumDTO.getStock());
-                    selectedAlbum.setDateModified(Instant.now());
-                }
+    // Keyset predicate in the sort key's order, the cursor's value converted to the album property's type
+    private Specification<Album> sortedAfter(AlbumOrderService.SortKey sortKey, PageCursor cursor, Sort.Direction direction) {
+        Double lastValue = cursor.lastValue();
+        return switch (sortKey) {
+            case PRICE -> AlbumSpecifications.sortedAfter(sortKey.property(), lastValue, cursor.lastId(), direction);
+            case RELEASE_DATE -> AlbumSpecifications.sortedAfter(sortKey.property(),
+                    lastValue != null ? Date.valueOf(LocalDate.ofEpochDay(lastValue.longValue())) : null, cursor.lastId(), direction);
+        };
+    }
+
+    @Override
+    public Album getAlbumById(Long albumId) {
+
+        Album cachedAlbum = albumCacheService.get(albumId);
+        if (cachedAlbum != null){
+            return cachedAlbum;
+        }
+        if (missingAlbumCache.containsKey(albumId)){
+            throw new ItemNotFoundException(String.format("Album with the id '%s' cannot be found", albumId));
+        }
+        // A select that ran before a write committed must not put the old album back after the
+        // write's eviction, so it is only cached if the album has not been evicted since
+        long generation = albumCacheService.generation(albumId);
+        return albumLoads.load(new AlbumLoad(albumId, generation), () -> {
+            Album album = albumRepository.findById(albumId).orElse(null);
+            if (album == null){
+                missingAlbumCache.put(albumId, Boolean.TRUE);
+                throw new ItemNotFoundException(String.format("Album with the id '%s' cannot be found", albumId));
             }
+            albumCacheService.putIfUnchanged(albumId, album, generation);
+            return album;
+        });
+    }
 
-            if(updateAlbumDTO.getPrice() != null){
-                // Won't update the price unless it has been changed
-                if(!updateAlbumDTO.getPrice().equals(selectedAlbum.getPrice())){
-                    selectedAlbum.setPrice(updateAlbumDTO.getPrice());
-                    selectedAlbum.setDateModified(Instant.now());
-                }
+    @Override
+    @Transactional
+    public AlbumDTO patchAlbumById(Long albumId, JsonNode mergePatch, Long expectedVersion) {
+        return applyPatch(albumId, AlbumPatch.fromMergePatch(mergePatch), expectedVersion);
+    }
+
+    private AlbumDTO applyPatch(Long albumId, AlbumPatch patch, Long expectedVersion) {
+        // A hot album's counters are written back first and rebuilt from the new stock afterwards
+        if (patch.has(AlbumPatch.Field.STOCK) && hotStockService.isHot(albumId)){
+            return hotStockService.runWithStockInDatabase(albumId, () -> patchAlbum(albumId, patch, expectedVersion));
+        }
+        return patchAlbum(albumId, patch, expectedVersion);
+    }
+
+    // One select loads the album with its artist, genre and stock. Only the fields that differ are
+    // set, so the UPDATE at commit lists just those columns, and nothing is written when none differ.
+    // The UPDATE is conditional on the version that was read, a write committed in between fails it.
+    private AlbumDTO patchAlbum(Long albumId, AlbumPatch patch, Long expectedVersion) {
+        if (patch.has(AlbumPatch.Field.STOCK)){
+            stockService.lockStockOfAlbum(albumId);
+        }
+        Album album = albumRepository.findById(albumId).orElseThrow(() ->
+                new ItemNotFoundException(String.format("Album with the id '%s' cannot be found", albumId))
+        );
+        if (expectedVersion != null && !expectedVersion.equals(album.getVersion())){
+            throw new PreconditionFailedException(String.format(
+                    "Album with the id '%s' has changed, its current version is %d", albumId, album.getVersion()
+            ));
+        }
+        boolean changed = false;
+
+        if (patch.has(AlbumPatch.Field.TITLE) && !patch.get(AlbumPatch.Field.TITLE).equals(album.getTitle())){
+            album.setTitle(patch.get(AlbumPatch.Field.TITLE));
+            changed = true;
+        }
+
+        // Artists and genres are matched on their normalized name, so only a different one is looked up
+        if (patch.has(AlbumPatch.Field.ARTIST)){
+            String artistName = patch.get(AlbumPatch.Field.ARTIST);
+            if (album.getArtist() == null || !Artist.normalize(artistName).equals(album.getArtist().getNormalizedName())){
+                album.setArtist(artistService.getOrCreateAlbumArtist(artistName));
+                changed = true;
             }
+        }
 
-            if (updateAlbumDTO.getArtworkUrl() != null){
-                // Won't update the artwork URL unless it has been changed
-                if(!updateAlbumDTO.getArtworkUrl().equals(selectedAlbum.getArtworkUrl())){
-                    selectedAlbum.setArtworkUrl(updateAlbumDTO.getArtworkUrl());
-                    selectedAlbum.setDateModified(Instant.now());
-                }
+        if (patch.has(AlbumPatch.Field.GENRE)){
+            String genre = patch.get(AlbumPatch.Field.GENRE);
+            if (album.getGenre() == null || !Genre.normalize(genre).equals(album.getGenre().getNormalizedName())){
+                album.setGenre(genreService.getOrCreateGenre(genre));
+                changed = true;
             }
+        }
 
-            return createAlbumDTO(albumRepository.save(selectedAlbum));
-        }else{
-            throw new ItemNotFoundException(String.format("Album with the id '%s' cannot be found", albumId)
-            );
+        if (patch.has(AlbumPatch.Field.RELEASE_DATE) && !Objects.equals(patch.get(AlbumPatch.Field.RELEASE_DATE), album.getReleaseDate())){
+            album.setReleaseDate(patch.get(AlbumPatch.Field.RELEASE_DATE));
+            changed = true;
+        }
+
+        if (patch.has(AlbumPatch.Field.STOCK) && !patch.get(AlbumPatch.Field.STOCK).equals(album.getStock().getQuantityInStock())){
+            album.getStock().setQuantityInStock(patch.get(AlbumPatch.Field.STOCK));
+            changed = true;
+        }
+
+        if (patch.has(AlbumPatch.Field.PRICE) && !Objects.equals(patch.get(AlbumPatch.Field.PRICE), album.getPrice())){
+            album.setPrice(patch.get(AlbumPatch.Field.PRICE));
+            changed = true;
         }
+
+        if (patch.has(AlbumPatch.Field.ARTWORK_URL) && !Objects.equals(patch.get(AlbumPatch.Field.ARTWORK_URL), album.getArtworkUrl())){
+            album.setArtworkUrl(patch.get(AlbumPatch.Field.ARTWORK_URL));
+            changed = true;
+        }
+
+        if (changed){
+            album.setDateModified(Instant.now());
+            // Writes the UPDATE now rather than at commit, so the returned version is the new one
+            albumRepository.flush();
+            evictAlbum(albumId); // only this album's cache entry is now stale
+        }
+        AlbumDTO albumDTO = createAlbumDTO(album);
+        if (changed){
+            eventPublisher.publishEvent(new AlbumsSavedEvent(List.of(albumDTO)));
+        }
+        return albumDTO;
+    }
+
+    @Override
+    public AlbumVersionDTO getAlbumVersion(Long albumId) {
+        Album cachedAlbum = albumCacheService.get(albumId);
+        if (cachedAlbum != null){
+            return AlbumVersionDTO.builder()
+                    .id(cachedAlbum.getId())
+                    .version(cachedAlbum.getVersion())
+                    .dateModified(cachedAlbum.getDateModified())
+                    .hot(cachedAlbum.isHot())
+                    .build();
+        }
+        if (missingAlbumCache.containsKey(albumId)){
+            throw new ItemNotFoundException(String.format("Album with the id '%s' cannot be found", albumId));
+        }
+        // A miss reads only the version columns, a 304 never needs the artist, genre and stock
+        AlbumVersionDTO albumVersion = albumRepository.findAlbumVersionById(albumId).orElse(null);
+        if (albumVersion == null){
+            missingAlbumCache.put(albumId, Boolean.TRUE);
+            throw new ItemNotFoundException(String.format("Album with the id '%s' cannot be found", albumId));
+        }
+        return albumVersion;
     }
 
     @Override
     public AlbumDTO returnAlbumDTOById(Long albumId) {
-        return createAlbumDTO(getAlbumById(albumId));
+        AlbumDTO albumDTO = createAlbumDTO(getAlbumById(albumId));
+        // The database stock of a hot album trails its counters by up to one flush
+        Integer hotQuantityInStock = hotStockService.getQuantityInStock(albumId);
+        if (hotQuantityInStock != null){
+            albumDTO.setStock(hotQuantityInStock);
+        }
+        return albumDTO;
     }
 
     @Override
@@ -160,7 +413,7 @@ public class AlbumServiceImpl implements AlbumService, DTOMapper{
 
     @Override
     public Album addNewAlbum(NewAlbumDTO NewAlbumDTO) {
-        return albumRepository.save(Album.builder()
+        Album savedAlbum = albumRepository.save(Album.builder()
                 .title(NewAlbumDTO.getTitle())
                 .artist(artistService.getOrCreateAlbumArtist(NewAlbumDTO.getArtist()))
                 .genre(genreService.getOrCreateGenre(NewAlbumDTO.getGenre()))
@@ -171,71 +424,167 @@ public class AlbumServiceImpl implements AlbumService, DTOMapper{
                 .dateCreated(Instant.now())
                 .dateModified((Instant.now()))
                 .build());
+        missingAlbumCache.remove(savedAlbum.getId()); // the id must be visible straight away
+        eventPublisher.publishEvent(new AlbumsSavedEvent(List.of(createAlbumDTO(savedAlbum))));
+        return savedAlbum;
     }
 
     @Override
+    @Transactional
     public Album updateAlbumStockById(Long albumId, StockDTO stockDTO) {
+        if (hotStockService.isHot(albumId)){
+            return hotStockService.runWithStockInDatabase(albumId, () -> applyStockUpdate(albumId, stockDTO));
+        }
+        return applyStockUpdate(albumId, stockDTO);
+    }
+
+    // Loads its own copy of the album rather than changing the cached one, and only announces the new
+    // stock once it is saved, so the listeners that run at commit read the album after the change
+    private Album applyStockUpdate(Long albumId, StockDTO stockDTO) {
 
-        Album album = getAlbumById(albumId);// If ID is not present this method should throw an error
+        stockService.lockStockOfAlbum(albumId);
+        Album album = albumRepository.findById(albumId).orElseThrow(() ->
+                new ItemNotFoundException(String.format("Album with the id '%s' cannot be found", albumId))
+        );
         Stock stock = album.getStock();
         stock.setQuantityInStock(stock.getQuantityInStock() + stockDTO.getQuantityToAdd());
         album.setDateModified(Instant.now());
 
         album.setStock(stockService.savedUpdatedStock(stock));
+        Album savedAlbum = albumRepository.save(album);
+        evictAlbum(albumId);
+        eventPublisher.publishEvent(new AlbumStockChangedEvent(Map.of(albumId, savedAlbum.getStock().getQuantityInStock())));
 
-        return albumRepository.save(album);
+        return savedAlbum;
     }
 
     @Override
+    @Transactional
     public String deleteAlbumById(Long albumId) {
-        if (albumRepository.existsById(albumId)){
-            albumCacheService.remove(albumId); // remove id from the cache
+        if (!missingAlbumCache.containsKey(albumId) && albumRepository.existsById(albumId)){
+            hotStockService.disable(albumId);
+            // The album row is deleted before its stock row
+            stockService.lockStockOfAlbum(albumId);
             albumRepository.deleteById(albumId);
+            albumCacheService.remove(albumId); // remove id from the cache
+            missingAlbumCache.put(albumId, Boolean.TRUE);
+            eventPublisher.publishEvent(new AlbumDeletedEvent(albumId));
             return String.format(
                     "Album of ID '%d' has been deleted",
                     albumId
             );
         } else {
+            missingAlbumCache.put(albumId, Boolean.TRUE);
             throw new ItemNotFoundException(String.format("Album with the ID '%s' cannot be found", albumId));
         }
     }
 
     @Override
+    @Transactional
     public String decreaseStockByAlbumId(Long albumId) {
-        if(albumRepository.findById(albumId).isPresent()){
-            Album album = albumRepository.findById(albumId).get();// If ID is not present this method should throw an error
-            Stock stock = album.getStock();
-
-            if (stock.getQuantityInStock() > 0){
-                stock.setQuantityInStock(stock.getQuantityInStock() - 1);
-                album.setStock(stockService.savedUpdatedStock(stock));
-                album.setDateModified(Instant.now());
-                albumRepository.save(album);
-                return String.format(
-                        "Album Title: %s\nArist: %s\nQuantity in stock: %d",
-                        album.getTitle(),
-                        album.getArtist().getArtistName(),
-                        album.getStock().getQuantityInStock()
-                );
-            }else {
-                return String.format(
-                        "Sorry, '%s' by '%s' is out of stock!",
-                        album.getTitle(),
-                        album.getArtist()
-                );
-            }
-
+        CheckoutResultDTO checkoutResult = checkoutAlbum(albumId, 1);
+        if (checkoutResult.getStatus() == CheckoutResultDTO.Status.CHECKED_OUT){
+            return String.format(
+                    "Album Title: %s\nArist: %s\nQuantity in stock: %d",
+                    checkoutResult.getTitle(),
+                    checkoutResult.getArtist(),
+                    checkoutResult.getQuantityInStock()
+            );
         }else {
+            return String.format(
+                    "Sorry, '%s' by '%s' is out of stock!",
+                    checkoutResult.getTitle(),
+                    checkoutResult.getArtist()
+            );
+        }
+    }
+
+    // The stock is taken with one conditional update, so there is no read-modify-write to race on
+    // and no lock held in the application. The affected row count says whether it succeeded.
+    @Override
+    @Transactional
+    public CheckoutResultDTO checkoutAlbum(Long albumId, int quantity) {
+        if (quantity <= 0){
+            throw new BadRequestException("The checkout quantity must be greater than 0");
+        }
+        if (missingAlbumCache.containsKey(albumId)){
             throw new ItemNotFoundException(String.format("Album with the ID '%s' cannot be found", albumId));
         }
+        if (hotStockService.isHot(albumId)){
+            HotStockService.Outcome outcome = hotStockService.take(albumId, quantity);
+            if (outcome != HotStockService.Outcome.NOT_HOT){
+                return createHotCheckoutResult(albumId, quantity, outcome);
+            }
+        }
+
+        boolean checkedOut = stockService.decreaseQuantityInStock(albumId, quantity);
+        if (checkedOut){
+            albumRepository.updateDateModified(albumId, Instant.now());
+        }
+
+        AlbumStockDTO albumStock = albumRepository.findAlbumStockById(albumId).orElseThrow(() -> {
+            missingAlbumCache.put(albumId, Boolean.TRUE);
+            return new ItemNotFoundException(String.format("Album with the ID '%s' cannot be found", albumId));
+        });
+
+        if (checkedOut){
+            evictAlbum(albumId);
+            eventPublisher.publishEvent(new AlbumStockChangedEvent(Map.of(albumId, albumStock.getQuantityInStock())));
+        }
+        return CheckoutResultDTO.builder()
+                .albumId(albumId)
+                .title(albumStock.getTitle())
+                .artist(albumStock.getArtist())
+                .status(checkedOut ? CheckoutResultDTO.Status.CHECKED_OUT : CheckoutResultDTO.Status.OUT_OF_STOCK)
+                .quantity(quantity)
+                .quantityInStock(albumStock.getQuantityInStock())
+                .build();
+    }
+
+    // No database round trip, the album comes from the cache and the stock from the counters
+    private CheckoutResultDTO createHotCheckoutResult(Long albumId, int quantity, HotStockService.Outcome outcome) {
+        Album album = getAlbumById(albumId);
+        Integer quantityInStock = hotStockService.getQuantityInStock(albumId);
+        return CheckoutResultDTO.builder()
+                .albumId(albumId)
+                .title(album.getTitle())
+                .artist(album.getArtist().getArtistName())
+                .status(outcome == HotStockService.Outcome.TAKEN
+                        ? CheckoutResultDTO.Status.CHECKED_OUT
+                        : CheckoutResultDTO.Status.OUT_OF_STOCK)
+                .quantity(quantity)
+                .quantityInStock(quantityInStock != null ? quantityInStock : album.getStock().getQuantityInStock())
+                .build();
     }
 
-    @Scheduled(fixedRate = 300000)
-    public void cleanUpCache(){
-        System.out.println("Running Cache clean up task");
-        int initialSize = albumCacheService.getCache().size(); //gets the initial size of cache HashMap
-        albumCacheService.removeExpiredCacheObjects();
-        int finalSize = albumCacheService.getCache().size(); //gets the final size of cache HashMap
-        System.out.printf("Cache cleanup.\nRemoved %d entries%n",(initialSize - finalSize));
+    @Override
+    public AlbumDTO setAlbumHot(Long albumId, boolean hot) {
+        getAlbumById(albumId); // throws if the album does not exist
+        // Counters are written back before the flag is cleared, and only built once it is set
+        if (!hot){
+            hotStockService.disable(albumId);
+        }
+        albumRepository.updateHot(albumId, hot, Instant.now());
+        if (hot){
+            hotStockService.enable(albumId);
+        }
+        albumCacheService.remove(albumId);
+        AlbumDTO albumDTO = returnAlbumDTOById(albumId);
+        eventPublisher.publishEvent(new AlbumsSavedEvent(List.of(albumDTO)));
+        return albumDTO;
+    }
+
+    // Evicts now and again once the transaction commits, so a read that races the commit cannot
+    // leave the old stock level in the cache
+    private void evictAlbum(Long albumId) {
+        albumCacheService.remove(albumId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()){
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    albumCacheService.remove(albumId);
+                }
+            });
+        }
     }
-}
\ No newline at end of file
+}
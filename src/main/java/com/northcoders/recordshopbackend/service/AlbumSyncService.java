@@ -0,0 +1,9 @@
+package com.northcoders.recordshopbackend.service;
+
+import com.northcoders.recordshopbackend.dto.AlbumSyncDTO;
+
+public interface AlbumSyncService {
+
+    // The changes after the cursor, or every album from the start when it is null, up to size albums
+    AlbumSyncDTO getChanges(String cursor, Integer size);
+}
@@ -0,0 +1,248 @@
+package com.northcoders.recordshopbackend.service;
+
+import com.northcoders.recordshopbackend.dto.AlbumDTO;
+import com.northcoders.recordshopbackend.dto.AlbumSyncDTO;
+import com.northcoders.recordshopbackend.dto.DeletedAlbumDTO;
+import com.northcoders.recordshopbackend.event.AlbumDeletedEvent;
+import com.northcoders.recordshopbackend.event.AlbumStockChangedEvent;
+import com.northcoders.recordshopbackend.event.AlbumsSavedEvent;
+import com.northcoders.recordshopbackend.exception.BadRequestException;
+import com.northcoders.recordshopbackend.model.Album;
+import com.northcoders.recordshopbackend.model.AlbumChange;
+import com.northcoders.recordshopbackend.repository.AlbumChangeRepository;
+import com.northcoders.recordshopbackend.repository.AlbumRepository;
+import com.northcoders.recordshopbackend.repository.AlbumSpecifications;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Delta sync from the album change log. The write events add their rows just before the write commits,
+// in the same transaction, so a change is in the log exactly when it is in the database.
+//
+// Sequences are handed out here, in order, rather than by the database. A transaction can still commit
+// after one that took a later sequence, so a sync only reads up to the sequence before the oldest one
+// whose transaction has not finished. A client's cursor can then never pass a change that is yet to commit.
+//
+// Albums written before the log existed are given a row on startup, so a sync without a cursor still
+// returns the whole catalog.
+@Slf4j
+@Service
+public class AlbumSyncServiceImpl implements AlbumSyncService, DTOMapper {
+
+    @Autowired
+    private AlbumChangeRepository albumChangeRepository;
+
+    @Autowired
+    private AlbumRepository albumRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private static final int DEFAULT_PAGE_SIZE = 200;
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    private final ReentrantLock sequenceLock = new ReentrantLock();
+    // The first sequence of each transaction still writing changes, guarded by sequenceLock
+    private final NavigableSet<Long> pendingSequences = new TreeSet<>();
+    // Read from the log the first time it is needed, guarded by sequenceLock
+    private long lastSequence = -1;
+
+    @Override
+    public AlbumSyncDTO getChanges(String cursor, Integer size) {
+        int pageSize = resolvePageSize(size);
+        long upTo = getCommittedSequence();
+        long after = decodeCursor(cursor, upTo);
+
+        // Fetches one extra row to find out if there are more changes
+        List<AlbumChange> changes = albumChangeRepository.findBySequenceGreaterThanAndSequenceLessThanEqualOrderBySequence(
+                after, upTo, Limit.of(pageSize + 1));
+        boolean hasMore = changes.size() > pageSize;
+        if (hasMore) {
+            changes = changes.subList(0, pageSize);
+        }
+
+        // An album changed while this was read can have two rows, its latest row wins
+        Map<Long, AlbumChange> latestChanges = new LinkedHashMap<>();
+        for (AlbumChange change : changes) {
+            latestChanges.remove(change.getAlbumId());
+            latestChanges.put(change.getAlbumId(), change);
+        }
+        List<Long> savedIds = latestChanges.values().stream()
+                .filter(change -> !change.isDeleted())
+                .map(AlbumChange::getAlbumId)
+                .toList();
+        Map<Long, Album> albums = savedIds.isEmpty()
+                ? Map.of()
+                : albumRepository.findBy(AlbumSpecifications.idIn(savedIds), query -> query
+                        .project(AlbumRepository.ALBUM_DTO_GRAPH)
+                        .all()
+                ).stream().collect(Collectors.toMap(Album::getId, Function.identity()));
+
+        // An album deleted since its row was read is left out, its tombstone comes in a later sync
+        List<AlbumDTO> albumDTOs = new ArrayList<>();
+        List<DeletedAlbumDTO> deletedAlbums = new ArrayList<>();
+        for (AlbumChange change : latestChanges.values()) {
+            if (change.isDeleted()) {
+                deletedAlbums.add(new DeletedAlbumDTO(change.getAlbumId(), change.getDateModified().toString()));
+            } else if (albums.containsKey(change.getAlbumId())) {
+                albumDTOs.add(createAlbumDTO(albums.get(change.getAlbumId())));
+            }
+        }
+
+        long next = hasMore ? changes.getLast().getSequence() : upTo;
+        return AlbumSyncDTO.builder()
+                .albums(albumDTOs)
+                .deletedAlbums(deletedAlbums)
+                .cursor(encodeCursor(next))
+                .hasMore(hasMore)
+                .build();
+    }
+
+    // Albums written in the meantime have rows of their own and are skipped
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillChanges() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            long missing = albumChangeRepository.countAlbumsWithoutChanges();
+            if (missing == 0) {
+                return;
+            }
+            long firstSequence = reserveSequences(Math.toIntExact(missing));
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    releaseSequences(firstSequence);
+                }
+            });
+            int inserted = albumChangeRepository.insertMissingChanges(firstSequence, missing);
+            log.info("Album change log backfilled with {} albums", inserted);
+        });
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void onAlbumsSaved(AlbumsSavedEvent event) {
+        recordChanges(event.albums().stream().map(AlbumDTO::getId).toList(), false);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void onAlbumDeleted(AlbumDeletedEvent event) {
+        recordChanges(List.of(event.albumId()), true);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void onAlbumStockChanged(AlbumStockChangedEvent event) {
+        recordChanges(event.quantitiesInStockByAlbumId().keySet(), false);
+    }
+
+    // Joins the writing transaction, or starts one for an event published outside of a transaction
+    private void recordChanges(Collection<Long> albumIds, boolean deleted) {
+        if (albumIds.isEmpty()) {
+            return;
+        }
+        // Sorted so two transactions replacing the rows of the same albums lock them in the same order
+        List<Long> sortedIds = albumIds.stream().distinct().sorted().toList();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            long firstSequence = reserveSequences(sortedIds.size());
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    releaseSequences(firstSequence);
+                }
+            });
+
+            Instant dateModified = Instant.now();
+            List<AlbumChange> changes = new ArrayList<>(sortedIds.size());
+            for (int i = 0; i < sortedIds.size(); i++) {
+                changes.add(new AlbumChange(firstSequence + i, sortedIds.get(i), dateModified, deleted));
+            }
+            albumChangeRepository.deleteByAlbumIdInAndSequenceLessThan(sortedIds, firstSequence);
+            albumChangeRepository.insertChanges(changes);
+        });
+    }
+
+    private long reserveSequences(int count) {
+        sequenceLock.lock();
+        try {
+            long firstSequence = readLastSequence() + 1;
+            lastSequence += count;
+            pendingSequences.add(firstSequence);
+            return firstSequence;
+        } finally {
+            sequenceLock.unlock();
+        }
+    }
+
+    // Once the transaction has committed or rolled back
+    private void releaseSequences(long firstSequence) {
+        sequenceLock.lock();
+        try {
+            pendingSequences.remove(firstSequence);
+        } finally {
+            sequenceLock.unlock();
+        }
+    }
+
+    // The highest sequence with no uncommitted change at or below it
+    private long getCommittedSequence() {
+        sequenceLock.lock();
+        try {
+            return pendingSequences.isEmpty() ? readLastSequence() : pendingSequences.first() - 1;
+        } finally {
+            sequenceLock.unlock();
+        }
+    }
+
+    private long readLastSequence() {
+        if (lastSequence < 0) {
+            lastSequence = albumChangeRepository.findLastSequence();
+        }
+        return lastSequence;
+    }
+
+    private int resolvePageSize(Integer size) {
+        if (size == null) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        if (size < 1) {
+            throw new BadRequestException("The page size must be at least 1");
+        }
+        return Math.min(size, MAX_PAGE_SIZE);
+    }
+
+    private String encodeCursor(long sequence) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(String.valueOf(sequence).getBytes(StandardCharsets.UTF_8));
+    }
+
+    // The committed sequence never goes back, so a cursor past it comes from before the database was reset
+    // and the client has to sync again from the start
+    private long decodeCursor(String cursor, long upTo) {
+        if (cursor == null || cursor.isBlank()) {
+            return 0;
+        }
+        long sequence;
+        try {
+            sequence = Long.parseLong(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(String.format("Invalid cursor '%s'", cursor));
+        }
+        if (sequence < 0 || sequence > upTo) {
+            throw new BadRequestException(String.format("Invalid cursor '%s', sync again without a cursor", cursor));
+        }
+        return sequence;
+    }
+}
@@ -4,12 +4,15 @@ import com.northcoders.recordshopbackend.dto.ArtistDTO;
 import com.northcoders.recordshopbackend.dto.ArtistWithAlbumsDTO;
 import com.northcoders.recordshopbackend.model.Artist;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public interface ArtistService {
     List<Artist> getAllArtists();
     Artist addNewArtist(String artistName);
     Artist getOrCreateAlbumArtist(String artistName);
+    Map<String, Artist> getOrCreateAlbumArtists(Collection<String> artistNames);
     List<ArtistDTO> getAllArtistsDTO();
     ArtistWithAlbumsDTO getArtistByNameWithAlbums(String artistName);
     ArtistWithAlbumsDTO getArtistByIdWithAlbums(Long artistId);
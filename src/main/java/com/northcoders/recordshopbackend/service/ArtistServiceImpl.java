@@ -2,15 +2,19 @@ package com.northcoders.recordshopbackend.service;
 
 import com.northcoders.recordshopbackend.dto.ArtistDTO;
 import com.northcoders.recordshopbackend.dto.ArtistWithAlbumsDTO;
+import com.northcoders.recordshopbackend.event.ArtistSavedEvent;
 import com.northcoders.recordshopbackend.exception.ItemNotFoundException;
 import com.northcoders.recordshopbackend.model.Artist;
 import com.northcoders.recordshopbackend.repository.ArtistRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.List;
+import java.util.*;
 
 @Service
 public class ArtistServiceImpl implements ArtistService, DTOMapper {
@@ -18,6 +22,15 @@ public class ArtistServiceImpl implements ArtistService, DTOMapper {
     @Autowired
     private ArtistRepository artistRepository;
 
+    @Autowired
+    private CacheService<Boolean> missingArtistCache;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     @Override
     public List<Artist> getAllArtists() {
         List<Artist> artists = new ArrayList<>(artistRepository.findAll());
@@ -28,28 +41,58 @@ public class ArtistServiceImpl implements ArtistService, DTOMapper {
 
     @Override
     public Artist addNewArtist(String artistName) {
-        return artistRepository.save(
+        Artist savedArtist = artistRepository.save(
                 Artist.builder()
                         .artistName(artistName)
                         .build()
         );
+        missingArtistCache.remove(savedArtist.getId());
+        eventPublisher.publishEvent(new ArtistSavedEvent(createArtistDTO(savedArtist)));
+        return savedArtist;
     }
 
     @Override
     public Artist getOrCreateAlbumArtist(String artistName) {
-        List<Artist> artists = getAllArtists();
-        for (Artist artist : artists) {
-            if (artist.getArtistName().equals(artistName)) {
-                return artist;
+        String normalizedName = Artist.normalize(artistName);
+        return artistRepository.findByNormalizedName(normalizedName)
+                .orElseGet(() -> createArtistIfAbsent(artistName.trim(), normalizedName));
+    }
+
+    // Resolves every distinct artist of a batch with one query, returned keyed by normalized name
+    @Override
+    public Map<String, Artist> getOrCreateAlbumArtists(Collection<String> artistNames) {
+        Map<String, String> namesByNormalizedName = new HashMap<>();
+        artistNames.forEach(artistName -> namesByNormalizedName.putIfAbsent(Artist.normalize(artistName), artistName.trim()));
+
+        Map<String, Artist> artists = new HashMap<>();
+        artistRepository.findAllByNormalizedNameIn(namesByNormalizedName.keySet())
+                .forEach(artist -> artists.put(artist.getNormalizedName(), artist));
+
+        namesByNormalizedName.forEach((normalizedName, artistName) -> {
+            if (!artists.containsKey(normalizedName)) {
+                artists.put(normalizedName, createArtistIfAbsent(artistName, normalizedName));
             }
+        });
+        return artists;
+    }
+
+    // Inserts in its own transaction so losing a race on the unique normalized name doesn't
+    // roll back the caller, the artist created by the winning request is returned instead
+    private Artist createArtistIfAbsent(String artistName, String normalizedName) {
+        TransactionTemplate newTransaction = new TransactionTemplate(transactionManager);
+        newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        try {
+            return newTransaction.execute(status -> addNewArtist(artistName));
+        } catch (DataIntegrityViolationException e) {
+            return artistRepository.findByNormalizedName(normalizedName).orElseThrow(() -> e);
         }
-        return addNewArtist(artistName);
     }
 
     @Override
     public ArtistWithAlbumsDTO getArtistByNameWithAlbums(String artistName) {
-        if (artistRepository.findByArtistName(artistName).isPresent()) {
-            return createArtistWithAlbumsDTO(artistRepository.findByArtistName(artistName).get());
+        Optional<Artist> artist = artistRepository.findWithAlbumsByNormalizedName(Artist.normalize(artistName));
+        if (artist.isPresent()) {
+            return createArtistWithAlbumsDTO(artist.get());
         } else {
             throw new ItemNotFoundException(String.format("Artist with the name '%s' cannot be found", artistName));
         }
@@ -57,18 +100,22 @@ public class ArtistServiceImpl implements ArtistService, DTOMapper {
 
     @Override
     public List<ArtistDTO> getAllArtistsDTO() {
-        List<Artist> artists = getAllArtists();
-        return artists.stream()
-                .filter(artist -> !artist.getAlbums().isEmpty())
+        return artistRepository.findAllByAlbumsIsNotEmpty().stream()
+                .sorted(Comparator.comparing(artist -> artist.getArtistName().toLowerCase()))
                 .map(this::createArtistDTO).toList();
     }
 
     @Override
     public ArtistWithAlbumsDTO getArtistByIdWithAlbums(Long artistId) {
 
-        if (artistRepository.findById(artistId).isPresent()) {
-            return createArtistWithAlbumsDTO(artistRepository.findById(artistId).get());
+        if (missingArtistCache.containsKey(artistId)) {
+            throw new ItemNotFoundException(String.format("Artist with the id '%d' cannot be found", artistId));
+        }
+        Optional<Artist> artist = artistRepository.findWithAlbumsById(artistId);
+        if (artist.isPresent()) {
+            return createArtistWithAlbumsDTO(artist.get());
         } else {
+            missingArtistCache.put(artistId, Boolean.TRUE);
             throw new ItemNotFoundException(String.format("Artist with the id '%d' cannot be found", artistId));
         }
     }
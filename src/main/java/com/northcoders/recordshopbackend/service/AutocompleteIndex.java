@@ -0,0 +1,335 @@
+package com.northcoders.recordshopbackend.service;
+
+import com.northcoders.recordshopbackend.dto.AutocompleteSuggestionDTO;
+
+import java.util.*;
+import java.util.function.ToIntFunction;
+
+// Prefix completions over artist names and album titles. Every word of a name is a key, so "lam"
+// completes "Kendrick Lamar" as well as "Lamb". Rather than a trie with a node per character, the
+// keys are one sorted array of (suggestion, word offset) pairs: the keys starting with a prefix are a
+// contiguous range of it, the same keys a trie node's subtree would hold, found with two binary
+// searches. A segment tree holding the best ranked key of each span picks the top suggestions of a
+// range without visiting the rest of it.
+//
+// Suggestions rank in stock first, then those whose name starts with the prefix, then by quantity in
+// stock. Immutable, a change to the catalog builds a new index that readers switch to.
+final class AutocompleteIndex {
+
+    private static final int INSERTION_SORT_THRESHOLD = 12;
+
+    record Suggestion(AutocompleteSuggestionDTO.Type type, long id, String name, String artist, int quantityInStock) {}
+
+    private final Suggestion[] suggestions;
+    // The folded name of each suggestion, its words separated by single spaces
+    private final String[] keys;
+    // The suggestion in the high half and the offset of the word in its key in the low half,
+    // sorted by the key from that offset
+    private final long[] entries;
+    private final long[] ranks;
+    // tree[entries.length + i] is entry i, every node below that the better entry of its two children
+    private final int[] tree;
+
+    private AutocompleteIndex(Suggestion[] suggestions, String[] keys, long[] entries) {
+        this.suggestions = suggestions;
+        this.keys = keys;
+        this.entries = entries;
+        int entryCount = entries.length;
+        this.ranks = new long[entryCount];
+        this.tree = new int[2 * entryCount];
+        for (int i = 0; i < entryCount; i++) {
+            ranks[i] = rank(entries[i]);
+            tree[entryCount + i] = i;
+        }
+        for (int node = entryCount - 1; node > 0; node--) {
+            tree[node] = better(tree[2 * node], tree[2 * node + 1]);
+        }
+    }
+
+    static AutocompleteIndex build(Collection<Suggestion> suggestionList) {
+        Suggestion[] suggestions = suggestionList.toArray(Suggestion[]::new);
+        String[] keys = new String[suggestions.length];
+        Arrays.parallelSetAll(keys, i -> fold(suggestions[i].name()));
+
+        int entryCount = 0;
+        for (String key : keys) {
+            entryCount += wordCount(key);
+        }
+        long[] entries = new long[entryCount];
+        int entry = 0;
+        for (int i = 0; i < keys.length; i++) {
+            String key = keys[i];
+            for (int offset = 0; offset < key.length(); offset++) {
+                if (offset == 0 || key.charAt(offset - 1) == ' ') {
+                    entries[entry++] = (long) i << 32 | offset;
+                }
+            }
+        }
+        return new AutocompleteIndex(suggestions, keys, sort(keys, entries));
+    }
+
+    // The same names with new quantities in stock, the keys stay sorted so only the ranks are redone
+    AutocompleteIndex withQuantitiesInStock(ToIntFunction<Suggestion> quantityInStock) {
+        Suggestion[] restocked = new Suggestion[suggestions.length];
+        for (int i = 0; i < suggestions.length; i++) {
+            Suggestion suggestion = suggestions[i];
+            restocked[i] = new Suggestion(suggestion.type(), suggestion.id(), suggestion.name(), suggestion.artist(),
+                    quantityInStock.applyAsInt(suggestion));
+        }
+        return new AutocompleteIndex(restocked, keys, entries);
+    }
+
+    int size() {
+        return suggestions.length;
+    }
+
+    // The last word matches as a prefix unless the query ends with whitespace
+    List<Suggestion> complete(String query, int limit) {
+        String prefix = fold(query);
+        if (prefix.isEmpty()) {
+            return List.of();
+        }
+        if (Character.isWhitespace(query.charAt(query.length() - 1))) {
+            prefix += " ";
+        }
+
+        // Each range queued with its best entry, the best of them all is the next suggestion
+        PriorityQueue<int[]> ranges = new PriorityQueue<>((a, b) -> better(a[2], b[2]) == a[2] ? -1 : 1);
+        addRange(ranges, firstEntry(prefix, false), firstEntry(prefix, true));
+        List<Suggestion> completions = new ArrayList<>(limit);
+        Set<Integer> completed = new HashSet<>();
+        while (!ranges.isEmpty() && completions.size() < limit) {
+            int[] range = ranges.poll();
+            int best = range[2];
+            // A name with several words starting with the prefix has a key for each
+            int suggestion = suggestionOf(entries[best]);
+            if (completed.add(suggestion)) {
+                completions.add(suggestions[suggestion]);
+            }
+            addRange(ranges, range[0], best);
+            addRange(ranges, best + 1, range[1]);
+        }
+        return completions;
+    }
+
+    // The words of the text as AlbumSearchIndex.tokenize finds them, separated by single spaces
+    static String fold(String text) {
+        if (text == null || !isAscii(text)) {
+            return String.join(" ", AlbumSearchIndex.tokenize(text));
+        }
+        // Most names are plain ASCII, which has no accents to strip
+        StringBuilder folded = new StringBuilder(text.length());
+        boolean separated = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (separated && !folded.isEmpty()) {
+                    folded.append(' ');
+                }
+                folded.append(Character.toLowerCase(c));
+                separated = false;
+            } else if (c != '\'') {
+                separated = true;
+            }
+        }
+        return folded.toString();
+    }
+
+    private static boolean isAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 128) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void addRange(PriorityQueue<int[]> ranges, int from, int to) {
+        if (from < to) {
+            ranges.add(new int[]{from, to, bestEntry(from, to)});
+        }
+    }
+
+    // The best entry in [from, to)
+    private int bestEntry(int from, int to) {
+        int best = -1;
+        for (from += entries.length, to += entries.length; from < to; from >>= 1, to >>= 1) {
+            if ((from & 1) == 1) {
+                best = better(best, tree[from++]);
+            }
+            if ((to & 1) == 1) {
+                best = better(best, tree[--to]);
+            }
+        }
+        return best;
+    }
+
+    // Ties go to the entry that sorts first
+    private int better(int a, int b) {
+        if (a < 0 || b < 0) {
+            return Math.max(a, b);
+        }
+        if (ranks[a] != ranks[b]) {
+            return ranks[a] > ranks[b] ? a : b;
+        }
+        return Math.min(a, b);
+    }
+
+    private long rank(long entry) {
+        int quantityInStock = Math.max(0, suggestions[suggestionOf(entry)].quantityInStock());
+        long inStock = quantityInStock > 0 ? 1L << 62 : 0;
+        long namePrefix = offsetOf(entry) == 0 ? 1L << 61 : 0;
+        return inStock | namePrefix | quantityInStock;
+    }
+
+    // The first entry whose key from its offset is at or after the prefix, or after every key starting
+    // with it
+    private int firstEntry(String prefix, boolean afterPrefix) {
+        int low = 0;
+        int high = entries.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int comparison = comparePrefix(entries[middle], prefix);
+            if (comparison < 0 || (afterPrefix && comparison == 0)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Zero when the key starts with the prefix from the entry's offset
+    private int comparePrefix(long entry, String prefix) {
+        String key = keys[suggestionOf(entry)];
+        int offset = offsetOf(entry);
+        for (int i = 0; i < prefix.length(); i++) {
+            if (offset + i == key.length()) {
+                return -1;
+            }
+            int comparison = key.charAt(offset + i) - prefix.charAt(i);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return 0;
+    }
+
+    // The entries are first sorted on their first two characters as plain longs, which is cheap, then
+    // each run sharing those two is sorted on the rest of its keys
+    private static long[] sort(String[] keys, long[] entries) {
+        long[] firstCharacters = new long[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            long first = Math.max(0, charAt(keys, entries[i], 0));
+            long second = Math.max(0, charAt(keys, entries[i], 1));
+            firstCharacters[i] = first << 47 | second << 31 | i;
+        }
+        Arrays.parallelSort(firstCharacters);
+
+        long[] sorted = new long[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            sorted[i] = entries[(int) (firstCharacters[i] & Integer.MAX_VALUE)];
+        }
+        int runStart = 0;
+        for (int i = 1; i <= sorted.length; i++) {
+            if (i == sorted.length || firstCharacters[i] >>> 31 != firstCharacters[runStart] >>> 31) {
+                sort(keys, sorted, runStart, i, 2);
+                runStart = i;
+            }
+        }
+        return sorted;
+    }
+
+    // Multikey quicksort: partitions the entries three ways on the character at the depth, and only
+    // the entries sharing it move on to the next character. Keys are compared a character at a time
+    // without boxing the entries or copying the keys.
+    private static void sort(String[] keys, long[] entries, int from, int to, int depth) {
+        while (to - from > INSERTION_SORT_THRESHOLD) {
+            int pivot = medianOfThree(
+                    charAt(keys, entries[from], depth),
+                    charAt(keys, entries[(from + to) >>> 1], depth),
+                    charAt(keys, entries[to - 1], depth)
+            );
+            int less = from;
+            int greater = to - 1;
+            int i = from;
+            while (i <= greater) {
+                int c = charAt(keys, entries[i], depth);
+                if (c < pivot) {
+                    swap(entries, less++, i++);
+                } else if (c > pivot) {
+                    swap(entries, i, greater--);
+                } else {
+                    i++;
+                }
+            }
+            sort(keys, entries, from, less, depth);
+            sort(keys, entries, greater + 1, to, depth);
+            if (pivot < 0) {
+                // The keys in the middle all end here and are equal
+                return;
+            }
+            from = less;
+            to = greater + 1;
+            depth++;
+        }
+        for (int i = from + 1; i < to; i++) {
+            for (int j = i; j > from && compareKeys(keys, entries[j - 1], entries[j]) > 0; j--) {
+                swap(entries, j - 1, j);
+            }
+        }
+    }
+
+    // -1 past the end of the key, so a key sorts before the longer keys it is a prefix of
+    private static int charAt(String[] keys, long entry, int depth) {
+        String key = keys[suggestionOf(entry)];
+        int position = offsetOf(entry) + depth;
+        return position < key.length() ? key.charAt(position) : -1;
+    }
+
+    private static int medianOfThree(int a, int b, int c) {
+        return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+    }
+
+    private static void swap(long[] entries, int i, int j) {
+        long entry = entries[i];
+        entries[i] = entries[j];
+        entries[j] = entry;
+    }
+
+    private static int compareKeys(String[] keys, long a, long b) {
+        String keyA = keys[suggestionOf(a)];
+        String keyB = keys[suggestionOf(b)];
+        int offsetA = offsetOf(a);
+        int offsetB = offsetOf(b);
+        int length = Math.min(keyA.length() - offsetA, keyB.length() - offsetB);
+        for (int i = 0; i < length; i++) {
+            int comparison = keyA.charAt(offsetA + i) - keyB.charAt(offsetB + i);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return (keyA.length() - offsetA) - (keyB.length() - offsetB);
+    }
+
+    private static int wordCount(String key) {
+        if (key.isEmpty()) {
+            return 0;
+        }
+        int words = 1;
+        for (int i = 0; i < key.length(); i++) {
+            if (key.charAt(i) == ' ') {
+                words++;
+            }
+        }
+        return words;
+    }
+
+    private static int suggestionOf(long entry) {
+        return (int) (entry >>> 32);
+    }
+
+    private static int offsetOf(long entry) {
+        return (int) entry;
+    }
+}
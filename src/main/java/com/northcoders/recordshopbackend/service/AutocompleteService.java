@@ -0,0 +1,11 @@
+package com.northcoders.recordshopbackend.service;
+
+import com.northcoders.recordshopbackend.dto.AutocompleteSuggestionDTO;
+
+import java.util.List;
+
+public interface AutocompleteService {
+
+    // Artists and albums with a word starting with the query, in stock suggestions first
+    List<AutocompleteSuggestionDTO> complete(String query, Integer limit);
+}
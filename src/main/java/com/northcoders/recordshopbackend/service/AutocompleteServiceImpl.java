@@ -0,0 +1,260 @@
+package com.northcoders.recordshopbackend.service;
+
+import com.northcoders.recordshopbackend.dto.AlbumDTO;
+import com.northcoders.recordshopbackend.dto.AlbumSummaryDTO;
+import com.northcoders.recordshopbackend.dto.ArtistDTO;
+import com.northcoders.recordshopbackend.dto.AutocompleteSuggestionDTO;
+import com.northcoders.recordshopbackend.event.AlbumDeletedEvent;
+import com.northcoders.recordshopbackend.event.AlbumStockChangedEvent;
+import com.northcoders.recordshopbackend.event.AlbumsSavedEvent;
+import com.northcoders.recordshopbackend.event.ArtistSavedEvent;
+import com.northcoders.recordshopbackend.exception.BadRequestException;
+import com.northcoders.recordshopbackend.model.Artist;
+import com.northcoders.recordshopbackend.repository.AlbumRepository;
+import com.northcoders.recordshopbackend.repository.ArtistRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Typeahead served from an immutable AutocompleteIndex, so readers never wait for a writer. The names
+// and stock it is built from are kept in memory, loaded from the database once the application is
+// ready and then kept up to date from the artist, album and stock events once their transactions
+// have committed. A change only marks the catalog changed, a new index is built from it in the
+// background and swapped in, so a burst of writes costs one rebuild. Most changes are to stock, which
+// keeps the names and their sorted keys and only ranks them again.
+@Slf4j
+@Service
+public class AutocompleteServiceImpl implements AutocompleteService {
+
+    private static final int DEFAULT_LIMIT = 10;
+    private static final int MAX_LIMIT = 50;
+
+    private record CatalogAlbum(String title, String artist, int quantityInStock, long version) {}
+
+    // Artists by normalized name, albums are matched to their artist by name. Ids are never reused, so a
+    // save delivered after the album's delete is ignored rather than adding it back.
+    private record Catalog(Map<String, ArtistDTO> artists, Map<Long, CatalogAlbum> albums, Set<Long> deletedAlbumIds) {}
+
+    @Autowired
+    private AlbumRepository albumRepository;
+
+    @Autowired
+    private ArtistRepository artistRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${recordshop.autocomplete.rebuild-interval-ms:1000}")
+    private long rebuildIntervalMs;
+
+    // A full rebuild of a large catalog takes a while, so it runs on its own thread rather than the
+    // shared @Scheduled one, where it would hold up the hot stock flush and the cache cleanup
+    private ScheduledExecutorService rebuilder;
+
+    private final IndexChanges<Catalog> catalogChanges = new IndexChanges<>(new Catalog(Map.of(), Map.of(), Set.of()));
+    private final AtomicBoolean namesChanged = new AtomicBoolean();
+    private final AtomicBoolean stockChanged = new AtomicBoolean();
+    private volatile AutocompleteIndex index = AutocompleteIndex.build(List.of());
+
+    @Override
+    public List<AutocompleteSuggestionDTO> complete(String query, Integer limit) {
+        if (query == null || query.isBlank()) {
+            throw new BadRequestException("A query to complete is mandatory");
+        }
+        if (limit != null && limit < 1) {
+            throw new BadRequestException("The suggestion limit must be at least 1");
+        }
+        int suggestionLimit = limit == null ? DEFAULT_LIMIT : Math.min(limit, MAX_LIMIT);
+        return index.complete(query, suggestionLimit).stream()
+                .map(suggestion -> AutocompleteSuggestionDTO.builder()
+                        .type(suggestion.type())
+                        .id(suggestion.id())
+                        .name(suggestion.name())
+                        .artist(suggestion.artist())
+                        .quantityInStock(suggestion.quantityInStock())
+                        .build())
+                .toList();
+    }
+
+    @PostConstruct
+    public void start() {
+        rebuilder = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("autocomplete-rebuild").daemon().factory()
+        );
+        rebuilder.scheduleWithFixedDelay(this::scheduledRebuild, rebuildIntervalMs, rebuildIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        rebuilder.shutdownNow();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadCatalog() {
+        catalogChanges.startBuild();
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        Catalog catalog = readOnly.execute(status -> {
+            Catalog loaded = new Catalog(new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), ConcurrentHashMap.newKeySet());
+            artistRepository.findAllArtistDTOs().forEach(artist -> putArtist(loaded, artist));
+            try (var albumSummaries = albumRepository.streamAlbumSummaries()) {
+                albumSummaries.forEach(albumSummary -> putAlbum(loaded, albumSummary.getId(), createCatalogAlbum(albumSummary)));
+            }
+            return loaded;
+        });
+        catalogChanges.finishBuild(catalog);
+        namesChanged.set(true);
+        rebuildIndex();
+    }
+
+    // A failed run would cancel the ones after it, so it is logged and the catalog is marked changed
+    // for the next run to try again
+    private void scheduledRebuild() {
+        try {
+            rebuildIndex();
+        } catch (RuntimeException e) {
+            log.error("Autocomplete index rebuild failed", e);
+            namesChanged.set(true);
+        }
+    }
+
+    // The catalog maps are concurrent, so the build reads them while changes keep coming. A change
+    // the build misses leaves the catalog marked changed for the next one.
+    public synchronized void rebuildIndex() {
+        boolean rebuildNames = namesChanged.getAndSet(false);
+        boolean rebuildStock = stockChanged.getAndSet(false);
+        if (!rebuildNames && !rebuildStock) {
+            return;
+        }
+        long start = System.nanoTime();
+        Catalog catalog = catalogChanges.index();
+        Map<String, Integer> quantitiesInStockByArtist = new HashMap<>();
+        catalog.albums().values().forEach(album -> {
+            if (album.artist() != null) {
+                quantitiesInStockByArtist.merge(Artist.normalize(album.artist()), Math.max(0, album.quantityInStock()),
+                        (a, b) -> (int) Math.min(Integer.MAX_VALUE, (long) a + b));
+            }
+        });
+
+        if (!rebuildNames) {
+            index = index.withQuantitiesInStock(suggestion -> {
+                if (suggestion.type() == AutocompleteSuggestionDTO.Type.ARTIST) {
+                    return quantitiesInStockByArtist.getOrDefault(Artist.normalize(suggestion.name()), 0);
+                }
+                // Deleted since, the names have changed and the next rebuild drops it
+                CatalogAlbum album = catalog.albums().get(suggestion.id());
+                return album != null ? album.quantityInStock() : suggestion.quantityInStock();
+            });
+            log.debug("Autocomplete index restocked in {} ms", (System.nanoTime() - start) / 1_000_000);
+            return;
+        }
+
+        List<AutocompleteIndex.Suggestion> suggestions = new ArrayList<>(catalog.albums().size() + catalog.artists().size());
+        catalog.albums().forEach((albumId, album) -> suggestions.add(new AutocompleteIndex.Suggestion(
+                AutocompleteSuggestionDTO.Type.ALBUM, albumId, album.title(), album.artist(), album.quantityInStock()
+        )));
+        catalog.artists().forEach((normalizedName, artist) -> suggestions.add(new AutocompleteIndex.Suggestion(
+                AutocompleteSuggestionDTO.Type.ARTIST, artist.getId(), artist.getArtistName(), null,
+                quantitiesInStockByArtist.getOrDefault(normalizedName, 0)
+        )));
+        index = AutocompleteIndex.build(suggestions);
+        log.debug("Autocomplete index rebuilt with {} suggestions in {} ms",
+                suggestions.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onArtistSaved(ArtistSavedEvent event) {
+        catalogChanges.apply(catalog -> {
+            putArtist(catalog, event.artist());
+            namesChanged.set(true);
+        });
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAlbumsSaved(AlbumsSavedEvent event) {
+        catalogChanges.apply(catalog -> event.albums().forEach(albumDTO -> {
+            if (catalog.deletedAlbumIds().contains(albumDTO.getId())) {
+                return;
+            }
+            CatalogAlbum saved = createCatalogAlbum(albumDTO);
+            CatalogAlbum current = catalog.albums().get(albumDTO.getId());
+            putAlbum(catalog, albumDTO.getId(), saved);
+            if (current == null || !Objects.equals(current.title(), saved.title()) || !Objects.equals(current.artist(), saved.artist())) {
+                namesChanged.set(true);
+            } else {
+                stockChanged.set(true);
+            }
+        }));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAlbumDeleted(AlbumDeletedEvent event) {
+        catalogChanges.apply(catalog -> {
+            catalog.deletedAlbumIds().add(event.albumId());
+            catalog.albums().remove(event.albumId());
+            namesChanged.set(true);
+        });
+    }
+
+    // Stock changes carry no version, of two committing together the last one delivered wins
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAlbumStockChanged(AlbumStockChangedEvent event) {
+        catalogChanges.apply(catalog -> {
+            event.quantitiesInStockByAlbumId().forEach((albumId, quantityInStock) ->
+                    catalog.albums().computeIfPresent(albumId, (id, album) ->
+                            new CatalogAlbum(album.title(), album.artist(), quantityInStock, album.version())
+                    )
+            );
+            stockChanged.set(true);
+        });
+    }
+
+    private void putArtist(Catalog catalog, ArtistDTO artist) {
+        if (artist.getArtistName() != null) {
+            catalog.artists().put(Artist.normalize(artist.getArtistName()), artist);
+        }
+    }
+
+    // An older version of the album is ignored
+    private void putAlbum(Catalog catalog, Long albumId, CatalogAlbum album) {
+        catalog.albums().merge(albumId, album, (current, saved) -> saved.version() >= current.version() ? saved : current);
+    }
+
+    private CatalogAlbum createCatalogAlbum(AlbumDTO albumDTO) {
+        return new CatalogAlbum(
+                albumDTO.getTitle(),
+                albumDTO.getArtist(),
+                albumDTO.getStock() != null ? albumDTO.getStock() : 0,
+                albumDTO.getVersion() != null ? albumDTO.getVersion() : 0
+        );
+    }
+
+    private CatalogAlbum createCatalogAlbum(AlbumSummaryDTO albumSummary) {
+        return new CatalogAlbum(
+                albumSummary.getTitle(),
+                albumSummary.getArtist(),
+                albumSummary.getQuantityInStock() != null ? albumSummary.getQuantityInStock() : 0,
+                albumSummary.getVersion() != null ? albumSummary.getVersion() : 0
+        );
+    }
+}
@@ -0,0 +1,28 @@
+package com.northcoders.recordshopbackend.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+@Slf4j
+@Service
+public class CacheCleanupService {
+
+    @Autowired
+    private List<CacheService<?>> caches;
+
+    // Expiry only visits the entries that are due, so it can run often enough to remove them close to their deadline
+    @Scheduled(fixedDelayString = "${recordshop.cache.expiry-interval-ms:1000}")
+    public void cleanUpCaches(){
+        int removed = 0;
+        for (CacheService<?> cache : caches) {
+            removed += cache.expireEntries();
+        }
+        if (removed > 0) {
+            log.debug("Cache cleanup removed {} expired entries", removed);
+        }
+    }
+}
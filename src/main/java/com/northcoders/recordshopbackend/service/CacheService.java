@@ -1,53 +1,303 @@
 package com.northcoders.recordshopbackend.service;
 
-import lombok.Data;
-import org.springframework.stereotype.Service;
+import lombok.Getter;
 
-import java.util.HashMap;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
 
-@Service
-@Data
+// Thread-safe, size bounded cache with least recently used eviction and per-key invalidation.
+// Reads are lock free; the access order is only updated when the eviction lock is free so a busy
+// cache never makes readers queue behind each other.
+//
+// Expiry is driven by a deadline ordered queue rather than a scan of every entry. Reads only
+// record the access time, so an entry can sit in the queue with a stale deadline; when it reaches
+// the head it is rescheduled to its real deadline instead of being removed.
 public class CacheService<T> {
-    private final HashMap<Long, CacheObject<T>> cache = new HashMap<>();
-    private final long TIME_TO_LIVE = 300000;
-    private boolean isValid;
 
-    @Data
+    private static final long NO_EXPIRY = Long.MAX_VALUE;
+    private static final int GENERATION_STRIPES = 1024;
+
+    private final ConcurrentHashMap<Long, CacheObject<T>> cache = new ConcurrentHashMap<>();
+    // Access ordered key set used to pick the least recently used entry, guarded by evictionLock
+    private final LinkedHashMap<Long, Boolean> accessOrder = new LinkedHashMap<>(16, 0.75f, true);
+    private final ConcurrentSkipListSet<ExpiryNode> expiryQueue = new ConcurrentSkipListSet<>(
+            Comparator.comparingLong(ExpiryNode::deadline).thenComparingLong(ExpiryNode::sequence)
+    );
+    private final AtomicLong expirySequence = new AtomicLong();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    // Bumped under evictionLock whenever an id is invalidated, ids share a stripe so the array stays
+    // bounded and a collision only costs a skipped put
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+    private final LongSupplier ticker;
+
+    @Getter
+    private final long maximumSize;
+    @Getter
+    private final long expireAfterWrite;
+    @Getter
+    private final long expireAfterAccess;
+
+    // A zero or negative duration disables that expiry policy
+    public CacheService(long maximumSize, Duration expireAfterWrite, Duration expireAfterAccess) {
+        this(maximumSize, expireAfterWrite, expireAfterAccess, System::currentTimeMillis);
+    }
+
+    CacheService(long maximumSize, Duration expireAfterWrite, Duration expireAfterAccess, LongSupplier ticker) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("The maximum cache size must be greater than 0");
+        }
+        this.maximumSize = maximumSize;
+        this.expireAfterWrite = toMillis(expireAfterWrite);
+        this.expireAfterAccess = toMillis(expireAfterAccess);
+        this.ticker = ticker;
+    }
+
+    @Getter
     protected static class CacheObject<T> {
-        private long lastAccessed = System.currentTimeMillis();
-        private T cachedObject;
+        private final long writeTime;
+        private volatile long lastAccessed;
+        private final T cachedObject;
+        // The node currently scheduled in the expiry queue, guarded by evictionLock
+        private ExpiryNode expiryNode;
 
-        public CacheObject(T cachedObject) {
+        public CacheObject(T cachedObject, long writeTime) {
             this.cachedObject = cachedObject;
+            this.writeTime = writeTime;
+            this.lastAccessed = writeTime;
         }
     }
 
-    // Creates an CacheObject and then puts this into the HashMap with it's associated object id
+    private record ExpiryNode(long deadline, long sequence, Long id, CacheObject<?> cacheObject) {}
+
+    // Creates an CacheObject and then puts this into the cache, evicting the least recently used entries if full
     public void put(Long id, T object){
-        CacheObject<T> cacheObject = new CacheObject<T>(object);
-        this.cache.put(id, cacheObject);
+        CacheObject<T> cacheObject = new CacheObject<>(object, ticker.getAsLong());
+        evictionLock.lock();
+        try {
+            unschedule(cache.put(id, cacheObject));
+            accessOrder.put(id, Boolean.TRUE);
+            schedule(id, cacheObject);
+            evictIfRequired();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    // The invalidation generation of an id, read before loading a value for putIfUnchanged
+    public long generation(Long id){
+        return generations.get(stripe(id));
+    }
+
+    // Puts the object only if the id has not been invalidated since the generation was read, so a load
+    // that raced a write cannot put back the value the write invalidated. Returns whether it was put.
+    public boolean putIfUnchanged(Long id, T object, long generation){
+        CacheObject<T> cacheObject = new CacheObject<>(object, ticker.getAsLong());
+        evictionLock.lock();
+        try {
+            if (generations.get(stripe(id)) != generation) {
+                return false;
+            }
+            unschedule(cache.put(id, cacheObject));
+            accessOrder.put(id, Boolean.TRUE);
+            schedule(id, cacheObject);
+            evictIfRequired();
+            return true;
+        } finally {
+            evictionLock.unlock();
+        }
     }
 
     public boolean containsKey(Long id){
-        return this.cache.containsKey(id);
+        CacheObject<T> cacheObject = cache.get(id);
+        return cacheObject != null && deadlineOf(cacheObject) > ticker.getAsLong();
     }
 
+    // Returns the cached object or null when the id is not cached or has expired
     public T get(Long id){
-        System.out.printf("Retrieved ID: %d from cache", id);
-        cache.get(id).setLastAccessed(System.currentTimeMillis());
-        return this.cache.get(id).getCachedObject();
+        CacheObject<T> cacheObject = cache.get(id);
+        long currentTime = ticker.getAsLong();
+
+        if (cacheObject == null || deadlineOf(cacheObject) <= currentTime) {
+            missCount.increment();
+            if (cacheObject != null) {
+                remove(id, cacheObject);
+            }
+            return null;
+        }
+
+        hitCount.increment();
+        cacheObject.lastAccessed = currentTime;
+        // Only reorders when uncontended, an approximate LRU order is good enough for eviction
+        if (evictionLock.tryLock()) {
+            try {
+                if (cache.get(id) == cacheObject) {
+                    accessOrder.get(id);
+                }
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+        return cacheObject.getCachedObject();
     }
 
+    // Invalidates a single id, leaving the rest of the cache untouched
     public void remove(Long id){
-        this.cache.remove(id);
+        evictionLock.lock();
+        try {
+            generations.incrementAndGet(stripe(id));
+            unschedule(cache.remove(id));
+            accessOrder.remove(id);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    // Invalidates several ids under one lock acquisition
+    public void removeAll(Collection<Long> ids){
+        evictionLock.lock();
+        try {
+            for (Long id : ids) {
+                generations.incrementAndGet(stripe(id));
+                unschedule(cache.remove(id));
+                accessOrder.remove(id);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public void clear(){
+        evictionLock.lock();
+        try {
+            for (int i = 0; i < GENERATION_STRIPES; i++) {
+                generations.incrementAndGet(i);
+            }
+            cache.clear();
+            accessOrder.clear();
+            expiryQueue.clear();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public int size(){
+        return cache.size();
+    }
+
+    public long getHitCount(){
+        return hitCount.sum();
+    }
+
+    public long getMissCount(){
+        return missCount.sum();
+    }
+
+    public long getEvictionCount(){
+        return evictionCount.sum();
+    }
+
+    // Removes every entry whose deadline has passed, touching only the entries at the head of the
+    // expiry queue. Returns the number of entries removed.
+    public int expireEntries(){
+        long currentTime = ticker.getAsLong();
+        int removed = 0;
+
+        while (!expiryQueue.isEmpty()) {
+            ExpiryNode head = expiryQueue.first();
+            if (head.deadline() > currentTime) {
+                break;
+            }
+            evictionLock.lock();
+            try {
+                if (!expiryQueue.remove(head) || cache.get(head.id()) != head.cacheObject()) {
+                    continue; // already invalidated or replaced
+                }
+                @SuppressWarnings("unchecked")
+                CacheObject<T> cacheObject = (CacheObject<T>) head.cacheObject();
+                if (deadlineOf(cacheObject) > currentTime) {
+                    // Read since it was queued, move it to its real deadline
+                    schedule(head.id(), cacheObject);
+                } else {
+                    cache.remove(head.id());
+                    accessOrder.remove(head.id());
+                    removed++;
+                }
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+        return removed;
+    }
+
+    private long deadlineOf(CacheObject<T> cacheObject){
+        long deadline = NO_EXPIRY;
+        if (expireAfterWrite != NO_EXPIRY) {
+            deadline = cacheObject.getWriteTime() + expireAfterWrite;
+        }
+        if (expireAfterAccess != NO_EXPIRY) {
+            deadline = Math.min(deadline, cacheObject.getLastAccessed() + expireAfterAccess);
+        }
+        return deadline;
+    }
+
+    private void schedule(Long id, CacheObject<T> cacheObject){
+        long deadline = deadlineOf(cacheObject);
+        if (deadline == NO_EXPIRY) {
+            return;
+        }
+        ExpiryNode node = new ExpiryNode(deadline, expirySequence.incrementAndGet(), id, cacheObject);
+        cacheObject.expiryNode = node;
+        expiryQueue.add(node);
+    }
+
+    private void unschedule(CacheObject<T> cacheObject){
+        if (cacheObject != null && cacheObject.expiryNode != null) {
+            expiryQueue.remove(cacheObject.expiryNode);
+            cacheObject.expiryNode = null;
+        }
+    }
+
+    // Removes the entry only if it has not been replaced in the meantime
+    private void remove(Long id, CacheObject<T> cacheObject){
+        evictionLock.lock();
+        try {
+            if (cache.remove(id, cacheObject)) {
+                accessOrder.remove(id);
+                unschedule(cacheObject);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private void evictIfRequired(){
+        Iterator<Long> leastRecentlyUsed = accessOrder.keySet().iterator();
+        while (accessOrder.size() > maximumSize && leastRecentlyUsed.hasNext()) {
+            Long id = leastRecentlyUsed.next();
+            leastRecentlyUsed.remove();
+            unschedule(cache.remove(id));
+            evictionCount.increment();
+        }
+    }
+
+    private static int stripe(Long id){
+        return Long.hashCode(id) & (GENERATION_STRIPES - 1);
     }
 
-    public void removeExpiredCacheObjects(){
-        long currentTime = System.currentTimeMillis();
-        System.out.println("Purging expired cache data... ");
-        cache.values().removeIf(cacheObject ->
-                currentTime - cacheObject.getLastAccessed() > getTIME_TO_LIVE()
-        );
-        System.out.println("Purge executed");
+    private static long toMillis(Duration duration){
+        return duration == null || duration.isZero() || duration.isNegative() ? NO_EXPIRY : duration.toMillis();
     }
 }
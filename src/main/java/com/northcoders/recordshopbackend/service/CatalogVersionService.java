@@ -0,0 +1,14 @@
+package com.northcoders.recordshopbackend.service;
+
+import java.time.Instant;
+
+public interface CatalogVersionService {
+
+    // Changes whenever anything in the catalog has changed, for the ETag and Last-Modified of collection
+    // responses. Read as one value, so the date and ETag always belong to the same version.
+    record CatalogVersion(long version, String eTag, Instant lastModified) {}
+
+    CatalogVersion getCatalogVersion();
+
+    void catalogChanged();
+}
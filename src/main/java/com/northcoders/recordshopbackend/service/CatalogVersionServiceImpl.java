@@ -0,0 +1,57 @@
+package com.northcoders.recordshopbackend.service;
+
+import com.northcoders.recordshopbackend.event.AlbumDeletedEvent;
+import com.northcoders.recordshopbackend.event.AlbumStockChangedEvent;
+import com.northcoders.recordshopbackend.event.AlbumsSavedEvent;
+import com.northcoders.recordshopbackend.event.ArtistSavedEvent;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicReference;
+
+// A version of the whole catalog, bumped once an album, stock or artist write has committed. Collection
+// responses send it as their ETag, so a client revalidating a list gets a 304 until the catalog changes.
+// The ETag has to be read before the response is loaded: a response loaded after a bump may be newer
+// than its ETag, which only costs a full response on the next visit, but never older.
+@Service
+public class CatalogVersionServiceImpl implements CatalogVersionService {
+
+    // Versions start again from 0 when the application restarts, the start time keeps ETags unique
+    private final String instanceId = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicReference<CatalogVersion> catalogVersion = new AtomicReference<>(createCatalogVersion(0));
+
+    @Override
+    public CatalogVersion getCatalogVersion() {
+        return catalogVersion.get();
+    }
+
+    @Override
+    public void catalogChanged() {
+        catalogVersion.updateAndGet(current -> createCatalogVersion(current.version() + 1));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAlbumsSaved(AlbumsSavedEvent event) {
+        catalogChanged();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAlbumDeleted(AlbumDeletedEvent event) {
+        catalogChanged();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAlbumStockChanged(AlbumStockChangedEvent event) {
+        catalogChanged();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onArtistSaved(ArtistSavedEvent event) {
+        catalogChanged();
+    }
+
+    private CatalogVersion createCatalogVersion(long version) {
+        return new CatalogVersion(version, instanceId + "-" + version, Instant.now());
+    }
+}
@@ -0,0 +1,466 @@
+package com.northcoders.recordshopbackend.service;
+
+import java.util.*;
+import java.util.function.IntConsumer;
+
+// An immutable set of non-negative ints laid out like a Roaring bitmap. The values are split by their
+// high 16 bits into chunks of 65536. A chunk holding up to 4096 values is a sorted array of their low
+// 16 bits, a fuller one a 65536 bit bitmap, so a sparse set such as an artist's albums takes two bytes
+// per album and a dense one such as a genre's at most a bit per album. Set operations work a chunk at
+// a time and a result shares every chunk it does not change with its inputs.
+final class CompressedBitmap {
+
+    static final CompressedBitmap EMPTY = new CompressedBitmap(new char[0], new Object[0], new int[0]);
+
+    private static final int ARRAY_LIMIT = 4096;
+    private static final int BITMAP_WORDS = 1024;
+
+    // The high 16 bits of each chunk, ascending
+    private final char[] keys;
+    // A char[] of sorted low 16 bits or a long[BITMAP_WORDS]
+    private final Object[] chunks;
+    private final int[] chunkCardinalities;
+    private final int cardinality;
+
+    private CompressedBitmap(char[] keys, Object[] chunks, int[] chunkCardinalities) {
+        this.keys = keys;
+        this.chunks = chunks;
+        this.chunkCardinalities = chunkCardinalities;
+        this.cardinality = Arrays.stream(chunkCardinalities).sum();
+    }
+
+    static CompressedBitmap of(int... values) {
+        int[] sorted = values.clone();
+        Arrays.sort(sorted);
+        Builder builder = new Builder(sorted.length / ARRAY_LIMIT + 1);
+        int start = 0;
+        while (start < sorted.length) {
+            char key = (char) (sorted[start] >>> 16);
+            int end = start;
+            while (end < sorted.length && sorted[end] >>> 16 == key) {
+                end++;
+            }
+            char[] lows = new char[end - start];
+            int count = 0;
+            for (int i = start; i < end; i++) {
+                char low = (char) sorted[i];
+                if (count == 0 || lows[count - 1] != low) {
+                    lows[count++] = low;
+                }
+            }
+            builder.add(key, count <= ARRAY_LIMIT ? arrayChunk(Arrays.copyOf(lows, count)) : bitmapChunk(toBits(lows, count)));
+            start = end;
+        }
+        return builder.build();
+    }
+
+    int cardinality() {
+        return cardinality;
+    }
+
+    boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    boolean contains(int value) {
+        int index = Arrays.binarySearch(keys, (char) (value >>> 16));
+        if (index < 0) {
+            return false;
+        }
+        char low = (char) value;
+        return chunks[index] instanceof char[] array
+                ? Arrays.binarySearch(array, low) >= 0
+                : (((long[]) chunks[index])[low >>> 6] & 1L << low) != 0;
+    }
+
+    CompressedBitmap and(CompressedBitmap other) {
+        Builder builder = new Builder(Math.min(keys.length, other.keys.length));
+        int i = 0;
+        int j = 0;
+        while (i < keys.length && j < other.keys.length) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                builder.add(keys[i], and(chunks[i], other.chunks[j]));
+                i++;
+                j++;
+            }
+        }
+        return builder.build();
+    }
+
+    // The cardinality of the intersection, without building it
+    int andCardinality(CompressedBitmap other) {
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < keys.length && j < other.keys.length) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                count += andCardinality(chunks[i], other.chunks[j]);
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    CompressedBitmap or(CompressedBitmap other) {
+        if (other.isEmpty()) {
+            return this;
+        }
+        Builder builder = new Builder(keys.length + other.keys.length);
+        int i = 0;
+        int j = 0;
+        while (i < keys.length || j < other.keys.length) {
+            if (j == other.keys.length || (i < keys.length && keys[i] < other.keys[j])) {
+                builder.add(keys[i], chunks[i], chunkCardinalities[i]);
+                i++;
+            } else if (i == keys.length || keys[i] > other.keys[j]) {
+                builder.add(other.keys[j], other.chunks[j], other.chunkCardinalities[j]);
+                j++;
+            } else {
+                builder.add(keys[i], or(chunks[i], other.chunks[j]));
+                i++;
+                j++;
+            }
+        }
+        return builder.build();
+    }
+
+    // The union of many bitmaps. A chunk in several of them is built once, rather than once per bitmap
+    // as folding with or would.
+    static CompressedBitmap or(Collection<CompressedBitmap> bitmaps) {
+        SortedMap<Character, List<Chunk>> chunksByKey = new TreeMap<>();
+        for (CompressedBitmap bitmap : bitmaps) {
+            for (int i = 0; i < bitmap.keys.length; i++) {
+                chunksByKey.computeIfAbsent(bitmap.keys[i], key -> new ArrayList<>())
+                        .add(new Chunk(bitmap.chunks[i], bitmap.chunkCardinalities[i]));
+            }
+        }
+        Builder builder = new Builder(chunksByKey.size());
+        chunksByKey.forEach((key, chunks) -> builder.add(key, or(chunks)));
+        return builder.build();
+    }
+
+    CompressedBitmap andNot(CompressedBitmap other) {
+        if (other.isEmpty()) {
+            return this;
+        }
+        Builder builder = new Builder(keys.length);
+        int j = 0;
+        for (int i = 0; i < keys.length; i++) {
+            while (j < other.keys.length && other.keys[j] < keys[i]) {
+                j++;
+            }
+            if (j < other.keys.length && other.keys[j] == keys[i]) {
+                builder.add(keys[i], andNot(chunks[i], other.chunks[j]));
+            } else {
+                builder.add(keys[i], chunks[i], chunkCardinalities[i]);
+            }
+        }
+        return builder.build();
+    }
+
+    // The smallest values, at most limit of them, in ascending order
+    int[] toArray(int limit) {
+        int[] values = new int[Math.min(limit, cardinality)];
+        int count = 0;
+        for (int i = 0; i < keys.length && count < values.length; i++) {
+            int high = keys[i] << 16;
+            if (chunks[i] instanceof char[] array) {
+                for (int k = 0; k < array.length && count < values.length; k++) {
+                    values[count++] = high | array[k];
+                }
+            } else {
+                long[] bits = (long[]) chunks[i];
+                for (int word = 0; word < BITMAP_WORDS && count < values.length; word++) {
+                    long remaining = bits[word];
+                    while (remaining != 0 && count < values.length) {
+                        values[count++] = high | word << 6 | Long.numberOfTrailingZeros(remaining);
+                        remaining &= remaining - 1;
+                    }
+                }
+            }
+        }
+        return values;
+    }
+
+    void forEach(IntConsumer action) {
+        for (int i = 0; i < keys.length; i++) {
+            int high = keys[i] << 16;
+            if (chunks[i] instanceof char[] array) {
+                for (char low : array) {
+                    action.accept(high | low);
+                }
+            } else {
+                long[] bits = (long[]) chunks[i];
+                for (int word = 0; word < BITMAP_WORDS; word++) {
+                    long remaining = bits[word];
+                    while (remaining != 0) {
+                        action.accept(high | word << 6 | Long.numberOfTrailingZeros(remaining));
+                        remaining &= remaining - 1;
+                    }
+                }
+            }
+        }
+    }
+
+    int chunkCount() {
+        return keys.length;
+    }
+
+    // Chunk operations, each result is a chunk with its cardinality or null when empty
+
+    private record Chunk(Object values, int cardinality) {}
+
+    private static Chunk arrayChunk(char[] array) {
+        return array.length == 0 ? null : new Chunk(array, array.length);
+    }
+
+    // The smaller of the two forms for the bits
+    private static Chunk bitmapChunk(long[] bits) {
+        int cardinality = 0;
+        for (long word : bits) {
+            cardinality += Long.bitCount(word);
+        }
+        if (cardinality == 0) {
+            return null;
+        }
+        if (cardinality > ARRAY_LIMIT) {
+            return new Chunk(bits, cardinality);
+        }
+        char[] array = new char[cardinality];
+        int count = 0;
+        for (int word = 0; word < BITMAP_WORDS; word++) {
+            long remaining = bits[word];
+            while (remaining != 0) {
+                array[count++] = (char) (word << 6 | Long.numberOfTrailingZeros(remaining));
+                remaining &= remaining - 1;
+            }
+        }
+        return new Chunk(array, cardinality);
+    }
+
+    private static Chunk and(Object a, Object b) {
+        if (a instanceof char[] arrayA && b instanceof char[] arrayB) {
+            char[] result = new char[Math.min(arrayA.length, arrayB.length)];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < arrayA.length && j < arrayB.length) {
+                if (arrayA[i] < arrayB[j]) {
+                    i++;
+                } else if (arrayA[i] > arrayB[j]) {
+                    j++;
+                } else {
+                    result[count++] = arrayA[i];
+                    i++;
+                    j++;
+                }
+            }
+            return arrayChunk(Arrays.copyOf(result, count));
+        }
+        if (a instanceof char[] || b instanceof char[]) {
+            char[] array = a instanceof char[] arrayA ? arrayA : (char[]) b;
+            long[] bits = a instanceof long[] bitsA ? bitsA : (long[]) b;
+            char[] result = new char[array.length];
+            int count = 0;
+            for (char low : array) {
+                if ((bits[low >>> 6] & 1L << low) != 0) {
+                    result[count++] = low;
+                }
+            }
+            return arrayChunk(Arrays.copyOf(result, count));
+        }
+        long[] bitsA = (long[]) a;
+        long[] bitsB = (long[]) b;
+        long[] result = new long[BITMAP_WORDS];
+        for (int word = 0; word < BITMAP_WORDS; word++) {
+            result[word] = bitsA[word] & bitsB[word];
+        }
+        return bitmapChunk(result);
+    }
+
+    private static int andCardinality(Object a, Object b) {
+        int count = 0;
+        if (a instanceof char[] arrayA && b instanceof char[] arrayB) {
+            int i = 0;
+            int j = 0;
+            while (i < arrayA.length && j < arrayB.length) {
+                if (arrayA[i] < arrayB[j]) {
+                    i++;
+                } else if (arrayA[i] > arrayB[j]) {
+                    j++;
+                } else {
+                    count++;
+                    i++;
+                    j++;
+                }
+            }
+        } else if (a instanceof char[] || b instanceof char[]) {
+            char[] array = a instanceof char[] arrayA ? arrayA : (char[]) b;
+            long[] bits = a instanceof long[] bitsA ? bitsA : (long[]) b;
+            for (char low : array) {
+                if ((bits[low >>> 6] & 1L << low) != 0) {
+                    count++;
+                }
+            }
+        } else {
+            long[] bitsA = (long[]) a;
+            long[] bitsB = (long[]) b;
+            for (int word = 0; word < BITMAP_WORDS; word++) {
+                count += Long.bitCount(bitsA[word] & bitsB[word]);
+            }
+        }
+        return count;
+    }
+
+    private static Chunk or(Object a, Object b) {
+        if (a instanceof char[] arrayA && b instanceof char[] arrayB) {
+            char[] result = new char[arrayA.length + arrayB.length];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < arrayA.length || j < arrayB.length) {
+                if (j == arrayB.length || (i < arrayA.length && arrayA[i] < arrayB[j])) {
+                    result[count++] = arrayA[i++];
+                } else if (i == arrayA.length || arrayA[i] > arrayB[j]) {
+                    result[count++] = arrayB[j++];
+                } else {
+                    result[count++] = arrayA[i];
+                    i++;
+                    j++;
+                }
+            }
+            return count <= ARRAY_LIMIT ? arrayChunk(Arrays.copyOf(result, count)) : bitmapChunk(toBits(result, count));
+        }
+        long[] result = a instanceof long[] bitsA ? bitsA.clone() : toBits((char[]) a, ((char[]) a).length);
+        if (b instanceof long[] bitsB) {
+            for (int word = 0; word < BITMAP_WORDS; word++) {
+                result[word] |= bitsB[word];
+            }
+        } else {
+            for (char low : (char[]) b) {
+                result[low >>> 6] |= 1L << low;
+            }
+        }
+        return bitmapChunk(result);
+    }
+
+    // Small chunks are merged as arrays, otherwise every chunk's bits are set in one bitmap
+    private static Chunk or(List<Chunk> chunks) {
+        int cardinality = 0;
+        for (Chunk chunk : chunks) {
+            cardinality += chunk.cardinality();
+        }
+        if (cardinality <= ARRAY_LIMIT) {
+            Chunk union = chunks.get(0);
+            for (int i = 1; i < chunks.size(); i++) {
+                union = or(union.values(), chunks.get(i).values());
+            }
+            return union;
+        }
+        long[] bits = new long[BITMAP_WORDS];
+        for (Chunk chunk : chunks) {
+            if (chunk.values() instanceof long[] chunkBits) {
+                for (int word = 0; word < BITMAP_WORDS; word++) {
+                    bits[word] |= chunkBits[word];
+                }
+            } else {
+                for (char low : (char[]) chunk.values()) {
+                    bits[low >>> 6] |= 1L << low;
+                }
+            }
+        }
+        return bitmapChunk(bits);
+    }
+
+    private static Chunk andNot(Object a, Object b) {
+        if (a instanceof char[] arrayA) {
+            char[] result = new char[arrayA.length];
+            int count = 0;
+            if (b instanceof char[] arrayB) {
+                int j = 0;
+                for (char low : arrayA) {
+                    while (j < arrayB.length && arrayB[j] < low) {
+                        j++;
+                    }
+                    if (j == arrayB.length || arrayB[j] != low) {
+                        result[count++] = low;
+                    }
+                }
+            } else {
+                long[] bitsB = (long[]) b;
+                for (char low : arrayA) {
+                    if ((bitsB[low >>> 6] & 1L << low) == 0) {
+                        result[count++] = low;
+                    }
+                }
+            }
+            return arrayChunk(Arrays.copyOf(result, count));
+        }
+        long[] result = ((long[]) a).clone();
+        if (b instanceof long[] bitsB) {
+            for (int word = 0; word < BITMAP_WORDS; word++) {
+                result[word] &= ~bitsB[word];
+            }
+        } else {
+            for (char low : (char[]) b) {
+                result[low >>> 6] &= ~(1L << low);
+            }
+        }
+        return bitmapChunk(result);
+    }
+
+    private static long[] toBits(char[] array, int length) {
+        long[] bits = new long[BITMAP_WORDS];
+        for (int i = 0; i < length; i++) {
+            bits[array[i] >>> 6] |= 1L << array[i];
+        }
+        return bits;
+    }
+
+    private static final class Builder {
+
+        private final List<Character> keys;
+        private final List<Object> chunks;
+        private final List<Integer> cardinalities;
+
+        Builder(int expectedChunks) {
+            keys = new ArrayList<>(expectedChunks);
+            chunks = new ArrayList<>(expectedChunks);
+            cardinalities = new ArrayList<>(expectedChunks);
+        }
+
+        void add(char key, Chunk chunk) {
+            if (chunk != null) {
+                add(key, chunk.values(), chunk.cardinality());
+            }
+        }
+
+        void add(char key, Object chunk, int cardinality) {
+            keys.add(key);
+            chunks.add(chunk);
+            cardinalities.add(cardinality);
+        }
+
+        CompressedBitmap build() {
+            if (keys.isEmpty()) {
+                return EMPTY;
+            }
+            char[] keyArray = new char[keys.size()];
+            int[] cardinalityArray = new int[keys.size()];
+            for (int i = 0; i < keyArray.length; i++) {
+                keyArray[i] = keys.get(i);
+                cardinalityArray[i] = cardinalities.get(i);
+            }
+            return new CompressedBitmap(keyArray, chunks.toArray(), cardinalityArray);
+        }
+    }
+}
@@ -22,6 +22,8 @@ public interface DTOMapper {
                 .artworkUrl(album.getArtworkUrl())
                 .dateCreated(album.getDateCreated().toString())
                 .dateModified(album.getDateModified().toString())
+                .hot(album.isHot())
+                .version(album.getVersion())
                 .build();
     }
 
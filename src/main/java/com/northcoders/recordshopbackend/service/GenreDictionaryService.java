@@ -0,0 +1,95 @@
+package com.northcoders.recordshopbackend.service;
+
+import com.northcoders.recordshopbackend.model.Genre;
+import com.northcoders.recordshopbackend.repository.GenreRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+// In memory dictionary of every genre keyed by its normalized name. It is loaded from the database
+// once and then kept up to date on insert, so resolving a genre for an album needs no query.
+@Service
+public class GenreDictionaryService {
+
+    @Autowired
+    private GenreRepository genreRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private CacheService<Boolean> missingGenreCache;
+
+    private final ConcurrentHashMap<String, Genre> genres = new ConcurrentHashMap<>();
+    // Concurrent callers for the same new genre share a single insert, which runs outside the map's lock
+    private final SingleFlight<String, Genre> genreInserts = new SingleFlight<>();
+    private volatile boolean loaded;
+
+    // Returns the genre for the name, creating it if it doesn't exist yet
+    public Genre getOrCreateGenre(String genreName) {
+        ensureLoaded();
+        String normalizedName = Genre.normalize(genreName);
+        Genre genre = genres.get(normalizedName);
+        if (genre == null) {
+            Genre createdGenre = genreInserts.load(normalizedName, () -> createGenreIfAbsent(genreName.trim(), normalizedName));
+            Genre existingGenre = genres.putIfAbsent(normalizedName, createdGenre);
+            genre = existingGenre != null ? existingGenre : createdGenre;
+        }
+        return copyOf(genre);
+    }
+
+    public void register(Genre genre) {
+        Genre entry = Genre.builder()
+                .id(genre.getId())
+                .genre(genre.getGenre().intern())
+                .normalizedName(Genre.normalize(genre.getGenre()))
+                .build();
+        genres.putIfAbsent(entry.getNormalizedName(), entry);
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (!loaded) {
+                genreRepository.findAll().forEach(this::register);
+                loaded = true;
+            }
+        }
+    }
+
+    // Inserts in its own transaction so losing a race with another instance on the unique
+    // normalized name doesn't roll back the caller, the existing genre is read back instead
+    private Genre createGenreIfAbsent(String genreName, String normalizedName) {
+        TransactionTemplate newTransaction = new TransactionTemplate(transactionManager);
+        newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        Genre genre;
+        try {
+            genre = newTransaction.execute(status -> genreRepository.findByNormalizedName(normalizedName)
+                    .orElseGet(() -> genreRepository.save(Genre.builder().genre(genreName).build())));
+        } catch (DataIntegrityViolationException e) {
+            genre = genreRepository.findByNormalizedName(normalizedName).orElseThrow(() -> e);
+        }
+        missingGenreCache.remove(genre.getId()); // the id must be visible straight away
+        return Genre.builder()
+                .id(genre.getId())
+                .genre(genre.getGenre().intern())
+                .normalizedName(normalizedName)
+                .build();
+    }
+
+    // Callers get their own detached copy, the dictionary entries are never handed out
+    private Genre copyOf(Genre genre) {
+        return Genre.builder()
+                .id(genre.getId())
+                .genre(genre.getGenre())
+                .normalizedName(genre.getNormalizedName())
+                .build();
+    }
+}
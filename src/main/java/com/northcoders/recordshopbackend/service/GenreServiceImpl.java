@@ -9,6 +9,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.Optional;
 
 @Service
 public class GenreServiceImpl implements GenreService, DTOMapper{
@@ -16,6 +17,12 @@ public class GenreServiceImpl implements GenreService, DTOMapper{
     @Autowired
     private GenreRepository genreRepository;
 
+    @Autowired
+    private CacheService<Boolean> missingGenreCache;
+
+    @Autowired
+    private GenreDictionaryService genreDictionaryService;
+
     @Override
     public List<GenreDTO> getAllGenres() {
         return genreRepository.findAll().stream().map(this::createGenreDTO).toList();
@@ -23,37 +30,40 @@ public class GenreServiceImpl implements GenreService, DTOMapper{
 
     @Override
     public Genre addNewGenre(String genre) {
-        return genreRepository.save(
+        Genre savedGenre = genreRepository.save(
                 Genre.builder()
                         .genre(genre)
                         .build()
         );
+        missingGenreCache.remove(savedGenre.getId());
+        genreDictionaryService.register(savedGenre);
+        return savedGenre;
     }
 
     @Override
     public Genre getOrCreateGenre(String genre) {
-        List<Genre> genres = genreRepository.findAll();
-        for(Genre g : genres){
-            if(g.getGenre().equalsIgnoreCase(genre)){
-                return g;
-            }
-        }
-        return addNewGenre(genre);
+        return genreDictionaryService.getOrCreateGenre(genre);
     }
 
     @Override
     public GenreWithAlbumsDTO getGenreByIdWithAlbums(Long genreId) {
-        if(genreRepository.findById(genreId).isPresent()){
-            return createGenreWithDTO(genreRepository.findById(genreId).get());
+        if(missingGenreCache.containsKey(genreId)){
+            throw new ItemNotFoundException(String.format("Genre with the id '%d' cannot be found", genreId));
+        }
+        Optional<Genre> genre = genreRepository.findWithAlbumsById(genreId);
+        if(genre.isPresent()){
+            return createGenreWithDTO(genre.get());
         }else {
+            missingGenreCache.put(genreId, Boolean.TRUE);
             throw new ItemNotFoundException(String.format("Genre with the id '%d' cannot be found", genreId));
         }
     }
 
     @Override
     public GenreWithAlbumsDTO getGenreByNameWithAlbums(String genre) {
-        if(genreRepository.findByGenre(genre).isPresent()){
-            return createGenreWithDTO(genreRepository.findByGenre(genre).get());
+        Optional<Genre> genreWithAlbums = genreRepository.findWithAlbumsByNormalizedName(Genre.normalize(genre));
+        if(genreWithAlbums.isPresent()){
+            return createGenreWithDTO(genreWithAlbums.get());
         }else {
             throw new ItemNotFoundException(String.format("No Genre '%s' cannot be found", genre));
         }
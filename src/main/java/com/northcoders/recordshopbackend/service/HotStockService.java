@@ -0,0 +1,36 @@
+package com.northcoders.recordshopbackend.service;
+
+import java.util.function.Supplier;
+
+public interface HotStockService {
+
+    enum Outcome {
+        TAKEN,
+        OUT_OF_STOCK,
+        // The album's stock is in the database, use the database path instead
+        NOT_HOT
+    }
+
+    boolean isHot(Long albumId);
+
+    Outcome take(Long albumId, int quantity);
+
+    // Puts units back, for restocks and for undoing a take. False when the album is not hot.
+    boolean release(Long albumId, int quantity);
+
+    // The units available in memory, or null when the album is not hot
+    Integer getQuantityInStock(Long albumId);
+
+    // Loads the album's stock from the database into counters
+    void enable(Long albumId);
+
+    // Writes the counters back to the database and serves the album from the database again
+    void disable(Long albumId);
+
+    // Runs a change that writes the album's stock in the database directly. For a hot album the
+    // counters are written back first and rebuilt from the database afterwards.
+    <T> T runWithStockInDatabase(Long albumId, Supplier<T> databaseChange);
+
+    // Writes the units taken since the last flush to the database
+    void flush();
+}
@@ -0,0 +1,387 @@
+package com.northcoders.recordshopbackend.service;
+
+import com.northcoders.recordshopbackend.event.AlbumStockChangedEvent;
+import com.northcoders.recordshopbackend.model.Album;
+import com.northcoders.recordshopbackend.repository.AlbumRepository;
+import com.northcoders.recordshopbackend.repository.StockRepository;
+import com.northcoders.recordshopbackend.repository.StockRepositoryCustom.StockLevel;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+// Hot-item mode for flash-sale releases. A hot album's available units are split across striped
+// counters, so concurrent sales decrement different counters with a compare-and-set instead of
+// queueing on one stock row. A unit is only ever taken from one counter, so it can never be sold twice.
+//
+// Units taken are written back to the stock table by a periodic batched flush. If a flush fails its
+// units are added back to the pending total and written by the next one. The database therefore lags
+// the counters by at most one flush interval, and the counters are rebuilt from it on startup.
+@Slf4j
+@Service
+public class HotStockServiceImpl implements HotStockService {
+
+    // Counters are spaced 16 ints (64 bytes) apart so two stripes never share a cache line
+    private static final int PADDING = 16;
+    // Stripes are set to this when the counters are retired, no take can succeed afterwards
+    private static final int RETIRED = Integer.MIN_VALUE;
+
+    @Autowired
+    private StockRepository stockRepository;
+
+    @Autowired
+    private AlbumRepository albumRepository;
+
+    @Autowired
+    private CacheService<Album> albumCacheService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${recordshop.stock.hot.stripes:0}")
+    private int stripes;
+
+    private final ConcurrentHashMap<Long, HotStock> hotStocks = new ConcurrentHashMap<>();
+    // Flushes and retirements never overlap, so no units are written twice
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    static final class HotStock {
+        private final Long albumId;
+        private final Long stockId;
+        private final int stripeMask;
+        private final AtomicIntegerArray counters;
+        // Units taken minus units released since the last flush
+        private final AtomicInteger unflushed = new AtomicInteger();
+        // The units the counters were built with, and the units flushes have taken from the database since
+        private final int installed;
+        private int flushed;
+        private boolean retired;
+
+        HotStock(Long albumId, Long stockId, int installed, int available, int stripeCount) {
+            this.albumId = albumId;
+            this.stockId = stockId;
+            this.installed = installed;
+            this.stripeMask = stripeCount - 1;
+            this.counters = new AtomicIntegerArray(stripeCount * PADDING);
+            for (int stripe = 0; stripe < stripeCount; stripe++) {
+                int share = available / stripeCount + (stripe < available % stripeCount ? 1 : 0);
+                counters.set(stripe * PADDING, share);
+            }
+        }
+
+        // Null when the counters have been retired
+        Outcome take(int quantity) {
+            int home = (int) Thread.currentThread().threadId();
+            for (int i = 0; i <= stripeMask; i++) {
+                int index = ((home + i) & stripeMask) * PADDING;
+                int available;
+                while ((available = counters.get(index)) >= quantity) {
+                    if (counters.compareAndSet(index, available, available - quantity)) {
+                        unflushed.addAndGet(quantity);
+                        return Outcome.TAKEN;
+                    }
+                }
+            }
+            return takeAcrossStripes(quantity);
+        }
+
+        // No single stripe has enough, gather from several and put everything back if the total
+        // is short. Synchronized with retire() so units are never put back into retired stripes.
+        private synchronized Outcome takeAcrossStripes(int quantity) {
+            if (retired) {
+                return null;
+            }
+            int[] takenFrom = new int[stripeMask + 1];
+            int taken = 0;
+            for (int stripe = 0; stripe <= stripeMask && taken < quantity; stripe++) {
+                int index = stripe * PADDING;
+                int available;
+                while ((available = counters.get(index)) > 0) {
+                    int part = Math.min(available, quantity - taken);
+                    if (counters.compareAndSet(index, available, available - part)) {
+                        takenFrom[stripe] = part;
+                        taken += part;
+                        break;
+                    }
+                }
+            }
+            if (taken == quantity) {
+                unflushed.addAndGet(quantity);
+                return Outcome.TAKEN;
+            }
+            for (int stripe = 0; stripe <= stripeMask; stripe++) {
+                if (takenFrom[stripe] > 0) {
+                    counters.addAndGet(stripe * PADDING, takenFrom[stripe]);
+                }
+            }
+            return Outcome.OUT_OF_STOCK;
+        }
+
+        synchronized boolean release(int quantity) {
+            if (retired) {
+                return false;
+            }
+            int home = (int) Thread.currentThread().threadId();
+            counters.addAndGet((home & stripeMask) * PADDING, quantity);
+            unflushed.addAndGet(-quantity);
+            return true;
+        }
+
+        int available() {
+            int available = 0;
+            for (int stripe = 0; stripe <= stripeMask; stripe++) {
+                available += Math.max(0, counters.get(stripe * PADDING));
+            }
+            return available;
+        }
+
+        // Stops all takes and returns the units that were still available
+        synchronized int retire() {
+            retired = true;
+            int available = 0;
+            for (int stripe = 0; stripe <= stripeMask; stripe++) {
+                available += counters.getAndSet(stripe * PADDING, RETIRED);
+            }
+            return available;
+        }
+    }
+
+    @Override
+    public boolean isHot(Long albumId) {
+        return hotStocks.containsKey(albumId);
+    }
+
+    @Override
+    public Outcome take(Long albumId, int quantity) {
+        while (true) {
+            HotStock hotStock = hotStocks.get(albumId);
+            if (hotStock == null) {
+                return Outcome.NOT_HOT;
+            }
+            Outcome outcome = hotStock.take(quantity);
+            if (outcome != null) {
+                return outcome;
+            }
+            // Retiring, wait until the counters are written back before looking again
+            flushLock.lock();
+            flushLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean release(Long albumId, int quantity) {
+        HotStock hotStock = hotStocks.get(albumId);
+        return hotStock != null && hotStock.release(quantity);
+    }
+
+    @Override
+    public Integer getQuantityInStock(Long albumId) {
+        HotStock hotStock = hotStocks.get(albumId);
+        return hotStock == null ? null : hotStock.available();
+    }
+
+    @Override
+    public void enable(Long albumId) {
+        flushLock.lock();
+        try {
+            if (!hotStocks.containsKey(albumId)) {
+                load(List.of(albumId));
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @Override
+    public void disable(Long albumId) {
+        flushLock.lock();
+        try {
+            retire(albumId);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @Override
+    public <T> T runWithStockInDatabase(Long albumId, Supplier<T> databaseChange) {
+        if (!hotStocks.containsKey(albumId)) {
+            return databaseChange.get();
+        }
+        flushLock.lock();
+        try {
+            boolean wasHot = retire(albumId);
+            try {
+                return databaseChange.get();
+            } finally {
+                if (wasHot) {
+                    reloadAfterCommit(albumId);
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // Inside a transaction the change is only visible to the counters once it has committed, until
+    // then the album is served from the database
+    private void reloadAfterCommit(Long albumId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            load(List.of(albumId));
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                enable(albumId);
+            }
+        });
+    }
+
+    // Rebuilds the counters of every hot album from the stock table
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadHotAlbums() {
+        flushLock.lock();
+        try {
+            List<Long> albumIds = albumRepository.findHotAlbumIds();
+            load(albumIds);
+            if (!albumIds.isEmpty()) {
+                log.info("Serving stock for {} hot albums from memory", albumIds.size());
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${recordshop.stock.hot.flush-interval-ms:250}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            Map<HotStock, Integer> pending = new HashMap<>();
+            for (HotStock hotStock : hotStocks.values()) {
+                int units = hotStock.unflushed.getAndSet(0);
+                if (units != 0) {
+                    pending.put(hotStock, units);
+                }
+            }
+            if (pending.isEmpty()) {
+                return;
+            }
+
+            try {
+                writeToDatabase(pending);
+            } catch (Throwable e) {
+                // The write rolled back, an Error included, so its units are left for the next flush
+                pending.forEach((hotStock, units) -> hotStock.unflushed.addAndGet(units));
+                if (e instanceof Error error) {
+                    throw error;
+                }
+                log.warn("Hot stock flush of {} albums failed, it will be retried", pending.size(), e);
+                return;
+            }
+            // Every written unit is counted before anything else can fail, or a retire would write it again
+            pending.forEach((hotStock, units) -> hotStock.flushed += units);
+            Map<Long, Integer> quantitiesInStockByAlbumId = new HashMap<>();
+            pending.forEach((hotStock, units) -> {
+                albumCacheService.remove(hotStock.albumId);
+                quantitiesInStockByAlbumId.put(hotStock.albumId, hotStock.available());
+            });
+            eventPublisher.publishEvent(new AlbumStockChangedEvent(quantitiesInStockByAlbumId));
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    // Both called with the flushLock held
+
+    private void load(Collection<Long> albumIds) {
+        if (albumIds.isEmpty()) {
+            return;
+        }
+        Map<Long, StockLevel> stockLevels = newTransaction().execute(status ->
+                stockRepository.lockStockLevelsByAlbumIds(albumIds)
+        );
+        int stripeCount = stripeCount();
+        stockLevels.values().forEach(stockLevel -> {
+            int available = Math.max(0, stockLevel.quantityInStock());
+            hotStocks.put(stockLevel.albumId(), new HotStock(
+                    stockLevel.albumId(), stockLevel.stockId(), available, available, stripeCount
+            ));
+        });
+    }
+
+    private boolean retire(Long albumId) {
+        HotStock hotStock = hotStocks.get(albumId);
+        if (hotStock == null) {
+            return false;
+        }
+        int available = hotStock.retire();
+        // What the database still has to lose to match the counters, including unflushed takes
+        int units = hotStock.installed - hotStock.flushed - available;
+        if (units != 0) {
+            try {
+                writeToDatabase(Map.of(hotStock, units));
+            } catch (Throwable e) {
+                // Keep serving from fresh counters holding the same units rather than lose them
+                hotStocks.put(albumId, new HotStock(
+                        albumId, hotStock.stockId, hotStock.installed - hotStock.flushed, available, stripeCount()
+                ));
+                throw e;
+            }
+        }
+        hotStocks.remove(albumId);
+        albumCacheService.remove(albumId);
+        return true;
+    }
+
+    private void writeToDatabase(Map<HotStock, Integer> unitsTaken) {
+        SortedMap<Long, Integer> unitsByStockId = new TreeMap<>();
+        List<Long> albumIds = new ArrayList<>();
+        unitsTaken.forEach((hotStock, units) -> {
+            unitsByStockId.put(hotStock.stockId, units);
+            albumIds.add(hotStock.albumId);
+        });
+        newTransaction().executeWithoutResult(status -> {
+            stockRepository.decreaseQuantitiesInStock(unitsByStockId);
+            albumRepository.touchDateModifiedByIdIn(albumIds, Instant.now());
+        });
+    }
+
+    // Written back in a transaction of its own, a caller's rollback must not undo units already sold
+    private TransactionTemplate newTransaction() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return transactionTemplate;
+    }
+
+    private int stripeCount() {
+        int requested = stripes > 0 ? stripes : Runtime.getRuntime().availableProcessors();
+        return Integer.highestOneBit(Math.max(1, requested) * 2 - 1);
+    }
+}
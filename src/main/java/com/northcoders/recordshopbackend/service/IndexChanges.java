@@ -0,0 +1,68 @@
+package com.northcoders.recordshopbackend.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+// Applies changes to an in-memory index that is built from the database once the application is
+// ready. Changes committed while the build is reading the database are queued and replayed on the
+// built index, so a change must leave the index the same when the build has already read it.
+final class IndexChanges<T> {
+
+    private enum State {
+        // Changes are skipped, the build will read them from the database
+        NOT_BUILT,
+        // Changes are queued, the build may have read them already or not
+        BUILDING,
+        BUILT
+    }
+
+    // Serializes changes to the index and the switch to a newly built one
+    private final ReentrantLock lock = new ReentrantLock();
+    private State state = State.NOT_BUILT;
+    private final List<Consumer<T>> pendingChanges = new ArrayList<>();
+    private volatile T index;
+
+    IndexChanges(T emptyIndex) {
+        this.index = emptyIndex;
+    }
+
+    T index() {
+        return index;
+    }
+
+    void startBuild() {
+        lock.lock();
+        try {
+            state = State.BUILDING;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void finishBuild(T builtIndex) {
+        lock.lock();
+        try {
+            pendingChanges.forEach(change -> change.accept(builtIndex));
+            pendingChanges.clear();
+            index = builtIndex;
+            state = State.BUILT;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void apply(Consumer<T> change) {
+        lock.lock();
+        try {
+            switch (state) {
+                case NOT_BUILT -> {}
+                case BUILDING -> pendingChanges.add(change);
+                case BUILT -> change.accept(index);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
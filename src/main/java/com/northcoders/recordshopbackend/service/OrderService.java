@@ -0,0 +1,11 @@
+package com.northcoders.recordshopbackend.service;
+
+import com.northcoders.recordshopbackend.dto.OrderDTO;
+import com.northcoders.recordshopbackend.dto.OrderResultDTO;
+
+import java.util.concurrent.CompletableFuture;
+
+public interface OrderService {
+    // Completes once the transaction holding the order has committed
+    CompletableFuture<OrderResultDTO> placeOrder(OrderDTO order);
+}
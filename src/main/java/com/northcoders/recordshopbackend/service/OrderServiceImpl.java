@@ -0,0 +1,296 @@
+package com.northcoders.recordshopbackend.service;
+
+import com.northcoders.recordshopbackend.dto.OrderDTO;
+import com.northcoders.recordshopbackend.dto.OrderLineDTO;
+import com.northcoders.recordshopbackend.dto.OrderLineResultDTO;
+import com.northcoders.recordshopbackend.dto.OrderResultDTO;
+import com.northcoders.recordshopbackend.event.AlbumStockChangedEvent;
+import com.northcoders.recordshopbackend.model.Album;
+import com.northcoders.recordshopbackend.repository.AlbumRepository;
+import com.northcoders.recordshopbackend.repository.StockRepository;
+import com.northcoders.recordshopbackend.repository.StockRepositoryCustom.StockLevel;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.stream.Collectors;
+
+// Orders are reserved with group commit. Callers queue their order and a single committer thread
+// takes every order that arrived while the previous group was committing, reserves them all in one
+// transaction and completes each caller once it has committed. Under load many orders share one
+// transaction and one commit instead of queueing behind each other.
+//
+// Inside the transaction the stock rows of the whole group are locked in stock id order, the orders
+// are applied one after another to an in-memory copy of the stock levels, and only the net change
+// per album is written back. Each order is reserved whole or rejected whole.
+//
+// Lines for hot albums are taken from their in-memory counters instead (see HotStockService) and are
+// put back if the order is rejected or the transaction fails.
+@Slf4j
+@Service
+public class OrderServiceImpl implements OrderService {
+
+    @Autowired
+    private StockRepository stockRepository;
+
+    @Autowired
+    private AlbumRepository albumRepository;
+
+    @Autowired
+    private CacheService<Album> albumCacheService;
+
+    @Autowired
+    private HotStockService hotStockService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${recordshop.orders.max-group-size:200}")
+    private int maxGroupSize;
+
+    @Value("${recordshop.orders.queue-capacity:10000}")
+    private int queueCapacity;
+
+    private BlockingQueue<PendingOrder> pendingOrders;
+    private Thread committer;
+    private volatile boolean running;
+
+    private record PendingOrder(
+            List<OrderLineDTO> lines,
+            // The order's lines with the quantities of repeated albums added together
+            Map<Long, Integer> quantitiesByAlbumId,
+            CompletableFuture<OrderResultDTO> result
+    ) {}
+
+    @PostConstruct
+    public void start() {
+        pendingOrders = new LinkedBlockingQueue<>(queueCapacity);
+        running = true;
+        committer = Thread.ofPlatform().name("order-group-commit").daemon().start(this::commitOrders);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        committer.interrupt();
+    }
+
+    @Override
+    public CompletableFuture<OrderResultDTO> placeOrder(OrderDTO order) {
+        Map<Long, Integer> quantitiesByAlbumId = order.getLines().stream().collect(Collectors.toMap(
+                OrderLineDTO::getAlbumId, OrderLineDTO::getQuantity, Integer::sum, LinkedHashMap::new
+        ));
+        PendingOrder pendingOrder = new PendingOrder(order.getLines(), quantitiesByAlbumId, new CompletableFuture<>());
+        try {
+            // Blocks when the queue is full so callers slow down rather than pile up
+            pendingOrders.put(pendingOrder);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while placing the order", e);
+        }
+        return pendingOrder.result();
+    }
+
+    private void commitOrders() {
+        List<PendingOrder> group = new ArrayList<>();
+        while (running) {
+            try {
+                group.add(pendingOrders.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            pendingOrders.drainTo(group, maxGroupSize - 1);
+            try {
+                commitGroup(group);
+            } catch (Throwable e) {
+                // Whatever escaped the group, an Error included, fails only its orders. The committer is the
+                // only thread completing orders and must keep running.
+                log.error("Commit of {} grouped orders failed", group.size(), e);
+                group.forEach(order -> order.result().completeExceptionally(e));
+            }
+            group.clear();
+        }
+
+        pendingOrders.drainTo(group);
+        group.forEach(order -> order.result().completeExceptionally(
+                new IllegalStateException("Order processing has stopped")
+        ));
+    }
+
+    private void commitGroup(List<PendingOrder> group) {
+        List<OrderResultDTO> results;
+        Map<Long, Integer> hotTaken = new HashMap<>();
+        try {
+            results = new TransactionTemplate(transactionManager).execute(status -> reserveOrders(group, hotTaken));
+        } catch (Throwable e) {
+            // The database changes rolled back, so the units taken from hot albums go back too
+            hotTaken.forEach(this::releaseHotUnits);
+            // An Error is not down to one order, so the group is not retried
+            if (group.size() == 1 || e instanceof Error) {
+                group.forEach(order -> order.result().completeExceptionally(e));
+                return;
+            }
+            // One bad order must not fail the others it was grouped with
+            log.warn("Commit of {} grouped orders failed, retrying them one at a time", group.size(), e);
+            group.forEach(order -> commitGroup(List.of(order)));
+            return;
+        }
+
+        // Only after commit, so callers never see a reservation that could still roll back
+        Set<Long> reservedAlbumIds = new HashSet<>();
+        for (int i = 0; i < group.size(); i++) {
+            if (results.get(i).getStatus() == OrderResultDTO.Status.CONFIRMED) {
+                reservedAlbumIds.addAll(group.get(i).quantitiesByAlbumId().keySet());
+            }
+        }
+        reservedAlbumIds.forEach(albumCacheService::remove);
+        for (int i = 0; i < group.size(); i++) {
+            group.get(i).result().complete(results.get(i));
+        }
+    }
+
+    private List<OrderResultDTO> reserveOrders(List<PendingOrder> group, Map<Long, Integer> hotTaken) {
+        Set<Long> albumIds = group.stream()
+                .flatMap(order -> order.quantitiesByAlbumId().keySet().stream())
+                .collect(Collectors.toCollection(HashSet::new));
+        Set<Long> hotAlbumIds = albumIds.stream().filter(hotStockService::isHot).collect(Collectors.toCollection(HashSet::new));
+        albumIds.removeAll(hotAlbumIds);
+        Map<Long, StockLevel> stockLevels = albumIds.isEmpty()
+                ? new HashMap<>()
+                : new HashMap<>(stockRepository.lockStockLevelsByAlbumIds(albumIds));
+
+        Map<Long, Integer> availableByAlbumId = new HashMap<>();
+        stockLevels.forEach((albumId, stockLevel) -> availableByAlbumId.put(albumId, stockLevel.quantityInStock()));
+        Map<Long, Integer> reservedByAlbumId = new HashMap<>();
+
+        List<OrderResultDTO> results = new ArrayList<>(group.size());
+        for (PendingOrder order : group) {
+            boolean reservable;
+            Set<Long> notHotAlbumIds = new HashSet<>();
+            do {
+                // An album that stopped being hot since the group started has its stock in the database
+                // again, its row is locked and the order is checked again with it on the database path
+                if (!notHotAlbumIds.isEmpty()) {
+                    hotAlbumIds.removeAll(notHotAlbumIds);
+                    Map<Long, StockLevel> notHotStockLevels = stockRepository.lockStockLevelsByAlbumIds(notHotAlbumIds);
+                    stockLevels.putAll(notHotStockLevels);
+                    notHotStockLevels.forEach((albumId, stockLevel) -> availableByAlbumId.put(albumId, stockLevel.quantityInStock()));
+                    notHotAlbumIds.clear();
+                }
+                reservable = order.quantitiesByAlbumId().entrySet().stream()
+                        .filter(line -> !hotAlbumIds.contains(line.getKey()))
+                        .allMatch(line ->
+                                availableByAlbumId.containsKey(line.getKey()) && availableByAlbumId.get(line.getKey()) >= line.getValue()
+                        );
+                // Hot lines are only taken once the database lines are known to fit
+                reservable = reservable && takeHotLines(order, hotAlbumIds, hotTaken, notHotAlbumIds);
+            } while (!notHotAlbumIds.isEmpty());
+            if (reservable) {
+                order.quantitiesByAlbumId().forEach((albumId, quantity) -> {
+                    if (!hotAlbumIds.contains(albumId)) {
+                        availableByAlbumId.merge(albumId, -quantity, Integer::sum);
+                        reservedByAlbumId.merge(albumId, quantity, Integer::sum);
+                    }
+                });
+            }
+            order.quantitiesByAlbumId().keySet().stream()
+                    .filter(hotAlbumIds::contains)
+                    .forEach(albumId -> availableByAlbumId.put(albumId, hotStockService.getQuantityInStock(albumId)));
+            results.add(createOrderResult(order, reservable, availableByAlbumId));
+        }
+
+        if (!reservedByAlbumId.isEmpty()) {
+            SortedMap<Long, Integer> reservedByStockId = new TreeMap<>();
+            reservedByAlbumId.forEach((albumId, quantity) ->
+                    reservedByStockId.put(stockLevels.get(albumId).stockId(), quantity)
+            );
+            stockRepository.decreaseQuantitiesInStock(reservedByStockId);
+            albumRepository.updateDateModifiedByIdIn(reservedByAlbumId.keySet(), Instant.now());
+
+            Map<Long, Integer> quantitiesInStockByAlbumId = new HashMap<>();
+            reservedByAlbumId.keySet().forEach(albumId -> quantitiesInStockByAlbumId.put(albumId, availableByAlbumId.get(albumId)));
+            eventPublisher.publishEvent(new AlbumStockChangedEvent(quantitiesInStockByAlbumId));
+        }
+        return results;
+    }
+
+    // Takes all of the order's hot lines or none of them. An album found to be no longer hot is added to
+    // notHotAlbumIds, for the caller to check the order again.
+    private boolean takeHotLines(PendingOrder order, Set<Long> hotAlbumIds, Map<Long, Integer> hotTaken, Set<Long> notHotAlbumIds) {
+        Map<Long, Integer> taken = new HashMap<>();
+        for (Map.Entry<Long, Integer> line : order.quantitiesByAlbumId().entrySet()) {
+            if (!hotAlbumIds.contains(line.getKey())) {
+                continue;
+            }
+            HotStockService.Outcome outcome = hotStockService.take(line.getKey(), line.getValue());
+            if (outcome != HotStockService.Outcome.TAKEN) {
+                taken.forEach(this::releaseHotUnits);
+                if (outcome == HotStockService.Outcome.NOT_HOT) {
+                    notHotAlbumIds.add(line.getKey());
+                }
+                return false;
+            }
+            taken.put(line.getKey(), line.getValue());
+        }
+        taken.forEach((albumId, quantity) -> hotTaken.merge(albumId, quantity, Integer::sum));
+        return true;
+    }
+
+    // Counters retired since the units were taken have already written them to the database as sold, so
+    // they are put back on the stock row instead. In a transaction of its own, the group's may still roll back.
+    private void releaseHotUnits(Long albumId, int quantity) {
+        if (hotStockService.release(albumId, quantity)) {
+            return;
+        }
+        TransactionTemplate newTransaction = new TransactionTemplate(transactionManager);
+        newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        newTransaction.executeWithoutResult(status -> stockRepository.increaseQuantityInStock(albumId, quantity));
+        albumCacheService.remove(albumId);
+    }
+
+    private OrderResultDTO createOrderResult(
+            PendingOrder order,
+            boolean reserved,
+            Map<Long, Integer> availableByAlbumId
+    ) {
+        List<OrderLineResultDTO> lines = order.lines().stream().map(line -> {
+            Integer quantityInStock = availableByAlbumId.get(line.getAlbumId());
+            OrderLineResultDTO.Status status;
+            if (reserved) {
+                status = OrderLineResultDTO.Status.RESERVED;
+            } else if (quantityInStock == null) {
+                status = OrderLineResultDTO.Status.NOT_FOUND;
+            } else if (quantityInStock < order.quantitiesByAlbumId().get(line.getAlbumId())) {
+                status = OrderLineResultDTO.Status.OUT_OF_STOCK;
+            } else {
+                status = OrderLineResultDTO.Status.NOT_RESERVED;
+            }
+            return OrderLineResultDTO.builder()
+                    .albumId(line.getAlbumId())
+                    .quantity(line.getQuantity())
+                    .status(status)
+                    .quantityInStock(quantityInStock)
+                    .build();
+        }).toList();
+
+        return OrderResultDTO.builder()
+                .status(reserved ? OrderResultDTO.Status.CONFIRMED : OrderResultDTO.Status.REJECTED)
+                .lines(lines)
+                .build();
+    }
+}
@@ -0,0 +1,15 @@
+package com.northcoders.recordshopbackend.service;
+
+import com.northcoders.recordshopbackend.dto.AlbumQueryDTO;
+import org.springframework.http.ResponseEntity;
+
+import java.util.function.Supplier;
+
+public interface ResponseCacheService {
+
+    // The album response serialized at the album's version, the loader only runs on a miss
+    SerializedResponse getAlbumResponse(Long albumId, long version, Supplier<ResponseEntity<?>> loader);
+
+    // A page of the album listing serialized at the catalog version, the loader only runs on a miss
+    SerializedResponse getAlbumPageResponse(AlbumQueryDTO albumQuery, long catalogVersion, Supplier<ResponseEntity<?>> loader);
+}
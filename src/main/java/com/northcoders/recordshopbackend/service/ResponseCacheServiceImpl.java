@@ -0,0 +1,90 @@
+package com.northcoders.recordshopbackend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.northcoders.recordshopbackend.dto.AlbumDTO;
+import com.northcoders.recordshopbackend.dto.AlbumQueryDTO;
+import com.northcoders.recordshopbackend.event.AlbumDeletedEvent;
+import com.northcoders.recordshopbackend.event.AlbumStockChangedEvent;
+import com.northcoders.recordshopbackend.event.AlbumsSavedEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.function.Supplier;
+
+// Album and listing responses kept as serialized JSON, so a hit skips the DTO mapping and Jackson.
+// Every entry records the version it was loaded at and a lookup at any other version is a miss, which
+// is what keeps a cached response from outliving a write. The write events only free the entries early.
+@Service
+public class ResponseCacheServiceImpl implements ResponseCacheService {
+
+    @Autowired
+    private CacheService<SerializedResponse> albumResponseCache;
+
+    @Autowired
+    private CacheService<SerializedResponse> albumPageResponseCache;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Concurrent misses for the same response share a single load and serialization
+    private final SingleFlight<String, SerializedResponse> responseLoads = new SingleFlight<>();
+
+    @Override
+    public SerializedResponse getAlbumResponse(Long albumId, long version, Supplier<ResponseEntity<?>> loader) {
+        return getResponse(albumResponseCache, albumId, "album:" + albumId, version, loader);
+    }
+
+    @Override
+    public SerializedResponse getAlbumPageResponse(AlbumQueryDTO albumQuery, long catalogVersion, Supplier<ResponseEntity<?>> loader) {
+        String key = "albums:" + albumQuery;
+        return getResponse(albumPageResponseCache, hash(key), key, catalogVersion, loader);
+    }
+
+    private SerializedResponse getResponse(
+            CacheService<SerializedResponse> cache,
+            Long id,
+            String key,
+            long version,
+            Supplier<ResponseEntity<?>> loader
+    ) {
+        SerializedResponse cachedResponse = cache.get(id);
+        if (cachedResponse != null && cachedResponse.matches(key, version)) {
+            return cachedResponse;
+        }
+        return responseLoads.load(key + "@" + version, () -> {
+            SerializedResponse response = SerializedResponse.serialize(key, version, loader.get(), objectMapper);
+            cache.put(id, response);
+            return response;
+        });
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAlbumsSaved(AlbumsSavedEvent event) {
+        albumResponseCache.removeAll(event.albums().stream().map(AlbumDTO::getId).toList());
+        albumPageResponseCache.clear();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAlbumDeleted(AlbumDeletedEvent event) {
+        albumResponseCache.remove(event.albumId());
+        albumPageResponseCache.clear();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAlbumStockChanged(AlbumStockChangedEvent event) {
+        albumResponseCache.removeAll(event.quantitiesInStockByAlbumId().keySet());
+        albumPageResponseCache.clear();
+    }
+
+    // 64-bit FNV-1a, the listing cache is keyed by id. Entries keep their full key, so a collision is a miss.
+    private static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
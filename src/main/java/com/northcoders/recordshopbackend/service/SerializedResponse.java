@@ -0,0 +1,156 @@
+package com.northcoders.recordshopbackend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Getter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+// A response with its body serialized to JSON once. The gzip and deflate encodings are compressed the
+// first time a client accepts them and then kept, so sending a cached response only copies bytes.
+public final class SerializedResponse {
+
+    // Smaller bodies gain less from compression than the Content-Encoding costs the client to undo
+    static final int MIN_COMPRESSED_SIZE = 1024;
+
+    public enum Encoding {
+        IDENTITY(null),
+        GZIP("gzip"),
+        DEFLATE("deflate");
+
+        private final String contentCoding;
+
+        Encoding(String contentCoding) {
+            this.contentCoding = contentCoding;
+        }
+
+        // Gzip when the client accepts it, otherwise deflate. Brotli is not offered, the JDK has no encoder.
+        public static Encoding negotiate(String acceptEncoding) {
+            if (acceptEncoding == null || acceptEncoding.isBlank()) {
+                return IDENTITY;
+            }
+            boolean gzip = false;
+            boolean deflate = false;
+            for (String coding : acceptEncoding.toLowerCase(Locale.ROOT).split(",")) {
+                String[] parts = coding.split(";");
+                if (isRefused(parts)) {
+                    continue;
+                }
+                switch (parts[0].trim()) {
+                    case "gzip", "x-gzip", "*" -> gzip = true;
+                    case "deflate" -> deflate = true;
+                    default -> { }
+                }
+            }
+            return gzip ? GZIP : deflate ? DEFLATE : IDENTITY;
+        }
+
+        // q=0 means the coding is not acceptable
+        private static boolean isRefused(String[] parts) {
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        return Double.parseDouble(parameter.substring(2)) <= 0;
+                    } catch (NumberFormatException e) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    // What the response was cached under, so a lookup can tell a stale or colliding entry from its own
+    @Getter
+    private final String key;
+    @Getter
+    private final long version;
+    private final HttpStatusCode status;
+    private final HttpHeaders headers;
+    private final byte[] json;
+    private volatile byte[] gzip;
+    private volatile byte[] deflate;
+
+    private SerializedResponse(String key, long version, HttpStatusCode status, HttpHeaders headers, byte[] json) {
+        this.key = key;
+        this.version = version;
+        this.status = status;
+        this.headers = headers;
+        this.json = json;
+    }
+
+    public static SerializedResponse serialize(String key, long version, ResponseEntity<?> response, ObjectMapper objectMapper) {
+        try {
+            HttpHeaders headers = new HttpHeaders();
+            headers.addAll(response.getHeaders());
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            return new SerializedResponse(key, version, response.getStatusCode(),
+                    HttpHeaders.readOnlyHttpHeaders(headers), objectMapper.writeValueAsBytes(response.getBody()));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("The response could not be serialized", e);
+        }
+    }
+
+    public boolean matches(String key, long version) {
+        return this.version == version && this.key.equals(key);
+    }
+
+    public ResponseEntity<byte[]> toResponseEntity(Encoding encoding) {
+        if (json.length < MIN_COMPRESSED_SIZE) {
+            encoding = Encoding.IDENTITY;
+        }
+        HttpHeaders responseHeaders = new HttpHeaders();
+        responseHeaders.addAll(headers);
+        if (encoding.contentCoding != null) {
+            responseHeaders.add(HttpHeaders.CONTENT_ENCODING, encoding.contentCoding);
+        }
+        byte[] body = body(encoding);
+        responseHeaders.setContentLength(body.length);
+        return new ResponseEntity<>(body, responseHeaders, status);
+    }
+
+    // Two requests that miss at the same time may both compress, either result is kept
+    private byte[] body(Encoding encoding) {
+        return switch (encoding) {
+            case IDENTITY -> json;
+            case GZIP -> {
+                byte[] body = gzip;
+                if (body == null) {
+                    gzip = body = compress(encoding);
+                }
+                yield body;
+            }
+            case DEFLATE -> {
+                byte[] body = deflate;
+                if (body == null) {
+                    deflate = body = compress(encoding);
+                }
+                yield body;
+            }
+        };
+    }
+
+    private byte[] compress(Encoding encoding) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(json.length / 4 + 64);
+        try (OutputStream outputStream = encoding == Encoding.GZIP
+                ? new GZIPOutputStream(compressed)
+                : new DeflaterOutputStream(compressed)) {
+            outputStream.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return compressed.toByteArray();
+    }
+}
@@ -1,9 +1,16 @@
 package com.northcoders.recordshopbackend.service;
 
+import com.northcoders.recordshopbackend.dto.StockAdjustmentDTO;
+import com.northcoders.recordshopbackend.dto.StockAdjustmentResultDTO;
 import com.northcoders.recordshopbackend.model.Stock;
 
+import java.util.List;
+
 public interface StockService {
     Stock addNewStock(int quantity);
     Stock getStockById(Long stockId);
     Stock savedUpdatedStock(Stock updatedStock);
+    boolean decreaseQuantityInStock(Long albumId, int quantity);
+    void lockStockOfAlbum(Long albumId);
+    List<StockAdjustmentResultDTO> adjustStock(List<StockAdjustmentDTO> adjustments);
 }
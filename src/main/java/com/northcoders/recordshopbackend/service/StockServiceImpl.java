@@ -1,10 +1,24 @@
 package com.northcoders.recordshopbackend.service;
 
+import com.northcoders.recordshopbackend.dto.StockAdjustmentDTO;
+import com.northcoders.recordshopbackend.dto.StockAdjustmentResultDTO;
+import com.northcoders.recordshopbackend.event.AlbumStockChangedEvent;
 import com.northcoders.recordshopbackend.exception.ItemNotFoundException;
+import com.northcoders.recordshopbackend.model.Album;
 import com.northcoders.recordshopbackend.model.Stock;
+import com.northcoders.recordshopbackend.repository.AlbumRepository;
 import com.northcoders.recordshopbackend.repository.StockRepository;
+import com.northcoders.recordshopbackend.repository.StockRepositoryCustom.StockLevel;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 @Service
 public class StockServiceImpl implements StockService {
@@ -12,6 +26,21 @@ public class StockServiceImpl implements StockService {
     @Autowired
     private StockRepository stockRepository;
 
+    @Autowired
+    private AlbumRepository albumRepository;
+
+    @Autowired
+    private HotStockService hotStockService;
+
+    @Autowired
+    private CacheService<Album> albumCacheService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     @Override
     public Stock addNewStock(int quantity) {
         return stockRepository.save(
@@ -34,4 +63,143 @@ public class StockServiceImpl implements StockService {
     public Stock savedUpdatedStock(Stock updatedStock) {
         return stockRepository.save(updatedStock);
     }
+
+    // True when the stock was taken, false when the album has less than the quantity in stock
+    @Override
+    public boolean decreaseQuantityInStock(Long albumId, int quantity) {
+        return stockRepository.decreaseQuantityInStock(albumId, quantity) == 1;
+    }
+
+    // For a change that writes both an album and its stock through the entities. Hibernate flushes the album
+    // UPDATE first, so the stock row is locked up front to keep the stock then album order.
+    @Override
+    public void lockStockOfAlbum(Long albumId) {
+        stockRepository.lockStockLevelsByAlbumIds(List.of(albumId));
+    }
+
+    // The whole batch is one transaction with a fixed number of statements: the stock rows and then the
+    // album rows are locked, the lines are applied in request order in memory, and the new quantities
+    // are written back as one JDBC batch. A line's version is checked against the locked album row, so
+    // no write can land between the check and the version bump.
+    @Override
+    public List<StockAdjustmentResultDTO> adjustStock(List<StockAdjustmentDTO> adjustments) {
+        List<Long> hotAlbumIds = adjustments.stream()
+                .map(StockAdjustmentDTO::getAlbumId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .filter(hotStockService::isHot)
+                .toList();
+        List<StockAdjustmentResultDTO> results = runWithStockInDatabase(hotAlbumIds, () ->
+                new TransactionTemplate(transactionManager).execute(status -> applyAdjustments(adjustments))
+        );
+
+        albumCacheService.removeAll(results.stream()
+                .filter(result -> result.getStatus() == StockAdjustmentResultDTO.Status.ADJUSTED)
+                .map(StockAdjustmentResultDTO::getAlbumId)
+                .collect(Collectors.toSet()));
+        return results;
+    }
+
+    // Hot albums have their counters written back for the batch and rebuilt from the new quantities
+    private <T> T runWithStockInDatabase(List<Long> hotAlbumIds, Supplier<T> databaseChange) {
+        if (hotAlbumIds.isEmpty()) {
+            return databaseChange.get();
+        }
+        return hotStockService.runWithStockInDatabase(hotAlbumIds.getFirst(), () ->
+                runWithStockInDatabase(hotAlbumIds.subList(1, hotAlbumIds.size()), databaseChange)
+        );
+    }
+
+    private List<StockAdjustmentResultDTO> applyAdjustments(List<StockAdjustmentDTO> adjustments) {
+        Set<Long> albumIds = adjustments.stream()
+                .map(StockAdjustmentDTO::getAlbumId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<Long, StockLevel> stockLevels = stockRepository.lockStockLevelsByAlbumIds(albumIds);
+
+        Map<Long, Integer> quantitiesByAlbumId = new HashMap<>();
+        stockLevels.forEach((albumId, stockLevel) -> quantitiesByAlbumId.put(albumId, stockLevel.quantityInStock()));
+        SortedMap<Long, Integer> adjustedByStockId = new TreeMap<>();
+        Set<Long> adjustedAlbumIds = new HashSet<>();
+
+        List<StockAdjustmentResultDTO> results = new ArrayList<>(adjustments.size());
+        for (StockAdjustmentDTO adjustment : adjustments) {
+            Long albumId = adjustment.getAlbumId();
+            Map<String, String> errors = validate(adjustment);
+            if (!errors.isEmpty()) {
+                results.add(createResult(albumId, StockAdjustmentResultDTO.Status.INVALID, quantitiesByAlbumId.get(albumId), errors));
+                continue;
+            }
+            if (!stockLevels.containsKey(albumId)) {
+                results.add(createResult(albumId, StockAdjustmentResultDTO.Status.NOT_FOUND, null,
+                        Map.of("albumId", String.format("Album with the ID '%s' cannot be found", albumId))));
+                continue;
+            }
+
+            StockLevel stockLevel = stockLevels.get(albumId);
+            int quantityInStock = quantitiesByAlbumId.get(albumId);
+            if (adjustment.getVersion() != null && adjustment.getVersion() != stockLevel.albumVersion()) {
+                results.add(createResult(albumId, StockAdjustmentResultDTO.Status.PRECONDITION_FAILED, quantityInStock,
+                        Map.of("version", String.format("The album has changed, its current version is %d", stockLevel.albumVersion()))));
+                continue;
+            }
+            int adjustedQuantity = adjustment.getQuantity() != null
+                    ? adjustment.getQuantity()
+                    : quantityInStock + adjustment.getDelta();
+            if (adjustedQuantity < 0) {
+                results.add(createResult(albumId, StockAdjustmentResultDTO.Status.INVALID, quantityInStock,
+                        Map.of("delta", String.format("The stock cannot go below 0, there are %d in stock", quantityInStock))));
+                continue;
+            }
+
+            quantitiesByAlbumId.put(albumId, adjustedQuantity);
+            adjustedByStockId.put(stockLevel.stockId(), adjustedQuantity);
+            adjustedAlbumIds.add(albumId);
+            results.add(createResult(albumId, StockAdjustmentResultDTO.Status.ADJUSTED, adjustedQuantity, null));
+        }
+
+        if (!adjustedByStockId.isEmpty()) {
+            stockRepository.setQuantitiesInStock(adjustedByStockId);
+            albumRepository.updateDateModifiedByIdIn(adjustedAlbumIds, Instant.now());
+
+            Map<Long, Integer> quantitiesInStockByAlbumId = new HashMap<>();
+            adjustedAlbumIds.forEach(albumId -> quantitiesInStockByAlbumId.put(albumId, quantitiesByAlbumId.get(albumId)));
+            eventPublisher.publishEvent(new AlbumStockChangedEvent(quantitiesInStockByAlbumId));
+        }
+        // Every adjusted album's version went up by one with the date modified update
+        results.forEach(result -> {
+            StockLevel stockLevel = stockLevels.get(result.getAlbumId());
+            if (stockLevel != null) {
+                result.setVersion(stockLevel.albumVersion() + (adjustedAlbumIds.contains(result.getAlbumId()) ? 1 : 0));
+            }
+        });
+        return results;
+    }
+
+    private Map<String, String> validate(StockAdjustmentDTO adjustment) {
+        Map<String, String> errors = new HashMap<>();
+        if (adjustment.getAlbumId() == null) {
+            errors.put("albumId", "An album ID is mandatory");
+        }
+        if ((adjustment.getDelta() == null) == (adjustment.getQuantity() == null)) {
+            errors.put("delta", "Either a delta or a quantity is mandatory, not both");
+        } else if (adjustment.getQuantity() != null && adjustment.getQuantity() < 0) {
+            errors.put("quantity", "A stock quantity cannot be negative");
+        }
+        return errors;
+    }
+
+    private StockAdjustmentResultDTO createResult(
+            Long albumId,
+            StockAdjustmentResultDTO.Status status,
+            Integer quantityInStock,
+            Map<String, String> errors
+    ) {
+        return StockAdjustmentResultDTO.builder()
+                .albumId(albumId)
+                .status(status)
+                .quantityInStock(quantityInStock)
+                .errors(errors)
+                .build();
+    }
 }
@@ -0,0 +1,21 @@
+-- Albums and stock take their ids from pooled sequences, allocated 50 at a time so bulk imports can be sent
+-- as JDBC batches, where they used to be identity columns. A database created before that change has rows
+-- but no sequences, or sequences Hibernate created starting at 1, so new inserts would reuse existing ids.
+--
+-- Run once against an existing PostgreSQL database before starting this version, e.g.
+--   psql -d recordshop -f src/main/resources/db/album-stock-sequences.sql
+-- It is safe to run again, a sequence is only ever moved forward.
+
+create sequence if not exists albums_seq increment by 50;
+alter sequence albums_seq increment by 50;
+select setval('albums_seq', greatest(
+        (select coalesce(max(id), 0) from albums) + 50,
+        (select last_value from albums_seq)
+));
+
+create sequence if not exists stock_seq increment by 50;
+alter sequence stock_seq increment by 50;
+select setval('stock_seq', greatest(
+        (select coalesce(max(id), 0) from stock) + 50,
+        (select last_value from stock_seq)
+));
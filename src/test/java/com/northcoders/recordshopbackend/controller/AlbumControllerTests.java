@@ -3,8 +3,16 @@ package com.northcoders.recordshopbackend.controller;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.northcoders.recordshopbackend.controllers.AlbumController;
 import com.northcoders.recordshopbackend.dto.AlbumDTO;
+import com.northcoders.recordshopbackend.dto.AlbumPageDTO;
+import com.northcoders.recordshopbackend.dto.AlbumQueryDTO;
+import com.northcoders.recordshopbackend.dto.AlbumVersionDTO;
 import com.northcoders.recordshopbackend.dto.NewAlbumDTO;
+import com.northcoders.recordshopbackend.service.AlbumEventStreamService;
+import com.northcoders.recordshopbackend.service.AlbumExportService;
 import com.northcoders.recordshopbackend.service.AlbumService;
+import com.northcoders.recordshopbackend.service.CatalogVersionService;
+import com.northcoders.recordshopbackend.service.ResponseCacheService;
+import com.northcoders.recordshopbackend.service.SerializedResponse;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -14,14 +22,24 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.sql.Date;
+import java.time.Instant;
 import java.util.List;
+import java.util.function.Supplier;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @AutoConfigureMockMvc
@@ -31,6 +49,18 @@ public class AlbumControllerTests {
     @Mock
     private AlbumService mockAlbumService;
 
+    @Mock
+    private AlbumExportService mockAlbumExportService;
+
+    @Mock
+    private CatalogVersionService mockCatalogVersionService;
+
+    @Mock
+    private ResponseCacheService mockResponseCacheService;
+
+    @Mock
+    private AlbumEventStreamService mockAlbumEventStreamService;
+
     @InjectMocks
     private AlbumController albumController;
 
@@ -44,6 +74,15 @@ public class AlbumControllerTests {
     public  void setup(){
         mockMvcController = MockMvcBuilders.standaloneSetup(albumController).build();
         mapper = new ObjectMapper();
+        // Every lookup misses, so the response is loaded and serialized as it would be on a miss
+        when(mockResponseCacheService.getAlbumResponse(any(), anyLong(), any()))
+                .thenAnswer(invocation -> serialize(invocation.getArgument(2)));
+        when(mockResponseCacheService.getAlbumPageResponse(any(), anyLong(), any()))
+                .thenAnswer(invocation -> serialize(invocation.getArgument(2)));
+    }
+
+    private SerializedResponse serialize(Supplier<ResponseEntity<?>> loader){
+        return SerializedResponse.serialize("test", 0, loader.get(), mapper);
     }
 
     @Test
@@ -77,17 +116,24 @@ public class AlbumControllerTests {
                         .build()
         );
 
-        when(mockAlbumService.getAllInStockAlbumDTOs()).thenReturn(albumDTOs);
+        when(mockCatalogVersionService.getCatalogVersion())
+                .thenReturn(new CatalogVersionService.CatalogVersion(7, "m4x1-7", Instant.parse("2024-12-13T12:00:00Z")));
+        when(mockAlbumService.getAlbumPage(any(AlbumQueryDTO.class)))
+                .thenReturn(new AlbumPageDTO(albumDTOs, "Mw"));
         // Act & Assert
         this.mockMvcController.perform(
-                        MockMvcRequestBuilders.get("/api/v1/albums"))
+                        MockMvcRequestBuilders.get("/api/v1/albums/in-stock").param("size", "3"))
                 .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string("ETag", "\"m4x1-7\""))
+                .andExpect(MockMvcResultMatchers.header().string("X-Next-Cursor", "Mw"))
                 .andExpect(MockMvcResultMatchers.jsonPath("$[0].id").value(1))
                 .andExpect(MockMvcResultMatchers.jsonPath("$[0].artist").value("Davido"))
                 .andExpect(MockMvcResultMatchers.jsonPath("$[1].id").value(2))
                 .andExpect(MockMvcResultMatchers.jsonPath("$[1].artist").value("Marie Dahlstrom"))
                 .andExpect(MockMvcResultMatchers.jsonPath("$[2].id").value(3))
                 .andExpect(MockMvcResultMatchers.jsonPath("$[2].artist").value("Kendrick Lamar"));
+
+        verify(mockAlbumService).getAlbumPage(AlbumQueryDTO.builder().size(3).inStock(true).build());
     }
 
     @Test
@@ -138,6 +184,7 @@ public class AlbumControllerTests {
                 .stock(4)
                 .build();
 
+        when(mockAlbumService.getAlbumVersion(id)).thenReturn(new AlbumVersionDTO(id, 0L, Instant.parse("2024-12-13T12:00:00Z"), false));
         when(mockAlbumService.returnAlbumDTOById(id)).thenReturn(timelessDTO);
 
         // Act & Assert
@@ -150,6 +197,40 @@ public class AlbumControllerTests {
                 .andExpect(MockMvcResultMatchers.jsonPath("$.stock").value(4));
     }
 
+    @Test
+    @DisplayName("GET album by Id with its current ETag or an unchanged date is 304 Not Modified without loading the album")
+    void getAlbumByIdNotModified() throws Exception {
+        // Arrange
+        Long id = 2L;
+        when(mockAlbumService.getAlbumVersion(id)).thenReturn(new AlbumVersionDTO(id, 3L, Instant.parse("2024-12-13T12:00:00Z"), false));
+
+        // Act & Assert
+        this.mockMvcController.perform(
+                        MockMvcRequestBuilders.get("/api/v1/albums/2").header("If-None-Match", "\"3\""))
+                .andExpect(MockMvcResultMatchers.status().isNotModified())
+                .andExpect(MockMvcResultMatchers.header().string("ETag", "\"3\""));
+        this.mockMvcController.perform(
+                        MockMvcRequestBuilders.get("/api/v1/albums/2").header("If-Modified-Since", "Fri, 13 Dec 2024 12:00:00 GMT"))
+                .andExpect(MockMvcResultMatchers.status().isNotModified());
+
+        verify(mockAlbumService, never()).returnAlbumDTOById(id);
+    }
+
+    @Test
+    @DisplayName("GET albums with the catalog's ETag is 304 Not Modified without loading the page")
+    void getAlbumsNotModified() throws Exception {
+        // Arrange
+        when(mockCatalogVersionService.getCatalogVersion())
+                .thenReturn(new CatalogVersionService.CatalogVersion(7, "m4x1-7", Instant.parse("2024-12-13T12:00:00Z")));
+
+        // Act & Assert
+        this.mockMvcController.perform(
+                        MockMvcRequestBuilders.get("/api/v1/albums").header("If-None-Match", "\"m4x1-7\""))
+                .andExpect(MockMvcResultMatchers.status().isNotModified());
+
+        verify(mockAlbumService, never()).getAlbumPage(any(AlbumQueryDTO.class));
+    }
+
     @Test
     @DisplayName("DELETE /{albumId}")
     void testDeleteByAlbumId() throws Exception {
@@ -179,4 +260,47 @@ public class AlbumControllerTests {
 
         verify(mockAlbumService, times(1)).deleteAlbumById(id);
     }
+
+    @Test
+    @DisplayName("GET /export streams the albums as NDJSON")
+    void testExportAlbums() throws Exception {
+        // Arrange
+        doAnswer(invocation -> {
+            OutputStream outputStream = invocation.getArgument(2);
+            outputStream.write("{\"id\":1}\n{\"id\":2}\n".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(mockAlbumExportService).exportAlbums(eq(null), eq(AlbumExportService.Format.NDJSON), any(OutputStream.class));
+
+        // Act
+        MvcResult result = this.mockMvcController.perform(MockMvcRequestBuilders.get("/api/v1/albums/export"))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+
+        // Assert
+        this.mockMvcController.perform(MockMvcRequestBuilders.asyncDispatch(result))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(MockMvcResultMatchers.content().string("{\"id\":1}\n{\"id\":2}\n"));
+    }
+
+    @Test
+    @DisplayName("GET /events streams the subscriber's events with its filters")
+    void testStreamAlbumEvents() throws Exception {
+        // Arrange
+        SseEmitter emitter = new SseEmitter();
+        when(mockAlbumEventStreamService.subscribe(List.of(1L, 2L), null, List.of("Pop"))).thenReturn(emitter);
+
+        // Act
+        MvcResult result = this.mockMvcController.perform(MockMvcRequestBuilders.get("/api/v1/albums/events?albumId=1&albumId=2&genre=Pop"))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+        emitter.send(SseEmitter.event().name("album").data("{\"id\":1,\"stock\":4}"));
+        emitter.complete();
+
+        // Assert
+        this.mockMvcController.perform(MockMvcRequestBuilders.asyncDispatch(result))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(MockMvcResultMatchers.content().string("event:album\ndata:{\"id\":1,\"stock\":4}\n\n"));
+    }
 }
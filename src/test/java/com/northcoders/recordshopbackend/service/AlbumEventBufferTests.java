@@ -0,0 +1,63 @@
+package com.northcoders.recordshopbackend.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AlbumEventBufferTests {
+
+    @Test
+    @DisplayName("Only the latest event of an album is kept, in the order of the latest events")
+    void testTakeLatestEventPerAlbum() throws InterruptedException {
+        // Arrange
+        AlbumEventBuffer buffer = new AlbumEventBuffer(10);
+        buffer.add(new AlbumEventBuffer.Event(1L, "album", "{\"stock\":5}"));
+        buffer.add(new AlbumEventBuffer.Event(2L, "album", "{\"stock\":3}"));
+        buffer.add(new AlbumEventBuffer.Event(1L, "album", "{\"stock\":4}"));
+
+        // Act
+        AlbumEventBuffer.Batch batch = buffer.take(0);
+
+        // Assert
+        assertThat(batch.resync()).isFalse();
+        assertThat(batch.events()).containsExactly(
+                new AlbumEventBuffer.Event(2L, "album", "{\"stock\":3}"),
+                new AlbumEventBuffer.Event(1L, "album", "{\"stock\":4}")
+        );
+        assertThat(buffer.take(0).isEmpty()).isTrue();
+    }
+
+    @Test
+    @DisplayName("More albums than the capacity drops them and asks for a resync, later events still follow")
+    void testOverflowResyncs() throws InterruptedException {
+        // Arrange
+        AlbumEventBuffer buffer = new AlbumEventBuffer(2);
+        buffer.add(new AlbumEventBuffer.Event(1L, "album", "{}"));
+        buffer.add(new AlbumEventBuffer.Event(2L, "album", "{}"));
+        buffer.add(new AlbumEventBuffer.Event(3L, "album", "{}"));
+        buffer.add(new AlbumEventBuffer.Event(4L, "deleted", "{}"));
+
+        // Act
+        AlbumEventBuffer.Batch batch = buffer.take(0);
+
+        // Assert
+        assertThat(batch.resync()).isTrue();
+        assertThat(batch.events()).containsExactly(new AlbumEventBuffer.Event(4L, "deleted", "{}"));
+    }
+
+    @Test
+    @DisplayName("Take waits for an event, returns an empty batch on timeout and null once closed")
+    void testTakeWaits() throws InterruptedException {
+        // Arrange
+        AlbumEventBuffer buffer = new AlbumEventBuffer(10);
+        Thread.ofVirtual().start(() -> buffer.add(new AlbumEventBuffer.Event(1L, "album", "{}")));
+
+        // Act & Assert
+        assertThat(buffer.take(5000).events()).hasSize(1);
+        assertThat(buffer.take(10).isEmpty()).isTrue();
+        buffer.close();
+        buffer.add(new AlbumEventBuffer.Event(2L, "album", "{}"));
+        assertThat(buffer.take(5000)).isNull();
+    }
+}
@@ -0,0 +1,98 @@
+package com.northcoders.recordshopbackend.service;
+
+import com.northcoders.recordshopbackend.service.AlbumFacetIndex.Facet;
+import com.northcoders.recordshopbackend.service.AlbumFacetIndex.FacetCount;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AlbumFacetIndexTests {
+
+    private AlbumFacetIndex index;
+
+    @BeforeEach
+    public void setup(){
+        index = AlbumFacetIndex.build(List.of(
+                new AlbumFacetIndex.Album(1L, "Afrobeats", "2019", "Burna Boy", true, 0),
+                new AlbumFacetIndex.Album(2L, "Afrobeats", "2023", "Davido", true, 0),
+                new AlbumFacetIndex.Album(3L, "Afrobeats", "2023", "Davido", false, 0),
+                new AlbumFacetIndex.Album(4L, "Afrobeats", "2015", "Wizkid", true, 0),
+                new AlbumFacetIndex.Album(5L, "Rap", "2022", "Kendrick Lamar", true, 0),
+                new AlbumFacetIndex.Album(6L, "Pop", null, "Adele", false, 0)
+        ));
+    }
+
+    @Test
+    @DisplayName("Values of a facet are ORed, facets are ANDed, and each facet is counted without its own filter")
+    void testBrowse(){
+        // Act
+        AlbumFacetIndex.Result result = index.browse(Map.of(
+                Facet.GENRE, Set.of("Afrobeats"),
+                Facet.YEAR, Set.of("2019", "2020", "2021", "2022", "2023"),
+                Facet.STOCK, Set.of(AlbumFacetIndex.IN_STOCK)
+        ), 10, 10);
+
+        // Assert
+        assertThat(result.total()).isEqualTo(2);
+        assertThat(result.albumIds()).containsExactly(1, 2);
+        // Other genres with the year and stock filters
+        assertThat(result.facetCounts().get(Facet.GENRE)).containsExactly(new FacetCount("Afrobeats", 2), new FacetCount("Rap", 1));
+        assertThat(result.facetCounts().get(Facet.YEAR)).containsExactly(
+                new FacetCount("2015", 1), new FacetCount("2019", 1), new FacetCount("2023", 1));
+        assertThat(result.facetCounts().get(Facet.STOCK)).containsExactly(
+                new FacetCount(AlbumFacetIndex.IN_STOCK, 2), new FacetCount(AlbumFacetIndex.OUT_OF_STOCK, 1));
+        assertThat(result.facetCounts().get(Facet.ARTIST)).containsExactly(new FacetCount("Burna Boy", 1), new FacetCount("Davido", 1));
+    }
+
+    @Test
+    @DisplayName("Without a selection every album matches and the facet limit keeps the most common values")
+    void testBrowseEverything(){
+        // Act
+        AlbumFacetIndex.Result result = index.browse(Map.of(), 3, 1);
+
+        // Assert
+        assertThat(result.total()).isEqualTo(6);
+        assertThat(result.albumIds()).containsExactly(1, 2, 3);
+        assertThat(result.facetCounts().get(Facet.GENRE)).containsExactly(new FacetCount("Afrobeats", 4));
+        assertThat(result.facetCounts().get(Facet.YEAR)).containsExactly(new FacetCount("2023", 2));
+        assertThat(index.browse(Map.of(Facet.GENRE, Set.of("Jazz")), 10, 10).total()).isZero();
+    }
+
+    @Test
+    @DisplayName("Saves move albums between values, stock changes and deletes update the bitmaps, older versions are ignored")
+    void testUpdate(){
+        // Act
+        index.update(List.of(
+                new AlbumFacetIndex.Album(5L, "Hip Hop", "2022", "Kendrick Lamar", true, 1),
+                new AlbumFacetIndex.Album(7L, "Rap", "2024", "Kendrick Lamar", true, 0)
+        ), List.of(4L));
+        index.update(List.of(new AlbumFacetIndex.Album(5L, "Rap", "2022", "Kendrick Lamar", true, 0)), List.of());
+        index.updateStock(Map.of(3L, 5, 1L, 0, 99L, 1));
+
+        // Assert
+        assertThat(index.size()).isEqualTo(6);
+        assertThat(index.browse(Map.of(Facet.GENRE, Set.of("Rap")), 10, 10).albumIds()).containsExactly(7);
+        assertThat(index.browse(Map.of(Facet.GENRE, Set.of("Hip Hop")), 10, 10).albumIds()).containsExactly(5);
+        assertThat(index.browse(Map.of(Facet.ARTIST, Set.of("Wizkid")), 10, 10).total()).isZero();
+        assertThat(index.values(Facet.ARTIST)).doesNotContain("Wizkid");
+        assertThat(index.browse(Map.of(Facet.STOCK, Set.of(AlbumFacetIndex.OUT_OF_STOCK)), 10, 10).albumIds()).containsExactly(1, 6);
+    }
+
+    @Test
+    @DisplayName("A save delivered after the album's delete does not add it back")
+    void testSaveAfterDelete(){
+        // Act
+        index.update(List.of(), List.of(5L));
+        index.update(List.of(new AlbumFacetIndex.Album(5L, "Hip Hop", "2022", "Kendrick Lamar", true, 5)), List.of());
+
+        // Assert
+        assertThat(index.size()).isEqualTo(5);
+        assertThat(index.browse(Map.of(Facet.GENRE, Set.of("Hip Hop")), 10, 10).total()).isZero();
+    }
+}
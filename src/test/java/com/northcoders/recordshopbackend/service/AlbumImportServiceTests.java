@@ -0,0 +1,187 @@
+package com.northcoders.recordshopbackend.service;
+
+import com.northcoders.recordshopbackend.dto.AlbumImportResultDTO;
+import com.northcoders.recordshopbackend.dto.AlbumImportSummaryDTO;
+import com.northcoders.recordshopbackend.dto.NewAlbumDTO;
+import com.northcoders.recordshopbackend.model.Album;
+import com.northcoders.recordshopbackend.model.Artist;
+import com.northcoders.recordshopbackend.model.Genre;
+import com.northcoders.recordshopbackend.repository.AlbumRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@DataJpaTest
+public class AlbumImportServiceTests {
+
+    @Mock
+    private AlbumRepository mockAlbumRepository;
+
+    @Mock
+    private ArtistService mockArtistService;
+
+    @Mock
+    private GenreService mockGenreService;
+
+    @Mock
+    private CacheService<Boolean> missingAlbumCache;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks
+    private AlbumImportServiceImpl albumImportServiceImpl;
+
+    @BeforeEach
+    public void setup(){
+        ReflectionTestUtils.setField(albumImportServiceImpl, "validator",
+                Validation.buildDefaultValidatorFactory().getValidator());
+        ReflectionTestUtils.setField(albumImportServiceImpl, "chunkSize", 1);
+        ReflectionTestUtils.setField(albumImportServiceImpl, "maxReportedErrors", 10);
+    }
+
+    @Test
+    @DisplayName("Imports the valid albums and reports the invalid ones by their position in the request")
+    void testImportAlbums(){
+        // Arrange
+        List<NewAlbumDTO> newAlbumDTOs = List.of(
+                NewAlbumDTO.builder()
+                        .title("Timeless")
+                        .artist("Davido")
+                        .genre("Afrobeats")
+                        .releaseDate(Date.valueOf("2023-04-05"))
+                        .stock(3)
+                        .price(9.99)
+                        .build(),
+                NewAlbumDTO.builder()
+                        .title("")
+                        .build(),
+                NewAlbumDTO.builder()
+                        .title("A Good Time")
+                        .artist("davido ")
+                        .genre("afrobeats")
+                        .releaseDate(Date.valueOf("2019-11-22"))
+                        .stock(2)
+                        .price(8.99)
+                        .build()
+        );
+        when(mockArtistService.getOrCreateAlbumArtists(anyList()))
+                .thenReturn(Map.of("davido", Artist.builder().id(1L).artistName("Davido").build()));
+        when(mockGenreService.getOrCreateGenre(any(String.class)))
+                .thenReturn(Genre.builder().id(1L).genre("Afrobeats").build());
+        long[] nextId = {1L};
+        when(mockAlbumRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Album> albums = invocation.getArgument(0);
+            albums.forEach(album -> album.setId(nextId[0]++));
+            return albums;
+        });
+
+        // Act
+        List<AlbumImportResultDTO> results = albumImportServiceImpl.importAlbums(newAlbumDTOs);
+
+        // Assert
+        assertThat(results).extracting(AlbumImportResultDTO::getStatus).containsExactly(
+                AlbumImportResultDTO.Status.CREATED,
+                AlbumImportResultDTO.Status.INVALID,
+                AlbumImportResultDTO.Status.CREATED
+        );
+        assertThat(results).extracting(AlbumImportResultDTO::getAlbumId).containsExactly(1L, null, 2L);
+        assertThat(results.get(1).getErrors()).containsKeys("title", "artist", "genre");
+        verify(mockArtistService, times(2)).getOrCreateAlbumArtists(anyList());
+        verify(mockGenreService, times(2)).getOrCreateGenre(any(String.class));
+        verify(mockAlbumRepository, times(2)).saveAll(anyList());
+    }
+
+    @Test
+    @DisplayName("Streams a CSV file and reports the records that could not be read")
+    void testImportAlbumsFromCsv(){
+        // Arrange
+        String csv = """
+                title,artist,genre,releaseDate,stock,price
+                Timeless,Davido,Afrobeats,2023-04-05,3,9.99
+                "Good Kid, M.A.A.D City",Kendrick Lamar,Hip Hop,2012-10-22,5,not a price
+                A Good Time,Davido,Afrobeats,2019-11-22,2,8.99
+                """;
+        when(mockArtistService.getOrCreateAlbumArtists(anyList()))
+                .thenReturn(Map.of("davido", Artist.builder().id(1L).artistName("Davido").build()));
+        when(mockGenreService.getOrCreateGenre(any(String.class)))
+                .thenReturn(Genre.builder().id(1L).genre("Afrobeats").build());
+        long[] nextId = {1L};
+        when(mockAlbumRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Album> albums = invocation.getArgument(0);
+            albums.forEach(album -> album.setId(nextId[0]++));
+            return albums;
+        });
+
+        // Act
+        AlbumImportSummaryDTO summary = albumImportServiceImpl.importAlbums(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)),
+                AlbumImportService.Format.CSV
+        );
+
+        // Assert
+        assertThat(summary.getRecords()).isEqualTo(3);
+        assertThat(summary.getCreated()).isEqualTo(2);
+        assertThat(summary.getInvalid()).isEqualTo(1);
+        assertThat(summary.isCompleted()).isTrue();
+        assertThat(summary.getErrors()).hasSize(1);
+        assertThat(summary.getErrors().getFirst().getIndex()).isEqualTo(1);
+        assertThat(summary.getErrors().getFirst().getErrors()).containsKey("price");
+    }
+
+    @Test
+    @DisplayName("A failure reading the input is thrown with the failure of the chunk being written added to it")
+    void testImportAlbumsKeepsTheReadFailure(){
+        // Arrange
+        String csv = """
+                title,artist,genre,releaseDate,stock,price
+                Timeless,Davido,Afrobeats,2023-04-05,3,9.99
+                A Good Time,Davido,Afrobeats,2019-11-22,2,8.99
+                """;
+        Validator validator = mock(Validator.class);
+        when(validator.validate(any(NewAlbumDTO.class)))
+                .thenReturn(Set.of())
+                .thenThrow(new IllegalStateException("Validator failed"));
+        ReflectionTestUtils.setField(albumImportServiceImpl, "validator", validator);
+        when(mockArtistService.getOrCreateAlbumArtists(anyList())).thenThrow(new IllegalArgumentException("Artist lookup failed"));
+
+        // Act
+        Throwable failure = catchThrowable(() -> albumImportServiceImpl.importAlbums(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)),
+                AlbumImportService.Format.CSV
+        ));
+
+        // Assert
+        assertThat(failure).isInstanceOf(IllegalStateException.class).hasMessage("Validator failed");
+        assertThat(failure.getSuppressed()).hasSize(1);
+        assertThat(failure.getSuppressed()[0]).hasRootCauseInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,85 @@
+package com.northcoders.recordshopbackend.service;
+
+import com.northcoders.recordshopbackend.service.AlbumOrderService.SortKey;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AlbumOrderIndexTests {
+
+    private AlbumOrderIndex index;
+
+    @BeforeEach
+    public void setup(){
+        index = AlbumOrderIndex.build(List.of(
+                new AlbumOrderIndex.Album(1L, 12.99, 18000.0, 0),
+                new AlbumOrderIndex.Album(2L, 9.99, 19000.0, 0),
+                new AlbumOrderIndex.Album(3L, 9.99, 17000.0, 0),
+                new AlbumOrderIndex.Album(4L, 7.5, null, 0),
+                new AlbumOrderIndex.Album(5L, null, 19500.0, 0)
+        ));
+    }
+
+    @Test
+    @DisplayName("Pages come in value then id order in either direction, from within the range and after the cursor")
+    void testPage(){
+        // Act & Assert
+        assertThat(index.page(SortKey.PRICE, true, null, null, null, null, 10)).containsExactly(4L, 2L, 3L, 1L, 5L);
+        assertThat(index.page(SortKey.PRICE, false, null, null, null, null, 2)).containsExactly(1L, 3L);
+        assertThat(index.page(SortKey.PRICE, true, null, 10.0, null, null, 10)).containsExactly(4L, 2L, 3L);
+        assertThat(index.page(SortKey.PRICE, true, 8.0, 10.0, 9.99, 2L, 10)).containsExactly(3L);
+        assertThat(index.page(SortKey.PRICE, false, 8.0, null, 9.99, 3L, 10)).containsExactly(2L);
+        // A cursor before the range starts at the range
+        assertThat(index.page(SortKey.PRICE, true, 9.0, null, 7.5, 4L, 10)).containsExactly(2L, 3L, 1L);
+        assertThat(index.page(SortKey.RELEASE_DATE, false, null, null, null, null, 10)).containsExactly(5L, 2L, 1L, 3L, 4L);
+    }
+
+    @Test
+    @DisplayName("Updates move an album to its new value, deletes drop it, clearing a value moves it last, older versions are ignored")
+    void testUpdate(){
+        // Act
+        index.update(List.of(
+                new AlbumOrderIndex.Album(1L, 5.0, 18000.0, 1),
+                new AlbumOrderIndex.Album(6L, 10.0, 16000.0, 0),
+                new AlbumOrderIndex.Album(2L, null, 19000.0, 1)
+        ), List.of(3L));
+        index.update(List.of(new AlbumOrderIndex.Album(1L, 20.0, 18000.0, 0)), List.of());
+
+        // Assert
+        assertThat(index.size()).isEqualTo(5);
+        assertThat(index.page(SortKey.PRICE, true, null, null, null, null, 10)).containsExactly(1L, 4L, 6L, 2L, 5L);
+        assertThat(index.page(SortKey.RELEASE_DATE, true, null, null, null, null, 10)).containsExactly(6L, 1L, 2L, 5L, 4L);
+    }
+
+    @Test
+    @DisplayName("A save delivered after the album's delete does not add it back")
+    void testSaveAfterDelete(){
+        // Act
+        index.update(List.of(), List.of(4L));
+        index.update(List.of(new AlbumOrderIndex.Album(4L, 1.0, 18000.0, 5)), List.of());
+
+        // Assert
+        assertThat(index.size()).isEqualTo(4);
+        assertThat(index.page(SortKey.PRICE, true, null, null, null, null, 10)).containsExactly(2L, 3L, 1L, 5L);
+    }
+
+    @Test
+    @DisplayName("Albums with no value come last in either direction and a cursor can continue among them")
+    void testPageWithoutValue(){
+        // Arrange
+        index.update(List.of(new AlbumOrderIndex.Album(6L, null, null, 0)), List.of());
+
+        // Act & Assert
+        assertThat(index.page(SortKey.PRICE, false, null, null, null, null, 10)).containsExactly(1L, 3L, 2L, 4L, 6L, 5L);
+        assertThat(index.page(SortKey.PRICE, true, null, null, 12.99, 1L, 10)).containsExactly(5L, 6L);
+        assertThat(index.page(SortKey.PRICE, true, null, null, null, 5L, 10)).containsExactly(6L);
+        assertThat(index.page(SortKey.PRICE, false, null, null, null, 6L, 10)).containsExactly(5L);
+        // A range only has albums with a value
+        assertThat(index.page(SortKey.PRICE, true, 1.0, null, null, null, 10)).containsExactly(4L, 2L, 3L, 1L);
+        assertThat(index.page(SortKey.PRICE, true, 1.0, null, null, 5L, 10)).isEmpty();
+    }
+}
@@ -0,0 +1,96 @@
+package com.northcoders.recordshopbackend.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AlbumSearchIndexTests {
+
+    private AlbumSearchIndex index;
+
+    @BeforeEach
+    public void setup(){
+        index = AlbumSearchIndex.build(List.of(
+                new AlbumSearchIndex.Document(1L, "Timeless", "Davido", "Afrobeats", 0),
+                new AlbumSearchIndex.Document(2L, "A Good Time", "Marie Dahlstrom", "R&B", 0),
+                new AlbumSearchIndex.Document(3L, "GNX", "Kendrick Lamar", "Rap", 0),
+                new AlbumSearchIndex.Document(4L, "DAMN.", "Kendrick Lamar", "Rap", 0),
+                new AlbumSearchIndex.Document(5L, "Lemonade", "Beyoncé", "R&B", 0),
+                new AlbumSearchIndex.Document(6L, "Rap Life", "Various Artists", "Hip Hop", 0)
+        ));
+    }
+
+    @Test
+    @DisplayName("Every word must match and a title match ranks above an artist or genre match")
+    void testSearchRanksByField(){
+        // Act
+        List<Long> kendrick = albumIds(index.search("kendrick lamar ", 10));
+        List<Long> rap = albumIds(index.search("rap ", 10));
+
+        // Assert
+        assertThat(kendrick).containsExactly(3L, 4L);
+        assertThat(rap).containsExactly(6L, 3L, 4L);
+        assertThat(index.search("kendrick timeless", 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("The last word matches as a prefix, accents are ignored and typos are tolerated")
+    void testPrefixAccentsAndTypos(){
+        // Act & Assert
+        assertThat(albumIds(index.search("kendrick da", 10))).containsExactly(4L);
+        assertThat(albumIds(index.search("beyonce", 10))).containsExactly(5L);
+        assertThat(albumIds(index.search("lemonaed ", 10))).containsExactly(5L);
+        assertThat(albumIds(index.search("kendirck lamr ", 10))).containsExactly(3L, 4L);
+        // Too short to allow a typo
+        assertThat(index.search("gnz ", 10)).isEmpty();
+        assertThat(index.search("!!", 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Updates replace and remove albums, and an older version of an album is ignored")
+    void testUpdate(){
+        // Act
+        index.update(List.of(
+                new AlbumSearchIndex.Document(3L, "Mr. Morale", "Kendrick Lamar", "Rap", 1),
+                new AlbumSearchIndex.Document(7L, "Renaissance", "Beyoncé", "Pop", 0)
+        ), List.of(4L));
+        index.update(List.of(new AlbumSearchIndex.Document(3L, "GNX", "Kendrick Lamar", "Rap", 0)), List.of());
+
+        // Assert
+        assertThat(index.size()).isEqualTo(6);
+        assertThat(index.search("gnx", 10)).isEmpty();
+        assertThat(index.search("damn", 10)).isEmpty();
+        assertThat(albumIds(index.search("morale", 10))).containsExactly(3L);
+        assertThat(albumIds(index.search("beyonce ", 10))).containsExactly(5L, 7L);
+        assertThat(index.search("renaissance", 10).getFirst().document().genre()).isEqualTo("Pop");
+    }
+
+    @Test
+    @DisplayName("The edit distance counts a swap of neighbouring letters as one edit")
+    void testEditDistance(){
+        // Act & Assert
+        assertThat(AlbumSearchIndex.editDistance("kendrick", "kendirck", 2)).isEqualTo(1);
+        assertThat(AlbumSearchIndex.editDistance("lamar", "lamr", 1)).isEqualTo(1);
+        assertThat(AlbumSearchIndex.editDistance("timeless", "time", 2)).isEqualTo(3);
+    }
+
+    private static List<Long> albumIds(List<AlbumSearchIndex.Hit> hits){
+        return hits.stream().map(hit -> hit.document().albumId()).toList();
+    }
+
+    @Test
+    @DisplayName("A save delivered after the album's delete does not add it back")
+    void testSaveAfterDelete(){
+        // Act
+        index.update(List.of(), List.of(3L));
+        index.update(List.of(new AlbumSearchIndex.Document(3L, "Mr. Morale", "Kendrick Lamar", "Rap", 5)), List.of());
+
+        // Assert
+        assertThat(index.size()).isEqualTo(5);
+        assertThat(index.search("morale", 10)).isEmpty();
+    }
+}
@@ -1,19 +1,29 @@
 package com.northcoders.recordshopbackend.service;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.northcoders.recordshopbackend.dto.AlbumDTO;
+import com.northcoders.recordshopbackend.dto.AlbumStockDTO;
+import com.northcoders.recordshopbackend.dto.AlbumVersionDTO;
+import com.northcoders.recordshopbackend.dto.CheckoutResultDTO;
 import com.northcoders.recordshopbackend.dto.NewAlbumDTO;
 import com.northcoders.recordshopbackend.dto.StockDTO;
+import com.northcoders.recordshopbackend.event.AlbumDeletedEvent;
 import com.northcoders.recordshopbackend.model.Album;
 import com.northcoders.recordshopbackend.model.Artist;
 import com.northcoders.recordshopbackend.model.Stock;
 import com.northcoders.recordshopbackend.model.Genre;
 import com.northcoders.recordshopbackend.repository.AlbumRepository;
+import com.northcoders.recordshopbackend.exception.BadRequestException;
 import com.northcoders.recordshopbackend.exception.ItemNotFoundException;
+import com.northcoders.recordshopbackend.exception.PreconditionFailedException;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Sort;
 
 import java.sql.Date;
@@ -24,6 +34,8 @@ import java.util.Optional;
 import static org.assertj.core.api.Assertions.*;
 import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -39,8 +51,14 @@ public class AlbumServiceTests {
     @Mock
     private CacheService<Album> albumCacheService;
     @Mock
+    private CacheService<Boolean> missingAlbumCache;
+    @Mock
     private GenreService genreService;
     @Mock
+    private HotStockService hotStockService;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @Mock
     private Instant instant;
 
     @InjectMocks
@@ -175,6 +193,39 @@ public class AlbumServiceTests {
                 );
     }
 
+    @Test
+    @DisplayName("getAlbumVersion reads only the version columns when the album is not cached")
+    void testGetAlbumVersion(){
+        // Arrange
+        AlbumVersionDTO albumVersion = new AlbumVersionDTO(2L, 3L, Instant.parse("2024-12-13T12:00:00.00Z"), false);
+
+        when(mockAlbumRepository.findAlbumVersionById(2L)).thenReturn(Optional.of(albumVersion));
+
+        // Act
+        AlbumVersionDTO actualResult = albumServiceImpl.getAlbumVersion(2L);
+
+        // Assert
+        assertThat(actualResult).isEqualTo(albumVersion);
+        verify(mockAlbumRepository, never()).findById(any());
+    }
+
+    @Test
+    @DisplayName("Throws an ItemNotFoundException for a known missing ID without querying the DB")
+    void testGetAlbumByIdForKnownMissingId(){
+        // Arrange
+        Long missingID = 7L;
+
+        when(missingAlbumCache.containsKey(missingID)).thenReturn(true);
+
+        // Act & Assert
+        assertThatExceptionOfType(ItemNotFoundException.class)
+                .isThrownBy(() ->
+                        albumServiceImpl.getAlbumById(missingID))
+                .withMessageMatching("Album with the id '\\d+' cannot be found"
+                );
+        verify(mockAlbumRepository, never()).findById(missingID);
+    }
+
     @Test
     @DisplayName("Returns album when a valid AlbumDTO is supplied")
     void testCreatesAnAlbumFromAnAlbumDTO(){
@@ -296,7 +347,8 @@ public class AlbumServiceTests {
                         .build()
         );
 
-        when(mockAlbumRepository.findAll(Sort.by(Sort.Direction.ASC,"id"))).thenReturn(albums);
+        when(mockAlbumRepository.findAllByStockQuantityInStockGreaterThan(0, Sort.by(Sort.Direction.ASC,"id")))
+                .thenReturn(albums.stream().filter(album -> album.getStock().getQuantityInStock() > 0).toList());
 
         // Act
         List<AlbumDTO> inStockAlbumDTOs = albumServiceImpl.getAllInStockAlbumDTOs();
@@ -393,6 +445,10 @@ public class AlbumServiceTests {
         // Assert
         assertThat(actualResult.getStock().getId()).isEqualTo(3L);
         assertThat(actualResult.getStock().getQuantityInStock()).isEqualTo(6);
+        // The stock row is locked before the album row is read and updated
+        InOrder lockOrder = inOrder(stockService, mockAlbumRepository);
+        lockOrder.verify(stockService).lockStockOfAlbum(inputId);
+        lockOrder.verify(mockAlbumRepository).findById(inputId);
     }
 
     @Test
@@ -403,30 +459,54 @@ public class AlbumServiceTests {
 
         String expectedOutput = "Album Title: Timeless\nArist: Davido\nQuantity in stock: 3";
 
-        Album timeless = Album.builder()
-                .title("Timeless")
-                .artist(Artist.builder().artistName("Davido").build())
-                .genre(Genre.builder().genre( "Afrobeats").build())
-                .releaseDate(Date.valueOf("2023-01-12"))
-                .stock(Stock.builder().quantityInStock(4).build())
-                .dateCreated(Instant.parse("2024-12-13T12:00:00.00Z"))
-                .dateModified(Instant.parse("2024-12-13T12:00:00.00Z"))
-                .price(9.99)
-                .build();
+        when(stockService.decreaseQuantityInStock(id, 1)).thenReturn(true);
 
-        Stock updatedStock = timeless.getStock();
+        when(mockAlbumRepository.findAlbumStockById(id))
+                .thenReturn(Optional.of(new AlbumStockDTO(id, "Timeless", "Davido", 3)));
 
-        when(mockAlbumRepository.findById(id)).thenReturn(Optional.of(timeless));
+        // Act
+        String actualResult = albumServiceImpl.decreaseStockByAlbumId(id);
 
-        when(stockService.savedUpdatedStock(updatedStock)).thenReturn(updatedStock);
+        // Assert
+        assertThat(actualResult).isEqualTo(expectedOutput);
+        verify(albumCacheService).remove(id);
+    }
 
-        when(mockAlbumRepository.save(timeless)).thenReturn(timeless);
+    @Test
+    @DisplayName("checkoutAlbum reports out of stock without changing the album")
+    void testCheckoutAlbumOutOfStock(){
+        // Arrange
+        Long id = 2L;
+
+        when(stockService.decreaseQuantityInStock(id, 5)).thenReturn(false);
+
+        when(mockAlbumRepository.findAlbumStockById(id))
+                .thenReturn(Optional.of(new AlbumStockDTO(id, "Timeless", "Davido", 3)));
 
         // Act
-        String actualResult = albumServiceImpl.decreaseStockByAlbumId(id);
+        CheckoutResultDTO actualResult = albumServiceImpl.checkoutAlbum(id, 5);
 
         // Assert
-        assertThat(actualResult).isEqualTo(expectedOutput);
+        assertThat(actualResult.getStatus()).isEqualTo(CheckoutResultDTO.Status.OUT_OF_STOCK);
+        assertThat(actualResult.getQuantityInStock()).isEqualTo(3);
+        verify(mockAlbumRepository, never()).updateDateModified(any(), any());
+        verify(albumCacheService, never()).remove(id);
+    }
+
+    @Test
+    @DisplayName("checkoutAlbum throws an ItemNotFoundException for an invalid ID")
+    void testCheckoutAlbumForInvalidId(){
+        // Arrange
+        Long invalidId = 9L;
+
+        when(stockService.decreaseQuantityInStock(invalidId, 1)).thenReturn(false);
+
+        when(mockAlbumRepository.findAlbumStockById(invalidId)).thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertThatExceptionOfType(ItemNotFoundException.class)
+                .isThrownBy(() -> albumServiceImpl.checkoutAlbum(invalidId, 1));
+        verify(missingAlbumCache).put(invalidId, Boolean.TRUE);
     }
 
     @Test
@@ -442,6 +522,10 @@ public class AlbumServiceTests {
 
         // Assert
         assertThat(actualString).matches(expectedString);
+        verify(eventPublisher).publishEvent(new AlbumDeletedEvent(id));
+        InOrder lockOrder = inOrder(stockService, mockAlbumRepository);
+        lockOrder.verify(stockService).lockStockOfAlbum(id);
+        lockOrder.verify(mockAlbumRepository).deleteById(id);
     }
 
     @Test
@@ -459,4 +543,76 @@ public class AlbumServiceTests {
                 .withMessageMatching("Album with the ID '\\d+' cannot be found"
                 );
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("patchAlbumById only changes the fields in the merge patch that differ")
+    void testPatchAlbumById() throws Exception {
+        // Arrange
+        Long id = 1L;
+        Album timelessAlbum = Album.builder()
+                .id(id)
+                .title("Timeless")
+                .artist(Artist.builder().artistName("Davido").normalizedName("davido").build())
+                .genre(Genre.builder().genre("Afrobeats").normalizedName("afrobeats").build())
+                .releaseDate(Date.valueOf("2023-01-12"))
+                .stock(Stock.builder().id(3L).quantityInStock(4).build())
+                .dateCreated(Instant.parse("2024-12-13T12:00:00.00Z"))
+                .dateModified(Instant.parse("2024-12-13T12:00:00.00Z"))
+                .price(9.99)
+                .artworkUrl("https://example.com/timeless.jpg")
+                .build();
+        JsonNode mergePatch = new ObjectMapper().readTree(
+                "{\"title\": \"Timeless\", \"artist\": \" DAVIDO \", \"stock\": 4, \"price\": 12.99, \"artworkUrl\": null}"
+        );
+
+        when(mockAlbumRepository.findById(id)).thenReturn(Optional.of(timelessAlbum));
+
+        // Act
+        AlbumDTO actualResult = albumServiceImpl.patchAlbumById(id, mergePatch, null);
+
+        // Assert
+        assertThat(actualResult.getPrice()).isEqualTo(12.99);
+        assertThat(actualResult.getArtworkUrl()).isNull();
+        assertThat(actualResult.getArtist()).isEqualTo("Davido");
+        assertThat(timelessAlbum.getDateModified()).isAfter(Instant.parse("2024-12-13T12:00:00.00Z"));
+        verify(artistService, never()).getOrCreateAlbumArtist(any());
+        verify(mockAlbumRepository, never()).save(any());
+        verify(albumCacheService).remove(id);
+    }
+
+    @Test
+    @DisplayName("patchAlbumById rejects a merge patch that clears a mandatory field")
+    void testPatchAlbumByIdForInvalidPatch() throws Exception {
+        // Arrange
+        JsonNode mergePatch = new ObjectMapper().readTree("{\"title\": null, \"stock\": -1}");
+
+        // Act & Assert
+        assertThatExceptionOfType(BadRequestException.class)
+                .isThrownBy(() -> albumServiceImpl.patchAlbumById(1L, mergePatch, null))
+                .withMessageContaining("title")
+                .withMessageContaining("stock");
+        verify(mockAlbumRepository, never()).findById(any());
+    }
+
+    @Test
+    @DisplayName("patchAlbumById throws a PreconditionFailedException when the album version has moved on")
+    void testPatchAlbumByIdForStaleVersion() throws Exception {
+        // Arrange
+        Long id = 1L;
+        Album timelessAlbum = Album.builder()
+                .id(id)
+                .title("Timeless")
+                .stock(Stock.builder().id(3L).quantityInStock(4).build())
+                .version(5L)
+                .build();
+        JsonNode mergePatch = new ObjectMapper().readTree("{\"stock\": 10}");
+
+        when(mockAlbumRepository.findById(id)).thenReturn(Optional.of(timelessAlbum));
+
+        // Act & Assert
+        assertThatExceptionOfType(PreconditionFailedException.class)
+                .isThrownBy(() -> albumServiceImpl.patchAlbumById(id, mergePatch, 4L))
+                .withMessage("Album with the id '1' has changed, its current version is 5");
+        assertThat(timelessAlbum.getStock().getQuantityInStock()).isEqualTo(4);
+    }
+}
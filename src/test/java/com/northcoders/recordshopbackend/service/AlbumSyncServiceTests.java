@@ -0,0 +1,147 @@
+package com.northcoders.recordshopbackend.service;
+
+import com.northcoders.recordshopbackend.dto.AlbumDTO;
+import com.northcoders.recordshopbackend.dto.AlbumSyncDTO;
+import com.northcoders.recordshopbackend.dto.DeletedAlbumDTO;
+import com.northcoders.recordshopbackend.event.AlbumsSavedEvent;
+import com.northcoders.recordshopbackend.exception.BadRequestException;
+import com.northcoders.recordshopbackend.model.Album;
+import com.northcoders.recordshopbackend.model.AlbumChange;
+import com.northcoders.recordshopbackend.model.Artist;
+import com.northcoders.recordshopbackend.model.Genre;
+import com.northcoders.recordshopbackend.model.Stock;
+import com.northcoders.recordshopbackend.repository.AlbumChangeRepository;
+import com.northcoders.recordshopbackend.repository.AlbumRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@DataJpaTest
+public class AlbumSyncServiceTests {
+
+    private static final Instant DATE = Instant.parse("2024-12-13T12:00:00Z");
+
+    @Mock
+    private AlbumChangeRepository mockAlbumChangeRepository;
+
+    @Mock
+    private AlbumRepository mockAlbumRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private AlbumSyncServiceImpl albumSyncServiceImpl;
+
+    @Test
+    @DisplayName("A sync stops before a change whose transaction has not finished and returns saved albums and tombstones")
+    @SuppressWarnings("unchecked")
+    void testGetChangesWithPendingChange(){
+        // Arrange
+        when(mockAlbumChangeRepository.findLastSequence()).thenReturn(2L);
+        when(mockAlbumChangeRepository.findBySequenceGreaterThanAndSequenceLessThanEqualOrderBySequence(0L, 2L, Limit.of(201)))
+                .thenReturn(List.of(
+                        new AlbumChange(1L, 1L, DATE, false),
+                        new AlbumChange(2L, 2L, DATE, true)
+                ));
+        when(mockAlbumRepository.findBy(any(Specification.class), any())).thenReturn(List.of(createAlbum(1L)));
+
+        // A write is still committing with sequence 3, in the test's transaction
+        List<TransactionSynchronization> testSynchronizations = TransactionSynchronizationManager.getSynchronizations();
+        albumSyncServiceImpl.onAlbumsSaved(new AlbumsSavedEvent(List.of(AlbumDTO.builder().id(7L).build())));
+
+        // Act
+        AlbumSyncDTO changes = albumSyncServiceImpl.getChanges(null, null);
+
+        // Assert
+        assertThat(changes.getAlbums()).extracting(AlbumDTO::getId).containsExactly(1L);
+        assertThat(changes.getDeletedAlbums()).containsExactly(new DeletedAlbumDTO(2L, DATE.toString()));
+        assertThat(changes.getCursor()).isEqualTo("Mg");
+        assertThat(changes.isHasMore()).isFalse();
+
+        ArgumentCaptor<List<AlbumChange>> inserted = ArgumentCaptor.forClass(List.class);
+        verify(mockAlbumChangeRepository).deleteByAlbumIdInAndSequenceLessThan(List.of(7L), 3L);
+        verify(mockAlbumChangeRepository).insertChanges(inserted.capture());
+        assertThat(inserted.getValue()).singleElement()
+                .satisfies(change -> assertThat(change.getSequence()).isEqualTo(3L))
+                .satisfies(change -> assertThat(change.getAlbumId()).isEqualTo(7L));
+
+        // Once the write commits the next sync reads up to it
+        TransactionSynchronizationManager.getSynchronizations().stream()
+                .filter(synchronization -> !testSynchronizations.contains(synchronization))
+                .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        albumSyncServiceImpl.getChanges(changes.getCursor(), 50);
+        verify(mockAlbumChangeRepository).findBySequenceGreaterThanAndSequenceLessThanEqualOrderBySequence(2L, 3L, Limit.of(51));
+    }
+
+    @Test
+    @DisplayName("A cursor past the committed changes is rejected so the client syncs again from the start")
+    void testGetChangesWithInvalidCursor(){
+        // Arrange
+        when(mockAlbumChangeRepository.findLastSequence()).thenReturn(2L);
+
+        // Act & Assert
+        assertThatThrownBy(() -> albumSyncServiceImpl.getChanges("OTk", null)).isInstanceOf(BadRequestException.class);
+        assertThatThrownBy(() -> albumSyncServiceImpl.getChanges("not a cursor", null)).isInstanceOf(BadRequestException.class);
+        assertThatThrownBy(() -> albumSyncServiceImpl.getChanges(null, 0)).isInstanceOf(BadRequestException.class);
+    }
+
+    @Test
+    @DisplayName("Albums with no change row are given one after the last sequence, so a first sync returns them")
+    void testBackfillChanges(){
+        // Arrange
+        when(mockAlbumChangeRepository.findLastSequence()).thenReturn(2L);
+        when(mockAlbumChangeRepository.countAlbumsWithoutChanges()).thenReturn(3L);
+        when(mockAlbumChangeRepository.insertMissingChanges(3L, 3L)).thenReturn(3);
+
+        // Act
+        albumSyncServiceImpl.backfillChanges();
+        albumSyncServiceImpl.onAlbumsSaved(new AlbumsSavedEvent(List.of(AlbumDTO.builder().id(7L).build())));
+
+        // Assert
+        verify(mockAlbumChangeRepository).insertMissingChanges(3L, 3L);
+        verify(mockAlbumChangeRepository).deleteByAlbumIdInAndSequenceLessThan(List.of(7L), 6L);
+    }
+
+    @Test
+    @DisplayName("Nothing is backfilled when every album already has a change row")
+    void testBackfillChangesWithNothingMissing(){
+        // Arrange
+        when(mockAlbumChangeRepository.countAlbumsWithoutChanges()).thenReturn(0L);
+
+        // Act
+        albumSyncServiceImpl.backfillChanges();
+
+        // Assert
+        verify(mockAlbumChangeRepository, never()).insertMissingChanges(anyLong(), anyLong());
+    }
+
+    private Album createAlbum(Long id){
+        return Album.builder()
+                .id(id)
+                .title("Timeless")
+                .artist(Artist.builder().artistName("Davido").build())
+                .genre(Genre.builder().genre("Afrobeats").build())
+                .stock(Stock.builder().quantityInStock(4).build())
+                .dateCreated(DATE)
+                .dateModified(DATE)
+                .version(0L)
+                .build();
+    }
+}
@@ -1,5 +1,7 @@
 package com.northcoders.recordshopbackend.service;
 
+import com.northcoders.recordshopbackend.dto.ArtistDTO;
+import com.northcoders.recordshopbackend.event.ArtistSavedEvent;
 import com.northcoders.recordshopbackend.model.Artist;
 import com.northcoders.recordshopbackend.repository.ArtistRepository;
 import org.junit.jupiter.api.DisplayName;
@@ -7,11 +9,16 @@ import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.util.List;
+import java.util.Optional;
 
 import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @DataJpaTest
@@ -20,6 +27,15 @@ public class ArtistServiceTests {
     @Mock
     private ArtistRepository mockArtistRepository;
 
+    @Mock
+    private CacheService<Boolean> missingArtistCache;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private ArtistServiceImpl artistServiceImpl;
 
@@ -64,8 +80,48 @@ public class ArtistServiceTests {
 
         // Assert
         assertThat(result.getArtistName()).isEqualTo(exectedArtist.getArtistName());
+        verify(eventPublisher).publishEvent(new ArtistSavedEvent(new ArtistDTO(1L, "Davido")));
     }
 
+    @Test
+    @DisplayName("Returns the existing artist when the name only differs by case and whitespace")
+    void testGetOrCreateAlbumArtistForExistingArtist(){
+        // Arrange
+        Artist davido = Artist.builder()
+                .id(1L)
+                .artistName("Davido")
+                .normalizedName("davido")
+                .build();
+
+        when(mockArtistRepository.findByNormalizedName("davido")).thenReturn(Optional.of(davido));
+
+        // Act
+        Artist result = artistServiceImpl.getOrCreateAlbumArtist(" DAVIDO ");
+
+        // Assert
+        assertThat(result.getId()).isEqualTo(1L);
+        verify(mockArtistRepository, never()).save(any(Artist.class));
+    }
+
+    @Test
+    @DisplayName("Creates the artist when no artist has the normalized name")
+    void testGetOrCreateAlbumArtistForNewArtist(){
+        // Arrange
+        Artist kendrick = Artist.builder()
+                .id(2L)
+                .artistName("Kendrick Lamar")
+                .build();
+
+        when(mockArtistRepository.findByNormalizedName("kendrick lamar")).thenReturn(Optional.empty());
+        when(mockArtistRepository.save(any(Artist.class))).thenReturn(kendrick);
+
+        // Act
+        Artist result = artistServiceImpl.getOrCreateAlbumArtist("Kendrick Lamar");
+
+        // Assert
+        assertThat(result.getArtistName()).isEqualTo("Kendrick Lamar");
+        verify(mockArtistRepository).save(any(Artist.class));
+    }
 
     // TODO add more tests
 }
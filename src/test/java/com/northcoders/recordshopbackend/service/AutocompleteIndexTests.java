@@ -0,0 +1,73 @@
+package com.northcoders.recordshopbackend.service;
+
+import com.northcoders.recordshopbackend.dto.AutocompleteSuggestionDTO.Type;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AutocompleteIndexTests {
+
+    private AutocompleteIndex index;
+
+    @BeforeEach
+    public void setup(){
+        index = AutocompleteIndex.build(List.of(
+                new AutocompleteIndex.Suggestion(Type.ARTIST, 1L, "Kendrick Lamar", null, 7),
+                new AutocompleteIndex.Suggestion(Type.ALBUM, 3L, "GNX", "Kendrick Lamar", 2),
+                new AutocompleteIndex.Suggestion(Type.ALBUM, 4L, "DAMN.", "Kendrick Lamar", 5),
+                new AutocompleteIndex.Suggestion(Type.ARTIST, 2L, "Davido", null, 0),
+                new AutocompleteIndex.Suggestion(Type.ALBUM, 1L, "Timeless", "Davido", 0),
+                new AutocompleteIndex.Suggestion(Type.ALBUM, 5L, "Lamb Lies Down", "Genesis", 1),
+                new AutocompleteIndex.Suggestion(Type.ARTIST, 3L, "Beyoncé", null, 4),
+                new AutocompleteIndex.Suggestion(Type.ALBUM, 6L, "Lemonade", "Beyoncé", 4)
+        ));
+    }
+
+    @Test
+    @DisplayName("Any word of a name completes, in stock first and then by quantity in stock")
+    void testCompleteRanksByStock(){
+        // Act
+        List<String> la = names(index.complete("la", 10));
+        List<String> d = names(index.complete("d", 10));
+
+        // Assert
+        assertThat(la).containsExactly("Lamb Lies Down", "Kendrick Lamar");
+        // Out of stock names come last even though they start with the prefix
+        assertThat(d).containsExactly("DAMN.", "Lamb Lies Down", "Davido");
+    }
+
+    @Test
+    @DisplayName("Several words, accents and a trailing space narrow the completions")
+    void testCompleteWithSeveralWords(){
+        // Act & Assert
+        assertThat(names(index.complete("kendrick l", 10))).containsExactly("Kendrick Lamar");
+        assertThat(names(index.complete("beyonce", 10))).containsExactly("Beyoncé");
+        assertThat(names(index.complete("lamb ", 10))).containsExactly("Lamb Lies Down");
+        assertThat(index.complete("lam ", 10)).isEmpty();
+        assertThat(index.complete("!!", 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("A name matching the prefix with several words is suggested once and the limit is kept")
+    void testCompleteLimit(){
+        // Arrange
+        AutocompleteIndex repeated = AutocompleteIndex.build(List.of(
+                new AutocompleteIndex.Suggestion(Type.ALBUM, 1L, "Love Love Love", "Various Artists", 3),
+                new AutocompleteIndex.Suggestion(Type.ALBUM, 2L, "Lovesick", "Various Artists", 2),
+                new AutocompleteIndex.Suggestion(Type.ALBUM, 3L, "Lover", "Various Artists", 1)
+        ));
+
+        // Act & Assert
+        assertThat(names(repeated.complete("lov", 10))).containsExactly("Love Love Love", "Lovesick", "Lover");
+        assertThat(names(repeated.complete("lov", 2))).containsExactly("Love Love Love", "Lovesick");
+        assertThat(AutocompleteIndex.build(List.of()).complete("lov", 10)).isEmpty();
+    }
+
+    private static List<String> names(List<AutocompleteIndex.Suggestion> suggestions){
+        return suggestions.stream().map(AutocompleteIndex.Suggestion::name).toList();
+    }
+}
@@ -0,0 +1,71 @@
+package com.northcoders.recordshopbackend.service;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Compares the old full-map sweep (HashMap#removeIf over every entry) with CacheService#expireEntries.
+// Not part of the test suite, run the main method from the IDE.
+//
+// Each round writes the cache full over five minutes of simulated time and then runs a cleanup every
+// simulated second, so each cleanup has roughly size / 300 entries that are actually due.
+public class CacheExpiryBenchmark {
+
+    private static final long TIME_TO_LIVE = 300_000;
+    private static final int SWEEPS = 50;
+
+    public static void main(String[] args) {
+        int[] sizes = {10_000, 100_000, 1_000_000};
+
+        // Warm up both code paths before measuring
+        benchmarkFullSweep(10_000);
+        benchmarkExpiryQueue(10_000);
+
+        System.out.printf("%-10s %-22s %-22s%n", "entries", "full sweep (us/run)", "expiry queue (us/run)");
+        for (int size : sizes) {
+            double fullSweep = benchmarkFullSweep(size);
+            double expiryQueue = benchmarkExpiryQueue(size);
+            System.out.printf("%-10d %-22.1f %-22.1f%n", size, fullSweep, expiryQueue);
+        }
+    }
+
+    private static double benchmarkFullSweep(int size) {
+        HashMap<Long, Long> lastAccessed = new HashMap<>();
+        for (long id = 0; id < size; id++) {
+            lastAccessed.put(id, id * TIME_TO_LIVE / size);
+        }
+
+        long currentTime = TIME_TO_LIVE;
+        long elapsed = 0;
+        for (int sweep = 0; sweep < SWEEPS; sweep++) {
+            currentTime += 1_000;
+            long time = currentTime;
+            long start = System.nanoTime();
+            lastAccessed.values().removeIf(accessed -> time - accessed > TIME_TO_LIVE);
+            elapsed += System.nanoTime() - start;
+        }
+        return elapsed / 1_000.0 / SWEEPS;
+    }
+
+    private static double benchmarkExpiryQueue(int size) {
+        AtomicLong time = new AtomicLong();
+        CacheService<Long> cacheService = new CacheService<>(
+                size, Duration.ZERO, Duration.ofMillis(TIME_TO_LIVE), time::get
+        );
+        for (long id = 0; id < size; id++) {
+            time.set(id * TIME_TO_LIVE / size);
+            cacheService.put(id, id);
+        }
+
+        long currentTime = TIME_TO_LIVE;
+        long elapsed = 0;
+        for (int sweep = 0; sweep < SWEEPS; sweep++) {
+            currentTime += 1_000;
+            time.set(currentTime);
+            long start = System.nanoTime();
+            cacheService.expireEntries();
+            elapsed += System.nanoTime() - start;
+        }
+        return elapsed / 1_000.0 / SWEEPS;
+    }
+}
@@ -0,0 +1,124 @@
+package com.northcoders.recordshopbackend.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CacheServiceTests {
+
+    @Test
+    @DisplayName("Evicts the least recently used entry once the maximum size is reached")
+    void testEvictsLeastRecentlyUsed(){
+        // Arrange
+        CacheService<String> cacheService = new CacheService<>(2, Duration.ZERO, Duration.ofMinutes(5));
+        cacheService.put(1L, "Timeless");
+        cacheService.put(2L, "A Good Time");
+
+        // Act
+        cacheService.get(1L);
+        cacheService.put(3L, "GNX");
+
+        // Assert
+        assertThat(cacheService.size()).isEqualTo(2);
+        assertThat(cacheService.get(1L)).isEqualTo("Timeless");
+        assertThat(cacheService.get(2L)).isNull();
+        assertThat(cacheService.get(3L)).isEqualTo("GNX");
+    }
+
+    @Test
+    @DisplayName("Removing one id leaves the other cached entries valid")
+    void testRemoveOnlyInvalidatesOneId(){
+        // Arrange
+        CacheService<String> cacheService = new CacheService<>(10, Duration.ZERO, Duration.ofMinutes(5));
+        cacheService.put(1L, "Timeless");
+        cacheService.put(2L, "A Good Time");
+
+        // Act
+        cacheService.remove(1L);
+
+        // Assert
+        assertThat(cacheService.get(1L)).isNull();
+        assertThat(cacheService.get(2L)).isEqualTo("A Good Time");
+    }
+
+    @Test
+    @DisplayName("Expired entries are treated as a cache miss")
+    void testExpiredEntriesAreMisses() throws InterruptedException {
+        // Arrange
+        CacheService<String> cacheService = new CacheService<>(10, Duration.ZERO, Duration.ofMillis(10));
+        cacheService.put(1L, "Timeless");
+
+        // Act
+        Thread.sleep(30);
+
+        // Assert
+        assertThat(cacheService.containsKey(1L)).isFalse();
+        assertThat(cacheService.get(1L)).isNull();
+        assertThat(cacheService.size()).isZero();
+    }
+
+    @Test
+    @DisplayName("Expire after access keeps entries that are still being read")
+    void testExpireAfterAccess(){
+        // Arrange
+        AtomicLong time = new AtomicLong();
+        CacheService<String> cacheService = new CacheService<>(10, Duration.ZERO, Duration.ofSeconds(10), time::get);
+        cacheService.put(1L, "Timeless");
+        cacheService.put(2L, "A Good Time");
+
+        // Act
+        time.set(8_000);
+        cacheService.get(1L);
+        time.set(12_000);
+        int removed = cacheService.expireEntries();
+
+        // Assert
+        assertThat(removed).isEqualTo(1);
+        assertThat(cacheService.get(1L)).isEqualTo("Timeless");
+        assertThat(cacheService.get(2L)).isNull();
+    }
+
+    @Test
+    @DisplayName("Expire after write removes entries regardless of reads")
+    void testExpireAfterWrite(){
+        // Arrange
+        AtomicLong time = new AtomicLong();
+        CacheService<String> cacheService = new CacheService<>(10, Duration.ofSeconds(10), Duration.ZERO, time::get);
+        cacheService.put(1L, "Timeless");
+
+        // Act
+        time.set(8_000);
+        cacheService.get(1L);
+        time.set(10_000);
+        int removed = cacheService.expireEntries();
+
+        // Assert
+        assertThat(removed).isEqualTo(1);
+        assertThat(cacheService.size()).isZero();
+    }
+
+    @Test
+    @DisplayName("A value loaded before the id was invalidated is not put back")
+    void testPutIfUnchangedSkipsInvalidatedIds(){
+        // Arrange
+        CacheService<String> cacheService = new CacheService<>(10, Duration.ZERO, Duration.ofMinutes(5));
+        long staleGeneration = cacheService.generation(1L);
+        cacheService.remove(1L);
+        long currentGeneration = cacheService.generation(1L);
+
+        // Act
+        boolean stalePut = cacheService.putIfUnchanged(1L, "Timeless", staleGeneration);
+        boolean stalePutCached = cacheService.containsKey(1L);
+        boolean currentPut = cacheService.putIfUnchanged(1L, "Timeless (Deluxe)", currentGeneration);
+
+        // Assert
+        assertThat(stalePut).isFalse();
+        assertThat(stalePutCached).isFalse();
+        assertThat(currentPut).isTrue();
+        assertThat(cacheService.get(1L)).isEqualTo("Timeless (Deluxe)");
+    }
+}
@@ -0,0 +1,83 @@
+package com.northcoders.recordshopbackend.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CompressedBitmapTests {
+
+    @Test
+    @DisplayName("Set operations match a BitSet across sparse, dense and mixed chunks")
+    void testSetOperationsMatchBitSet(){
+        // Arrange
+        Random random = new Random(7);
+        for (int round = 0; round < 20; round++) {
+            BitSet expectedA = randomBits(random);
+            BitSet expectedB = randomBits(random);
+            BitSet expectedC = randomBits(random);
+            CompressedBitmap a = CompressedBitmap.of(expectedA.stream().toArray());
+            CompressedBitmap b = CompressedBitmap.of(expectedB.stream().toArray());
+            CompressedBitmap c = CompressedBitmap.of(expectedC.stream().toArray());
+
+            BitSet and = (BitSet) expectedA.clone();
+            and.and(expectedB);
+            BitSet or = (BitSet) expectedA.clone();
+            or.or(expectedB);
+            BitSet union = (BitSet) or.clone();
+            union.or(expectedC);
+            BitSet andNot = (BitSet) expectedA.clone();
+            andNot.andNot(expectedB);
+
+            // Act & Assert
+            assertThat(a.cardinality()).isEqualTo(expectedA.cardinality());
+            assertThat(a.and(b).toArray(Integer.MAX_VALUE)).isEqualTo(and.stream().toArray());
+            assertThat(a.andCardinality(b)).isEqualTo(and.cardinality());
+            assertThat(a.or(b).toArray(Integer.MAX_VALUE)).isEqualTo(or.stream().toArray());
+            assertThat(CompressedBitmap.or(List.of(a, b, c)).toArray(Integer.MAX_VALUE)).isEqualTo(union.stream().toArray());
+            assertThat(a.andNot(b).toArray(Integer.MAX_VALUE)).isEqualTo(andNot.stream().toArray());
+            assertThat(a.andNot(b).cardinality()).isEqualTo(andNot.cardinality());
+            int probe = random.nextInt(4 * 65536);
+            assertThat(a.contains(probe)).isEqualTo(expectedA.get(probe));
+        }
+    }
+
+    @Test
+    @DisplayName("Values come back in ascending order up to the limit, duplicates only once")
+    void testToArrayAndForEach(){
+        // Arrange
+        CompressedBitmap bitmap = CompressedBitmap.of(70_000, 5, 5, 65_536, 3);
+        IntStream.Builder visited = IntStream.builder();
+
+        // Act
+        bitmap.forEach(visited::add);
+
+        // Assert
+        assertThat(bitmap.toArray(10)).containsExactly(3, 5, 65_536, 70_000);
+        assertThat(bitmap.toArray(2)).containsExactly(3, 5);
+        assertThat(visited.build().toArray()).containsExactly(3, 5, 65_536, 70_000);
+        assertThat(bitmap.andNot(bitmap).isEmpty()).isTrue();
+        assertThat(CompressedBitmap.EMPTY.or(bitmap).cardinality()).isEqualTo(4);
+    }
+
+    // Four chunks, each empty, sparse or dense at random
+    private static BitSet randomBits(Random random){
+        BitSet bits = new BitSet();
+        for (int chunk = 0; chunk < 4; chunk++) {
+            int count = switch (random.nextInt(3)) {
+                case 0 -> 0;
+                case 1 -> random.nextInt(4096);
+                default -> 4096 + random.nextInt(40_000);
+            };
+            for (int i = 0; i < count; i++) {
+                bits.set(chunk * 65536 + random.nextInt(65536));
+            }
+        }
+        return bits;
+    }
+}
@@ -0,0 +1,150 @@
+package com.northcoders.recordshopbackend.service;
+
+import com.northcoders.recordshopbackend.model.Genre;
+import com.northcoders.recordshopbackend.repository.GenreRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@DataJpaTest
+public class GenreDictionaryServiceTests {
+
+    @Mock
+    private GenreRepository mockGenreRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private CacheService<Boolean> missingGenreCache;
+
+    @InjectMocks
+    private GenreDictionaryService genreDictionaryService;
+
+    @Test
+    @DisplayName("Returns an existing genre by its name in any case, loading the genres once")
+    void testGetOrCreateExistingGenre(){
+        // Arrange
+        when(mockGenreRepository.findAll()).thenReturn(List.of(
+                Genre.builder().id(1L).genre("Afrobeats").build(),
+                Genre.builder().id(2L).genre("Hip Hop").build()
+        ));
+
+        // Act
+        Genre afrobeats = genreDictionaryService.getOrCreateGenre(" afrobeats ");
+        Genre hipHop = genreDictionaryService.getOrCreateGenre("HIP HOP");
+
+        // Assert
+        assertThat(afrobeats.getId()).isEqualTo(1L);
+        assertThat(afrobeats.getGenre()).isEqualTo("Afrobeats");
+        assertThat(hipHop.getId()).isEqualTo(2L);
+        verify(mockGenreRepository, times(1)).findAll();
+        verify(mockGenreRepository, never()).save(any(Genre.class));
+    }
+
+    @Test
+    @DisplayName("Creates a new genre once and serves it from memory afterwards")
+    void testGetOrCreateNewGenre(){
+        // Arrange
+        when(mockGenreRepository.findAll()).thenReturn(List.of());
+        when(mockGenreRepository.findByNormalizedName("amapiano")).thenReturn(Optional.empty());
+        when(mockGenreRepository.save(any(Genre.class))).thenReturn(Genre.builder().id(3L).genre("Amapiano").build());
+
+        // Act
+        Genre created = genreDictionaryService.getOrCreateGenre("Amapiano");
+        Genre found = genreDictionaryService.getOrCreateGenre("amapiano");
+
+        // Assert
+        assertThat(created.getId()).isEqualTo(3L);
+        assertThat(created.getNormalizedName()).isEqualTo("amapiano");
+        assertThat(found.getId()).isEqualTo(3L);
+        verify(mockGenreRepository, times(1)).save(any(Genre.class));
+        verify(missingGenreCache).remove(3L);
+    }
+
+    @Test
+    @DisplayName("Reads the genre back when another instance inserted it first")
+    void testGetOrCreateGenreAfterLosingTheInsertRace(){
+        // Arrange
+        when(mockGenreRepository.findAll()).thenReturn(List.of());
+        when(mockGenreRepository.findByNormalizedName("amapiano"))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(Genre.builder().id(4L).genre("Amapiano").build()));
+        when(mockGenreRepository.save(any(Genre.class)))
+                .thenThrow(new DataIntegrityViolationException("ux_genres_normalized_name"));
+
+        // Act
+        Genre genre = genreDictionaryService.getOrCreateGenre("AMAPIANO");
+
+        // Assert
+        assertThat(genre.getId()).isEqualTo(4L);
+        assertThat(genre.getGenre()).isEqualTo("Amapiano");
+        verify(missingGenreCache).remove(4L);
+    }
+
+    @Test
+    @DisplayName("Concurrent callers creating the same new genre share one insert and get the same genre")
+    void testConcurrentGetOrCreateNewGenre() throws Exception {
+        // Arrange
+        // Stands in for the genres table, a genre can be read once it has been saved
+        AtomicReference<Genre> savedGenre = new AtomicReference<>();
+        when(mockGenreRepository.findAll()).thenReturn(List.of());
+        when(mockGenreRepository.findByNormalizedName("amapiano"))
+                .thenAnswer(invocation -> Optional.ofNullable(savedGenre.get()));
+        when(mockGenreRepository.save(any(Genre.class))).thenAnswer(invocation -> {
+            // Slow enough for the other callers to arrive while the insert runs
+            Thread.sleep(50);
+            Genre genre = Genre.builder().id(5L).genre(invocation.<Genre>getArgument(0).getGenre()).build();
+            savedGenre.set(genre);
+            return genre;
+        });
+
+        int callers = 16;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        List<Future<Genre>> results = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            String genreName = i % 2 == 0 ? "Amapiano" : " amapiano";
+            results.add(executor.submit(() -> {
+                start.await();
+                return genreDictionaryService.getOrCreateGenre(genreName);
+            }));
+        }
+
+        // Act
+        start.countDown();
+        List<Genre> genres = new ArrayList<>();
+        for (Future<Genre> result : results) {
+            genres.add(result.get(10, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+
+        // Assert
+        assertThat(genres).extracting(Genre::getId).containsOnly(5L);
+        assertThat(genres).extracting(Genre::getNormalizedName).containsOnly("amapiano");
+        verify(mockGenreRepository, times(1)).save(any(Genre.class));
+        // Each caller gets its own copy
+        assertThat(genres.get(0)).isNotSameAs(genres.get(1));
+    }
+}
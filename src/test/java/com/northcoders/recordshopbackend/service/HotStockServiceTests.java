@@ -0,0 +1,241 @@
+package com.northcoders.recordshopbackend.service;
+
+import com.northcoders.recordshopbackend.model.Album;
+import com.northcoders.recordshopbackend.repository.AlbumRepository;
+import com.northcoders.recordshopbackend.repository.StockRepository;
+import com.northcoders.recordshopbackend.repository.StockRepositoryCustom.StockLevel;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@DataJpaTest
+public class HotStockServiceTests {
+
+    private static final Long ALBUM_ID = 1L;
+    private static final Long STOCK_ID = 11L;
+
+    @Mock
+    private StockRepository mockStockRepository;
+
+    @Mock
+    private AlbumRepository mockAlbumRepository;
+
+    @Mock
+    private CacheService<Album> albumCacheService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks
+    private HotStockServiceImpl hotStockServiceImpl;
+
+    // Stands in for the album's row in the stock table. Writes are staged and only applied when
+    // their transaction commits, like the real stock table.
+    private final AtomicInteger databaseQuantity = new AtomicInteger();
+    private final AtomicInteger stagedDecrease = new AtomicInteger();
+    private final AtomicBoolean failingWrites = new AtomicBoolean();
+    private final AtomicBoolean crashingFlushes = new AtomicBoolean();
+
+    // Kills the thread running the flush, the way an OutOfMemoryError or a StackOverflowError would
+    private static class FlusherCrash extends Error {}
+
+    @BeforeEach
+    public void setup(){
+        ReflectionTestUtils.setField(hotStockServiceImpl, "stripes", 8);
+        when(mockAlbumRepository.findHotAlbumIds()).thenReturn(List.of(ALBUM_ID));
+        when(mockStockRepository.lockStockLevelsByAlbumIds(anyCollection())).thenAnswer(invocation ->
+                Map.of(ALBUM_ID, new StockLevel(ALBUM_ID, STOCK_ID, databaseQuantity.get(), 0L))
+        );
+        doAnswer(invocation -> {
+            if (failingWrites.get() && ThreadLocalRandom.current().nextInt(3) == 0) {
+                throw new DataAccessResourceFailureException("Connection lost");
+            }
+            crashSometimes();
+            SortedMap<Long, Integer> unitsByStockId = invocation.getArgument(0);
+            stagedDecrease.addAndGet(unitsByStockId.get(STOCK_ID));
+            return null;
+        }).when(mockStockRepository).decreaseQuantitiesInStock(any());
+        // Runs after the stock write, in the same transaction
+        when(mockAlbumRepository.touchDateModifiedByIdIn(anyCollection(), any())).thenAnswer(invocation -> {
+            crashSometimes();
+            return 1;
+        });
+        doAnswer(invocation -> {
+            databaseQuantity.addAndGet(-stagedDecrease.getAndSet(0));
+            return null;
+        }).when(transactionManager).commit(any());
+        doAnswer(invocation -> {
+            stagedDecrease.set(0);
+            return null;
+        }).when(transactionManager).rollback(any());
+        // Runs once the write has committed
+        doAnswer(invocation -> {
+            crashSometimes();
+            return null;
+        }).when(eventPublisher).publishEvent(any(Object.class));
+    }
+
+    private void crashSometimes() {
+        if (crashingFlushes.get() && ThreadLocalRandom.current().nextInt(20) == 0) {
+            throw new FlusherCrash();
+        }
+    }
+
+    @Test
+    @DisplayName("Concurrent takes never oversell and every unit reaches the database across flusher crashes")
+    void testConcurrentTakesWithFlusherRestart() throws Exception {
+        // Arrange
+        int initialQuantity = 1_000_000;
+        databaseQuantity.set(initialQuantity);
+        hotStockServiceImpl.loadHotAlbums();
+        failingWrites.set(true);
+        crashingFlushes.set(true);
+
+        AtomicInteger sold = new AtomicInteger();
+        ExecutorService buyers = Executors.newFixedThreadPool(16);
+        List<Future<?>> purchases = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            purchases.add(buyers.submit(() -> {
+                while (true) {
+                    int quantity = ThreadLocalRandom.current().nextInt(1, 4);
+                    HotStockService.Outcome outcome = hotStockServiceImpl.take(ALBUM_ID, quantity);
+                    if (outcome == HotStockService.Outcome.TAKEN) {
+                        sold.addAndGet(quantity);
+                    } else if (hotStockServiceImpl.getQuantityInStock(ALBUM_ID) == 0) {
+                        return;
+                    }
+                }
+            }));
+        }
+
+        // Act
+        // A flush dies with an Error before the stock write, after it but before the commit, or after
+        // the commit. A new flusher takes over each time while sales carry on.
+        AtomicInteger crashes = new AtomicInteger();
+        Thread flusher = startFlusher(crashes);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!purchases.stream().allMatch(Future::isDone) && System.nanoTime() < deadline) {
+            if (!flusher.isAlive()) {
+                flusher = startFlusher(crashes);
+            }
+            Thread.sleep(1);
+        }
+        for (Future<?> purchase : purchases) {
+            purchase.get(1, TimeUnit.SECONDS);
+        }
+        flusher.interrupt();
+        flusher.join();
+        buyers.shutdown();
+
+        failingWrites.set(false);
+        crashingFlushes.set(false);
+        hotStockServiceImpl.flush();
+
+        // Assert
+        assertThat(crashes.get()).isPositive();
+        int remaining = hotStockServiceImpl.getQuantityInStock(ALBUM_ID);
+        assertThat(sold.get()).isLessThanOrEqualTo(initialQuantity);
+        assertThat(sold.get() + remaining).isEqualTo(initialQuantity);
+        assertThat(databaseQuantity.get()).isEqualTo(remaining);
+
+        // A restarted application rebuilds the same counters from the database
+        HotStockServiceImpl restarted = new HotStockServiceImpl();
+        ReflectionTestUtils.setField(restarted, "stockRepository", mockStockRepository);
+        ReflectionTestUtils.setField(restarted, "albumRepository", mockAlbumRepository);
+        ReflectionTestUtils.setField(restarted, "albumCacheService", albumCacheService);
+        ReflectionTestUtils.setField(restarted, "transactionManager", transactionManager);
+        ReflectionTestUtils.setField(restarted, "eventPublisher", eventPublisher);
+        restarted.loadHotAlbums();
+        assertThat(restarted.getQuantityInStock(ALBUM_ID)).isEqualTo(remaining);
+    }
+
+    @Test
+    @DisplayName("Disabling a hot album while it is selling writes every sold unit to the database")
+    void testDisableWhileSelling() throws Exception {
+        // Arrange
+        int initialQuantity = 1_000_000;
+        databaseQuantity.set(initialQuantity);
+        hotStockServiceImpl.loadHotAlbums();
+
+        AtomicInteger sold = new AtomicInteger();
+        ExecutorService buyers = Executors.newFixedThreadPool(8);
+        List<Future<?>> purchases = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            purchases.add(buyers.submit(() -> {
+                while (hotStockServiceImpl.take(ALBUM_ID, 1) == HotStockService.Outcome.TAKEN) {
+                    sold.incrementAndGet();
+                }
+            }));
+        }
+
+        // Act
+        Thread.sleep(20);
+        hotStockServiceImpl.flush();
+        hotStockServiceImpl.disable(ALBUM_ID);
+        for (Future<?> purchase : purchases) {
+            purchase.get(30, TimeUnit.SECONDS);
+        }
+        buyers.shutdown();
+
+        // Assert
+        assertThat(hotStockServiceImpl.isHot(ALBUM_ID)).isFalse();
+        assertThat(hotStockServiceImpl.take(ALBUM_ID, 1)).isEqualTo(HotStockService.Outcome.NOT_HOT);
+        assertThat(databaseQuantity.get()).isEqualTo(initialQuantity - sold.get());
+    }
+
+    @Test
+    @DisplayName("A take larger than any one counter gathers from several and fails without losing units")
+    void testTakeAcrossStripes() {
+        // Arrange
+        databaseQuantity.set(10);
+        hotStockServiceImpl.loadHotAlbums();
+
+        // Act & Assert
+        assertThat(hotStockServiceImpl.take(ALBUM_ID, 11)).isEqualTo(HotStockService.Outcome.OUT_OF_STOCK);
+        assertThat(hotStockServiceImpl.getQuantityInStock(ALBUM_ID)).isEqualTo(10);
+        assertThat(hotStockServiceImpl.take(ALBUM_ID, 7)).isEqualTo(HotStockService.Outcome.TAKEN);
+        assertThat(hotStockServiceImpl.release(ALBUM_ID, 2)).isTrue();
+        assertThat(hotStockServiceImpl.getQuantityInStock(ALBUM_ID)).isEqualTo(5);
+
+        hotStockServiceImpl.flush();
+        assertThat(databaseQuantity.get()).isEqualTo(5);
+    }
+
+    // Flushes until interrupted or until a flush crashes the thread
+    private Thread startFlusher(AtomicInteger crashes) {
+        return Thread.ofPlatform().start(() -> {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    hotStockServiceImpl.flush();
+                    LockSupport.parkNanos(100_000);
+                }
+            } catch (FlusherCrash e) {
+                crashes.incrementAndGet();
+            }
+        });
+    }
+}
@@ -0,0 +1,187 @@
+package com.northcoders.recordshopbackend.service;
+
+import com.northcoders.recordshopbackend.dto.OrderDTO;
+import com.northcoders.recordshopbackend.dto.OrderLineDTO;
+import com.northcoders.recordshopbackend.dto.OrderLineResultDTO;
+import com.northcoders.recordshopbackend.dto.OrderResultDTO;
+import com.northcoders.recordshopbackend.model.Album;
+import com.northcoders.recordshopbackend.repository.AlbumRepository;
+import com.northcoders.recordshopbackend.repository.StockRepository;
+import com.northcoders.recordshopbackend.repository.StockRepositoryCustom.StockLevel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@DataJpaTest
+public class OrderServiceTests {
+
+    @Mock
+    private StockRepository mockStockRepository;
+
+    @Mock
+    private AlbumRepository mockAlbumRepository;
+
+    @Mock
+    private CacheService<Album> albumCacheService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private HotStockService hotStockService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks
+    private OrderServiceImpl orderServiceImpl;
+
+    @BeforeEach
+    public void setup(){
+        ReflectionTestUtils.setField(orderServiceImpl, "maxGroupSize", 10);
+        ReflectionTestUtils.setField(orderServiceImpl, "queueCapacity", 10);
+        orderServiceImpl.start();
+    }
+
+    @AfterEach
+    public void tearDown(){
+        orderServiceImpl.stop();
+    }
+
+    @Test
+    @DisplayName("Reserves every line of an order and takes the stock in stock id order")
+    void testPlaceOrder() throws Exception {
+        // Arrange
+        OrderDTO order = new OrderDTO(List.of(
+                new OrderLineDTO(2L, 1),
+                new OrderLineDTO(1L, 2),
+                new OrderLineDTO(2L, 1)
+        ));
+        when(mockStockRepository.lockStockLevelsByAlbumIds(anyCollection())).thenReturn(Map.of(
+                1L, new StockLevel(1L, 11L, 5, 0L),
+                2L, new StockLevel(2L, 12L, 2, 0L)
+        ));
+
+        // Act
+        OrderResultDTO result = orderServiceImpl.placeOrder(order).get(5, TimeUnit.SECONDS);
+
+        // Assert
+        assertThat(result.getStatus()).isEqualTo(OrderResultDTO.Status.CONFIRMED);
+        assertThat(result.getLines()).extracting(OrderLineResultDTO::getQuantityInStock).containsExactly(0, 3, 0);
+        verify(mockStockRepository).decreaseQuantitiesInStock(new TreeMap<>(Map.of(11L, 2, 12L, 2)));
+        verify(albumCacheService).remove(1L);
+        verify(albumCacheService).remove(2L);
+    }
+
+    @Test
+    @DisplayName("Rejects the whole order when one line cannot be reserved")
+    void testPlaceOrderOutOfStock() throws Exception {
+        // Arrange
+        OrderDTO order = new OrderDTO(List.of(
+                new OrderLineDTO(1L, 2),
+                new OrderLineDTO(2L, 3),
+                new OrderLineDTO(3L, 1)
+        ));
+        when(mockStockRepository.lockStockLevelsByAlbumIds(anyCollection())).thenReturn(Map.of(
+                1L, new StockLevel(1L, 11L, 5, 0L),
+                2L, new StockLevel(2L, 12L, 2, 0L)
+        ));
+
+        // Act
+        OrderResultDTO result = orderServiceImpl.placeOrder(order).get(5, TimeUnit.SECONDS);
+
+        // Assert
+        assertThat(result.getStatus()).isEqualTo(OrderResultDTO.Status.REJECTED);
+        assertThat(result.getLines()).extracting(OrderLineResultDTO::getStatus).containsExactly(
+                OrderLineResultDTO.Status.NOT_RESERVED,
+                OrderLineResultDTO.Status.OUT_OF_STOCK,
+                OrderLineResultDTO.Status.NOT_FOUND
+        );
+        verify(mockStockRepository, never()).decreaseQuantitiesInStock(any());
+        verify(albumCacheService, never()).remove(any());
+    }
+
+    @Test
+    @DisplayName("Units taken from a hot album that was written back in the meantime go back to its stock row when the order fails")
+    void testFailedOrderReturnsRetiredHotUnitsToTheDatabase() {
+        // Arrange
+        OrderDTO order = new OrderDTO(List.of(
+                new OrderLineDTO(1L, 2),
+                new OrderLineDTO(2L, 1)
+        ));
+        when(hotStockService.isHot(1L)).thenReturn(true);
+        when(hotStockService.take(1L, 2)).thenReturn(HotStockService.Outcome.TAKEN);
+        // The counters were retired, so nothing is put back in memory
+        when(hotStockService.release(1L, 2)).thenReturn(false);
+        when(mockStockRepository.lockStockLevelsByAlbumIds(anyCollection())).thenReturn(Map.of(
+                2L, new StockLevel(2L, 12L, 5, 0L)
+        ));
+        doThrow(new IllegalStateException("Connection lost")).when(mockStockRepository).decreaseQuantitiesInStock(any());
+
+        // Act
+        Throwable failure = catchThrowable(() -> orderServiceImpl.placeOrder(order).get(5, TimeUnit.SECONDS));
+
+        // Assert
+        assertThat(failure).isInstanceOf(ExecutionException.class);
+        verify(mockStockRepository).increaseQuantityInStock(1L, 2);
+        verify(albumCacheService).remove(1L);
+    }
+
+    @Test
+    @DisplayName("An Error while committing fails that order and the committer goes on to the next one")
+    void testCommitterSurvivesAnError() throws Exception {
+        // Arrange
+        OrderDTO order = new OrderDTO(List.of(new OrderLineDTO(1L, 1)));
+        when(mockStockRepository.lockStockLevelsByAlbumIds(anyCollection()))
+                .thenThrow(new StackOverflowError())
+                .thenReturn(Map.of(1L, new StockLevel(1L, 11L, 5, 0L)));
+
+        // Act
+        Throwable failure = catchThrowable(() -> orderServiceImpl.placeOrder(order).get(5, TimeUnit.SECONDS));
+        OrderResultDTO result = orderServiceImpl.placeOrder(order).get(5, TimeUnit.SECONDS);
+
+        // Assert
+        assertThat(failure).isInstanceOf(ExecutionException.class).hasCauseInstanceOf(StackOverflowError.class);
+        assertThat(result.getStatus()).isEqualTo(OrderResultDTO.Status.CONFIRMED);
+    }
+
+    @Test
+    @DisplayName("A line for an album that stops being hot while the group commits is reserved from its stock row")
+    void testPlaceOrderForAlbumNoLongerHot() throws Exception {
+        // Arrange
+        OrderDTO order = new OrderDTO(List.of(new OrderLineDTO(1L, 2)));
+        when(hotStockService.isHot(1L)).thenReturn(true);
+        when(hotStockService.take(1L, 2)).thenReturn(HotStockService.Outcome.NOT_HOT);
+        when(mockStockRepository.lockStockLevelsByAlbumIds(anyCollection())).thenReturn(Map.of(
+                1L, new StockLevel(1L, 11L, 5, 0L)
+        ));
+
+        // Act
+        OrderResultDTO result = orderServiceImpl.placeOrder(order).get(5, TimeUnit.SECONDS);
+
+        // Assert
+        assertThat(result.getStatus()).isEqualTo(OrderResultDTO.Status.CONFIRMED);
+        assertThat(result.getLines()).extracting(OrderLineResultDTO::getQuantityInStock).containsExactly(3);
+        verify(mockStockRepository).decreaseQuantitiesInStock(new TreeMap<>(Map.of(11L, 2)));
+        verify(hotStockService, times(1)).take(1L, 2);
+    }
+}
@@ -0,0 +1,65 @@
+package com.northcoders.recordshopbackend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.northcoders.recordshopbackend.service.SerializedResponse.Encoding;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SerializedResponseTests {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    @DisplayName("Gzip is preferred, then deflate, and codings with q=0 are refused")
+    void testNegotiate(){
+        // Act & Assert
+        assertThat(Encoding.negotiate(null)).isEqualTo(Encoding.IDENTITY);
+        assertThat(Encoding.negotiate("br, deflate, gzip;q=0.8")).isEqualTo(Encoding.GZIP);
+        assertThat(Encoding.negotiate("deflate, gzip;q=0")).isEqualTo(Encoding.DEFLATE);
+        assertThat(Encoding.negotiate("*")).isEqualTo(Encoding.GZIP);
+        assertThat(Encoding.negotiate("br")).isEqualTo(Encoding.IDENTITY);
+    }
+
+    @Test
+    @DisplayName("Each encoding decodes to the same JSON, compressed once and kept, small bodies are not compressed")
+    void testToResponseEntity() throws IOException {
+        // Arrange
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("X-Next-Cursor", "Mw");
+        List<String> titles = Collections.nCopies(200, "Timeless");
+        SerializedResponse response = SerializedResponse.serialize(
+                "albums", 3, new ResponseEntity<>(titles, headers, HttpStatus.OK), mapper);
+        SerializedResponse small = SerializedResponse.serialize(
+                "album", 1, ResponseEntity.ok(List.of("Timeless")), mapper);
+
+        // Act
+        ResponseEntity<byte[]> identity = response.toResponseEntity(Encoding.IDENTITY);
+        ResponseEntity<byte[]> gzip = response.toResponseEntity(Encoding.GZIP);
+        ResponseEntity<byte[]> deflate = response.toResponseEntity(Encoding.DEFLATE);
+
+        // Assert
+        assertThat(response.matches("albums", 3)).isTrue();
+        assertThat(response.matches("albums", 4)).isFalse();
+        assertThat(identity.getHeaders().getFirst("X-Next-Cursor")).isEqualTo("Mw");
+        assertThat(identity.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isNull();
+        assertThat(mapper.readValue(identity.getBody(), List.class)).isEqualTo(titles);
+        assertThat(gzip.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+        assertThat(gzip.getBody().length).isLessThan(identity.getBody().length);
+        assertThat(new GZIPInputStream(new ByteArrayInputStream(gzip.getBody())).readAllBytes()).isEqualTo(identity.getBody());
+        assertThat(response.toResponseEntity(Encoding.GZIP).getBody()).isSameAs(gzip.getBody());
+        assertThat(new InflaterInputStream(new ByteArrayInputStream(deflate.getBody())).readAllBytes()).isEqualTo(identity.getBody());
+        assertThat(small.toResponseEntity(Encoding.GZIP).getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isNull();
+    }
+}
@@ -0,0 +1,67 @@
+package com.northcoders.recordshopbackend.service;
+
+import com.northcoders.recordshopbackend.exception.ItemNotFoundException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+public class SingleFlightTests {
+
+    @Test
+    @DisplayName("Concurrent loads of the same key run the loader once and share its result")
+    void testConcurrentLoadsAreCoalesced() throws Exception {
+        // Arrange
+        SingleFlight<Long, String> singleFlight = new SingleFlight<>();
+        AtomicInteger loaderCalls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        // Act
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(executor.submit(() -> singleFlight.load(1L, () -> {
+                loaderCalls.incrementAndGet();
+                awaitQuietly(release);
+                return "Timeless";
+            })));
+        }
+        Thread.sleep(200);
+        release.countDown();
+
+        // Assert
+        for (Future<String> result : results) {
+            assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("Timeless");
+        }
+        assertThat(loaderCalls.get()).isEqualTo(1);
+        executor.shutdown();
+    }
+
+    @Test
+    @DisplayName("The loader's exception is rethrown and the key can be loaded again afterwards")
+    void testExceptionIsPropagated(){
+        // Arrange
+        SingleFlight<Long, String> singleFlight = new SingleFlight<>();
+
+        // Act & Assert
+        assertThatExceptionOfType(ItemNotFoundException.class)
+                .isThrownBy(() -> singleFlight.load(1L, () -> {
+                    throw new ItemNotFoundException("Album with the id '1' cannot be found");
+                }));
+        assertThat(singleFlight.load(1L, () -> "Timeless")).isEqualTo("Timeless");
+    }
+
+    private static void awaitQuietly(CountDownLatch latch){
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,19 +1,28 @@
 package com.northcoders.recordshopbackend.service;
 
+import com.northcoders.recordshopbackend.dto.StockAdjustmentDTO;
+import com.northcoders.recordshopbackend.dto.StockAdjustmentResultDTO;
 import com.northcoders.recordshopbackend.exception.ItemNotFoundException;
+import com.northcoders.recordshopbackend.model.Album;
 import com.northcoders.recordshopbackend.model.Stock;
+import com.northcoders.recordshopbackend.repository.AlbumRepository;
 import com.northcoders.recordshopbackend.repository.StockRepository;
+import com.northcoders.recordshopbackend.repository.StockRepositoryCustom.StockLevel;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
 
-import java.util.Optional;
+import java.util.*;
 
-import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThatExceptionOfType;
-import static org.mockito.Mockito.when;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
 
 @DataJpaTest
 public class StockServiceTests {
@@ -21,6 +30,21 @@ public class StockServiceTests {
     @Mock
     private StockRepository stockRepository;
 
+    @Mock
+    private AlbumRepository albumRepository;
+
+    @Mock
+    private HotStockService hotStockService;
+
+    @Mock
+    private CacheService<Album> albumCacheService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private StockServiceImpl stockServiceImpl;
 
@@ -73,4 +97,40 @@ public class StockServiceTests {
                     Stock result = stockServiceImpl.getStockById(2L);
                 }).withMessageMatching("Stock with the id '\\d+' cannot be found");
     }
+
+    @Test
+    @DisplayName("Applies stock adjustments in order and writes them back as one batch")
+    void testAdjustStock(){
+        // Arrange
+        List<StockAdjustmentDTO> adjustments = List.of(
+                new StockAdjustmentDTO(2L, 10, null, 4L),
+                new StockAdjustmentDTO(1L, null, 7, null),
+                new StockAdjustmentDTO(2L, -20, null, null),
+                new StockAdjustmentDTO(9L, 1, null, null),
+                new StockAdjustmentDTO(1L, 1, 1, null),
+                new StockAdjustmentDTO(1L, 5, null, 1L)
+        );
+        when(stockRepository.lockStockLevelsByAlbumIds(anyCollection())).thenReturn(Map.of(
+                1L, new StockLevel(1L, 11L, 3, 0L),
+                2L, new StockLevel(2L, 12L, 5, 4L)
+        ));
+
+        // Act
+        List<StockAdjustmentResultDTO> results = stockServiceImpl.adjustStock(adjustments);
+
+        // Assert
+        assertThat(results).extracting(StockAdjustmentResultDTO::getStatus).containsExactly(
+                StockAdjustmentResultDTO.Status.ADJUSTED,
+                StockAdjustmentResultDTO.Status.ADJUSTED,
+                StockAdjustmentResultDTO.Status.INVALID,
+                StockAdjustmentResultDTO.Status.NOT_FOUND,
+                StockAdjustmentResultDTO.Status.INVALID,
+                StockAdjustmentResultDTO.Status.PRECONDITION_FAILED
+        );
+        assertThat(results).extracting(StockAdjustmentResultDTO::getQuantityInStock).containsExactly(15, 7, 15, null, 7, 7);
+        assertThat(results).extracting(StockAdjustmentResultDTO::getVersion).containsExactly(5L, 1L, 5L, null, 1L, 1L);
+        verify(stockRepository).setQuantitiesInStock(new TreeMap<>(Map.of(11L, 7, 12L, 15)));
+        verify(albumRepository).updateDateModifiedByIdIn(eq(Set.of(1L, 2L)), any());
+        verify(albumCacheService).removeAll(Set.of(1L, 2L));
+    }
 }